@@ -0,0 +1,93 @@
+package com.jc.command.task;
+
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Measures the cost of the JobQueue status queries a UI polls, with numJobs jobs queued as
+ * one process, from 8 threads at once. The jobs are never run, the queue's dispatcher isn't
+ * started.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class JobQueueStatusBenchmark {
+
+   private final static String PROCESS_ID = "benchmark_proc";
+
+   @Param({ "100", "1000" })
+   public int numJobs;
+
+   private JobQueue MyQueue;
+   private String JobId;
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception {
+      MyQueue = new JobQueue();
+      Vector<Job> process = new Vector<>();
+      for (int i = 0; i < numJobs; i++) {
+         process.add(new Job(new IdleTask(), true));
+      }
+      MyQueue.registerAsAProcess(process, PROCESS_ID);
+      for (Job ajob : process) {
+         MyQueue.queueJob(ajob);
+      }
+      JobId = process.lastElement().getID();
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws Exception {
+      MyQueue.removeProcess(PROCESS_ID);
+   }
+
+   @Benchmark
+   public JSONObject statistics() {
+      return MyQueue.getStatistics();
+   }
+
+   @Benchmark
+   public Job.JobStatus processStatus() throws Exception {
+      return MyQueue.getStatusForProcess(PROCESS_ID);
+   }
+
+   @Benchmark
+   public double processAmountCompleted() throws Exception {
+      return MyQueue.getProcessAmountCompleted(PROCESS_ID);
+   }
+
+   @Benchmark
+   public String processIdOfJob() {
+      return MyQueue.getProcessID(JobId);
+   }
+
+   // ------------------------------------------------------------------------
+
+   public static final class IdleTask extends Task {
+
+      @Override
+      public void doTask() throws Exception {
+         // never run...
+      }
+   }
+}
@@ -0,0 +1,101 @@
+package com.jc.command.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Measures the latency of running a job the way AppLazyDataModel.load() does for a table
+ * page: a single task standing in for a query that takes queryTime ms. Compares JobRunner,
+ * which wakes when the job finishes, with the sleep-polling loop it replaced (reproduced
+ * below), which never returned in less than a second.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JobRunnerBenchmark {
+
+   @Param({ "20" })
+   public long queryTime;
+
+   @Benchmark
+   public List<? extends Object> eventDriven() throws Exception {
+      JobRunner runner = new JobRunner();
+      runner.setJobTasks(createTasks());
+      return runner.run();
+   }
+
+   @Benchmark
+   public List<? extends Object> sleepPolling() throws Exception {
+      return LegacyJobRunner.run(createTasks());
+   }
+
+   private List<Task> createTasks() {
+      List<Task> tasks = new ArrayList<>();
+      tasks.add(new QueryTask(queryTime));
+      return tasks;
+   }
+
+   // ------------------------------------------------------------------------
+
+   public static final class QueryTask extends Task {
+
+      private final long queryTime;
+
+      QueryTask(long queryTime) {
+         this.queryTime = queryTime;
+      }
+
+      @Override
+      public void doTask() throws Exception {
+         Thread.sleep(queryTime);
+         setTaskResult("page");
+      }
+   }
+
+   // ------------------------------------------------------------------------
+
+   private static final class LegacyJobRunner {
+
+      static List<? extends Object> run(List<Task> jobTasks) {
+         Job myJob = new Job(jobTasks.get(0), true);
+         for (int i = 1; i < jobTasks.size(); i++) {
+            myJob.addTask(jobTasks.get(i));
+         }
+
+         myJob.start();
+
+         while (myJob.isRunning() || myJob.isQueued() || myJob.isWaiting()) {
+            try {
+               long estRunTime = myJob.getEstimatedRuntime();
+               if (estRunTime < 1001) {
+                  estRunTime = 1000;
+               }
+               else {
+                  estRunTime = Math.round(estRunTime * 0.75);
+               }
+               Thread.sleep(estRunTime);
+            }
+            catch (InterruptedException e) {
+               // eat it for now...
+            }
+         }
+         return myJob.getResult();
+      }
+   }
+}
@@ -0,0 +1,83 @@
+package com.jc.command.task;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Measures the time from asking for a job to be run until its task is running, when the job
+ * is started directly and when it is queued on a running JobQueue and started by its
+ * dispatcher. The tasks do nothing, so what is measured is the scheduling plus the job
+ * noticing its task has finished.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JobStartLatencyBenchmark {
+
+   @Benchmark
+   public Job jobStart() throws Exception {
+      StartTask task = new StartTask();
+      Job ajob = new Job(task, true);
+      ajob.start();
+      task.Started.await();
+      ajob.awaitCompletion();
+      return ajob;
+   }
+
+   @Benchmark
+   public Job queuedJobStart(QueueState queue) throws Exception {
+      StartTask task = new StartTask();
+      Job ajob = new Job(task, true);
+      queue.MyQueue.queueJob(ajob);
+      task.Started.await();
+      ajob.awaitCompletion();
+      queue.MyQueue.removeJob(ajob.getID());
+      return ajob;
+   }
+
+   // ------------------------------------------------------------------------
+
+   @State(Scope.Benchmark)
+   public static class QueueState {
+
+      JobQueue MyQueue;
+
+      @Setup(Level.Trial)
+      public void setup() throws Exception {
+         MyQueue = new JobQueue();
+         MyQueue.runJobs();
+      }
+
+      @TearDown(Level.Trial)
+      public void tearDown() throws Exception {
+         MyQueue.cancelAllJobs();
+      }
+   }
+
+   public static final class StartTask extends Task {
+
+      final CountDownLatch Started = new CountDownLatch(1);
+
+      @Override
+      public void doTask() throws Exception {
+         Started.countDown();
+      }
+   }
+}
@@ -0,0 +1,102 @@
+package com.jc.command.task;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * Runs a multi-threaded job of TASKS_PER_JOB small tasks on 1, 8 and 64 threads and reports
+ * tasks per second. throttledTasks runs tasks whose class is limited to throttleLimit active
+ * at once with Task.setMaxActiveTaskLimit(), so the rest wait for a permit.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskThroughputBenchmark {
+
+   private final static int TASKS_PER_JOB = 64;
+
+   @Param({ "1", "8", "64" })
+   public int threads;
+
+   @Param({ "4" })
+   public int throttleLimit;
+
+   @Param({ "1000" })
+   public long workTokens; // Blackhole.consumeCPU() tokens per task.
+
+   @Setup(Level.Trial)
+   public void setup() {
+      Task.setMaxActiveTaskLimit(ThrottledTask.class.getName(), throttleLimit);
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(TASKS_PER_JOB)
+   public Job tasks() throws Exception {
+      Job ajob = new Job(new WorkTask(workTokens), true);
+      for (int i = 1; i < TASKS_PER_JOB; i++) {
+         ajob.addTask(new WorkTask(workTokens));
+      }
+      return runJob(ajob);
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(TASKS_PER_JOB)
+   public Job throttledTasks() throws Exception {
+      Job ajob = new Job(new ThrottledTask(workTokens), true);
+      for (int i = 1; i < TASKS_PER_JOB; i++) {
+         ajob.addTask(new ThrottledTask(workTokens));
+      }
+      return runJob(ajob);
+   }
+
+   private Job runJob(Job ajob) throws Exception {
+      ajob.setMaxNumThreads(threads);
+      ajob.start();
+      ajob.awaitCompletion();
+      if (!ajob.isDone()) {
+         throw new IllegalStateException("Job " + ajob.getID() + " finished as " + ajob.getState() + ".");
+      }
+      return ajob;
+   }
+
+   // ------------------------------------------------------------------------
+
+   public static class WorkTask extends Task {
+
+      private final long workTokens;
+
+      WorkTask(long workTokens) {
+         this.workTokens = workTokens;
+      }
+
+      @Override
+      public void doTask() throws Exception {
+         Blackhole.consumeCPU(workTokens);
+      }
+   }
+
+   public static final class ThrottledTask extends WorkTask {
+
+      ThrottledTask(long workTokens) {
+         super(workTokens);
+      }
+   }
+}
@@ -0,0 +1,110 @@
+package com.jc.db;
+
+import java.nio.file.Files;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jc.util.ConfigInfo;
+
+/*
+ * Borrows and returns a DBConnection from 64 threads at once, comparing DBConnectionPool
+ * with the static synchronized Hashtable/Vector scan it replaced (reproduced below without
+ * its per-call logging). No JDBC connection is opened, only the pool bookkeeping is measured.
+ * The pool's "db" log is written to a temp directory rather than the working directory.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(64)
+@Fork(1)
+public class DBConnectionPoolBenchmark {
+
+   private final static String CONNECTION_ID = "benchmark:pool";
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception {
+      ConfigInfo.getInstance().addProperty("log.db.directory", Files.createTempDirectory("DBConnectionPoolBenchmark").toString());
+      DBConnection.setMaxPoolSize(64);
+      DBConnectionPool.removeAll();
+      LegacyPool.removeAll();
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws Exception {
+      DBConnectionPool.removeAll();
+      LegacyPool.removeAll();
+   }
+
+   @Benchmark
+   public DBConnection lockFreePool() throws Exception {
+      DBConnection connection = DBConnectionPool.getDBConnection(CONNECTION_ID, "Benchmark");
+      DBConnectionPool.releaseConnection(connection);
+      return connection;
+   }
+
+   @Benchmark
+   public DBConnection synchronizedPool() throws Exception {
+      DBConnection connection = LegacyPool.getDBConnection(CONNECTION_ID, "Benchmark");
+      LegacyPool.releaseConnection(connection);
+      return connection;
+   }
+
+   // ------------------------------------------------------------------------
+
+   private static final class LegacyPool {
+
+      private static final Hashtable<String, Vector<DBConnection>> DBCONNECTION_STORE = new Hashtable<String, Vector<DBConnection>>();
+
+      static synchronized DBConnection getDBConnection(String connection_id, String connectionMethod) throws Exception {
+         DBConnection connection = null;
+         Vector<DBConnection> connvec = DBCONNECTION_STORE.get(connection_id);
+         if (connvec == null) {
+            connvec = new Vector<DBConnection>();
+            DBCONNECTION_STORE.put(connection_id, connvec);
+         }
+
+         int num_connections = connvec.size();
+         for (int i = 0; i < num_connections; i++) {
+            DBConnection candidate = connvec.get(i);
+            // the old pool also skipped closed connections, which would leave nothing to reuse here...
+            if (!candidate.isActive() && !candidate.inUse()) {
+               connection = candidate;
+               break;
+            }
+         }
+
+         if (connection == null) {
+            connection = new DBConnection(connection_id, connectionMethod);
+            connvec.add(connection);
+         }
+         connection.activate();
+         return connection;
+      }
+
+      static void releaseConnection(DBConnection connection) {
+         connection.deactivate();
+      }
+
+      static synchronized void removeAll() {
+         DBCONNECTION_STORE.clear();
+      }
+   }
+}
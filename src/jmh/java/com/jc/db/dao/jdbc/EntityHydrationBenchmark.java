@@ -0,0 +1,202 @@
+package com.jc.db.dao.jdbc;
+
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * Compares populating and reading an entity through Method.invoke, the way JDBCQuery
+ * and FieldInfo used to, with the FieldAccessors used by EntityRowMapper. Each
+ * invocation handles one "row" worth of fields.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityHydrationBenchmark {
+
+   private Method[] getters;
+   private Method[] setters;
+   private FieldAccessor[] accessors;
+   private Class<?>[] paramTypes;
+   private Object[] rowValues;
+
+   private BenchmarkEntity entity;
+
+   @Setup
+   public void setup() {
+      EntityInfo entityInfo = EntityInfoCache.getEntityInfo(BenchmarkEntity.class);
+      List<String> colPropKeys = entityInfo.getColumPropKeys();
+
+      int size = colPropKeys.size();
+      getters = new Method[size];
+      setters = new Method[size];
+      accessors = new FieldAccessor[size];
+      paramTypes = new Class<?>[size];
+      rowValues = new Object[size];
+
+      for (int i = 0; i < size; i++) {
+         FieldInfo info = entityInfo.getFieldInfoByColumnProperty(colPropKeys.get(i));
+         getters[i] = info.getGetterMethod();
+         setters[i] = info.getSetterMethod();
+         accessors[i] = info.getAccessor();
+         paramTypes[i] = setters[i].getParameterTypes()[0];
+         rowValues[i] = sampleValueFor(info.getFieldName());
+      }
+
+      entity = new BenchmarkEntity();
+   }
+
+   @Benchmark
+   public Object reflectionHydrate() throws Exception {
+      BenchmarkEntity row = new BenchmarkEntity();
+      for (int i = 0; i < setters.length; i++) {
+         Object value = rowValues[i];
+         if (paramTypes[i].equals(Long.class) && value instanceof BigInteger) {
+            value = new Long(((BigInteger) value).longValue());
+         }
+         setters[i].invoke(row, value);
+      }
+      return row;
+   }
+
+   @Benchmark
+   public Object accessorHydrate() throws Exception {
+      BenchmarkEntity row = new BenchmarkEntity();
+      for (int i = 0; i < accessors.length; i++) {
+         Object value = EntityRowMapper.convertValue(rowValues[i], paramTypes[i]);
+         accessors[i].set(row, value);
+      }
+      return row;
+   }
+
+   @Benchmark
+   public void reflectionRead(Blackhole blackhole) throws Exception {
+      for (int i = 0; i < getters.length; i++) {
+         blackhole.consume(getters[i].invoke(entity));
+      }
+   }
+
+   @Benchmark
+   public void accessorRead(Blackhole blackhole) throws Exception {
+      for (int i = 0; i < accessors.length; i++) {
+         blackhole.consume(accessors[i].get(entity));
+      }
+   }
+
+   private static Object sampleValueFor(String fieldName) {
+      switch (fieldName) {
+         case "id":
+            return BigInteger.valueOf(1234567L);
+         case "name":
+            return "Benchmark Entity";
+         case "description":
+            return "An entity with a handful of commonly typed columns.";
+         case "count":
+            return Integer.valueOf(42);
+         case "amount":
+            return Double.valueOf(12.5);
+         case "active":
+            return Boolean.TRUE;
+         case "created":
+            return new Date();
+         default:
+            throw new IllegalArgumentException("No sample value for " + fieldName);
+      }
+   }
+
+   // ------------------------------------------------------------------------
+
+   @Entity
+   @Table(name = "benchmark_entity")
+   public static class BenchmarkEntity {
+
+      @Id
+      private Long id;
+      private String name;
+      private String description;
+      private int count;
+      private double amount;
+      private boolean active;
+      @Column(name = "created_date")
+      private Date created;
+
+      public Long getId() {
+         return id;
+      }
+
+      public void setId(Long id) {
+         this.id = id;
+      }
+
+      public String getName() {
+         return name;
+      }
+
+      public void setName(String name) {
+         this.name = name;
+      }
+
+      public String getDescription() {
+         return description;
+      }
+
+      public void setDescription(String description) {
+         this.description = description;
+      }
+
+      public int getCount() {
+         return count;
+      }
+
+      public void setCount(int count) {
+         this.count = count;
+      }
+
+      public double getAmount() {
+         return amount;
+      }
+
+      public void setAmount(double amount) {
+         this.amount = amount;
+      }
+
+      public boolean isActive() {
+         return active;
+      }
+
+      public void setActive(boolean active) {
+         this.active = active;
+      }
+
+      public Date getCreated() {
+         return created;
+      }
+
+      public void setCreated(Date created) {
+         this.created = created;
+      }
+   }
+}
@@ -14,6 +14,7 @@ import javax.servlet.ServletException;
 
 import com.jc.app.data.domain.AppConfig;
 import com.jc.app.service.ApplicationServiceManager;
+import com.jc.db.dao.jdbc.EntityInfoCache;
 import com.jc.log.Logger;
 import com.jc.util.ConfigInfo;
 
@@ -127,6 +128,9 @@ public abstract class WebAppContextListener implements javax.servlet.ServletCont
             consoleLoggingOn = info.getPropertyAsBoolean(CONSOLE_LOGGING_ON_PROPKEY);
          }
          Logger.setConsoleLoggingOn(consoleLoggingOn);
+
+         // Build the JDBC entity metadata up front so the first requests don't pay for it...
+         EntityInfoCache.preload(getPreloadedEntityClasses());
       }
       catch (Exception ex) {
          logExceptionDuringInitialization(ex);
@@ -148,6 +152,10 @@ public abstract class WebAppContextListener implements javax.servlet.ServletCont
       return new ArrayList<>();
    }
 
+   protected List<Class<?>> getPreloadedEntityClasses() throws Exception {
+      return new ArrayList<>();
+   }
+
    protected void logExceptionDuringInitialization(Throwable ex) {
       Logger.setDefaultLogging(true);
 
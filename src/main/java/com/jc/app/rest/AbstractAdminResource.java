@@ -39,7 +39,9 @@ public abstract class AbstractAdminResource extends RESTResource {
    @GET
    @Path("applog")
    @Produces("application/json")
-   public Response getApplicationLogData(@Context SecurityContext sc, @QueryParam("fromDate") String fromDateStr, @QueryParam("toDate") String toDateStr) {
+   public Response getApplicationLogData(@Context SecurityContext sc, @QueryParam("fromDate") String fromDateStr, @QueryParam("toDate") String toDateStr,
+         @QueryParam("level") String levelStr, @QueryParam("classFilter") String classFilter, @QueryParam("first") int first,
+         @QueryParam("pageSize") int pageSize) {
       try {
          Date fromDate = new Date();
          Date toDate = new Date();
@@ -65,9 +67,23 @@ public abstract class AbstractAdminResource extends RESTResource {
             throw new SystemInfoException(Level.SEVERE, AppServiceErrorCode.INVALID_FROM_DATE, message);
          }
 
-         List<AppLogRec> data = ApplicationServiceManager.readAppLog(fromDate, toDate);
-         JSONObject json = convertReportDataToJSONObject("applog", data, AppLogRec.class);
-         return Response.ok(json.toString(), MediaType.APPLICATION_JSON).build();
+         Level level = null;
+         if (levelStr != null && !levelStr.isEmpty()) {
+            try {
+               level = Level.parse(levelStr.toUpperCase());
+            }
+            catch (IllegalArgumentException iaex) {
+               String message = "Unable to parse the supplied log level '" + levelStr + "', it must be a java.util.logging.Level name or value.";
+               throw new SystemInfoException(Level.SEVERE, AppServiceErrorCode.INVALID_LOG_LEVEL, message);
+            }
+         }
+
+         if (classFilter != null && classFilter.isEmpty()) {
+            classFilter = null;
+         }
+
+         List<AppLogRec> data = ApplicationServiceManager.readAppLog(fromDate, toDate, level, classFilter, Math.max(first, 0), Math.max(pageSize, 0));
+         return createJSONResponse(convertReportDataToMap("applog", data, AppLogRec.class));
       }
       catch (Exception ex) {
          return createExceptionResponse(getClass(), ex);
@@ -82,7 +98,7 @@ public abstract class AbstractAdminResource extends RESTResource {
 
          JobQueue jobQueue = getApplicationJobQueue(jobQueueId);
          if (jobQueue != null) {
-            JSONObject jobIdStatsJson = new JSONObject();
+            Map<String, Object> jobIdStats = new LinkedHashMap<>();
             if (jobId != null && !jobId.isEmpty()) {
                Vector<Job> jobVec = jobQueue.getJob(jobId);
                if (jobVec != null && !jobVec.isEmpty()) {
@@ -93,15 +109,15 @@ public abstract class AbstractAdminResource extends RESTResource {
                   JobStatus jobStatus = jobQueue.getJobStatus(jobId);
                   String logData = jobQueue.getLogData(jobId);
 
-                  jobIdStatsJson.put("jobId", jobId);
-                  jobIdStatsJson.put("amountCompleted", amountCompleted);
-                  jobIdStatsJson.put("estimatedRuntime", estimatedRuntime);
-                  jobIdStatsJson.put("process", isProcess);
-                  jobIdStatsJson.put("status", jobStatus.toString().toLowerCase());
-                  jobIdStatsJson.put("logData", logData);
+                  jobIdStats.put("jobId", jobId);
+                  jobIdStats.put("amountCompleted", amountCompleted);
+                  jobIdStats.put("estimatedRuntime", estimatedRuntime);
+                  jobIdStats.put("process", isProcess);
+                  jobIdStats.put("status", jobStatus.toString().toLowerCase());
+                  jobIdStats.put("logData", logData);
                }
 
-               return Response.ok(jobIdStatsJson.toString(), MediaType.APPLICATION_JSON).build();
+               return createJSONResponse(jobIdStats);
             }
             else {
                JSONObject statistics = jobQueue.getStatistics();
@@ -155,6 +171,12 @@ public abstract class AbstractAdminResource extends RESTResource {
    }
 
    protected JSONObject convertReportDataToJSONObject(String logName, List<?> logDataList, Class<?> logRecType) throws Exception {
+      JSONObject jsonObj = RESTUtils.createJSONObjectFromMap(convertReportDataToMap(logName, logDataList, logRecType));
+      return jsonObj;
+   }
+
+   // Returns the report data as a map of the log name to a list of entries, the first holding the column headers.
+   protected Map<String, Object> convertReportDataToMap(String logName, List<?> logDataList, Class<?> logRecType) throws Exception {
       List<Map<String, Object>> logEntries = new ArrayList<>();
 
       if (logDataList.size() > 0) {
@@ -196,9 +218,7 @@ public abstract class AbstractAdminResource extends RESTResource {
 
       Map<String, Object> logData = new HashMap<>();
       logData.put(logName, logEntries);
-
-      JSONObject jsonObj = RESTUtils.createJSONObjectFromMap(logData);
-      return jsonObj;
+      return logData;
    }
 
    private void clearAllJobsFromJobQueue(JobQueue jobQueue) throws Exception {
@@ -0,0 +1,407 @@
+package com.jc.app.rest;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.jc.app.rest.JSONReader.Token;
+import com.jc.app.rest.annotations.Transient;
+import com.jc.app.rest.exceptions.InvalidJSONDatatypeException;
+import com.jc.util.ObjectFactory;
+
+/*
+ * Creates objects from the JSON pulled from a JSONReader the same way
+ * RESTUtils.createObjectFromJSONObject() always has, but with the constructor, fields,
+ * field conversions and any constructFieldObject() inflator method of each class worked
+ * out once and kept in a registry. Values are set as they're read, so JSON parsed from a
+ * stream is never held as a JSONObject unless an inflator method asks for one.
+ */
+
+final class JSONBinder {
+
+   private final static ConcurrentMap<Class<?>, JSONBinder> Binders = new ConcurrentHashMap<>();
+
+   private final Constructor<?> constructor;
+   private final boolean isMap;
+   private final Map<String, FieldBinder[]> fields; // more than one if a superclass field has the same name
+   private final Method inflatorMethod;
+
+   private JSONBinder(Class<?> classType) throws Exception {
+      constructor = classType.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      isMap = ObjectFactory.implementsInterface(classType, Map.class);
+      inflatorMethod = RESTUtils.getFieldInflatorMethod(classType);
+
+      fields = new HashMap<>();
+      Class<?> classObj = classType;
+      while (classObj != null) {
+         for (Field field : classObj.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !field.isAnnotationPresent(Transient.class)) {
+               field.setAccessible(true);
+               FieldBinder[] binders = fields.get(field.getName());
+               if (binders == null) {
+                  binders = new FieldBinder[] {
+                     new FieldBinder(field)
+                  };
+               }
+               else {
+                  binders = Arrays.copyOf(binders, binders.length + 1);
+                  binders[binders.length - 1] = new FieldBinder(field);
+               }
+               fields.put(field.getName(), binders);
+            }
+         }
+         classObj = classObj.getSuperclass();
+      }
+   }
+
+   static JSONBinder getBinder(Class<?> classType) throws Exception {
+      JSONBinder binder = Binders.get(classType);
+      if (binder == null) {
+         binder = new JSONBinder(classType);
+         JSONBinder existing = Binders.putIfAbsent(classType, binder);
+         if (existing != null) {
+            binder = existing;
+         }
+      }
+      return binder;
+   }
+
+   /*
+    * Reads the next JSON object, returning an object of this binder's class.
+    */
+   Object bind(JSONReader reader) throws Exception {
+      Object object = constructor.newInstance();
+      reader.beginObject();
+      if (isMap) {
+         // The class implements Map and was created here, so it has no entries yet of any other type.
+         @SuppressWarnings("unchecked")
+         Map<String, Object> map = (Map<String, Object>) object;
+         while (reader.hasNext()) {
+            String key = reader.nextName();
+            map.put(key, reader.readValue());
+         }
+      }
+      else {
+         while (reader.hasNext()) {
+            FieldBinder[] binders = fields.get(reader.nextName());
+            if (binders == null) {
+               reader.skipValue();
+            }
+            else if (binders.length == 1) {
+               binders[0].bind(reader, object);
+            }
+            else { // each of the fields of that name is set from the same value...
+               Object jsonValue = reader.readValue();
+               for (FieldBinder binder : binders) {
+                  binder.bind(JSONReader.of(jsonValue), object);
+               }
+            }
+         }
+      }
+      reader.endObject();
+      return object;
+   }
+
+   /*
+    * Reads the next JSON array as RESTUtils.createObjectFromJSONArray(JSONArray, Class) does; objects
+    * are created with the supplied class and other values are added as they are.
+    */
+   static List<Object> bindList(JSONReader reader, Class<?> classObj) throws Exception {
+      reader.beginArray();
+      return bindElements(reader, classObj);
+   }
+
+   /*
+    * Reads the next JSON array as RESTUtils.createObjectFromJSONArray(JSONArray, ParameterizedType)
+    * does, where the type is the List type of a field.
+    */
+   static List<Object> bindList(JSONReader reader, ParameterizedType type) throws Exception {
+      reader.beginArray();
+      return bindElements(reader, type);
+   }
+
+   // Reads the rest of the elements of an array that has been begun, and the end of the array.
+   private static List<Object> bindElements(JSONReader reader, Class<?> classObj) throws Exception {
+      List<Object> valueList = new ArrayList<>();
+      while (reader.hasNext()) {
+         Token token = reader.peek();
+         if (token == Token.BEGIN_OBJECT) {
+            valueList.add(getBinder(classObj).bind(reader));
+         }
+         else if (token == Token.BEGIN_ARRAY) {
+            valueList.add(bindList(reader, classObj));
+         }
+         else {
+            valueList.add(reader.nextValue());
+         }
+      }
+      reader.endArray();
+      return valueList;
+   }
+
+   private static List<Object> bindElements(JSONReader reader, ParameterizedType type) throws Exception {
+      Type[] actualTypes = type.getActualTypeArguments();
+      if (actualTypes.length == 1) {
+         if (actualTypes[0] instanceof ParameterizedType) {
+            return bindElements(reader, (ParameterizedType) actualTypes[0]);
+         }
+         else {
+            return bindElements(reader, (Class<?>) actualTypes[0]);
+         }
+      }
+      else if (actualTypes.length == 2) {
+         // the array contains one or more json objects that represent Map objects.
+         List<Object> valueList = new ArrayList<>();
+         while (reader.hasNext()) {
+            Token token = reader.peek();
+            if (token == Token.BEGIN_OBJECT) {
+               valueList.add(bindMap(reader, (Class<?>) actualTypes[1]));
+            }
+            else if (token == Token.BEGIN_ARRAY) {
+               throw new Exception("Error in JSON, this value pulled from the jsonArray should support a map object: " + reader.readValue());
+            }
+            else {
+               valueList.add(reader.nextValue());
+            }
+         }
+         reader.endArray();
+         return valueList;
+      }
+      else {
+         throw new Exception("Unknown datatype object to inflate.");
+      }
+   }
+
+   /*
+    * Reads the next JSON object as RESTUtils.createObjectMapFromJSONObject() does.
+    */
+   static Map<String, Object> bindMap(JSONReader reader, Class<?> valueClassObj) throws Exception {
+      Map<String, Object> valueMap = new LinkedHashMap<>();
+      reader.beginObject();
+      while (reader.hasNext()) {
+         String name = reader.nextName();
+         Token token = reader.peek();
+         if (token == Token.BEGIN_OBJECT) {
+            valueMap.put(name, getBinder(valueClassObj).bind(reader));
+         }
+         else if (token == Token.BEGIN_ARRAY) {
+            valueMap.put(name, bindList(reader, valueClassObj));
+         }
+         else {
+            valueMap.put(name, reader.nextValue());
+         }
+      }
+      reader.endObject();
+      return valueMap;
+   }
+
+   // ------------------------------------------------------------------------
+
+   private final class FieldBinder {
+
+      // How a JSON scalar is converted for the field, by the declared type of the field.
+      private final static int OTHER = 0;
+      private final static int LONG = 1;
+      private final static int DOUBLE = 2;
+      private final static int FLOAT = 3;
+      private final static int DATE = 4;
+      private final static int BIG_INTEGER = 5;
+      private final static int CLASS = 6;
+      private final static int PRIMITIVE_BOOLEAN = 7;
+      private final static int PRIMITIVE_INT = 8;
+      private final static int PRIMITIVE_LONG = 9;
+      private final static int PRIMITIVE_DOUBLE = 10;
+      private final static int PRIMITIVE_FLOAT = 11;
+
+      private final Field field;
+      private final Class<?> fieldType;
+      private final int conversion;
+
+      FieldBinder(Field field) {
+         this.field = field;
+         this.fieldType = field.getType();
+
+         if (fieldType.equals(Long.class)) {
+            conversion = LONG;
+         }
+         else if (fieldType.equals(Double.class)) {
+            conversion = DOUBLE;
+         }
+         else if (fieldType.equals(Float.class)) {
+            conversion = FLOAT;
+         }
+         else if (fieldType.equals(Date.class)) {
+            conversion = DATE;
+         }
+         else if (fieldType.equals(BigInteger.class)) {
+            conversion = BIG_INTEGER;
+         }
+         else if (fieldType.equals(Class.class)) {
+            conversion = CLASS;
+         }
+         else if (fieldType.equals(Boolean.TYPE)) {
+            conversion = PRIMITIVE_BOOLEAN;
+         }
+         else if (fieldType.equals(Integer.TYPE)) {
+            conversion = PRIMITIVE_INT;
+         }
+         else if (fieldType.equals(Long.TYPE)) {
+            conversion = PRIMITIVE_LONG;
+         }
+         else if (fieldType.equals(Double.TYPE)) {
+            conversion = PRIMITIVE_DOUBLE;
+         }
+         else if (fieldType.equals(Float.TYPE)) {
+            conversion = PRIMITIVE_FLOAT;
+         }
+         else {
+            conversion = OTHER;
+         }
+      }
+
+      void bind(JSONReader reader, Object object) throws Exception {
+         Token token = reader.peek();
+         if (token == Token.BEGIN_OBJECT) {
+            Object value;
+            if (!fieldType.equals(Map.class)) {
+               if (inflatorMethod != null) {
+                  value = inflatorMethod.invoke(object, field.getName(), reader.readJSONObject());
+               }
+               else {
+                  value = getBinder(fieldType).bind(reader);
+               }
+            }
+            else {
+               ParameterizedType fieldPType = (ParameterizedType) field.getGenericType();
+               value = bindMap(reader, (Class<?>) fieldPType.getActualTypeArguments()[1]);
+            }
+            field.set(object, value);
+         }
+         else if (token == Token.BEGIN_ARRAY) {
+            List<Object> value;
+            reader.beginArray();
+            if (!reader.hasNext()) { // an empty array is always an empty list...
+               reader.endArray();
+               value = new ArrayList<>();
+            }
+            else {
+               Type genericType = field.getGenericType();
+               if (genericType instanceof ParameterizedType) {
+                  value = bindElements(reader, (ParameterizedType) genericType);
+               }
+               else {
+                  value = bindElements(reader, List.class);
+               }
+            }
+            field.set(object, value);
+         }
+         else {
+            setValue(object, reader.nextValue());
+         }
+      }
+
+      private void setValue(Object object, Object jsonValue) throws Exception {
+         Class<?> jsonValueClass = jsonValue.getClass();
+         if (fieldType.equals(jsonValueClass)) {
+            field.set(object, jsonValue);
+            return;
+         }
+
+         switch (conversion) {
+            case LONG:
+               if (jsonValueClass.equals(Integer.class) || jsonValueClass.equals(BigInteger.class)) {
+                  field.set(object, Long.valueOf(((Number) jsonValue).longValue()));
+                  return;
+               }
+               break;
+            case DOUBLE:
+               if (jsonValueClass.equals(Integer.class)) {
+                  field.set(object, Double.valueOf(((Integer) jsonValue).doubleValue()));
+                  return;
+               }
+               break;
+            case FLOAT:
+               if (jsonValueClass.equals(Integer.class)) {
+                  field.set(object, Float.valueOf(((Integer) jsonValue).floatValue()));
+                  return;
+               }
+               break;
+            case DATE:
+               if (jsonValueClass.equals(String.class)) {
+                  Date date = RESTUtils.createDateObject((String) jsonValue);
+                  if (date != null) {
+                     field.set(object, date);
+                  }
+                  return;
+               }
+               break;
+            case BIG_INTEGER:
+               if (jsonValueClass.equals(Long.class)) {
+                  field.set(object, new BigInteger(jsonValue.toString()));
+                  return;
+               }
+               break;
+            case CLASS:
+               if (jsonValueClass.equals(String.class)) {
+                  field.set(object, Class.forName((String) jsonValue));
+                  return;
+               }
+               break;
+            case PRIMITIVE_BOOLEAN:
+               if (jsonValueClass.equals(Boolean.class)) {
+                  field.setBoolean(object, ((Boolean) jsonValue).booleanValue());
+                  return;
+               }
+               break;
+            case PRIMITIVE_INT:
+               if (jsonValueClass.equals(Integer.class)) {
+                  field.setInt(object, ((Integer) jsonValue).intValue());
+                  return;
+               }
+               break;
+            case PRIMITIVE_LONG:
+               if (jsonValueClass.equals(Long.class)) {
+                  field.setLong(object, ((Long) jsonValue).longValue());
+                  return;
+               }
+               break;
+            case PRIMITIVE_DOUBLE:
+               if (jsonValueClass.equals(Double.class)) {
+                  field.setDouble(object, ((Double) jsonValue).doubleValue());
+                  return;
+               }
+               break;
+            case PRIMITIVE_FLOAT:
+               if (jsonValueClass.equals(Float.class)) {
+                  field.setFloat(object, ((Float) jsonValue).floatValue());
+                  return;
+               }
+               break;
+            default:
+               break;
+         }
+
+         // unsupported conversion...
+         String fieldTypeName = fieldType.getSimpleName();
+         if (Number.class.isAssignableFrom(fieldType)) {
+            fieldTypeName = "Number";
+         }
+         throw new InvalidJSONDatatypeException("The '" + field.getName() + "' field with a datatype of '" + fieldTypeName
+               + "', did not match the supplied JSON value type of '" + jsonValueClass.getSimpleName() + "'.");
+      }
+   }
+}
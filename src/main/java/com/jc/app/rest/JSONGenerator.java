@@ -0,0 +1,147 @@
+package com.jc.app.rest;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/*
+ * Writes JSON text to a Writer as it is generated rather than building a JSONObject or
+ * JSONArray first. Values are rendered by the same org.json methods JSONObject.toString()
+ * uses, so the text is the same as for the equivalent JSONObject apart from the order of
+ * the keys. The generator doesn't buffer, wrap the Writer in a BufferedWriter if needed.
+ */
+
+public class JSONGenerator {
+
+   private final static byte EMPTY_OBJECT = 0;
+   private final static byte OBJECT = 1;
+   private final static byte EMPTY_ARRAY = 2;
+   private final static byte ARRAY = 3;
+
+   private final Writer Out;
+
+   private byte[] Scopes = new byte[16]; // for each open object or array, one of the above
+   private int Depth;
+   private boolean AfterName;
+
+   public JSONGenerator(Writer out) {
+      Out = out;
+   }
+
+   public JSONGenerator beginObject() throws IOException {
+      beforeValue();
+      Out.write('{');
+      push(EMPTY_OBJECT);
+      return this;
+   }
+
+   public JSONGenerator endObject() throws IOException {
+      pop(EMPTY_OBJECT, OBJECT);
+      Out.write('}');
+      return this;
+   }
+
+   public JSONGenerator beginArray() throws IOException {
+      beforeValue();
+      Out.write('[');
+      push(EMPTY_ARRAY);
+      return this;
+   }
+
+   public JSONGenerator endArray() throws IOException {
+      pop(EMPTY_ARRAY, ARRAY);
+      Out.write(']');
+      return this;
+   }
+
+   public JSONGenerator name(String name) throws IOException {
+      byte scope = Depth == 0 ? ARRAY : Scopes[Depth - 1];
+      if ((scope != EMPTY_OBJECT && scope != OBJECT) || AfterName) {
+         throw new IllegalStateException("A name can only be written inside an object, before a value.");
+      }
+      if (scope == OBJECT) {
+         Out.write(',');
+      }
+      else {
+         Scopes[Depth - 1] = OBJECT;
+      }
+      JSONObject.quote(name, Out);
+      Out.write(':');
+      AfterName = true;
+      return this;
+   }
+
+   public JSONGenerator value(String value) throws IOException {
+      beforeValue();
+      JSONObject.quote(value, Out);
+      return this;
+   }
+
+   /*
+    * Writes a String, Number, Boolean, JSONObject, JSONArray or any other value the way
+    * org.json does; Numbers that aren't finite are rejected with a JSONException.
+    */
+   public JSONGenerator value(Object value) throws IOException {
+      if (value instanceof String) {
+         return value((String) value);
+      }
+
+      beforeValue();
+      if (value instanceof Number) {
+         JSONObject.testValidity(value);
+         Out.write(JSONObject.numberToString((Number) value));
+      }
+      else if (value instanceof Boolean) {
+         Out.write(value.toString());
+      }
+      else if (value instanceof JSONObject) {
+         ((JSONObject) value).write(Out);
+      }
+      else if (value instanceof JSONArray) {
+         ((JSONArray) value).write(Out);
+      }
+      else {
+         Out.write(JSONObject.valueToString(value));
+      }
+      return this;
+   }
+
+   public void flush() throws IOException {
+      Out.flush();
+   }
+
+   private void beforeValue() throws IOException {
+      if (Depth > 0) {
+         byte scope = Scopes[Depth - 1];
+         if (scope == EMPTY_OBJECT || scope == OBJECT) {
+            if (!AfterName) {
+               throw new IllegalStateException("A value inside an object must follow its name.");
+            }
+            AfterName = false;
+         }
+         else if (scope == ARRAY) {
+            Out.write(',');
+         }
+         else {
+            Scopes[Depth - 1] = ARRAY;
+         }
+      }
+   }
+
+   private void push(byte scope) {
+      if (Depth == Scopes.length) {
+         Scopes = Arrays.copyOf(Scopes, Depth * 2);
+      }
+      Scopes[Depth++] = scope;
+   }
+
+   private void pop(byte emptyScope, byte scope) {
+      if (Depth == 0 || AfterName || (Scopes[Depth - 1] != emptyScope && Scopes[Depth - 1] != scope)) {
+         throw new IllegalStateException("There is no " + (scope == OBJECT ? "object" : "array") + " to end.");
+      }
+      Depth--;
+   }
+}
@@ -0,0 +1,565 @@
+package com.jc.app.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/*
+ * Pulls JSON one token at a time, either parsing it from a stream or walking an existing
+ * JSONObject or JSONArray, so that JSON can be bound to objects without first building a
+ * JSONObject of the whole document. Scalar values are returned as the same objects org.json
+ * would hold for them: a String, Boolean, Integer, Long, Double or JSONObject.NULL.
+ */
+
+public abstract class JSONReader {
+
+   public enum Token {
+      BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, VALUE, END_DOCUMENT
+   }
+
+   // Reads the JSON text from the supplied UTF-8 stream, which is left open.
+   public static JSONReader of(InputStream in) {
+      return new StreamReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+   }
+
+   public static JSONReader of(Reader in) {
+      return new StreamReader(in);
+   }
+
+   // Walks the supplied JSONObject, JSONArray or scalar value.
+   public static JSONReader of(Object jsonValue) {
+      return new TreeReader(jsonValue);
+   }
+
+   public abstract Token peek() throws IOException;
+
+   public abstract void beginObject() throws IOException;
+
+   public abstract void endObject() throws IOException;
+
+   public abstract void beginArray() throws IOException;
+
+   public abstract void endArray() throws IOException;
+
+   public abstract String nextName() throws IOException;
+
+   // Returns the next scalar value.
+   public abstract Object nextValue() throws IOException;
+
+   // True if the current object or array has another member or element.
+   public boolean hasNext() throws IOException {
+      Token token = peek();
+      return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+   }
+
+   /*
+    * Reads the next value whatever it is, returning a JSONObject, JSONArray or scalar value.
+    */
+   public Object readValue() throws IOException {
+      Token token = peek();
+      if (token == Token.BEGIN_OBJECT) {
+         return readJSONObject();
+      }
+      else if (token == Token.BEGIN_ARRAY) {
+         JSONArray jsonArray = new JSONArray();
+         beginArray();
+         while (hasNext()) {
+            jsonArray.put(readValue());
+         }
+         endArray();
+         return jsonArray;
+      }
+      return nextValue();
+   }
+
+   public JSONObject readJSONObject() throws IOException {
+      JSONObject jsonObject = new JSONObject();
+      beginObject();
+      while (hasNext()) {
+         String name = nextName();
+         if (jsonObject.has(name)) {
+            throw new JSONException("Duplicate key \"" + name + "\"");
+         }
+         jsonObject.put(name, readValue());
+      }
+      endObject();
+      return jsonObject;
+   }
+
+   // Skips the next value, including everything in it if it's an object or array.
+   public void skipValue() throws IOException {
+      int depth = 0;
+      do {
+         Token token = peek();
+         if (token == Token.BEGIN_OBJECT) {
+            beginObject();
+            depth++;
+         }
+         else if (token == Token.BEGIN_ARRAY) {
+            beginArray();
+            depth++;
+         }
+         else if (token == Token.END_OBJECT) {
+            endObject();
+            depth--;
+         }
+         else if (token == Token.END_ARRAY) {
+            endArray();
+            depth--;
+         }
+         else if (token == Token.NAME) {
+            nextName();
+         }
+         else if (token == Token.VALUE) {
+            nextValue();
+         }
+         else {
+            throw new JSONException("Unexpected end of the JSON text.");
+         }
+      }
+      while (depth > 0);
+   }
+
+   // ------------------------------------------------------------------------
+
+   /*
+    * A pull parser for JSON text. Like org.json's JSONTokener it also accepts single quoted
+    * strings and unquoted values and names, which are converted by JSONObject.stringToValue().
+    */
+   static final class StreamReader extends JSONReader {
+
+      private final static byte EMPTY_DOCUMENT = 0;
+      private final static byte DOCUMENT = 1;
+      private final static byte EMPTY_OBJECT = 2;
+      private final static byte OBJECT = 3; // after a member, expecting a ',' or '}'
+      private final static byte NAME = 4; // after a name, expecting a ':'
+      private final static byte EMPTY_ARRAY = 5;
+      private final static byte ARRAY = 6;
+
+      private final Reader In;
+      private final char[] Buffer = new char[8192];
+      private int Pos;
+      private int Limit;
+      private long Offset; // characters read before Buffer[0], for error messages
+
+      private byte[] Scopes = new byte[32];
+      private int Depth = 1;
+      private Token Peeked; // null until peek() has looked at the next token
+
+      private final StringBuilder Text = new StringBuilder();
+
+      StreamReader(Reader in) {
+         In = in;
+         Scopes[0] = EMPTY_DOCUMENT;
+      }
+
+      @Override
+      public Token peek() throws IOException {
+         if (Peeked == null) {
+            Peeked = nextToken();
+         }
+         return Peeked;
+      }
+
+      @Override
+      public void beginObject() throws IOException {
+         expect(Token.BEGIN_OBJECT);
+         Pos++;
+         push(EMPTY_OBJECT);
+      }
+
+      @Override
+      public void endObject() throws IOException {
+         expect(Token.END_OBJECT);
+         Pos++;
+         Depth--;
+      }
+
+      @Override
+      public void beginArray() throws IOException {
+         expect(Token.BEGIN_ARRAY);
+         Pos++;
+         push(EMPTY_ARRAY);
+      }
+
+      @Override
+      public void endArray() throws IOException {
+         expect(Token.END_ARRAY);
+         Pos++;
+         Depth--;
+      }
+
+      @Override
+      public String nextName() throws IOException {
+         expect(Token.NAME);
+         Scopes[Depth - 1] = NAME;
+         char c = Buffer[Pos];
+         if (c == '"' || c == '\'') {
+            Pos++;
+            return readString(c);
+         }
+         return readUnquoted();
+      }
+
+      @Override
+      public Object nextValue() throws IOException {
+         expect(Token.VALUE);
+         char c = Buffer[Pos];
+         if (c == '"' || c == '\'') {
+            Pos++;
+            return readString(c);
+         }
+         String text = readUnquoted();
+         return JSONObject.stringToValue(text);
+      }
+
+      private void expect(Token token) throws IOException {
+         if (peek() != token) {
+            throw syntaxError("Expected " + token + " but was " + Peeked);
+         }
+         Peeked = null;
+      }
+
+      // Moves past any separator before the next token, leaving Pos at its first character.
+      private Token nextToken() throws IOException {
+         byte scope = Scopes[Depth - 1];
+         if (scope == EMPTY_ARRAY || scope == ARRAY) {
+            char c = nextNonWhitespace();
+            if (c == ']') {
+               return Token.END_ARRAY;
+            }
+            if (scope == ARRAY) {
+               if (c != ',') {
+                  throw syntaxError("Expected a ',' or ']'");
+               }
+               Pos++;
+               c = nextNonWhitespace();
+            }
+            Scopes[Depth - 1] = ARRAY;
+            return valueToken(c);
+         }
+         else if (scope == EMPTY_OBJECT || scope == OBJECT) {
+            char c = nextNonWhitespace();
+            if (c == '}') {
+               return Token.END_OBJECT;
+            }
+            if (scope == OBJECT) {
+               if (c != ',') {
+                  throw syntaxError("Expected a ',' or '}'");
+               }
+               Pos++;
+               c = nextNonWhitespace();
+            }
+            if (c == '}' || c == ']' || c == '{' || c == '[' || c == ',' || c == ':') {
+               throw syntaxError("A JSONObject text must have a key");
+            }
+            return Token.NAME;
+         }
+         else if (scope == NAME) {
+            if (nextNonWhitespace() != ':') {
+               throw syntaxError("Expected a ':' after a key");
+            }
+            Pos++;
+            Scopes[Depth - 1] = OBJECT;
+            return valueToken(nextNonWhitespace());
+         }
+         else if (scope == EMPTY_DOCUMENT) {
+            Scopes[Depth - 1] = DOCUMENT;
+            return valueToken(nextNonWhitespace());
+         }
+         else if (fill(1) && nextNonWhitespace() != 0) {
+            throw syntaxError("Unexpected text after the JSON value");
+         }
+         return Token.END_DOCUMENT;
+      }
+
+      private Token valueToken(char c) throws IOException {
+         if (c == '{') {
+            return Token.BEGIN_OBJECT;
+         }
+         else if (c == '[') {
+            return Token.BEGIN_ARRAY;
+         }
+         else if (c == 0 && Pos >= Limit) {
+            throw syntaxError("Unexpected end of the JSON text");
+         }
+         else if (c == '}' || c == ']' || c == ',' || c == ':') {
+            throw syntaxError("Missing value");
+         }
+         return Token.VALUE;
+      }
+
+      // Returns the next character that isn't whitespace without consuming it, or 0 at the end of input.
+      private char nextNonWhitespace() throws IOException {
+         while (Pos < Limit || fill(1)) {
+            char c = Buffer[Pos];
+            if (c > ' ') {
+               return c;
+            }
+            Pos++;
+         }
+         return 0;
+      }
+
+      private String readString(char quote) throws IOException {
+         // Most strings have no escapes and fit in the buffer, return those without copying them twice...
+         int start = Pos;
+         for (int p = Pos; p < Limit; p++) {
+            char c = Buffer[p];
+            if (c == quote) {
+               Pos = p + 1;
+               return new String(Buffer, start, p - start);
+            }
+            else if (c == '\\' || c == '\n' || c == '\r') {
+               break;
+            }
+         }
+
+         Text.setLength(0);
+         while (true) {
+            if (Pos >= Limit && !fill(1)) {
+               throw syntaxError("Unterminated string");
+            }
+            char c = Buffer[Pos++];
+            if (c == quote) {
+               return Text.toString();
+            }
+            else if (c == '\n' || c == '\r') {
+               throw syntaxError("Unterminated string");
+            }
+            else if (c == '\\') {
+               if (Pos >= Limit && !fill(1)) {
+                  throw syntaxError("Unterminated string");
+               }
+               c = Buffer[Pos++];
+               switch (c) {
+                  case 'b':
+                     Text.append('\b');
+                     break;
+                  case 't':
+                     Text.append('\t');
+                     break;
+                  case 'n':
+                     Text.append('\n');
+                     break;
+                  case 'f':
+                     Text.append('\f');
+                     break;
+                  case 'r':
+                     Text.append('\r');
+                     break;
+                  case 'u':
+                     if (!fill(4)) {
+                        throw syntaxError("Illegal escape");
+                     }
+                     try {
+                        Text.append((char) Integer.parseInt(new String(Buffer, Pos, 4), 16));
+                     }
+                     catch (NumberFormatException ex) {
+                        throw syntaxError("Illegal escape");
+                     }
+                     Pos += 4;
+                     break;
+                  case '"':
+                  case '\'':
+                  case '\\':
+                  case '/':
+                     Text.append(c);
+                     break;
+                  default:
+                     throw syntaxError("Illegal escape");
+               }
+            }
+            else {
+               Text.append(c);
+            }
+         }
+      }
+
+      // Reads a number, true, false, null or other unquoted text up to the next delimiter.
+      private String readUnquoted() throws IOException {
+         Text.setLength(0);
+         while (Pos < Limit || fill(1)) {
+            char c = Buffer[Pos];
+            if (c <= ' ' || ",:]}/\\\"[{;=#".indexOf(c) >= 0) {
+               break;
+            }
+            Text.append(c);
+            Pos++;
+         }
+         String text = Text.toString().trim();
+         if (text.isEmpty()) {
+            throw syntaxError("Missing value");
+         }
+         return text;
+      }
+
+      // Makes sure at least count characters are available from Pos, returning false if the input ends first.
+      private boolean fill(int count) throws IOException {
+         if (Limit - Pos >= count) {
+            return true;
+         }
+         if (Pos > 0) {
+            Offset += Pos;
+            System.arraycopy(Buffer, Pos, Buffer, 0, Limit - Pos);
+            Limit -= Pos;
+            Pos = 0;
+         }
+         while (Limit < count) {
+            int read = In.read(Buffer, Limit, Buffer.length - Limit);
+            if (read < 0) {
+               return false;
+            }
+            Limit += read;
+         }
+         return true;
+      }
+
+      private void push(byte scope) {
+         if (Depth == Scopes.length) {
+            Scopes = Arrays.copyOf(Scopes, Depth * 2);
+         }
+         Scopes[Depth++] = scope;
+      }
+
+      private JSONException syntaxError(String message) {
+         return new JSONException(message + " at character " + (Offset + Pos + 1));
+      }
+   }
+
+   // ------------------------------------------------------------------------
+
+   // Walks an existing JSONObject or JSONArray; readValue() and readJSONObject() return the existing objects.
+   static final class TreeReader extends JSONReader {
+
+      private final List<Object> Containers = new ArrayList<>(); // the open JSONObjects and JSONArrays
+      private final List<Object> Positions = new ArrayList<>(); // a key Iterator or index for each of them
+      private Object Pending; // the value to be returned next
+      private boolean HasPending;
+
+      TreeReader(Object jsonValue) {
+         Pending = jsonValue;
+         HasPending = true;
+      }
+
+      @Override
+      public Token peek() {
+         if (HasPending) {
+            if (Pending instanceof JSONObject) {
+               return Token.BEGIN_OBJECT;
+            }
+            else if (Pending instanceof JSONArray) {
+               return Token.BEGIN_ARRAY;
+            }
+            return Token.VALUE;
+         }
+         else if (Containers.isEmpty()) {
+            return Token.END_DOCUMENT;
+         }
+
+         int top = Containers.size() - 1;
+         Object container = Containers.get(top);
+         if (container instanceof JSONObject) {
+            return ((Iterator<?>) Positions.get(top)).hasNext() ? Token.NAME : Token.END_OBJECT;
+         }
+
+         JSONArray jsonArray = (JSONArray) container;
+         int index = (Integer) Positions.get(top);
+         if (index < jsonArray.length()) {
+            Pending = jsonArray.get(index);
+            HasPending = true;
+            Positions.set(top, index + 1);
+            return peek();
+         }
+         return Token.END_ARRAY;
+      }
+
+      @Override
+      public void beginObject() {
+         JSONObject jsonObject = (JSONObject) take(Token.BEGIN_OBJECT);
+         Containers.add(jsonObject);
+         Positions.add(jsonObject.keys());
+      }
+
+      @Override
+      public void endObject() {
+         expect(Token.END_OBJECT);
+         pop();
+      }
+
+      @Override
+      public void beginArray() {
+         Containers.add(take(Token.BEGIN_ARRAY));
+         Positions.add(0);
+      }
+
+      @Override
+      public void endArray() {
+         expect(Token.END_ARRAY);
+         pop();
+      }
+
+      @Override
+      public String nextName() {
+         expect(Token.NAME);
+         int top = Containers.size() - 1;
+         String name = (String) ((Iterator<?>) Positions.get(top)).next();
+         Pending = ((JSONObject) Containers.get(top)).get(name);
+         HasPending = true;
+         return name;
+      }
+
+      @Override
+      public Object nextValue() {
+         return take(Token.VALUE);
+      }
+
+      @Override
+      public Object readValue() {
+         expect(Token.VALUE, Token.BEGIN_OBJECT, Token.BEGIN_ARRAY);
+         return take();
+      }
+
+      @Override
+      public JSONObject readJSONObject() {
+         return (JSONObject) take(Token.BEGIN_OBJECT);
+      }
+
+      private Object take(Token token) {
+         expect(token);
+         return take();
+      }
+
+      private Object take() {
+         Object value = Pending;
+         Pending = null;
+         HasPending = false;
+         return value;
+      }
+
+      private void expect(Token... tokens) {
+         Token token = peek();
+         for (Token expected : tokens) {
+            if (token == expected) {
+               return;
+            }
+         }
+         throw new JSONException("Expected " + tokens[0] + " but was " + token);
+      }
+
+      private void pop() {
+         Containers.remove(Containers.size() - 1);
+         Positions.remove(Positions.size() - 1);
+      }
+   }
+}
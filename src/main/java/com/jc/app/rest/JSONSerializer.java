@@ -0,0 +1,213 @@
+package com.jc.app.rest;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.jc.app.rest.annotations.RDMetadata.BOOLEAN;
+import com.jc.app.rest.annotations.Transient;
+
+/*
+ * Writes objects to a JSONGenerator the same way RESTUtils.createJSONObjectFromObject(),
+ * createJSONObjectFromMap() and createJSONArrayFromList() convert them. The fields of each
+ * class, which ones are transient and which are accessible, are worked out once and kept
+ * in a registry instead of reflecting over the class and its superclasses for every object.
+ */
+
+final class JSONSerializer {
+
+   private final static ConcurrentMap<Class<?>, JSONSerializer> Serializers = new ConcurrentHashMap<>();
+
+   private final Property[] properties;
+
+   private JSONSerializer(Class<?> classObj) {
+      // Fields of subclasses first, as getDeclaredFields() up the hierarchy finds them...
+      List<Field> fieldList = new ArrayList<>();
+      while (classObj != null) {
+         for (Field aField : classObj.getDeclaredFields()) {
+            if (!Modifier.isStatic(aField.getModifiers())) {
+               Transient transientAnn = aField.getAnnotation(Transient.class);
+               if (transientAnn == null || transientAnn.includeInJson().equals(BOOLEAN.YES)) {
+                  aField.setAccessible(true);
+                  fieldList.add(aField);
+               }
+            }
+         }
+         classObj = classObj.getSuperclass();
+      }
+
+      // A field hidden by a superclass field of the same name only supplies the value when the
+      // superclass field is null, as the superclass value would overwrite it in a JSONObject.
+      Map<String, Property> propertyMap = new LinkedHashMap<>();
+      for (Field aField : fieldList) {
+         String fieldName = aField.getName();
+         propertyMap.put(fieldName, new Property(aField, propertyMap.get(fieldName)));
+      }
+      properties = propertyMap.values().toArray(new Property[propertyMap.size()]);
+   }
+
+   static JSONSerializer getSerializer(Class<?> classObj) {
+      JSONSerializer serializer = Serializers.get(classObj);
+      if (serializer == null) {
+         serializer = new JSONSerializer(classObj);
+         JSONSerializer existing = Serializers.putIfAbsent(classObj, serializer);
+         if (existing != null) {
+            serializer = existing;
+         }
+      }
+      return serializer;
+   }
+
+   Property[] getProperties() {
+      return properties;
+   }
+
+   /*
+    * Writes a Map as an object, a List as an array and anything else as an object of its fields.
+    */
+   static void write(JSONGenerator generator, Object data) throws Exception {
+      if (data instanceof Map) {
+         writeMap(generator, (Map<?, ?>) data);
+      }
+      else if (data instanceof List) {
+         writeList(generator, (List<?>) data);
+      }
+      else {
+         writeObject(generator, data);
+      }
+   }
+
+   static void writeObject(JSONGenerator generator, Object object) throws Exception {
+      writeObject(generator, object, null);
+   }
+
+   /*
+    * Writes the object with only those of its own fields named in fieldNames, or all of them if
+    * fieldNames is null; the objects it refers to are written in full.
+    */
+   static void writeObject(JSONGenerator generator, Object object, Set<String> fieldNames) throws Exception {
+      if (object != null) {
+         if (object instanceof RESTData && ((RESTData) object).isCollapsed()) {
+            writeObject(generator, ((RESTData) object).getCollapsedData());
+         }
+         else {
+            getSerializer(object.getClass()).writeFields(generator, object, fieldNames);
+         }
+      }
+      else {
+         throw new Exception("Supplied object was null.");
+      }
+   }
+
+   private static void writeMap(JSONGenerator generator, Map<?, ?> jsonData) throws Exception {
+      generator.beginObject();
+      for (Map.Entry<?, ?> entry : jsonData.entrySet()) {
+         String key = (String) entry.getKey();
+         Object dataItem = entry.getValue();
+         if ((key != null && !key.isEmpty()) && dataItem != null) {
+            generator.name(key);
+            if (dataItem instanceof Map) {
+               writeMap(generator, (Map<?, ?>) dataItem);
+            }
+            else if (dataItem instanceof List) {
+               writeList(generator, (List<?>) dataItem);
+            }
+            else if ((dataItem instanceof String) || (dataItem instanceof Number) || (dataItem instanceof Boolean)) {
+               generator.value(dataItem);
+            }
+            else {
+               writeObject(generator, dataItem);
+            }
+         }
+      }
+      generator.endObject();
+   }
+
+   private static void writeList(JSONGenerator generator, List<?> jsonData) throws Exception {
+      generator.beginArray();
+      for (Object dataItem : jsonData) {
+         if (dataItem != null) {
+            if (dataItem instanceof Map) {
+               writeMap(generator, (Map<?, ?>) dataItem);
+            }
+            else if (dataItem instanceof List) {
+               writeList(generator, (List<?>) dataItem);
+            }
+            else if ((dataItem instanceof String) || (dataItem instanceof Number) || (dataItem instanceof Boolean) || (dataItem instanceof JSONObject)
+                  || (dataItem instanceof JSONArray)) {
+               generator.value(dataItem);
+            }
+            else {
+               writeObject(generator, dataItem);
+            }
+         }
+      }
+      generator.endArray();
+   }
+
+   private void writeFields(JSONGenerator generator, Object object, Set<String> fieldNames) throws Exception {
+      generator.beginObject();
+      for (Property property : properties) {
+         if (fieldNames != null && !fieldNames.contains(property.name)) {
+            continue;
+         }
+         for (Property next = property; next != null; next = next.hidden) {
+            Object value = next.field.get(object);
+            if (value != null) {
+               generator.name(property.name);
+               next.writeValue(generator, value);
+               break;
+            }
+         }
+      }
+      generator.endObject();
+   }
+
+   // ------------------------------------------------------------------------
+
+   static final class Property {
+
+      final String name;
+      final Field field;
+      final boolean domainType; // the field is declared as one of our (com.jc) types
+      final Property hidden; // a subclass field of the same name, or null
+
+      Property(Field field, Property hidden) {
+         this.name = field.getName();
+         this.field = field;
+         this.domainType = field.getType().getName().contains("com.jc");
+         this.hidden = hidden;
+      }
+
+      private void writeValue(JSONGenerator generator, Object value) throws Exception {
+         if (value instanceof Map) {
+            writeMap(generator, (Map<?, ?>) value);
+         }
+         else if (value instanceof List) {
+            writeList(generator, (List<?>) value);
+         }
+         else if (value instanceof Date) {
+            generator.value(RESTUtils.formatISO8601((Date) value));
+         }
+         else if (value instanceof Class) {
+            generator.value(((Class<?>) value).getName());
+         }
+         else if (domainType) {
+            writeObject(generator, value);
+         }
+         else {
+            generator.value(value);
+         }
+      }
+   }
+}
@@ -0,0 +1,446 @@
+package com.jc.app.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.MediaType;
+
+import org.apache.commons.codec.binary.Base64;
+import org.json.JSONObject;
+
+import com.jc.app.rest.exceptions.RESTConnectionException;
+import com.jc.app.rest.exceptions.RESTErrorCode;
+
+/*
+ * Makes REST calls over HttpURLConnection, the client behind RESTUtils.doGet(), doPost(), doPut()
+ * and doDelete(). Response bodies are read to the end and closed rather than the connection being
+ * disconnected, so the JDK keeps the connection alive and reuses it for the next call to the same
+ * host, unless more than DRAIN_LIMIT bytes would have to be read just to be thrown away. The number
+ * of idle connections kept per host is set by the http.maxConnections system property (default 5),
+ * raise it to match the parallelism used.
+ *
+ * Calls can also be made asynchronously, callAsync() and callAll(), on a pool of at most
+ * maxParallel daemon threads that is started on first use and stopped by close(). Calls made from
+ * within a handler or another asynchronous call shouldn't wait on asynchronous calls themselves,
+ * as the pool may be fully used.
+ */
+
+public class RESTClient implements AutoCloseable {
+
+   public final static int DEFAULT_CONNECT_TIMEOUT = 30000; // milliseconds
+   public final static int DEFAULT_READ_TIMEOUT = 120000; // milliseconds
+   public final static int DEFAULT_MAX_PARALLEL = 8;
+
+   private final static int BUFFER_SIZE = 8192;
+   private final static int DRAIN_LIMIT = 64 * 1024; // bytes of an unread body read to keep its connection
+
+   private static final AtomicInteger INSTANCE_NUM = new AtomicInteger();
+
+   private static RESTClient SELF;
+
+   private final int MaxParallel;
+   private final String Name;
+
+   private volatile int ConnectTimeout;
+   private volatile int ReadTimeout;
+
+   private ExecutorService Executor;
+
+   public RESTClient() {
+      this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, DEFAULT_MAX_PARALLEL);
+   }
+
+   public RESTClient(int connectTimeout, int readTimeout, int maxParallel) {
+      if (maxParallel < 1) {
+         throw new IllegalArgumentException("The maximum number of parallel calls must be at least 1.");
+      }
+      setConnectTimeout(connectTimeout);
+      setReadTimeout(readTimeout);
+      MaxParallel = maxParallel;
+      Name = "RESTClient" + INSTANCE_NUM.getAndIncrement();
+   }
+
+   // The client used by RESTUtils; its timeouts can be changed but it should not be closed.
+   public static synchronized RESTClient getDefault() {
+      if (SELF == null) {
+         SELF = new RESTClient();
+      }
+      return SELF;
+   }
+
+   // Milliseconds to wait for a connection to be made, 0 waits indefinitely.
+   public void setConnectTimeout(int connectTimeout) {
+      if (connectTimeout < 0) {
+         throw new IllegalArgumentException("Connect timeout cannot be negative.");
+      }
+      ConnectTimeout = connectTimeout;
+   }
+
+   public int getConnectTimeout() {
+      return ConnectTimeout;
+   }
+
+   // Milliseconds to wait for data from the service while reading the response, 0 waits indefinitely.
+   public void setReadTimeout(int readTimeout) {
+      if (readTimeout < 0) {
+         throw new IllegalArgumentException("Read timeout cannot be negative.");
+      }
+      ReadTimeout = readTimeout;
+   }
+
+   public int getReadTimeout() {
+      return ReadTimeout;
+   }
+
+   public int getMaxParallel() {
+      return MaxParallel;
+   }
+
+   /*
+    * Makes the call and returns its result with the whole response body as content; see
+    * RESTUtils.doGet() etc. for how each status code is reported.
+    */
+   public RESTfulResult call(Request request) throws Exception {
+      return call(request, null);
+   }
+
+   /*
+    * Makes the call and passes the response body of a successful (200 or 201) call to the handler
+    * as it is received, the content of the result is then null. Whatever the handler doesn't read
+    * is discarded, or the connection is closed if more than DRAIN_LIMIT bytes are left; the handler
+    * shouldn't close the stream.
+    */
+   public RESTfulResult call(Request request, ResponseHandler handler) throws Exception {
+      RESTfulResult result = new RESTfulResult();
+      result.url = request.getUrl().toString();
+
+      boolean reusable = false;
+      HttpURLConnection connection = (HttpURLConnection) request.getUrl().openConnection();
+      try {
+         connection.setConnectTimeout(ConnectTimeout);
+         connection.setReadTimeout(ReadTimeout);
+         connection.setRequestMethod(request.getMethod());
+
+         Object parameters = request.getParameters();
+         if (parameters != null) {
+            connection.setDoOutput(true);
+            if (parameters instanceof JSONObject) {
+               connection.setRequestProperty("Content-Type", MediaType.APPLICATION_JSON);
+            }
+            else if (parameters instanceof XMLEntity) {
+               connection.setRequestProperty("Content-Type", MediaType.TEXT_XML);
+            }
+            else if (parameters instanceof String) {
+               connection.setRequestProperty("Content-Type", MediaType.TEXT_PLAIN);
+            }
+         }
+
+         String username = request.getUsername();
+         String password = request.getPassword();
+         if ((username != null && !username.isEmpty()) && (password != null && !password.isEmpty())) {
+            String authorization = username + ":" + password;
+            byte[] encodedBytes = Base64.encodeBase64(authorization.getBytes(StandardCharsets.UTF_8));
+            authorization = "Basic " + new String(encodedBytes, StandardCharsets.US_ASCII);
+            connection.setRequestProperty("Authorization", authorization);
+         }
+
+         for (Map.Entry<String, String> entry : request.getHeaders().entrySet()) {
+            connection.setRequestProperty(entry.getKey(), entry.getValue());
+         }
+
+         if (parameters != null) {
+            String input = parameters.toString();
+            result.inputParams = input;
+            byte[] body = input.getBytes(StandardCharsets.UTF_8);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+               out.write(body);
+            }
+         }
+
+         int code = connection.getResponseCode();
+         result.statusCode = code;
+
+         if (code == HttpURLConnection.HTTP_OK || code == HttpURLConnection.HTTP_CREATED) {
+            InputStream in = connection.getInputStream();
+            if (handler != null) {
+               try {
+                  handler.handleResponse(in != null ? in : new ByteArrayInputStream(new byte[0]));
+               }
+               finally {
+                  reusable = discard(in);
+               }
+            }
+            else {
+               result.content = read(in, connection.getContentType());
+               reusable = true;
+            }
+         }
+         else if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+            reusable = discard(connection.getErrorStream());
+            result.content = "";
+            result.message = "Not found.";
+         }
+         else if (code == HttpURLConnection.HTTP_CONFLICT) {
+            reusable = discard(connection.getErrorStream());
+            result.content = "";
+            result.message = "Found duplicate.";
+         }
+         else if (code == HttpURLConnection.HTTP_BAD_METHOD) {
+            reusable = discard(connection.getErrorStream());
+            result.content = "";
+            result.message = "Invalid method.";
+         }
+         else if (code == HttpURLConnection.HTTP_UNAUTHORIZED) {
+            reusable = discard(connection.getErrorStream());
+            result.content = "";
+            result.message = "Unauthorized access.";
+         }
+         else if (code == HttpURLConnection.HTTP_MOVED_TEMP) {
+            reusable = discard(connection.getErrorStream());
+            result.content = connection.getHeaderField("Location");
+         }
+         else {
+            result.content = read(connection.getErrorStream(), connection.getContentType());
+            result.message = "";
+            reusable = true;
+         }
+      }
+      catch (ConnectException cex) {
+         String message = cex.getMessage();
+         if (message != null && message.contains("Connection refused")) {
+            throw new RESTConnectionException(RESTErrorCode.CONNECTION_REFUSED, result.url, getInputParams(result));
+         }
+         else if (message != null && message.contains("Connection timed out")) {
+            throw new RESTConnectionException(RESTErrorCode.CONNECTION_TIMEOUT, result.url, getInputParams(result));
+         }
+         else {
+            throw cex;
+         }
+      }
+      catch (SocketTimeoutException stex) {
+         throw new RESTConnectionException(RESTErrorCode.CONNECTION_TIMEOUT, result.url, getInputParams(result));
+      }
+      finally {
+         if (!reusable) { // don't return a connection in an unknown state to the keep-alive cache...
+            connection.disconnect();
+         }
+      }
+      return result;
+   }
+
+   // Makes the call on the client's thread pool.
+   public Future<RESTfulResult> callAsync(Request request) {
+      return getExecutor().submit(createTask(request, null));
+   }
+
+   public Future<RESTfulResult> callAsync(Request request, ResponseHandler handler) {
+      return getExecutor().submit(createTask(request, handler));
+   }
+
+   /*
+    * Makes the calls, at most maxParallel at a time, and returns once all of them have finished.
+    * The futures are in the order of the requests and hold either the result or the exception of
+    * each call, so one failed call doesn't lose the others.
+    */
+   public List<Future<RESTfulResult>> callAll(List<Request> requests) throws InterruptedException {
+      List<Callable<RESTfulResult>> tasks = new ArrayList<>(requests.size());
+      for (Request request : requests) {
+         tasks.add(createTask(request, null));
+      }
+      return getExecutor().invokeAll(tasks);
+   }
+
+   // Stops the thread pool, letting calls already started finish; synchronous calls can still be made.
+   @Override
+   public synchronized void close() {
+      if (Executor != null) {
+         Executor.shutdown();
+         Executor = null;
+      }
+   }
+
+   private synchronized ExecutorService getExecutor() {
+      if (Executor == null) {
+         Executor = Executors.newFixedThreadPool(MaxParallel, new ClientThreadFactory(Name));
+      }
+      return Executor;
+   }
+
+   private Callable<RESTfulResult> createTask(final Request request, final ResponseHandler handler) {
+      return new Callable<RESTfulResult>() {
+
+         @Override
+         public RESTfulResult call() throws Exception {
+            return RESTClient.this.call(request, handler);
+         }
+      };
+   }
+
+   private static String getInputParams(RESTfulResult result) {
+      return result.inputParams != null ? result.inputParams : "";
+   }
+
+   // Reads the whole body, decoded with the charset of the content type or UTF-8, and closes it.
+   private static String read(InputStream in, String contentType) throws IOException {
+      if (in == null) {
+         return "";
+      }
+
+      try (InputStream body = in) {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         byte[] buffer = new byte[BUFFER_SIZE];
+         int count;
+         while ((count = body.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+         }
+         return new String(out.toByteArray(), getCharset(contentType));
+      }
+   }
+
+   /*
+    * Reads what is left of the body so the connection can be reused, and closes it. Returns false,
+    * leaving the body unread, if more than DRAIN_LIMIT bytes are left; reading it all would take
+    * longer than opening a new connection, so the connection should be disconnected instead.
+    */
+   private static boolean discard(InputStream in) throws IOException {
+      if (in != null) {
+         byte[] buffer = new byte[BUFFER_SIZE];
+         long drained = 0;
+         int count;
+         while ((count = in.read(buffer)) != -1) {
+            drained += count;
+            if (drained > DRAIN_LIMIT) {
+               return false;
+            }
+         }
+         in.close();
+      }
+      return true;
+   }
+
+   private static Charset getCharset(String contentType) {
+      Charset charset = StandardCharsets.UTF_8;
+      if (contentType != null) {
+         for (String param : contentType.split(";")) {
+            param = param.trim();
+            if (param.regionMatches(true, 0, "charset=", 0, 8)) {
+               try {
+                  charset = Charset.forName(param.substring(8).replace("\"", "").trim());
+               }
+               catch (IllegalArgumentException ex) {
+                  // unknown charset, use the default...
+               }
+            }
+         }
+      }
+      return charset;
+   }
+
+   // ------------------------------------------------------------------------
+
+   /*
+    * Reads the body of a successful call as it is received, e.g. with RESTUtils.processJSONArray().
+    */
+   public interface ResponseHandler {
+
+      public void handleResponse(InputStream body) throws Exception;
+   }
+
+   /*
+    * A call to make: the method, URL and optionally credentials, headers and the parameters sent
+    * as the request body (JSONObject, XMLEntity or String).
+    */
+   public static class Request {
+
+      private final String method;
+      private final URL url;
+      private final Object parameters;
+
+      private String username;
+      private String password;
+      private Map<String, String> headers = Collections.emptyMap();
+
+      public Request(String method, URL url) {
+         this(method, url, null);
+      }
+
+      public Request(String method, URL url, Object parameters) {
+         if (method == null || url == null) {
+            throw new IllegalArgumentException("A request needs a method and a URL.");
+         }
+         this.method = method;
+         this.url = url;
+         this.parameters = parameters;
+      }
+
+      public String getMethod() {
+         return method;
+      }
+
+      public URL getUrl() {
+         return url;
+      }
+
+      public Object getParameters() {
+         return parameters;
+      }
+
+      public String getUsername() {
+         return username;
+      }
+
+      public String getPassword() {
+         return password;
+      }
+
+      public void setCredentials(String username, String password) {
+         this.username = username;
+         this.password = password;
+      }
+
+      public Map<String, String> getHeaders() {
+         return headers;
+      }
+
+      public void setHeaders(Map<String, String> headers) {
+         this.headers = headers != null ? headers : Collections.<String, String> emptyMap();
+      }
+   }
+
+   private static class ClientThreadFactory implements ThreadFactory {
+
+      private final String name;
+      private final AtomicInteger threadNum = new AtomicInteger();
+
+      ClientThreadFactory(String name) {
+         this.name = name;
+      }
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+         Thread thread = new Thread(runnable, name + "-" + threadNum.getAndIncrement());
+         thread.setDaemon(true);
+         return thread;
+      }
+   }
+}
@@ -4,20 +4,43 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 import com.jc.app.rest.annotations.Id;
 import com.jc.app.rest.annotations.RDMetadata;
 import com.jc.app.rest.annotations.RDMetadata.Attribute;
 import com.jc.app.rest.annotations.RDMetadata.BOOLEAN;
 import com.jc.app.rest.annotations.Transient;
+import com.jc.log.Logger;
+
+/*
+ * Describes a field of a RESTData class for request validation and for clients. The metadata
+ * for a class is built once, from its fields and annotations, and kept in a registry; the lists
+ * returned by getFieldMetadata() are shared and unmodifiable and index their fields by name.
+ * Value options, also unmodifiable, from a ValueOptionsLoader are loaded when the metadata is
+ * built and, if
+ * setValueOptionsRefreshInterval() has been called, reloaded when the metadata is looked up
+ * after the interval has passed.
+ */
 
 public class RESTMetadata {
 
+   private final static ConcurrentMap<Class<?>, FieldList> Metadata = new ConcurrentHashMap<>();
+   private final static ConcurrentMap<Class<?>, FieldList> SubMetadata = new ConcurrentHashMap<>();
+
+   private static volatile long ValueOptionsRefreshInterval; // milliseconds; 0, never refresh
+
    private String fieldName;
    private String description;
    private boolean idField; // DEFAULT "false"; if true indicates that the field acts as an id field.
@@ -30,11 +53,27 @@ public class RESTMetadata {
    private int addDataAttribute;
    private int modifyDataAttribute;
 
-   private List<Map<String, Object>> valueOptions; // A list of valid values for this field.
+   private volatile List<Map<String, Object>> valueOptions; // A list of valid values for this field.
    private String defaultValue; // A string representation of the default value for this field: "1"
 
+   @Transient
+   private ValueOptionsLoader valueOptionsLoader; // reloads valueOptions, or null
+   @Transient
+   private volatile long valueOptionsLoadTime;
+
    private RESTMetadata() {}
 
+   /*
+    * Sets how long value options from a ValueOptionsLoader are used before being reloaded;
+    * 0, the default, loads them only once.
+    */
+   public static void setValueOptionsRefreshInterval(long interval, TimeUnit unit) {
+      if (interval < 0) {
+         throw new IllegalArgumentException("Value options refresh interval cannot be negative.");
+      }
+      ValueOptionsRefreshInterval = unit.toMillis(interval);
+   }
+
    public static List<RESTMetadata> getFieldMetadata(Class<?> aclass) throws Exception {
       boolean isSubDataType = false;
       //      Map<String, List<MetadataNEW>> metadataMap = getFieldMetadata(aclass, isSubDataType);
@@ -43,6 +82,40 @@ public class RESTMetadata {
    }
 
    public static List<RESTMetadata> getFieldMetadata(Class<?> aclass, boolean isSubDataType) throws Exception {
+      ConcurrentMap<Class<?>, FieldList> registry = isSubDataType ? SubMetadata : Metadata;
+      FieldList metadataList = registry.get(aclass);
+      if (metadataList == null) {
+         metadataList = createFieldMetadata(aclass, isSubDataType);
+         FieldList existing = registry.putIfAbsent(aclass, metadataList);
+         if (existing != null) {
+            metadataList = existing;
+         }
+      }
+      else if (ValueOptionsRefreshInterval > 0) {
+         metadataList.refreshValueOptions(System.currentTimeMillis() - ValueOptionsRefreshInterval);
+      }
+      return metadataList;
+   }
+
+   /*
+    * Returns the metadata for fieldName from the supplied list, or null if there is none; lists
+    * returned by getFieldMetadata() are looked up by name, any other list is searched.
+    */
+   static RESTMetadata getFieldMetadata(String fieldName, List<RESTMetadata> metadataList) {
+      if (metadataList instanceof FieldList) {
+         return ((FieldList) metadataList).get(fieldName);
+      }
+      else {
+         for (RESTMetadata mdata : metadataList) {
+            if (fieldName.equals(mdata.getFieldName())) {
+               return mdata;
+            }
+         }
+         return null;
+      }
+   }
+
+   private static FieldList createFieldMetadata(Class<?> aclass, boolean isSubDataType) throws Exception {
       List<RESTMetadata> superClassFieldnames = new ArrayList<>();
 
       Class<?> superClass = aclass.getSuperclass();
@@ -75,6 +148,7 @@ public class RESTMetadata {
                String description = "";
                String defaultValue = "";
                List<Map<String, Object>> valueOptions = null;
+               ValueOptionsLoader valueOptionsLoader = null;
 
                // Check the class' field annotations and adjust metadata parameters as needed.
 
@@ -154,8 +228,8 @@ public class RESTMetadata {
                      Class<?> superClassObj = classObj.getSuperclass(); // the extending class...
                      if (superClassObj == ValueOptionsLoader.class) {
                         Constructor<?> constructor = ((Class<ValueOptionsLoader>) classObj).getConstructor((Class<?>[]) null);
-                        ValueOptionsLoader valueOptionsLoader = (ValueOptionsLoader) constructor.newInstance((Object[]) null);
-                        valueOptions = valueOptionsLoader.getValueOptions();
+                        valueOptionsLoader = (ValueOptionsLoader) constructor.newInstance((Object[]) null);
+                        valueOptions = loadValueOptions(valueOptionsLoader);
                      }
                      else {
                         // else silently do nothing special... no error
@@ -169,8 +243,9 @@ public class RESTMetadata {
                         for (String option : options) {
                            Map<String, Object> valueMap = new HashMap<>();
                            valueMap.put("value", option);
-                           valueOptions.add(valueMap);
+                           valueOptions.add(Collections.unmodifiableMap(valueMap));
                         }
+                        valueOptions = Collections.unmodifiableList(valueOptions);
                      }
                   }
                }
@@ -186,9 +261,11 @@ public class RESTMetadata {
                mdata.setFilterable(filterable);
                mdata.setSortable(sortable);
                mdata.setFieldType(fieldClass);
-               mdata.setFieldTypeMetadata(subDataMetadataList);
+               mdata.setFieldTypeMetadata(Collections.unmodifiableMap(subDataMetadataList));
                mdata.setValueOptions(valueOptions);
                mdata.setDefaultValue(defaultValue);
+               mdata.valueOptionsLoader = valueOptionsLoader;
+               mdata.valueOptionsLoadTime = System.currentTimeMillis();
 
                metadataList.add(mdata);
             }
@@ -197,7 +274,7 @@ public class RESTMetadata {
          // else skip it already in the list from a superClass....
       }
 
-      return metadataList;
+      return new FieldList(metadataList);
    }
 
    public static List<RESTMetadata> getModifiableFields(List<RESTMetadata> metadataList) throws Exception {
@@ -222,6 +299,37 @@ public class RESTMetadata {
       return metadataMap;
    }
 
+   // Reloads the value options if they were loaded before loadedBefore; on failure the current options are kept.
+   private void refreshValueOptions(long loadedBefore) {
+      if (valueOptionsLoader != null && valueOptionsLoadTime < loadedBefore) {
+         synchronized (this) {
+            if (valueOptionsLoadTime < loadedBefore) { // not reloaded while waiting...
+               try {
+                  valueOptions = loadValueOptions(valueOptionsLoader);
+               }
+               catch (Exception ex) {
+                  Logger.log(getClass(), Level.WARNING, "Error reloading value options for field '" + fieldName + "'; " + ex.getMessage());
+               }
+               valueOptionsLoadTime = System.currentTimeMillis();
+            }
+         }
+      }
+   }
+
+   // Returns an unmodifiable copy of the loader's options, they're shared by every request.
+   private static List<Map<String, Object>> loadValueOptions(ValueOptionsLoader loader) throws Exception {
+      List<Map<String, Object>> options = loader.getValueOptions();
+      if (options == null) {
+         return null;
+      }
+
+      List<Map<String, Object>> valueOptions = new ArrayList<>(options.size());
+      for (Map<String, Object> option : options) {
+         valueOptions.add(option != null ? Collections.unmodifiableMap(new HashMap<>(option)) : null);
+      }
+      return Collections.unmodifiableList(valueOptions);
+   }
+
    // ---------------------------------------------------------------------
 
    public String getFieldName() {
@@ -311,4 +419,49 @@ public class RESTMetadata {
    public void setDefaultValue(String defaultValue) {
       this.defaultValue = defaultValue;
    }
+
+   // ---------------------------------------------------------------------
+
+   /*
+    * The unmodifiable metadata list of a class, with its fields indexed by name. Where a name
+    * appears more than once the first field is indexed, as a search of the list would find it.
+    */
+   static final class FieldList extends AbstractList<RESTMetadata> implements RandomAccess {
+
+      private final RESTMetadata[] fields;
+      private final Map<String, RESTMetadata> index;
+
+      private FieldList(List<RESTMetadata> metadataList) {
+         fields = metadataList.toArray(new RESTMetadata[metadataList.size()]);
+         index = new HashMap<>();
+         for (RESTMetadata mdata : fields) {
+            if (!index.containsKey(mdata.getFieldName())) {
+               index.put(mdata.getFieldName(), mdata);
+            }
+         }
+      }
+
+      @Override
+      public RESTMetadata get(int i) {
+         return fields[i];
+      }
+
+      @Override
+      public int size() {
+         return fields.length;
+      }
+
+      RESTMetadata get(String fieldName) {
+         return index.get(fieldName);
+      }
+
+      private void refreshValueOptions(long loadedBefore) {
+         for (RESTMetadata mdata : fields) {
+            mdata.refreshValueOptions(loadedBefore);
+            for (List<RESTMetadata> subMetadataList : mdata.getFieldTypeMetadata().values()) {
+               ((FieldList) subMetadataList).refreshValueOptions(loadedBefore);
+            }
+         }
+      }
+   }
 }
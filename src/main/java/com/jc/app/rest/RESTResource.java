@@ -8,10 +8,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -38,12 +40,12 @@ import com.jc.app.rest.exceptions.RESTServiceLoggableException;
 import com.jc.app.rest.exceptions.RESTServiceSystemInfoException;
 import com.jc.app.rest.exceptions.UnauthorizedException;
 import com.jc.db.DatabaseErrorCode;
+import com.jc.db.dao.EntityCursor;
 import com.jc.db.dao.FilterInfo;
 import com.jc.db.dao.FilterMethod;
 import com.jc.db.dao.InvalidFilterMethodException;
 import com.jc.exception.ErrorCode;
 import com.jc.exception.SystemInfoException;
-import com.jc.log.Logger;
 import com.jc.shiro.AccessControlService;
 import com.jc.util.StringUtils;
 
@@ -54,6 +56,8 @@ public abstract class RESTResource {
    public final static String QUERY_PARAM_COUNTONLY = "_count";
    public final static String QUERY_PARAM_ITEMSONLY = "_items";
 
+   private final static Pattern FILTER_FIELD_NAME_PATTERN = Pattern.compile("^\\w+(?:\\.?\\w+)+$");
+
    public List<RESTMetadata> getMetadata(Class<?> referringClass, Class<?> aclass) {
       try {
          List<RESTMetadata> metadataList = RESTMetadata.getFieldMetadata(aclass);
@@ -112,7 +116,7 @@ public abstract class RESTResource {
       }
 
       String type = MediaType.TEXT_PLAIN;
-      String message = "";
+      Map<String, Object> errorData = new LinkedHashMap<>();
       Status status = Status.INTERNAL_SERVER_ERROR;
 
       if (ex instanceof InvalidParameterException) {
@@ -121,24 +125,9 @@ public abstract class RESTResource {
 
          status = ipex.getStatus();
 
-         JSONObject jsonErrorObj = new JSONObject();
-         try {
-            jsonErrorObj.put("errorCode", errorCode.getCode());
-            jsonErrorObj.put("message", errorCode.toString());
-
-            JSONArray paramsArray = new JSONArray();
-            List<String> parameterList = ipex.getParameterList();
-            for (String parameter : parameterList) {
-               paramsArray.put(parameter);
-            }
-
-            jsonErrorObj.put("parameterName", paramsArray);
-         }
-         catch (Exception jex) {
-            Logger.log(getClass(), Level.SEVERE, jex);
-         }
-
-         message = jsonErrorObj.toString();
+         errorData.put("errorCode", errorCode.getCode());
+         errorData.put("message", errorCode.toString());
+         errorData.put("parameterName", ipex.getParameterList());
       }
       else {
          ErrorCode errorCode = ex.getErrorCode();
@@ -149,24 +138,24 @@ public abstract class RESTResource {
 
          status = ex.getStatus();
 
-         JSONObject jsonErrorObj = new JSONObject();
-         try {
-            jsonErrorObj.put("errorCode", errorCode.getCode());
-            jsonErrorObj.put("message", errorMessage);
-         }
-         catch (Exception jex) {
-            Logger.log(getClass(), Level.SEVERE, jex);
-         }
-
-         message = jsonErrorObj.toString();
+         errorData.put("errorCode", errorCode.getCode());
+         errorData.put("message", errorMessage);
       }
 
       ResponseBuilder builder = Response.status(status);
       builder.type(type);
-      builder.entity(message);
+      builder.entity(RESTUtils.createJSONStreamingOutput(errorData));
       return builder.build();
    }
 
+   /*
+    * Returns an OK response that writes the supplied Map, List or object as JSON straight to the
+    * response stream, rather than building it as a JSONObject and rendering it to a String first.
+    */
+   protected Response createJSONResponse(Object data) {
+      return Response.ok(RESTUtils.createJSONStreamingOutput(data), MediaType.APPLICATION_JSON).build();
+   }
+
    public Response createExceptionResponse(Class<?> referringClass, Exception ex) {
       RESTServiceException rsex = null;
 
@@ -313,8 +302,7 @@ public abstract class RESTResource {
                }
 
                // fieldName validation for only single value
-               Pattern fieldNamePattern = Pattern.compile("^\\w+(?:\\.?\\w+)+$");
-               Matcher wordMatcher = fieldNamePattern.matcher(fieldName);
+               Matcher wordMatcher = FILTER_FIELD_NAME_PATTERN.matcher(fieldName);
                if (!wordMatcher.matches()) {
                   throw new InvalidFieldNameException(RESTErrorCode.INVALID_FILTER_FIELD, "Filter field name must be a single value.");
                }
@@ -576,6 +564,62 @@ public abstract class RESTResource {
       return hasParam;
    }
 
+   /*
+    * Returns a response that streams the items read from the cursor as JSON, see StreamingGenericList,
+    * applying the _fields, _collapse, _count and _items query parameters of the request. Names in
+    * _fields must be fields of itemClass. The cursor is closed when the response has been written,
+    * or here if the request is rejected.
+    */
+   protected Response createStreamingListResponse(Class<?> referringClass, EntityCursor<?> cursor, Class<?> itemClass, UriInfo info) {
+      return createStreamingListResponse(referringClass, cursor, itemClass, info, null);
+   }
+
+   /*
+    * As createStreamingListResponse() above, but when _count is requested the supplied count, e.g.
+    * from Dao.countAll() with the same filter, is returned instead of reading the cursor to count
+    * its items. A null count counts the cursor's items.
+    */
+   protected Response createStreamingListResponse(Class<?> referringClass, EntityCursor<?> cursor, Class<?> itemClass, UriInfo info, Long count) {
+      try {
+         StreamingGenericList streamingList = new StreamingGenericList(cursor);
+         try {
+            if (count != null) {
+               streamingList.setCount(count);
+            }
+            if (hasQueryParamFor(QUERY_PARAM_FIELDSLIST, info)) {
+               Set<String> knownFields = new HashSet<>();
+               for (JSONSerializer.Property property : JSONSerializer.getSerializer(itemClass).getProperties()) {
+                  knownFields.add(property.name);
+               }
+
+               List<String> fieldNames = new ArrayList<>();
+               String paramsData = info.getQueryParameters().getFirst(QUERY_PARAM_FIELDSLIST);
+               for (String fieldName : paramsData != null ? paramsData.split("\\,") : new String[0]) {
+                  fieldName = fieldName.trim();
+                  if (!fieldName.isEmpty()) {
+                     if (!knownFields.contains(fieldName)) {
+                        throw new InvalidFieldNameException(RESTErrorCode.INVALID_PARAMETER, "'" + fieldName + "' is not a field of " + itemClass.getSimpleName() + ".");
+                     }
+                     fieldNames.add(fieldName);
+                  }
+               }
+               streamingList.setFields(fieldNames);
+            }
+            streamingList.setCollapsed(hasQueryParamFor(QUERY_PARAM_COLLAPSIBLE, info));
+            streamingList.setCountOnly(hasQueryParamFor(QUERY_PARAM_COUNTONLY, info));
+            streamingList.setItemsOnly(hasQueryParamFor(QUERY_PARAM_ITEMSONLY, info));
+         }
+         catch (Exception ex) {
+            streamingList.close();
+            throw ex;
+         }
+         return Response.ok(streamingList, MediaType.APPLICATION_JSON).build();
+      }
+      catch (Exception ex) {
+         return createExceptionResponse(referringClass, ex);
+      }
+   }
+
    /*
     * This method is designed to allow inheriting classes to "convert" the supplied fieldName 
     * into one that can be used against the supplied metadataList to access the correct metadata 
@@ -801,51 +845,42 @@ public abstract class RESTResource {
          String currentFieldName = fieldName.substring(0, fieldName.indexOf("."));
          fieldName = fieldName.substring(fieldName.indexOf(".") + 1, fieldName.length());
 
-         for (RESTMetadata mdata : metadataList) {
-            String testFieldName = mdata.getFieldName();
-            if (currentFieldName.equals(testFieldName)) {
-               Map<String, List<RESTMetadata>> subMetadataMap = mdata.getFieldTypeMetadata(); // field's sub-entity metadata
-               if (subMetadataMap.size() > 1) {
-                  // there's more than one set of metadata, see if the fieldName has a pointer to which set to use..
-                  String metadataKey = null;
-                  if (fieldName.contains(".")) { // fieldname could have embedded in it a pointer to the needed metadata list...
-                     metadataKey = fieldName.substring(0, fieldName.indexOf("."));
-                     metadataKey = metadataKey.substring(0, 1).toUpperCase() + metadataKey.substring(1); // Capitalize the first letter...
-                  }
+         RESTMetadata mdata = RESTMetadata.getFieldMetadata(currentFieldName, metadataList);
+         if (mdata != null) {
+            Map<String, List<RESTMetadata>> subMetadataMap = mdata.getFieldTypeMetadata(); // field's sub-entity metadata
+            if (subMetadataMap.size() > 1) {
+               // there's more than one set of metadata, see if the fieldName has a pointer to which set to use..
+               String metadataKey = null;
+               if (fieldName.contains(".")) { // fieldname could have embedded in it a pointer to the needed metadata list...
+                  metadataKey = fieldName.substring(0, fieldName.indexOf("."));
+                  metadataKey = metadataKey.substring(0, 1).toUpperCase() + metadataKey.substring(1); // Capitalize the first letter...
+               }
 
-                  if (metadataKey != null && subMetadataMap.containsKey(metadataKey)) { // look to see if the subMetadataMap has a list by the metadataKey parsed..
-                     fieldName = fieldName.substring(fieldName.indexOf(".") + 1, fieldName.length());
-                     List<RESTMetadata> subMetadataList = subMetadataMap.get(metadataKey);
+               if (metadataKey != null && subMetadataMap.containsKey(metadataKey)) { // look to see if the subMetadataMap has a list by the metadataKey parsed..
+                  fieldName = fieldName.substring(fieldName.indexOf(".") + 1, fieldName.length());
+                  List<RESTMetadata> subMetadataList = subMetadataMap.get(metadataKey);
+                  filterFieldMetadata = getFilterFieldMetadata(fieldName, subMetadataList);
+               }
+               else { // fieldName doesn't have a pointer to which one to use, just search through all of them for a field/metadata match...
+                  for (Map.Entry<String, List<RESTMetadata>> entry : subMetadataMap.entrySet()) {
+                     List<RESTMetadata> subMetadataList = entry.getValue();
                      filterFieldMetadata = getFilterFieldMetadata(fieldName, subMetadataList);
-                  }
-                  else { // fieldName doesn't have a pointer to which one to use, just search through all of them for a field/metadata match...
-                     for (Map.Entry<String, List<RESTMetadata>> entry : subMetadataMap.entrySet()) {
-                        List<RESTMetadata> subMetadataList = entry.getValue();
-                        filterFieldMetadata = getFilterFieldMetadata(fieldName, subMetadataList);
-                        if (filterFieldMetadata != null) {
-                           break;
-                        }
+                     if (filterFieldMetadata != null) {
+                        break;
                      }
                   }
                }
-               else { // there's only one just use that one to find the match....
-                  for (List<RESTMetadata> subMetadataList : subMetadataMap.values()) {
-                     filterFieldMetadata = getFilterFieldMetadata(fieldName, subMetadataList);
-                     break;
-                  }
+            }
+            else { // there's only one just use that one to find the match....
+               for (List<RESTMetadata> subMetadataList : subMetadataMap.values()) {
+                  filterFieldMetadata = getFilterFieldMetadata(fieldName, subMetadataList);
+                  break;
                }
-               break;
             }
          }
       }
       else {
-         for (RESTMetadata mdata : metadataList) {
-            String testFieldName = mdata.getFieldName();
-            if (fieldName.equals(testFieldName)) {
-               filterFieldMetadata = mdata;
-               break;
-            }
-         }
+         filterFieldMetadata = RESTMetadata.getFieldMetadata(fieldName, metadataList);
       }
       return filterFieldMetadata;
    }
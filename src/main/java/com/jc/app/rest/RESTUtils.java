@@ -1,32 +1,26 @@
 package com.jc.app.rest;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
+import java.io.Writer;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.math.BigInteger;
-import java.net.ConnectException;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Date;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SimpleTimeZone;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
-import javax.ws.rs.core.MediaType;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
 
@@ -34,13 +28,7 @@ import org.apache.commons.codec.binary.Base64;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import com.jc.app.rest.annotations.RDMetadata.BOOLEAN;
-import com.jc.app.rest.annotations.Transient;
-import com.jc.app.rest.exceptions.InvalidJSONDatatypeException;
-import com.jc.app.rest.exceptions.RESTConnectionException;
-import com.jc.app.rest.exceptions.RESTErrorCode;
 import com.jc.util.FileSystem;
-import com.jc.util.ObjectFactory;
 import com.jc.util.StringUtils;
 
 public class RESTUtils {
@@ -68,6 +56,25 @@ public class RESTUtils {
       DATE_FORMAT_ISO8601.setTimeZone(new SimpleTimeZone(0, "EST5EDT"));
    }
 
+   // SimpleDateFormat isn't thread safe, each thread formats dates with its own copy of DATE_FORMAT_ISO8601.
+   private final static ThreadLocal<SimpleDateFormat> ISO8601_FORMATTER = new ThreadLocal<SimpleDateFormat>() {
+
+      @Override
+      protected SimpleDateFormat initialValue() {
+         return (SimpleDateFormat) DATE_FORMAT_ISO8601.clone();
+      }
+   };
+
+   private final static Pattern ISO8601_PATTERN = Pattern.compile("(\\d{4})-(\\d{2})-(\\d{2})T(\\d{2}):(\\d{2}):(\\d{2})Z");
+
+   /*
+    * Receives the objects read by processJSONArray() one at a time.
+    */
+   public interface ObjectHandler<T> {
+
+      void handleObject(T object) throws Exception;
+   }
+
    public static String generateApplicationKey() throws Exception {
       String appKey = UUID.randomUUID().toString();
       byte[] encodedBytes = Base64.encodeBase64(appKey.getBytes());
@@ -92,6 +99,47 @@ public class RESTUtils {
       return sw.toString();
    }
 
+   /**
+    * Writes the supplied Map, List or object to the OutputStream as UTF-8 JSON text, the same JSON as
+    * createJSONObjectFromMap(), createJSONArrayFromList() or createJSONObjectFromObject() would create
+    * but without building it in memory first. The stream is flushed but not closed.
+    */
+   public static void writeJSON(Object data, OutputStream out) throws Exception {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+      writeJSON(data, writer);
+   }
+
+   /**
+    * Writes the supplied Map, List or object to the Writer as JSON text, see writeJSON(Object, OutputStream).
+    */
+   public static void writeJSON(Object data, Writer writer) throws Exception {
+      JSONGenerator generator = new JSONGenerator(writer);
+      JSONSerializer.write(generator, data);
+      generator.flush();
+   }
+
+   /**
+    * Returns a response entity that writes the supplied Map, List or object as JSON directly to the response
+    * stream when the response is sent, see writeJSON(Object, OutputStream).
+    */
+   public static StreamingOutput createJSONStreamingOutput(final Object data) {
+      return new StreamingOutput() {
+
+         @Override
+         public void write(OutputStream output) throws IOException, WebApplicationException {
+            try {
+               writeJSON(data, output);
+            }
+            catch (IOException | RuntimeException ex) {
+               throw ex;
+            }
+            catch (Exception ex) {
+               throw new WebApplicationException(ex);
+            }
+         }
+      };
+   }
+
    public static JSONObject createJSONObjectFromMap(Map<String, ?> jsonData) throws Exception {
       JSONObject jsonObject = new JSONObject();
 
@@ -163,73 +211,41 @@ public class RESTUtils {
          }
 
          if (!collapsed) {
-            // Create field info for each field in the entity...
-            List<Field> fieldList = new ArrayList<>();
-            Class<?> classObj = object.getClass();
-            while (classObj != null) {
-               Field[] fields = classObj.getDeclaredFields();
-               fieldList.addAll(Arrays.asList(fields));
-               classObj = classObj.getSuperclass();
-            }
-
-            for (Field aField : fieldList) {
-               int modfiers = aField.getModifiers();
-               if (!Modifier.isStatic(modfiers)) {
+            // The fields to include for the class are worked out once by its JSONSerializer...
+            for (JSONSerializer.Property property : JSONSerializer.getSerializer(object.getClass()).getProperties()) {
+               JSONSerializer.Property aField = property;
+               Object value = aField.field.get(object);
+               while (value == null && aField.hidden != null) { // a hidden field of the same name...
+                  aField = aField.hidden;
+                  value = aField.field.get(object);
+               }
 
-                  Transient transientAnn = aField.getAnnotation(Transient.class);
-                  boolean includeInJSON = false;
-                  if (aField.isAnnotationPresent(Transient.class)) {
-                     includeInJSON = transientAnn.includeInJson().equals(BOOLEAN.YES);
+               if (value != null) {
+                  String fieldName = property.name;
+                  if (value instanceof Map) {
+                     JSONObject jsonObj = createJSONObjectFromMap((Map<String, Object>) value);
+                     jsonObject.put(fieldName, jsonObj);
                   }
-
-                  if (!aField.isAnnotationPresent(Transient.class) || includeInJSON) { // Transient Annotation...
-                     aField.setAccessible(true);
-                     Object value = aField.get(object);
-                     if (value != null) {
-                        String fieldName = aField.getName();
-                        Class<?> fieldClass = aField.getType();
-                        String fieldClassName = fieldClass.getName();
-                        if (value instanceof Map) {
-                           JSONObject jsonObj = createJSONObjectFromMap((Map<String, Object>) value);
-                           jsonObject.put(fieldName, jsonObj);
-                        }
-                        else if (value instanceof List) {
-                           JSONArray jsonObj = createJSONArrayFromList((List<Object>) value);
-                           jsonObject.put(fieldName, jsonObj);
-                        }
-                        else if (value instanceof Date) {
-                           Date dateObj = (Date) value;
-                           String formattedDate = DATE_FORMAT_ISO8601.format(dateObj);
-                           jsonObject.put(fieldName, formattedDate);
-                        }
-                        else if (value instanceof Class) {
-                           jsonObject.put(fieldName, ((Class) value).getName());
-                        }
-                        else if (fieldClassName.contains("com.jc")) {
-                           if (value instanceof RESTData) {
-                              RESTData restValue = (RESTData) value;
-                              if (restValue.isCollapsed()) {
-                                 JSONObject jsonObj = createJSONObjectFromObject(restValue.getCollapsedData());
-                                 jsonObject.put(fieldName, jsonObj);
-                              }
-                              else {
-                                 JSONObject jsonObj = createJSONObjectFromObject(value);
-                                 jsonObject.put(fieldName, jsonObj);
-                              }
-                           }
-                           else {
-                              JSONObject jsonObj = createJSONObjectFromObject(value);
-                              jsonObject.put(fieldName, jsonObj);
-                           }
-                        }
-                        else {
-                           jsonObject.put(fieldName, value);
-                        }
-                     }
+                  else if (value instanceof List) {
+                     JSONArray jsonObj = createJSONArrayFromList((List<Object>) value);
+                     jsonObject.put(fieldName, jsonObj);
+                  }
+                  else if (value instanceof Date) {
+                     String formattedDate = formatISO8601((Date) value);
+                     jsonObject.put(fieldName, formattedDate);
+                  }
+                  else if (value instanceof Class) {
+                     jsonObject.put(fieldName, ((Class) value).getName());
+                  }
+                  else if (aField.domainType) {
+                     // createJSONObjectFromObject() handles collapsed RESTData values...
+                     JSONObject jsonObj = createJSONObjectFromObject(value);
+                     jsonObject.put(fieldName, jsonObj);
+                  }
+                  else {
+                     jsonObject.put(fieldName, value);
                   }
-                  // else field marked transient, ignore.
                }
-               // else static field, ignore.
             }
          }
 
@@ -244,72 +260,51 @@ public class RESTUtils {
       }
    }
 
-   private static <T> List<T> createObjectFromJSONArray(JSONArray jsonArray, ParameterizedType type) throws Exception {
-      List<T> valueList = new ArrayList<>();
+   /**
+    * Creates an object of the supplied type from the JSON object read from the UTF-8 stream, in the same way
+    * as createObjectFromJSONObject() but setting the fields as the JSON is parsed rather than parsing it into
+    * a JSONObject first. The stream is left open.
+    */
+   public static <T> T createObjectFromJSON(InputStream in, Class<T> classType) throws Exception {
+      return (T) JSONBinder.getBinder(classType).bind(JSONReader.of(in));
+   }
 
-      Type[] actualTypes = type.getActualTypeArguments();
-      if (actualTypes.length == 1) {
-         if (actualTypes[0] instanceof ParameterizedType) {
-            // make a parameterized call to inflate jsonArray
-            valueList = createObjectFromJSONArray(jsonArray, (ParameterizedType) actualTypes[0]);
-         }
-         else { // not ParameterizedType
-            // make class call to inflate jsonArray
-            valueList = createObjectFromJSONArray(jsonArray, (Class<T>) actualTypes[0]);
-         }
-      }
-      else if (actualTypes.length == 2) {
-         // jsonArray contains one or more json objects that represent Map objects.
-         valueList = new ArrayList<>();
-         for (int i = 0; i < jsonArray.length(); i++) {
-            Object valueObj = jsonArray.get(i);
-            if (valueObj instanceof JSONObject) {
-               valueObj = createObjectMapFromJSONObject((JSONObject) valueObj, (Class<T>) actualTypes[0], (Class<T>) actualTypes[1]);
-            }
-            else if (valueObj instanceof JSONArray) {
-               throw new Exception("Error in JSON, this value pulled from the jsonArray should support a map object: " + valueObj);
-            }
-            valueList.add((T) valueObj);
-         }
-      }
-      else {
-         throw new Exception("Unknown datatype object to inflate.");
+   /**
+    * Creates a list of objects of the supplied type from the JSON array read from the UTF-8 stream, in the same
+    * way as createObjectFromJSONArray(); see createObjectFromJSON().
+    */
+   public static <T> List<T> createObjectListFromJSON(InputStream in, Class<T> classType) throws Exception {
+      return (List<T>) JSONBinder.bindList(JSONReader.of(in), classType);
+   }
+
+   /**
+    * Reads the JSON array of objects from the UTF-8 stream, creating an object of the supplied type for each
+    * and handing it to the handler before the next is read, so that only one is held at a time. Returns the
+    * number of objects read.
+    */
+   public static <T> int processJSONArray(InputStream in, Class<T> classType, ObjectHandler<T> handler) throws Exception {
+      int count = 0;
+      JSONReader reader = JSONReader.of(in);
+      JSONBinder binder = JSONBinder.getBinder(classType);
+      reader.beginArray();
+      while (reader.hasNext()) {
+         handler.handleObject((T) binder.bind(reader));
+         count++;
       }
+      reader.endArray();
+      return count;
+   }
 
-      return valueList;
+   private static <T> List<T> createObjectFromJSONArray(JSONArray jsonArray, ParameterizedType type) throws Exception {
+      return (List<T>) JSONBinder.bindList(JSONReader.of(jsonArray), type);
    }
 
    public static <T> List<T> createObjectFromJSONArray(JSONArray jsonArray, Class<T> classObj) throws Exception {
-      List<T> valueList = new ArrayList<>();
-      for (int i = 0; i < jsonArray.length(); i++) {
-         Object valueObj = jsonArray.get(i);
-         if (valueObj instanceof JSONObject) {
-            valueObj = createObjectFromJSONObject((JSONObject) valueObj, classObj);
-         }
-         else if (valueObj instanceof JSONArray) {
-            valueObj = createObjectFromJSONArray((JSONArray) valueObj, classObj);
-         }
-         valueList.add((T) valueObj);
-      }
-      return valueList;
+      return (List<T>) JSONBinder.bindList(JSONReader.of(jsonArray), classObj);
    }
 
    public static <T> Map<String, T> createObjectMapFromJSONObject(JSONObject jsonObject, Class<?> keyClassObj, Class<T> valueClassObj) throws Exception {
-      Map<String, T> valueList = new LinkedHashMap<>();
-      String[] names = JSONObject.getNames(jsonObject);
-      if (names != null && names.length > 0) {
-         for (String name : names) {
-            Object valueObj = jsonObject.get(name);
-            if (valueObj instanceof JSONObject) {
-               valueObj = createObjectFromJSONObject((JSONObject) valueObj, valueClassObj);
-            }
-            else if (valueObj instanceof JSONArray) {
-               valueObj = createObjectFromJSONArray((JSONArray) valueObj, valueClassObj);
-            }
-            valueList.put(name, (T) valueObj);
-         }
-      }
-      return valueList;
+      return (Map<String, T>) JSONBinder.bindMap(JSONReader.of(jsonObject), valueClassObj);
    }
 
    /*
@@ -318,179 +313,27 @@ public class RESTUtils {
     * returning an Object, this method will attempt to call the type's implementation of 
     * that method to "inflate" any type fields that are themselves an object. This allows 
     * the implementing type to provide customized "inflating" code for the field object 
-    * in question. See the method 'getFieldInflatorMethod()' for more information.
+    * in question. See the method 'getFieldInflatorMethod()' for more information. The 
+    * work of creating the object is done by the type's JSONBinder.
     */
    public static <T> T createObjectFromJSONObject(JSONObject jsonObj, Class<T> classType) throws Exception {
+      return (T) JSONBinder.getBinder(classType).bind(JSONReader.of(jsonObj));
+   }
 
-      Object object = null;
-      if (ObjectFactory.implementsInterface(classType, Map.class)) {
-         Constructor<T> constructor = classType.getDeclaredConstructor();
-         constructor.setAccessible(true);
-         object = constructor.newInstance();
-
-         Iterator<String> itr = jsonObj.keys();
-         while (itr.hasNext()) {
-            String key = itr.next();
-            Object value = jsonObj.get(key);
-            ((Map) object).put(key, value);
-         }
-      }
-      else {
-         Constructor<T> constructor = classType.getDeclaredConstructor();
-         constructor.setAccessible(true);
-         object = constructor.newInstance();
-
-         // Create field info for each field in the entity...
-         List<Field> fieldList = new ArrayList<>();
-         Class<?> classObj = object.getClass();
-         while (classObj != null) {
-            Field[] fields = classObj.getDeclaredFields();
-            fieldList.addAll(Arrays.asList(fields));
-            classObj = classObj.getSuperclass();
-         }
-
-         for (Field field : fieldList) {
-            int modfiers = field.getModifiers();
-            if (!Modifier.isStatic(modfiers)) {
-               if (!field.isAnnotationPresent(Transient.class)) { // Transient Annotation...
-                  String fieldName = field.getName();
-                  if (jsonObj.has(fieldName)) {
-                     field.setAccessible(true);
-
-                     Object jsonValue = jsonObj.get(fieldName);
-                     if (jsonValue instanceof JSONObject) {
-                        Class<?> fieldType = field.getType();
-                        if (!fieldType.equals(Map.class)) {
-                           Method inflatorMethod = getFieldInflatorMethod(object.getClass());
-                           if (inflatorMethod != null) {
-                              jsonValue = inflatorMethod.invoke(object, field.getName(), jsonValue);
-                           }
-                           else {
-                              jsonValue = createObjectFromJSONObject((JSONObject) jsonValue, (Class<T>) fieldType);
-                           }
-                        }
-                        else {
-                           ParameterizedType fieldPType = (ParameterizedType) field.getGenericType();
-                           Type[] typesArray = fieldPType.getActualTypeArguments();
-                           jsonValue = createObjectMapFromJSONObject((JSONObject) jsonValue, (Class<T>) typesArray[0], (Class<T>) typesArray[1]);
-                        }
-                        field.set(object, jsonValue);
-                     }
-                     else if (jsonValue instanceof JSONArray) {
-                        if (((JSONArray) jsonValue).length() > 0) {
-                           Type fieldType = field.getGenericType();
-                           if (fieldType instanceof ParameterizedType) {
-                              jsonValue = createObjectFromJSONArray((JSONArray) jsonValue, (ParameterizedType) fieldType);
-                           }
-                           else {
-                              jsonValue = createObjectFromJSONArray((JSONArray) jsonValue, List.class);
-                           }
-                        }
-                        else {
-                           jsonValue = new ArrayList();
-                        }
-                        field.set(object, jsonValue);
-                     }
-                     else {
-                        Class<?> fieldType = field.getType();
-                        Class<? extends Object> jsonValueClass = jsonValue.getClass();
-                        if (!fieldType.equals(jsonValueClass)) {
-                           if (fieldType.equals(Long.class) && jsonValueClass.equals(Integer.class)) {
-                              // convert value from Integer to Long...
-                              long longValue = ((Integer) jsonValue).longValue();
-                              jsonValue = new Long(longValue);
-                           }
-                           else if (fieldType.equals(Double.class) && jsonValueClass.equals(Integer.class)) {
-                              // convert value from Integer to Double...
-                              double doubleValue = ((Integer) jsonValue).doubleValue();
-                              jsonValue = new Double(doubleValue);
-                           }
-                           else if (fieldType.equals(Float.class) && jsonValueClass.equals(Integer.class)) {
-                              // convert value from Integer to Float...
-                              float floatValue = ((Integer) jsonValue).floatValue();
-                              jsonValue = new Float(floatValue);
-                           }
-                           else if (fieldType.equals(Date.class) && jsonValueClass.equals(String.class)) {
-                              // convert value from String to Date...
-                              jsonValue = createDateObject((String) jsonValue);
-                           }
-                           else if (fieldType.equals(Long.class) && jsonValueClass.equals(BigInteger.class)) {
-                              // convert value from BigInteger to Long...
-                              long longValue = ((BigInteger) jsonValue).longValue();
-                              jsonValue = new Long(longValue);
-                           }
-                           else if (fieldType.equals(BigInteger.class) && jsonValueClass.equals(Long.class)) {
-                              // convert value from Long to BigInteger...
-                              jsonValue = new BigInteger(((Long) jsonValue).toString());
-                           }
-                           else if (fieldType.equals(Class.class) && jsonValueClass.equals(String.class)) {
-                              // convert value from String to Class...
-                              jsonValue = Class.forName((String) jsonValue);
-                           }
-                           else if (fieldType.equals(Boolean.TYPE) && jsonValueClass.equals(Boolean.class)) {
-                              // convert value from Boolean to boolean...
-                              field.set(object, ((Boolean) jsonValue).booleanValue());
-                              jsonValue = null; // don't try to set it later...
-                           }
-                           else if (fieldType.equals(Integer.TYPE) && jsonValueClass.equals(Integer.class)) {
-                              // convert value from Integer to int...
-                              field.set(object, ((Integer) jsonValue).intValue());
-                              jsonValue = null; // don't try to set it later...
-                           }
-                           else if (fieldType.equals(Long.TYPE) && jsonValueClass.equals(Long.class)) {
-                              // convert value from Long to long...
-                              field.set(object, ((Long) jsonValue).longValue());
-                              jsonValue = null; // don't try to set it later...
-                           }
-                           else if (fieldType.equals(Double.TYPE) && jsonValueClass.equals(Double.class)) {
-                              // convert value from Double to double...
-                              field.set(object, ((Double) jsonValue).doubleValue());
-                              jsonValue = null; // don't try to set it later...
-                           }
-                           else if (fieldType.equals(Float.TYPE) && jsonValueClass.equals(Float.class)) {
-                              // convert value from Float to float...
-                              field.set(object, ((Float) jsonValue).floatValue());
-                              jsonValue = null; // don't try to set it later...
-                           }
-                           else {
-                              // unsupported conversion...
-                              String fieldTypeName = fieldType.getSimpleName();
-                              if (Number.class.isAssignableFrom(fieldType)) {
-                                 fieldTypeName = "Number";
-                              }
-                              throw new InvalidJSONDatatypeException("The '" + fieldName + "' field with a datatype of '" + fieldTypeName
-                                    + "', did not match the supplied JSON value type of '" + jsonValueClass.getSimpleName() + "'.");
-                           }
-                        }
-                        // they are the same, don't worry about it.
-
-                        if (jsonValue != null) {
-                           field.set(object, jsonValue);
-                        }
-                     }
-                  }
-                  // else ignore it....
-               }
-               // else ignore it....
-            }
-            // else ignore it....
-         }
-
-      }
-      return (T) object;
+   static String formatISO8601(Date date) {
+      return ISO8601_FORMATTER.get().format(date);
    }
 
    // this is ISO-8601 compliant using UTC.
-   private static Date createDateObject(String dateStr) throws Exception {
+   static Date createDateObject(String dateStr) throws Exception {
       Date date = null;
-      String regex = "(\\d{4})-(\\d{2})-(\\d{2})T(\\d{2}):(\\d{2}):(\\d{2})Z";
-      if (dateStr.matches(regex)) {
-         date = DATE_FORMAT_ISO8601.parse(dateStr);
+      if (ISO8601_PATTERN.matcher(dateStr).matches()) {
+         date = ISO8601_FORMATTER.get().parse(dateStr);
       }
       return date;
    }
 
-   private static Method getFieldInflatorMethod(Class<?> fieldClassObj) throws Exception {
+   static Method getFieldInflatorMethod(Class<?> fieldClassObj) throws Exception {
       Method method = null;
 
       while (fieldClassObj != null) {
@@ -606,136 +449,13 @@ public class RESTUtils {
       return callRESTService(username, password, url, parameters, requestMethod, headers);
    }
 
+   // Makes the call with the default RESTClient, reusing kept-alive connections...
    private static RESTfulResult callRESTService(String username, String password, URL url, Object parameters, String requestMethod, Map<String, String> headers)
          throws Exception {
-      RESTfulResult result = new RESTfulResult();
-      result.url = url.toString();
-
-      HttpURLConnection connection = null;
-
-      try {
-         connection = (HttpURLConnection) url.openConnection();
-         if (parameters != null) {
-            if (parameters instanceof JSONObject) {
-               connection.setDoOutput(true);
-               connection.setRequestMethod(requestMethod);
-               connection.setRequestProperty("Content-Type", MediaType.APPLICATION_JSON);
-            }
-            else if (parameters instanceof XMLEntity) {
-               connection.setDoOutput(true);
-               connection.setRequestMethod(requestMethod);
-               connection.setRequestProperty("Content-Type", MediaType.TEXT_XML);
-            }
-            else if (parameters instanceof String) {
-               connection.setDoOutput(true);
-               connection.setRequestMethod(requestMethod);
-               connection.setRequestProperty("Content-Type", MediaType.TEXT_PLAIN);
-            }
-         }
-         else {
-            connection.setRequestMethod(requestMethod);
-         }
-
-         if ((username != null && !username.isEmpty()) && (password != null && !password.isEmpty())) {
-            String authorization = username + ":" + password;
-            byte[] encodedBytes = Base64.encodeBase64(authorization.getBytes());
-            authorization = "Basic " + new String(encodedBytes);
-            connection.setRequestProperty("Authorization", authorization);
-         }
-
-         if (headers != null && !headers.isEmpty()) {
-            for (Map.Entry<String, String> entry : headers.entrySet()) {
-               String headerKey = entry.getKey();
-               String headerValue = entry.getValue();
-               connection.setRequestProperty(headerKey, headerValue);
-            }
-         }
-
-         if (parameters != null) {
-            String input = parameters.toString();
-            result.inputParams = input;
-            OutputStream out = connection.getOutputStream();
-            out.write(input.getBytes());
-            out.close();
-         }
-
-         int code = connection.getResponseCode();
-         result.statusCode = code;
-
-         if (code == HttpURLConnection.HTTP_OK || code == HttpURLConnection.HTTP_CREATED) {
-            InputStream is = connection.getInputStream();
-            if (is != null) {
-               StringBuilder sb = new StringBuilder();
-               BufferedReader in = new BufferedReader(new InputStreamReader(is));
-               String line = in.readLine();
-               while (line != null) {
-                  sb.append(line);
-                  line = in.readLine();
-               }
-               result.content = sb.toString();
-            }
-            else {
-               result.content = "";
-            }
-         }
-         else if (code == HttpURLConnection.HTTP_NOT_FOUND) {
-            result.content = "";
-            result.message = "Not found.";
-         }
-         else if (code == HttpURLConnection.HTTP_CONFLICT) {
-            result.content = "";
-            result.message = "Found duplicate.";
-         }
-         else if (code == HttpURLConnection.HTTP_BAD_METHOD) {
-            result.content = "";
-            result.message = "Invalid method.";
-         }
-         else if (code == HttpURLConnection.HTTP_UNAUTHORIZED) {
-            result.content = "";
-            result.message = "Unauthorized access.";
-         }
-         else if (code == HttpURLConnection.HTTP_MOVED_TEMP) {
-            result.content = connection.getHeaderField("Location");
-         }
-         else {
-            InputStream is = connection.getErrorStream();
-            if (is != null) {
-               BufferedReader in2 = new BufferedReader(new InputStreamReader(is));
-               result.content = in2.readLine();
-               result.message = "";
-            }
-            else {
-               result.content = "";
-               result.message = "";
-            }
-         }
-      }
-      catch (ConnectException cex) {
-         String message = cex.getMessage();
-         if (message.contains("Connection refused")) {
-            String input = result.inputParams;
-            if (input == null) {
-               input = "";
-            }
-            throw new RESTConnectionException(RESTErrorCode.CONNECTION_REFUSED, result.url, input);
-         }
-         else if (message.contains("Connection timed out")) {
-            String input = result.inputParams;
-            if (input == null) {
-               input = "";
-            }
-            throw new RESTConnectionException(RESTErrorCode.CONNECTION_TIMEOUT, result.url, input);
-         }
-         else {
-            throw cex;
-         }
-      }
-      finally {
-         if (connection != null) {
-            connection.disconnect();
-         }
-      }
-      return result;
+      RESTClient.Request request = new RESTClient.Request(requestMethod, url, parameters);
+      request.setCredentials(username, password);
+      request.setHeaders(headers);
+      return RESTClient.getDefault().call(request);
    }
 
    private static String format(JSONArray jsonArray, int level) throws Exception {
@@ -0,0 +1,147 @@
+package com.jc.app.rest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.logging.Level;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.jc.log.Logger;
+
+/*
+ * A response entity for a list of objects that are written as JSON one at a time, as they are
+ * taken from an Iterator such as a DAO EntityCursor, rather than collected in a List and
+ * converted to a single JSON string. Only the object currently being written is held in memory.
+ *
+ * By default the response is {"items":[...],"count":n}; with setItemsOnly() it is just the
+ * array of items and with setCountOnly() it is just {"count":n}. setFields() limits the fields
+ * written for each item and setCollapsed() writes each RESTData item as its collapsed data,
+ * matching the _fields, _items, _count and _collapse query parameters of RESTResource. If the
+ * iterator is AutoCloseable it is closed once the response has been written.
+ */
+
+public class StreamingGenericList implements StreamingOutput {
+
+   public final static String ITEMS = "items";
+   public final static String COUNT = "count";
+
+   private final Iterator<?> Items;
+
+   private Set<String> Fields;
+   private boolean Collapsed;
+   private boolean CountOnly;
+   private boolean ItemsOnly;
+   private long Count = -1;
+
+   public StreamingGenericList(Iterator<?> items) {
+      if (items == null) {
+         throw new IllegalArgumentException("Supplied items iterator was null.");
+      }
+      Items = items;
+   }
+
+   // Only the named fields of each item are written; null writes all of them.
+   public void setFields(Collection<String> fieldNames) {
+      Fields = fieldNames != null ? new LinkedHashSet<>(fieldNames) : null;
+   }
+
+   public void setCollapsed(boolean collapsed) {
+      Collapsed = collapsed;
+   }
+
+   public void setCountOnly(boolean countOnly) {
+      CountOnly = countOnly;
+   }
+
+   public void setItemsOnly(boolean itemsOnly) {
+      ItemsOnly = itemsOnly;
+   }
+
+   /*
+    * Sets the count to report when only the count is requested, e.g. from Dao.countAll(), so
+    * the items don't have to be read just to be counted.
+    */
+   public void setCount(long count) {
+      Count = count;
+   }
+
+   @Override
+   public void write(OutputStream output) throws IOException, WebApplicationException {
+      try {
+         Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+         JSONGenerator generator = new JSONGenerator(writer);
+         if (CountOnly) {
+            long count = Count >= 0 ? Count : countItems();
+            generator.beginObject().name(COUNT).value(count).endObject();
+         }
+         else if (ItemsOnly) {
+            writeItems(generator);
+         }
+         else {
+            generator.beginObject().name(ITEMS);
+            long count = writeItems(generator);
+            generator.name(COUNT).value(count).endObject();
+         }
+         generator.flush();
+      }
+      catch (IOException | RuntimeException ex) {
+         throw ex;
+      }
+      catch (Exception ex) {
+         throw new WebApplicationException(ex);
+      }
+      finally {
+         close();
+      }
+   }
+
+   private long writeItems(JSONGenerator generator) throws Exception {
+      long count = 0;
+      generator.beginArray();
+      while (Items.hasNext()) {
+         Object item = Items.next();
+         if (item != null) {
+            if (Collapsed && item instanceof RESTData) {
+               JSONSerializer.writeObject(generator, ((RESTData) item).getCollapsedData());
+            }
+            else {
+               JSONSerializer.writeObject(generator, item, Fields);
+            }
+            count++;
+         }
+      }
+      generator.endArray();
+      return count;
+   }
+
+   private long countItems() {
+      long count = 0;
+      while (Items.hasNext()) {
+         if (Items.next() != null) {
+            count++;
+         }
+      }
+      return count;
+   }
+
+   // Closes the iterator if it holds resources, e.g. an EntityCursor's database connection.
+   void close() {
+      if (Items instanceof AutoCloseable) {
+         try {
+            ((AutoCloseable) Items).close();
+         }
+         catch (Exception ex) {
+            Logger.log(getClass(), Level.WARNING, "Error closing streamed list items; " + ex.getMessage());
+         }
+      }
+   }
+}
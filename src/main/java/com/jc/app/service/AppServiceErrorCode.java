@@ -10,6 +10,7 @@ public class AppServiceErrorCode extends ErrorCode {
 
    public final static AppServiceErrorCode INVALID_FROM_DATE = new AppServiceErrorCode(300, "INVALID_FROM_DATE"); // from date cannot be before to date...
    public final static AppServiceErrorCode INVALID_DATE_FORMAT = new AppServiceErrorCode(301, "INVALID_DATE_FORMAT"); // date format supplied invalid...
+   public final static AppServiceErrorCode INVALID_LOG_LEVEL = new AppServiceErrorCode(302, "INVALID_LOG_LEVEL"); // log level supplied invalid...
 
    protected AppServiceErrorCode(int code, String codeDesc) {
       super(code, codeDesc);
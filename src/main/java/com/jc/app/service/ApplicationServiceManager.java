@@ -1,6 +1,5 @@
 package com.jc.app.service;
 
-import java.io.File;
 import java.lang.reflect.Constructor;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -20,13 +19,11 @@ import com.jc.db.dao.DAOFactory;
 import com.jc.db.dao.DAOTransaction;
 import com.jc.exception.MethodUnimplementedException;
 import com.jc.exception.SystemInfoException;
-import com.jc.log.LogFieldsEnum;
-import com.jc.log.LogFileHandler;
-import com.jc.log.LogMetadata;
+import com.jc.log.LogEntry;
+import com.jc.log.LogFileReader;
 import com.jc.log.Logger;
 import com.jc.shiro.AccessControlService;
 import com.jc.util.ConfigInfo;
-import com.jc.util.FileSystem;
 
 /*
  * This class provides application generic services related to users, their roles, permissions and 
@@ -82,54 +79,58 @@ public abstract class ApplicationServiceManager extends ServiceManager {
    }
 
    public static List<AppLogRec> readAppLog(Date fromDate, Date toDate) throws Exception {
-      List<AppLogRec> appLogRecs = new ArrayList<>();
-
-      LogMetadata appLogMetadata = Logger.getLogMetadata(Logger.DEFAULT_LOG_ID);
-
-      DateFormat df = LogFileHandler.DATEFORMAT;
-      List<String> fileDates = new ArrayList<>();
-      if (fromDate.before(toDate)) {
-         while (!fromDate.after(toDate)) { // include toDate in the stuff to return...
-            String fileDate = df.format(fromDate);
-            fileDates.add(fileDate);
+      return readAppLog(fromDate, toDate, null, null, 0, 0);
+   }
 
-            Calendar cal = Calendar.getInstance();
-            cal.setTime(fromDate);
-            cal.add(Calendar.HOUR, 24);
-            fromDate = cal.getTime();
-         }
-      }
-      else if (fromDate.after(toDate)) {
+   /*
+    * Returns the application log records for the days fromDate through toDate, optionally only those
+    * at or above the level and whose class field info contains classFilter. first and maxResults
+    * select a page of the records, a maxResults of 0 returns all of them. The log files are read
+    * with a LogFileReader, so only the records returned are held in memory.
+    */
+   public static List<AppLogRec> readAppLog(Date fromDate, Date toDate, Level level, String classFilter, int first, int maxResults) throws Exception {
+      if (fromDate.after(toDate)) {
          DateFormat df2 = new SimpleDateFormat("yyyy-MM-dd");
          String message = "The from date, " + df2.format(fromDate) + ", cannot be after the to date " + df2.format(toDate) + ".";
          throw new SystemInfoException(Level.INFO, AppServiceErrorCode.INVALID_FROM_DATE, message);
       }
-      else { // they are equal...
-         fileDates.add(df.format(fromDate));
-      }
 
-      String logdir = appLogMetadata.getLogDir();
-      String namePrefix = appLogMetadata.getFilenamePrefix();
-
-      for (String fileDate : fileDates) {
-         String applogFilename = logdir + namePrefix + "_" + fileDate + ".txt";
-         File logfile = new File(applogFilename);
-         if (logfile.exists()) {
-            String[] lines = FileSystem.readInFile(applogFilename);
-            for (int i = 0; i < lines.length; i++) {
-               String[] data = lines[i].split("\\|", LogFieldsEnum.getNumberOfFields());
-
-               AppLogRec record = new AppLogRec();
-               record.setNanoSecs(data[0]);
-               record.setDatestamp(data[1]);
-               record.setLoglevel(data[2]);
-               record.setClassFieldInfo(data[3]);
-               record.setMessage(data[4]);
-               appLogRecs.add(record);
-            }
+      // From the start of the from day up to the start of the day after the to day...
+      Calendar cal = Calendar.getInstance();
+      cal.setTime(fromDate);
+      cal.set(Calendar.HOUR_OF_DAY, 0);
+      cal.set(Calendar.MINUTE, 0);
+      cal.set(Calendar.SECOND, 0);
+      cal.set(Calendar.MILLISECOND, 0);
+      Date from = cal.getTime();
+
+      cal.setTime(toDate);
+      cal.set(Calendar.HOUR_OF_DAY, 0);
+      cal.set(Calendar.MINUTE, 0);
+      cal.set(Calendar.SECOND, 0);
+      cal.set(Calendar.MILLISECOND, 0);
+      cal.add(Calendar.DAY_OF_MONTH, 1);
+      Date to = cal.getTime();
+
+      LogFileReader.Query query = new LogFileReader.Query().setFrom(from).setTo(to).setLevel(level).setClassFilter(classFilter).setFirst(first)
+            .setMaxResults(maxResults);
+
+      final List<AppLogRec> appLogRecs = new ArrayList<>();
+      LogFileReader reader = new LogFileReader(Logger.DEFAULT_LOG_ID);
+      reader.read(query, new LogFileReader.EntryHandler() {
+
+         @Override
+         public boolean handleEntry(LogEntry entry) {
+            AppLogRec record = new AppLogRec();
+            record.setNanoSecs(entry.getNanoSecs());
+            record.setDatestamp(entry.getDateStamp());
+            record.setLoglevel(entry.getLogLevel());
+            record.setClassFieldInfo(entry.getClassFieldInfo());
+            record.setMessage(entry.getMessage());
+            appLogRecs.add(record);
+            return true;
          }
-         // else ignore it...
-      }
+      });
 
       return appLogRecs;
    }
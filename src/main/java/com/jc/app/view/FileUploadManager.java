@@ -1,8 +1,10 @@
 package com.jc.app.view;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -10,6 +12,8 @@ import java.util.List;
 import org.primefaces.event.FileUploadEvent;
 import org.primefaces.model.UploadedFile;
 
+import com.jc.util.ExcelProcessor;
+
 public abstract class FileUploadManager implements Serializable {
 
    private static final long serialVersionUID = 5735073632008018814L;
@@ -90,6 +94,23 @@ public abstract class FileUploadManager implements Serializable {
          return fileContent;
       }
 
+      public InputStream getInputStream() {
+         return new ByteArrayInputStream(fileContent != null ? fileContent : new byte[0]);
+      }
+
+      /*
+       * Hands the rows of the uploaded CSV or Excel file to the handler batchSize at a time, returning
+       * the number of rows; a file is taken to be CSV if its name ends with .csv.
+       */
+      public int processRows(ExcelProcessor.RowHandler handler, int batchSize) throws Exception {
+         if (fileName != null && fileName.toLowerCase().endsWith(".csv")) {
+            return ExcelProcessor.processCSVDocument(getInputStream(), handler, batchSize);
+         }
+         else {
+            return ExcelProcessor.processExcelDocument(getInputStream(), handler, batchSize);
+         }
+      }
+
       public void saveTo(String toFile) throws Exception {
          if (fileContent != null && fileContent.length > 0) {
             FileOutputStream fos = new FileOutputStream(toFile);
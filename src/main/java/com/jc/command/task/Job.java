@@ -4,11 +4,15 @@ import java.util.Enumeration;
 import java.util.LinkedHashMap;
 import java.util.UUID;
 import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import com.jc.log.Logger;
 import com.jc.util.FileSystem;
 import com.jc.util.StringUtils;
+import com.jc.util.Timer;
 
 /**
  * A Job is a collection of one or more Task objects that are run synchronously, one after the other.
@@ -18,6 +22,8 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
 
    public final static String JOB_DONE_MESSAGE = "done";
 
+   private final static long MASTER_CHECK_INTERVAL = 5000; // ms, backs up the masters' status events for a waiting slave.
+
    //   private final static Random RANDOM_GENERATOR = new Random();
 
    private String IdNumber;
@@ -25,7 +31,8 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
 
    private Long StatusTimeStamp; // The time the job entered the current status.
 
-   private String jobThreadId; // the id given by ThreadMonitor of the thread running this job.
+   private boolean AwaitingMasters; // a started slave whose masters aren't all done yet.
+   private ScheduledFuture<?> MasterCheck;
 
    private double AmountCompleted;
    private String StatusMessage;
@@ -34,9 +41,12 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
    private int TasksDone;
    private float Priority;
 
-   private JobStatus State;
+   private volatile JobStatus State;
+
+   private final CountDownLatch Finished = new CountDownLatch(1); // released once the job is done, errored or stopped.
 
    private Vector<JobStatusListener> Listeners;
+   private volatile JobProgressListener ProgressListener; // the JobQueue's registry, when queued.
 
    private final boolean MultiThreaded; // Indicates whether tasks are run asynchronously or not; default is false.
    private int NumThreads;
@@ -123,10 +133,11 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
    }
 
    /**
-    * Returns the job's thread id assigned to it by the ThreadMonitor. Use this to query the ThreadMonitor about this Job.
+    * Slave jobs no longer wait for their masters in a thread of their own, so there's no thread id to return; always returns null.
     */
+   @Deprecated
    public String getJobThreadId() {
-      return jobThreadId;
+      return null;
    }
 
    public String getLogData() {
@@ -217,12 +228,36 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
       return (getState().isWaiting());
    }
 
+   /**
+    * Returns true once the job is done, errored or stopped.
+    */
+   public boolean isFinished() {
+      return Finished.getCount() == 0;
+   }
+
+   /**
+    * Waits until the job is done, errored or stopped.
+    */
+   public void awaitCompletion() throws InterruptedException {
+      Finished.await();
+   }
+
+   /**
+    * Waits at most timeout ms for the job to be done, errored or stopped; returns false if it didn't finish in time.
+    */
+   public boolean awaitCompletion(long timeout) throws InterruptedException {
+      return Finished.await(timeout, TimeUnit.MILLISECONDS);
+   }
+
    public void start() {
       if (slaveMode()) {
-         logMessage(Level.INFO, "Start slave thread.");
-         jobThreadId = ThreadMonitor.startNewThread(this, Thread.NORM_PRIORITY - 2);
-         logMessage(Level.INFO, "Slave thread[" + jobThreadId + "] started.");
+         logMessage(Level.INFO, "Slave waiting for masters.");
          setState(JobStatus.WAITING);
+         synchronized (this) {
+            AwaitingMasters = true;
+            MasterCheck = Timer.scheduleAtFixedRate(this, MASTER_CHECK_INTERVAL);
+         }
+         checkMasters(); // they may already be done.
       }
       else {
          if (State.equals(JobStatus.UNKNOWN)) {
@@ -251,6 +286,7 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
       logMessage(Level.INFO, "Queued task[" + task_id + "].");
 
       Logs.put(task_id, new StringBuffer());
+      notifyProgressChanged();
    }
 
    public void setPriority(float priority) {
@@ -280,6 +316,11 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
       }
    }
 
+   // Set by the JobQueue's registry to keep its totals of amount completed and estimated runtime.
+   void setProgressListener(JobProgressListener listener) {
+      ProgressListener = listener;
+   }
+
    /**
     * Removes a JobStatusListener.
     */
@@ -322,10 +363,14 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
       StatusTimeStamp = System.currentTimeMillis();
       notifyListenersStatusChanged(getID(), old_state, new_state);
 
+      if (new_state.isDone() || new_state.isErrored() || new_state.isStopped()) {
+         Finished.countDown();
+      }
+
       if (slaveMode()) {
-         // Make sure we stop this thread when we are done.
+         // Make sure we stop checking on the masters when we are done.
          if (isDone() || isErrored() || isStopped()) {
-            stop();
+            cancelMasterCheck();
          }
       }
    }
@@ -407,8 +452,8 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
          JobTaskInfo info = Tasks.get(RootTaskID);
          Task task = info.getTaskObject();
          logMessage(Level.INFO, "Starting job task[" + task.getID() + "].");
+         setState(JobStatus.RUNNING); // before starting the task so that a quick task's DONE state isn't overwritten.
          task.start();
-         setState(JobStatus.RUNNING);
       }
       else {
          logMessage(Level.INFO, "Operating in multi-threaded mode.");
@@ -533,19 +578,17 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
 
    // ------------------- Supporting Methods To Run Jobs Asynchronously ------------------- //
 
-   private void startNextAsyncTask() {
+   private synchronized void startNextAsyncTask() {
       boolean found = false;
       Object[] keys = Tasks.keySet().toArray();
       for (int i = 0; i < keys.length && !found; i++) {
          JobTaskInfo info = Tasks.get(keys[i]);
          Task task = info.getTaskObject();
-         if (task.isNotRunning()) {
+         // A started task may still be queued on the execution backend, so don't go by its state alone.
+         if (task.isNotRunning() && info.markStarted()) {
             found = true;
             logMessage(Level.INFO, "Starting job task[" + task.getID() + "].");
             task.start();
-            while (task.isNotRunning()) {
-               logMessage(Level.INFO, "Waiting for job task[" + task.getID() + "] to 'start'; task state [" + task.getState() + "].");
-            }
          }
       }
    }
@@ -566,61 +609,56 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
    }
 
    /**
-    * Implements the Runnable interface. NOTE: THIS METHOD SHOULD NEVER BE CALLED DIRECTLY, ONLY CALLED WHEN IN SLAVE MODE BY THE start() METHOD.
+    * Implements the Runnable interface; run by the shared scheduler to check on a slave's masters.
     */
    @Override
    public void run() {
       if (slaveMode()) {
-         boolean done = false;
-         while (!done) {
-            if (mastersDone()) {
-               logMessage(Level.INFO, "Masters done...");
-               if (mastersMustFinish()) { // All the masters must finish successfully, none can be stopped or errored.
-                  if (MastersDoneOk) {
-                     logMessage(Level.INFO, "Masters must finish successfully, and they have.");
-                     done = true;
-                     logMessage(Level.INFO, "Starting tasks...");
-                     startTasks();
-                  }
-                  else { // If they all finished but one or more were stopped or errored, then don't proceed.
-                     logMessage(Level.INFO, "Masters must finish successfully, and they did not.");
-                     stop();
-                     done = true;
-                  }
-               }
-               else if (MastersPartiallyDoneOk || MastersDoneOk) { // Doesn't matter how the masters finish, just as long as they are not running or queued.
-                  logMessage(Level.INFO, "Masters DO NOT have to all finish successfully, and haven't.");
-                  done = true;
-                  logMessage(Level.INFO, "Starting tasks...");
-                  startTasks();
-               }
-               else {
-                  logMessage(Level.INFO, "(MastersPartiallyDoneOk) Masters DID NOT complete successfully...");
-                  stop();
-                  done = true;
-               }
-            }
-            else {
-               long time = System.currentTimeMillis();
-               try {
-                  long sleep_time = calcSleepTime(); // calculates the amount of time left for the masters to finish.
-                  logMessage(Level.INFO, "Masters NOT done... sleep for [" + sleep_time + "]ms");
-                  Thread.sleep(sleep_time);
-                  logMessage(Level.INFO, "Woke up while waiting for masters to complete... total sleep time [" + (System.currentTimeMillis() - time) + "]ms.");
-               }
-               catch (InterruptedException e) {
-                  logMessage(Level.INFO,
-                        "Interrupted: Woke up while waiting for masters to complete... total sleep time [" + (System.currentTimeMillis() - time) + "]ms.");
-                  // do nothing
-               }
-            }
-         }
+         checkMasters();
       }
       else {
          throw new RuntimeException("A Job object can only be 'run' when in slave mode using the Job constructor that takes an array of 'master' Job objects.");
       }
    }
 
+   // Starts, or stops, a slave that's waiting on its masters once they're all done.
+   private synchronized void checkMasters() {
+      if (!AwaitingMasters || !mastersDone()) {
+         return;
+      }
+      cancelMasterCheck();
+
+      logMessage(Level.INFO, "Masters done...");
+      if (mastersMustFinish()) { // All the masters must finish successfully, none can be stopped or errored.
+         if (MastersDoneOk) {
+            logMessage(Level.INFO, "Masters must finish successfully, and they have.");
+            logMessage(Level.INFO, "Starting tasks...");
+            startTasks();
+         }
+         else { // If they all finished but one or more were stopped or errored, then don't proceed.
+            logMessage(Level.INFO, "Masters must finish successfully, and they did not.");
+            stop();
+         }
+      }
+      else if (MastersPartiallyDoneOk || MastersDoneOk) { // Doesn't matter how the masters finish, just as long as they are not running or queued.
+         logMessage(Level.INFO, "Masters DO NOT have to all finish successfully, and haven't.");
+         logMessage(Level.INFO, "Starting tasks...");
+         startTasks();
+      }
+      else {
+         logMessage(Level.INFO, "(MastersPartiallyDoneOk) Masters DID NOT complete successfully...");
+         stop();
+      }
+   }
+
+   private synchronized void cancelMasterCheck() {
+      AwaitingMasters = false;
+      if (MasterCheck != null) {
+         MasterCheck.cancel(false);
+         MasterCheck = null;
+      }
+   }
+
    // Checks to see if all the masters are done.
    boolean mastersDone() {
       boolean done = false;
@@ -679,30 +717,6 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
       return (done);
    }
 
-   void wakeUp() {
-      logMessage(Level.INFO, "START Request job thread[" + jobThreadId + "] interrupt.");
-      ThreadMonitor.stopThread(jobThreadId);
-      logMessage(Level.INFO, "END Request job thread[" + jobThreadId + "] interrupt.");
-   }
-
-   private long calcSleepTime() {
-      long sleep_time = 0;
-      for (Job myMaster : MyMasters) {
-         long estimated_runtime = myMaster.getEstimatedRuntime();
-         double percent_to_complete = 1 - myMaster.getAmountCompleted();
-         sleep_time += (long) (estimated_runtime * percent_to_complete);
-         logMessage(Level.INFO, "MasterID[" + myMaster.getID() + "] Est Runtime[" + estimated_runtime + "] Percent to Completion[" + percent_to_complete
-               + "] Sleep Time[" + sleep_time + "]");
-      }
-
-      // Only return 80% of the time, so that the slave wakes up at least once before it's masters are done to recalc a final sleep time.
-      sleep_time = (long) (sleep_time * 0.8);
-      if (sleep_time < 5000) {
-         sleep_time = 5000;
-      }
-      return (sleep_time);
-   }
-
    // ------------------------ Implements JobStatusListener Interface ------------------------ //
 
    @Override
@@ -722,7 +736,7 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
                found = true;
                if (new_status.isDone() || new_status.isErrored() || new_status.isStopped()) {
                   if (masters_done) {
-                     wakeUp();
+                     checkMasters();
                   }
                }
             }
@@ -742,7 +756,7 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
    }
 
    @Override
-   public void taskDone(Task a_task) {
+   public synchronized void taskDone(Task a_task) { // tasks finish on their own threads...
       String task_id = a_task.getID();
       JobTaskInfo info = Tasks.get(task_id);
       info.setAmountCompleted(1.0);
@@ -753,6 +767,7 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
 
          AmountCompleted = 1.0;
          StatusMessage = JOB_DONE_MESSAGE;
+         notifyProgressChanged();
 
          setState(JobStatus.DONE);
       }
@@ -799,6 +814,7 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
             }
          }
          AmountCompleted = amount_completed;
+         notifyProgressChanged();
       }
       // System.out.println("**************** Job AmountCompleted AFTER: " + AmountCompleted);
       // System.out.println();
@@ -833,6 +849,14 @@ public class Job implements TaskListener, JobStatusListener, Runnable {
       JobTaskInfo info = Tasks.get(task_id);
       // logMessage("Updating estimated runtime for task["+task_id+"] from "+info.getEstimatedRuntime()+" to "+time+".");
       info.setEstimatedRuntime(time);
+      notifyProgressChanged();
+   }
+
+   private void notifyProgressChanged() {
+      JobProgressListener listener = ProgressListener;
+      if (listener != null) {
+         listener.jobProgressChanged(this);
+      }
    }
 
    private class JobStopManager implements Runnable {
@@ -0,0 +1,347 @@
+package com.jc.command.task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+import com.jc.command.task.Job.JobStatus;
+import com.jc.log.Logger;
+
+/*
+ * Starts the jobs queued with a JobQueue, highest priority first, for as long as it's
+ * running; jobs queued while it runs are started as soon as there's room for them.
+ * The number of jobs running at once can be capped overall and for each process.
+ * 
+ * So that low priority jobs aren't starved while the caps are reached, a job's priority
+ * goes up by one for every agingInterval ms it has waited. This is done by ordering the
+ * jobs by the time they were queued less priority * agingInterval, which keeps their
+ * order in the queue fixed as they age. Jobs of the same priority start in the order
+ * they were queued.
+ * 
+ * Slave jobs waiting for their masters aren't counted against the caps.
+ */
+
+class JobDispatcher implements JobStatusListener {
+
+   private final static long IDLE_WAIT = 1000; // ms, re-checks the queue at least this often.
+
+   private final JobQueue Queue; // resolves the process a job belongs to.
+
+   private final ReentrantLock Lock = new ReentrantLock();
+   private final Condition Changed = Lock.newCondition();
+   private final PriorityQueue<QueuedJob> Queued = new PriorityQueue<>(); // guarded by Lock.
+   private final List<Job> Started = new ArrayList<>(); // guarded by Lock; jobs started and not yet finished.
+   private final AtomicLong Sequence = new AtomicLong(0);
+   private long PassesStarted; // guarded by Lock.
+   private long PassesDone; // guarded by Lock.
+
+   private volatile int MaxRunningJobs; // 0 for no limit.
+   private volatile int MaxRunningJobsPerProcess; // 0 for no limit.
+   private volatile long AgingInterval;
+
+   private volatile boolean Running;
+   private volatile long Generation; // of the current dispatch loop; an older loop exits once it sees a newer one.
+   private String dispatcherThreadId;
+
+   JobDispatcher(JobQueue queue, int max_running_jobs, int max_running_jobs_per_process, long aging_interval) {
+      Queue = queue;
+      MaxRunningJobs = max_running_jobs;
+      MaxRunningJobsPerProcess = max_running_jobs_per_process;
+      AgingInterval = aging_interval;
+   }
+
+   void setMaxRunningJobs(int max_running_jobs) {
+      MaxRunningJobs = max_running_jobs;
+      signal();
+   }
+
+   int getMaxRunningJobs() {
+      return (MaxRunningJobs);
+   }
+
+   void setMaxRunningJobsPerProcess(int max_running_jobs) {
+      MaxRunningJobsPerProcess = max_running_jobs;
+      signal();
+   }
+
+   int getMaxRunningJobsPerProcess() {
+      return (MaxRunningJobsPerProcess);
+   }
+
+   // Only applies to jobs queued afterwards.
+   void setAgingInterval(long aging_interval) {
+      AgingInterval = aging_interval;
+   }
+
+   long getAgingInterval() {
+      return (AgingInterval);
+   }
+
+   /**
+    * Queues the job to be started with the supplied priority.
+    */
+   void queue(Job ajob, float priority) {
+      QueuedJob queued = new QueuedJob(ajob, System.currentTimeMillis() - (long) (priority * AgingInterval), Sequence.incrementAndGet());
+      Lock.lock();
+      try {
+         Queued.add(queued);
+         Changed.signalAll();
+      }
+      finally {
+         Lock.unlock();
+      }
+   }
+
+   int getNumQueued() {
+      Lock.lock();
+      try {
+         return (Queued.size());
+      }
+      finally {
+         Lock.unlock();
+      }
+   }
+
+   synchronized void start() {
+      if (!Running) {
+         Running = true;
+         final long generation = ++Generation;
+         dispatcherThreadId = ThreadMonitor.startNewThread(new Runnable() {
+
+            @Override
+            public void run() {
+               dispatch(generation);
+            }
+         }, Thread.NORM_PRIORITY);
+      }
+      else {
+         signal();
+      }
+   }
+
+   synchronized void stop() {
+      if (Running) {
+         Running = false;
+         Generation++; // a start() before the loop sees Running is false won't leave two loops dispatching.
+         ThreadMonitor.stopThread(dispatcherThreadId);
+         dispatcherThreadId = null;
+      }
+   }
+
+   boolean isRunning() {
+      return (Running);
+   }
+
+   /**
+    * Waits, at most timeout ms, until the jobs queued before this call have been started or held back by the caps.
+    */
+   void awaitDispatch(long timeout) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + timeout;
+      Lock.lock();
+      try {
+         long target = PassesStarted + 1;
+         Changed.signalAll();
+         while (Running && PassesDone < target) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+               break;
+            }
+            Changed.await(remaining, TimeUnit.MILLISECONDS);
+         }
+      }
+      finally {
+         Lock.unlock();
+      }
+   }
+
+   private void dispatch(long generation) {
+      while (Running && Generation == generation) {
+         List<Job> to_start = new ArrayList<>();
+         Lock.lock();
+         try {
+            if (Generation != generation) {
+               break; // stopped, and maybe restarted, while waiting for the lock.
+            }
+            PassesStarted++;
+            takeStartableJobs(to_start);
+            if (to_start.isEmpty()) {
+               PassesDone = PassesStarted;
+               Changed.signalAll();
+               Changed.await(IDLE_WAIT, TimeUnit.MILLISECONDS);
+            }
+         }
+         catch (InterruptedException ex) {
+            // stopped or woken up, check Running...
+         }
+         finally {
+            Lock.unlock();
+         }
+
+         // Started outside the lock since the jobs call back into jobStatusChanged from their own threads.
+         for (Job ajob : to_start) {
+            synchronized (ajob) {
+               if (ajob.isQueued()) {
+                  logMessage(Level.INFO, "Starting job[" + ajob.getID() + "]; job status is [" + ajob.getState() + "].");
+                  ajob.start();
+               }
+               else {
+                  jobFinished(ajob);
+               }
+            }
+         }
+
+         if (!to_start.isEmpty()) {
+            Lock.lock();
+            try {
+               PassesDone = PassesStarted;
+               Changed.signalAll();
+            }
+            finally {
+               Lock.unlock();
+            }
+         }
+      }
+   }
+
+   // Moves the jobs that can start within the caps from Queued to Started; must hold Lock.
+   private void takeStartableJobs(List<Job> to_start) {
+      if (Queued.isEmpty()) {
+         return;
+      }
+
+      int max_running = MaxRunningJobs;
+      int max_per_process = MaxRunningJobsPerProcess;
+
+      Map<String, Integer> running_by_process = new HashMap<>();
+      int num_running = 0;
+      for (Job ajob : Started) {
+         if (!ajob.isWaiting()) {
+            num_running++;
+            if (max_per_process > 0) {
+               increment(running_by_process, Queue.getProcessID(ajob.getID()));
+            }
+         }
+      }
+
+      List<QueuedJob> held = new ArrayList<>(); // jobs whose process is at its cap.
+      while (!Queued.isEmpty() && (max_running <= 0 || num_running < max_running)) {
+         QueuedJob queued = Queued.poll();
+         Job ajob = queued.MyJob;
+         if (!ajob.isQueued()) {
+            continue; // stopped or removed while queued.
+         }
+
+         if (max_per_process > 0) {
+            String process_id = Queue.getProcessID(ajob.getID());
+            if (process_id != null) {
+               Integer running = running_by_process.get(process_id);
+               if (running != null && running >= max_per_process) {
+                  held.add(queued);
+                  continue;
+               }
+               increment(running_by_process, process_id);
+            }
+         }
+
+         Started.add(ajob);
+         to_start.add(ajob);
+         ajob.addJobStatusListener(this);
+         num_running++;
+      }
+      Queued.addAll(held);
+   }
+
+   private static void increment(Map<String, Integer> counts, String key) {
+      if (key != null) {
+         Integer count = counts.get(key);
+         counts.put(key, count == null ? 1 : count + 1);
+      }
+   }
+
+   private void jobFinished(Job ajob) {
+      Lock.lock();
+      try {
+         Started.remove(ajob);
+         Changed.signalAll();
+      }
+      finally {
+         Lock.unlock();
+      }
+   }
+
+   private void signal() {
+      Lock.lock();
+      try {
+         Changed.signalAll();
+      }
+      finally {
+         Lock.unlock();
+      }
+   }
+
+   @Override
+   public void jobStatusChanged(String job_id, JobStatus old_status, JobStatus new_status) {
+      if (new_status.isDone() || new_status.isErrored() || new_status.isStopped()) {
+         Job ajob = null;
+         Lock.lock();
+         try {
+            for (Job started : Started) {
+               if (started.getID().equals(job_id)) {
+                  ajob = started;
+                  break;
+               }
+            }
+         }
+         finally {
+            Lock.unlock();
+         }
+
+         if (ajob != null) {
+            // Stays a listener; removing it while the job is notifying its listeners could make the job skip the next one.
+            jobFinished(ajob);
+         }
+      }
+      else if (old_status.isWaiting()) {
+         signal(); // a slave has stopped waiting and now counts against the caps.
+      }
+   }
+
+   private void logMessage(Level level, String message) {
+      try {
+         Logger.log(JobQueue.LOG_ID, getClass(), level, "JobDispatcher" + Logger.LOGFILE_FIELD_SEPARATOR + message + Logger.LOGFILE_FIELD_SEPARATOR + "n/a");
+      }
+      catch (Exception ex) {
+         Logger.log(getClass(), Level.SEVERE, ex);
+      }
+   }
+
+   // ------------------------------------------------------------------------
+
+   private static final class QueuedJob implements Comparable<QueuedJob> {
+
+      private final Job MyJob;
+      private final long Rank; // queued time less priority * aging interval; lowest starts first.
+      private final long Seq;
+
+      private QueuedJob(Job ajob, long rank, long seq) {
+         MyJob = ajob;
+         Rank = rank;
+         Seq = seq;
+      }
+
+      @Override
+      public int compareTo(QueuedJob other) {
+         if (Rank != other.Rank) {
+            return (Rank < other.Rank ? -1 : 1);
+         }
+         return (Seq < other.Seq ? -1 : (Seq == other.Seq ? 0 : 1));
+      }
+   }
+}
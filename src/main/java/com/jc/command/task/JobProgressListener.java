@@ -0,0 +1,11 @@
+package com.jc.command.task;
+
+/*
+ * Told when a job's amount completed or estimated runtime changes, which, unlike
+ * its status, isn't reported to JobStatusListeners.
+ */
+
+interface JobProgressListener {
+
+   public void jobProgressChanged(Job ajob);
+}
@@ -1,18 +1,17 @@
 package com.jc.command.task;
 
-import java.util.ArrayList;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
 import java.util.Vector;
 import java.util.logging.Level;
 
 import org.json.JSONObject;
 
 import com.jc.command.task.Job.JobStatus;
+import com.jc.command.task.JobRegistry.ProcessStats;
+import com.jc.command.task.JobRegistry.StatusCounts;
 import com.jc.log.Logger;
+import com.jc.util.ConfigInfo;
 import com.jc.util.FileSystem;
 
 /*
@@ -35,47 +34,125 @@ import com.jc.util.FileSystem;
  * 
  * Process: a group of queued jobs that are registered with the JobQueue and appear 
  * as one job.
+ * 
+ * Once runJobs() is called, queued jobs are started by a JobDispatcher, highest priority
+ * first, until cancelAllJobs() is called; jobs queued in the meantime are started too.
+ * How many jobs run at once can be capped with the following properties, or the
+ * matching setters, with 0 meaning no limit:
+ * 
+ *    jobQueue.maxRunningJobs           - (default 0) jobs running at once.
+ *    jobQueue.maxRunningJobsPerProcess - (default 0) jobs of any one process running at once.
+ *    jobQueue.agingInterval            - (default 2500) ms a job waits for its priority
+ *                                        to go up by one, so low priority jobs still
+ *                                        start while the caps are reached.
+ * 
+ * The jobs, processes and their statuses are kept in a JobRegistry, which keeps running
+ * totals so that getStatistics() and the process status methods don't have to look at
+ * every job.
  */
 
 public class JobQueue implements JobStatusListener {
 
    final static String LOG_ID = "jobQueue";
 
-   private static TreeMap<Float, Vector<Job>> JobInfo; // Jobs ordered by their priority (float).
-   private static Hashtable<String, Job> Jobs; // Jobs by their id.
-   private static Hashtable<String, Vector<Job>> Processes; // A 'process' is a group of jobs that appear as a single job.
-   private static Hashtable<String, String> JobIDXref; // A cross reference of virtual job id --> real job id; note the real id may be a process id.
+   // Jobs by their id; processes, a group of jobs that appear as a single job; and a cross reference of
+   // virtual job id --> real job id, note the real id may be a process id.
+   private final static JobRegistry Registry = new JobRegistry();
+   private static JobDispatcher Dispatcher; // Starts the queued jobs.
 
    private boolean Stopped;
    private boolean QueuingJobs;
 
    public JobQueue() {
-      if (JobInfo == null) {
-         JobInfo = new TreeMap<>();
+      createDispatcher(this);
+
+      Stopped = true;
+      QueuingJobs = false;
+   }
+
+   private static synchronized void createDispatcher(JobQueue queue) {
+      if (Dispatcher == null) {
+         int max_running_jobs = 0;
+         int max_running_jobs_per_process = 0;
+         long aging_interval = 2500;
+         try {
+            ConfigInfo info = ConfigInfo.getInstance();
+            if (info.hasProperty("jobQueue.maxRunningJobs")) {
+               max_running_jobs = info.getPropertyAsInteger("jobQueue.maxRunningJobs");
+            }
+            if (info.hasProperty("jobQueue.maxRunningJobsPerProcess")) {
+               max_running_jobs_per_process = info.getPropertyAsInteger("jobQueue.maxRunningJobsPerProcess");
+            }
+            if (info.hasProperty("jobQueue.agingInterval")) {
+               aging_interval = info.getPropertyAsLong("jobQueue.agingInterval");
+            }
+         }
+         catch (Exception ex) {
+            Logger.log(JobQueue.class, Level.SEVERE, ex);
+         }
+         Dispatcher = new JobDispatcher(queue, max_running_jobs, max_running_jobs_per_process, aging_interval);
+      }
+   }
+
+   // -------------------------------------------------
+
+   /**
+    * Sets the number of jobs that can run at once; 0 for no limit.
+    */
+   public void setMaxRunningJobs(int max_running_jobs) {
+      if (max_running_jobs < 0) {
+         throw new IllegalArgumentException("Max running jobs must be 0 or greater; max running jobs = " + max_running_jobs + ".");
       }
+      Dispatcher.setMaxRunningJobs(max_running_jobs);
+   }
+
+   public int getMaxRunningJobs() {
+      return (Dispatcher.getMaxRunningJobs());
+   }
 
-      if (Jobs == null) {
-         Jobs = new Hashtable<>();
+   /**
+    * Sets the number of jobs of any one process that can run at once; 0 for no limit.
+    */
+   public void setMaxRunningJobsPerProcess(int max_running_jobs) {
+      if (max_running_jobs < 0) {
+         throw new IllegalArgumentException("Max running jobs per process must be 0 or greater; max running jobs = " + max_running_jobs + ".");
       }
+      Dispatcher.setMaxRunningJobsPerProcess(max_running_jobs);
+   }
 
-      Stopped = true;
-      QueuingJobs = false;
+   public int getMaxRunningJobsPerProcess() {
+      return (Dispatcher.getMaxRunningJobsPerProcess());
+   }
+
+   /**
+    * Sets the number of ms a queued job waits for its priority to go up by one; applies to jobs queued afterwards.
+    */
+   public void setAgingInterval(long aging_interval) {
+      if (aging_interval < 0) {
+         throw new IllegalArgumentException("Aging interval must be 0 or greater; aging interval = " + aging_interval + ".");
+      }
+      Dispatcher.setAgingInterval(aging_interval);
+   }
+
+   public long getAgingInterval() {
+      return (Dispatcher.getAgingInterval());
+   }
+
+   /**
+    * Returns the number of jobs waiting to be started.
+    */
+   public int getNumJobsWaitingToStart() {
+      return (Dispatcher.getNumQueued());
    }
 
    // -------------------------------------------------
 
    public List<String> getAllJobIds() {
-      Set<String> jobIdSet = Jobs.keySet();
-      List<String> jobIdList = new ArrayList<>();
-      jobIdList.addAll(jobIdSet);
-      return jobIdList;
+      return Registry.getJobIds();
    }
 
    public List<String> getAllProcessIds() {
-      Set<String> processIdSet = Processes.keySet();
-      List<String> processIdList = new ArrayList<>();
-      processIdList.addAll(processIdSet);
-      return processIdList;
+      return Registry.getProcessIds();
    }
 
    // -------------------------------------------------
@@ -88,8 +165,8 @@ public class JobQueue implements JobStatusListener {
          log_data.append(proc_log_data);
       }
       else {
-         if (Jobs.containsKey(job_id)) {
-            Job ajob = Jobs.get(job_id);
+         Job ajob = Registry.getJob(job_id);
+         if (ajob != null) {
             log_data.append(ajob.getLogData());
          }
       }
@@ -105,29 +182,21 @@ public class JobQueue implements JobStatusListener {
             removeProcess(job_id);
          }
          else {
-            if (Jobs.containsKey(job_id)) {
-
-               Job ajob = Jobs.get(job_id);
+            Job ajob = Registry.getJob(job_id);
+            if (ajob != null) {
                if (ajob.isQueued() || ajob.isRunning()) {
                   ajob.stop(); // Request stop...
                }
 
+               Registry.removeJob(job_id);
                ajob.cleanUp();
-               Jobs.remove(job_id);
-
-               // look for job in the JobInfo
-               Float priority = new Float(ajob.getPriority());
-               Vector<Job> jobs = JobInfo.get(priority);
-               jobs.remove(ajob);
 
                logMessage(Level.INFO, "Removed job " + job_id + " from the job queue.");
             }
          }
 
          // remove any associations the orig_job_id had...
-         if (JobIDXref != null && JobIDXref.containsKey(orig_job_id)) {
-            JobIDXref.remove(orig_job_id);
-         }
+         Registry.getJobIDXref().remove(orig_job_id);
       }
       else {
          throw new Exception("Job '" + job_id + "' is " + jobStatus + " and must be stopped first before it can be removed.");
@@ -148,38 +217,18 @@ public class JobQueue implements JobStatusListener {
             throw (new Exception("The job id " + jobid + ", matches a previously registered process."));
          }
 
-         if (Jobs.containsKey(jobid)) {
+         if (Registry.getJob(jobid) != null) {
             throw (new Exception("The job id " + jobid + ", has already been queued and cannot be 'requeued'."));
          }
+      }
 
+      for (int i = 0; i < jobs.size(); i++) {
+         Job ajob = jobs.elementAt(i);
          ajob.addJobStatusListener(this);
 
          // Add to the queue...
-         Jobs.put(jobid, ajob);
-      }
-
-      // Search JobInfo to make sure that the jobs being queued are
-      // not already assigned a priority.
-      Object[] keys = JobInfo.keySet().toArray();
-      for (Object key : keys) {
-         Vector<Job> job_vec = JobInfo.get(key);
-         for (int j = 0; j < jobs.size(); j++) {
-            Job ajob = jobs.elementAt(j);
-            if (job_vec.contains(ajob)) {
-               throw (new Exception("The job id " + ajob.getID() + ", has already been assigned a priority and cannot be reassigned."));
-            }
-         }
-      }
-
-      Float group_priority = new Float(priority);
-      if (!JobInfo.containsKey(group_priority)) {
-         JobInfo.put(group_priority, jobs);
-      }
-      else {
-         Vector<Job> job_vec = JobInfo.get(group_priority);
-         for (int i = 0; i < jobs.size(); i++) {
-            Job ajob = jobs.elementAt(i);
-            job_vec.add(ajob);
+         if (!Registry.addJob(ajob)) {
+            throw (new Exception("The job id " + ajob.getID() + ", has already been queued and cannot be 'requeued'."));
          }
       }
 
@@ -188,6 +237,7 @@ public class JobQueue implements JobStatusListener {
          Job ajob = jobs.get(i);
          logMessage(Level.INFO, "Queued job[" + ajob.getID() + "] with priority[" + ajob.getPriority() + "].");
          ajob.setState(JobStatus.QUEUED);
+         Dispatcher.queue(ajob, priority); // the group's order is kept since they all have the same priority.
       }
 
       QueuingJobs = false;
@@ -206,81 +256,40 @@ public class JobQueue implements JobStatusListener {
          throw (new Exception("The job id " + jobid + ", matches a previously registered process."));
       }
 
-      // Search Jobs to see if the job has already been queued.
-      if (Jobs.containsKey(jobid)) {
-         throw (new Exception("The job id " + jobid + ", has already been queued and cannot be 'requeued'."));
-      }
-
-      // Search JobInfo to make sure that the jobs being queued are
-      // not already assigned a priority.
-      Object[] keys = JobInfo.keySet().toArray();
-      for (Object key : keys) {
-         Vector<Job> job_vec = JobInfo.get(key);
-         if (job_vec.contains(ajob)) {
-            throw (new Exception("The job id " + jobid + ", has already been assigned a priority and cannot be reassigned."));
-         }
-      }
-
       ajob.addJobStatusListener(this);
 
-      // Add to the queue...
-      Jobs.put(jobid, ajob);
-
-      Float priority = new Float(ajob.getPriority());
-      if (!JobInfo.containsKey(priority)) {
-         Vector<Job> job_group = new Vector<>();
-         job_group.add(ajob);
-         JobInfo.put(priority, job_group);
-      }
-      else {
-         Vector<Job> job_group = JobInfo.get(priority);
-         job_group.add(ajob);
+      // Add to the queue, unless it has already been queued.
+      if (!Registry.addJob(ajob)) {
+         throw (new Exception("The job id " + jobid + ", has already been queued and cannot be 'requeued'."));
       }
 
       logMessage(Level.INFO, "Queued job[" + ajob.getID() + "] with priority[" + ajob.getPriority() + "].");
 
       ajob.setState(JobStatus.QUEUED);
+      Dispatcher.queue(ajob, ajob.getPriority());
 
       QueuingJobs = false;
    }
 
+   /**
+    * Starts the queued jobs, and any queued later, until cancelAllJobs() is called. Returns once the
+    * jobs already queued have been started, or held back by the caps, without waiting for them to finish.
+    */
    public void runJobs() throws Exception {
       // outputJobQueueContents(); // For debugging purposes only.
       Stopped = false;
-      if (JobInfo != null) {
-         Object[] keys = JobInfo.descendingKeySet().toArray();
-         for (Object key : keys) {
-            Vector<Job> job_group = JobInfo.get(key);
-            int num_jobs = job_group.size();
-            for (int j = 0; j < num_jobs; j++) {
-               Job ajob = job_group.get(j);
-               synchronized (ajob) {
-                  if (ajob.isQueued()) {
-                     logMessage(Level.INFO,
-                           "Starting job[" + ajob.getID() + "] with priority[" + key.toString() + "]; job status is [" + ajob.getState() + "].");
-                     ajob.start();
-                  }
-               }
-            }
-            Thread.sleep(2500); // wait 2.5 secs before starting the next group of jobs.
-         }
-      }
+      Dispatcher.start();
+      Dispatcher.awaitDispatch(5000);
    }
 
    public void cancelAllJobs() throws Exception {
       Stopped = true;
-      if (Jobs != null) {
-         Object[] keys = Jobs.keySet().toArray();
-         for (Object key : keys) {
-            Job ajob = Jobs.get(key);
-            if (ajob.isRunning() || ajob.isQueued() || ajob.isWaiting()) {
-               ajob.stop();
-            }
+      Dispatcher.stop();
+      for (Job ajob : Registry.getJobs()) {
+         if (ajob.isRunning() || ajob.isQueued() || ajob.isWaiting()) {
+            ajob.stop();
          }
       }
-      else {
-         throw (new RuntimeException("ERROR: JobQueue was null when trying to stop all running jobs."));
-      }
    }
 
    public void cancelJob(String job_id) throws Exception {
@@ -389,8 +398,8 @@ public class JobQueue implements JobStatusListener {
          job_vec = getJobsForProcess(job_id);
       }
       else {
-         if (Jobs != null && Jobs.containsKey(job_id)) {
-            Job ajob = Jobs.get(job_id);
+         Job ajob = Registry.getJob(job_id);
+         if (ajob != null) {
             job_vec = new Vector<>();
             job_vec.add(ajob);
          }
@@ -402,27 +411,22 @@ public class JobQueue implements JobStatusListener {
     * Associates a real job_id with a virtual job_id so that if a virtual job_id is given to the JobQueue, information referencing the real id will be returned. If the virtual_job_id already is associated with a job_id, it will be re-associated with the supplied job_id.
     */
    public void associateJobID(String virtual_job_id, String job_id) throws Exception {
-      if (JobIDXref == null) {
-         JobIDXref = new Hashtable<>();
-      }
-      JobIDXref.put(virtual_job_id, job_id);
+      Registry.getJobIDXref().put(virtual_job_id, job_id);
    }
 
    // Returns the associated job id if one exists.
    String getJobIDForVirtualJobID(String virtual_job_id) {
-      String job_id = virtual_job_id;
-      if (JobIDXref != null && JobIDXref.containsKey(virtual_job_id)) {
-         job_id = JobIDXref.get(virtual_job_id);
-      }
-      return (job_id);
+      String job_id = Registry.getJobIDXref().get(virtual_job_id);
+      return (job_id != null ? job_id : virtual_job_id);
    }
 
    public String getVirtualIDByJobID(String job_id) {
       String virtual_job_id = job_id;
-      if (JobIDXref != null && (JobIDXref.containsValue(job_id) || JobIDXref.containsValue(job_id + "_proc"))) {
-         for (int i = 0; i < JobIDXref.size(); i++) {
-            String key = JobIDXref.keys().nextElement();
-            String val = JobIDXref.get(key);
+      Map<String, String> xref = Registry.getJobIDXref();
+      if (xref.containsValue(job_id) || xref.containsValue(job_id + "_proc")) {
+         for (Map.Entry<String, String> entry : xref.entrySet()) {
+            String key = entry.getKey();
+            String val = entry.getValue();
             if (val.contains(job_id) && key.contains("async")) {
                virtual_job_id = key;
                break;
@@ -473,43 +477,14 @@ public class JobQueue implements JobStatusListener {
    // ------------------------------------------------------------------
 
    public JSONObject getStatistics() {
-      int numJobs = 0;
-      if (Jobs != null) {
-         numJobs = Jobs.size();
-      }
-
-      int numJobsQueued = 0;
-      int numJobsWaiting = 0;
-      int numJobsRunning = 0;
-      int numJobsErrored = 0;
-      int numJobsStopped = 0;
-      int numJobsDone = 0;
-
-      if (Jobs != null && !QueuingJobs) {
-         for (Map.Entry<String, Job> entry : Jobs.entrySet()) {
-            //        String jobId = entry.getKey();
-            Job ajob = entry.getValue();
-            // ...
-            if (ajob.isQueued()) {
-               numJobsQueued++;
-            }
-            else if (ajob.isWaiting()) {
-               numJobsWaiting++;
-            }
-            else if (ajob.isRunning()) {
-               numJobsRunning++;
-            }
-            else if (ajob.isErrored()) {
-               numJobsErrored++;
-            }
-            else if (ajob.isStopped()) {
-               numJobsStopped++;
-            }
-            else if (ajob.isDone()) {
-               numJobsDone++;
-            }
-         }
-      }
+      StatusCounts counts = Registry.getQueuedCounts();
+      int numJobs = Registry.getNumJobs();
+      int numJobsQueued = counts.get(JobStatus.QUEUED);
+      int numJobsWaiting = counts.get(JobStatus.WAITING);
+      int numJobsRunning = counts.get(JobStatus.RUNNING);
+      int numJobsErrored = counts.get(JobStatus.ERRORED);
+      int numJobsStopped = counts.get(JobStatus.STOPPED);
+      int numJobsDone = counts.get(JobStatus.DONE);
 
       JSONObject jobQueueStatistics = new JSONObject();
       jobQueueStatistics.put("numJobs", numJobs);
@@ -532,10 +507,6 @@ public class JobQueue implements JobStatusListener {
          throw (new Exception("ERROR: process " + process_id + " matches a job already queued with the same id."));
       }
 
-      if (Processes == null) {
-         Processes = new Hashtable<>();
-      }
-
       // Check to see if there's a process already registered and if so,
       // if the jobs in the registered process are the same as the ones
       // supplied to this method.
@@ -550,7 +521,7 @@ public class JobQueue implements JobStatusListener {
          }
       }
 
-      Processes.put(process_id, process);
+      Registry.putProcess(process_id, process);
       logMessage(Level.INFO, "Registered job_process[" + process_id + "].");
 
    }
@@ -559,7 +530,7 @@ public class JobQueue implements JobStatusListener {
    // associated with the process_id
    public void removeProcess(String process_id) throws Exception {
       process_id = getJobIDForVirtualJobID(process_id);
-      Vector<Job> job_vec = getJobsForProcess(process_id);
+      Vector<Job> job_vec = Registry.removeProcess(process_id);
       if (job_vec != null) {
          int num_jobs = job_vec.size();
          for (int i = 0; i < num_jobs; i++) {
@@ -568,7 +539,6 @@ public class JobQueue implements JobStatusListener {
             removeJob(job_id);
          }
 
-         Processes.remove(process_id);
          logMessage(Level.INFO, "Removed job process " + process_id + " from the job queue.");
       }
       // else process doesn't exist, ignore it.
@@ -585,39 +555,18 @@ public class JobQueue implements JobStatusListener {
     */
    public String getProcessID(String job_id) {
       job_id = getJobIDForVirtualJobID(job_id);
-      String process_id = null;
-      if (Processes != null && Processes.size() > 0) {
-         Object[] keys = Processes.keySet().toArray();
-         for (int i = 0; i < keys.length && process_id == null; i++) {
-            Vector<Job> jobs_vec = Processes.get(keys[i]);
-            int num_jobs = jobs_vec.size();
-            for (int j = 0; j < num_jobs; j++) {
-               Job ajob = jobs_vec.get(j);
-               if (ajob.getID().equals(job_id)) {
-                  process_id = (String) keys[i];
-               }
-            }
-         }
-      }
-      return (process_id);
+      return (Registry.getProcessID(job_id));
    }
 
    public Vector<Job> getJobsForProcess(String process_id) {
       process_id = getJobIDForVirtualJobID(process_id);
-      Vector<Job> process = null;
-      if (Processes != null && Processes.size() > 0 && Processes.containsKey(process_id)) {
-         process = Processes.get(process_id);
-      }
-      return (process);
+      return (Registry.getProcess(process_id));
    }
 
    public JobStatus getStatusForProcess(String process_id) throws Exception {
       process_id = getJobIDForVirtualJobID(process_id);
 
-      Vector<Job> job_vec = getJob(process_id);
-
-      int num_jobs = job_vec.size();
-
+      int num_jobs = 0;
       int num_done = 0;
       int num_errored = 0;
       int num_running = 0;
@@ -625,30 +574,56 @@ public class JobQueue implements JobStatusListener {
       int num_stopped = 0;
       int num_unknown = 0;
 
+      // Use the process's running totals if it is one...
+      ProcessStats stats = Registry.getProcessStats(process_id);
+      if (stats != null) {
+         num_jobs = stats.getNumJobs();
+         num_done = stats.getCount(JobStatus.DONE);
+         num_errored = stats.getCount(JobStatus.ERRORED);
+         num_running = stats.getCount(JobStatus.RUNNING) + stats.getCount(JobStatus.WAITING);
+         num_queued = stats.getCount(JobStatus.QUEUED);
+         num_stopped = stats.getCount(JobStatus.STOPPED);
+         num_unknown = stats.getCount(JobStatus.UNKNOWN);
+      }
+
+      // ...otherwise, or if a job is in an unknown state or changing state while the totals
+      // were read, look at each of the jobs.
       StringBuffer joblist_unknown_state = new StringBuffer();
-      for (int i = 0; i < num_jobs; i++) {
-         Job ajob = job_vec.elementAt(i);
-         if (ajob.isQueued()) {
-            num_queued++;
-         }
-         else if (ajob.isRunning() || ajob.isWaiting()) {
-            num_running++;
-         }
-         else if (ajob.isErrored()) {
-            num_errored++;
-         }
-         else if (ajob.isDone()) {
-            num_done++;
-         }
-         else if (ajob.isStopped()) {
-            num_stopped++;
-         }
-         else { // Unknown state
-            if (joblist_unknown_state.length() > 0) {
-               joblist_unknown_state.append(",");
+      if (stats == null || num_unknown > 0 || (num_done + num_errored + num_running + num_queued + num_stopped) != num_jobs) {
+         Vector<Job> job_vec = getJob(process_id);
+
+         num_jobs = job_vec.size();
+         num_done = 0;
+         num_errored = 0;
+         num_running = 0;
+         num_queued = 0;
+         num_stopped = 0;
+         num_unknown = 0;
+
+         for (int i = 0; i < num_jobs; i++) {
+            Job ajob = job_vec.elementAt(i);
+            if (ajob.isQueued()) {
+               num_queued++;
+            }
+            else if (ajob.isRunning() || ajob.isWaiting()) {
+               num_running++;
+            }
+            else if (ajob.isErrored()) {
+               num_errored++;
+            }
+            else if (ajob.isDone()) {
+               num_done++;
+            }
+            else if (ajob.isStopped()) {
+               num_stopped++;
+            }
+            else { // Unknown state
+               if (joblist_unknown_state.length() > 0) {
+                  joblist_unknown_state.append(",");
+               }
+               joblist_unknown_state.append(ajob.getID());
+               num_unknown++;
             }
-            joblist_unknown_state.append(ajob.getID());
-            num_unknown++;
          }
       }
 
@@ -716,6 +691,11 @@ public class JobQueue implements JobStatusListener {
 
    public long getProcessEstimatedRuntime(String process_id) throws Exception {
       process_id = getJobIDForVirtualJobID(process_id);
+      ProcessStats stats = Registry.getProcessStats(process_id);
+      if (stats != null) {
+         return (stats.getEstimatedRuntime());
+      }
+
       long estimated_runtime = 0L;
       Vector<Job> job_vec = getJob(process_id);
       int num_jobs = job_vec.size();
@@ -774,6 +754,11 @@ public class JobQueue implements JobStatusListener {
    public double getProcessAmountCompleted(String process_id) throws Exception {
       process_id = getJobIDForVirtualJobID(process_id);
       double amount_completed = 0.0d;
+      ProcessStats stats = Registry.getProcessStats(process_id);
+      if (stats != null && stats.getNumJobs() > 0) {
+         return (stats.getAmountCompleted());
+      }
+
       Vector<Job> job_vec = getJob(process_id);
       int num_jobs = job_vec.size();
       if (num_jobs > 0) {
@@ -0,0 +1,327 @@
+package com.jc.command.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jc.command.task.Job.JobStatus;
+
+/*
+ * Holds the jobs, processes and virtual job ids of the JobQueue in concurrent maps, along
+ * with running totals of the queued jobs' states and, for each process, its jobs' states,
+ * amount completed and estimated runtime. The totals are kept up to date from the jobs'
+ * status and progress callbacks, so reading them never walks the jobs. Each job's part
+ * of the totals is updated under that job's own lock, so jobs never wait on each other.
+ */
+
+final class JobRegistry implements JobStatusListener, JobProgressListener {
+
+   private final static double AMOUNT_SCALE = 1000000d; // amounts completed are summed as millionths.
+
+   private final ConcurrentHashMap<String, Job> Jobs = new ConcurrentHashMap<>(); // Queued jobs by their id.
+   private final ConcurrentHashMap<String, Vector<Job>> Processes = new ConcurrentHashMap<>();
+   private final ConcurrentHashMap<String, ProcessStats> ProcessTotals = new ConcurrentHashMap<>();
+   private final ConcurrentHashMap<String, String> JobIDXref = new ConcurrentHashMap<>(); // virtual job id --> real job id.
+   private final ConcurrentHashMap<String, TrackedJob> TrackedJobs = new ConcurrentHashMap<>(); // Queued jobs and jobs in a process.
+   private final StatusCounts QueuedCounts = new StatusCounts();
+
+   // ------------------------------------------------------------------------
+
+   /**
+    * Adds the job to the queued jobs; returns false if a job with the same id is already queued.
+    */
+   boolean addJob(Job ajob) {
+      if (Jobs.putIfAbsent(ajob.getID(), ajob) != null) {
+         return (false);
+      }
+      track(ajob).setQueued(true);
+      return (true);
+   }
+
+   Job getJob(String job_id) {
+      return (Jobs.get(job_id));
+   }
+
+   Job removeJob(String job_id) {
+      Job ajob = Jobs.remove(job_id);
+      if (ajob != null) {
+         TrackedJob tracked = TrackedJobs.get(job_id);
+         if (tracked != null) {
+            tracked.setQueued(false);
+            untrackIfUnused(tracked);
+         }
+      }
+      return (ajob);
+   }
+
+   List<String> getJobIds() {
+      return (new ArrayList<>(Jobs.keySet()));
+   }
+
+   List<Job> getJobs() {
+      return (new ArrayList<>(Jobs.values()));
+   }
+
+   StatusCounts getQueuedCounts() {
+      return (QueuedCounts);
+   }
+
+   int getNumJobs() {
+      return (Jobs.size());
+   }
+
+   // ------------------------------------------------------------------------
+
+   void putProcess(String process_id, Vector<Job> process) {
+      ProcessStats stats = new ProcessStats();
+      Vector<Job> old_process = Processes.put(process_id, process);
+      ProcessStats old_stats = ProcessTotals.put(process_id, stats);
+
+      if (old_process != null) {
+         for (Job ajob : old_process) {
+            TrackedJob tracked = TrackedJobs.get(ajob.getID());
+            if (tracked != null && tracked.isInProcess(old_stats)) {
+               tracked.setProcess(null, null);
+               untrackIfUnused(tracked);
+            }
+         }
+      }
+
+      for (Job ajob : process) {
+         track(ajob).setProcess(process_id, stats);
+      }
+   }
+
+   Vector<Job> getProcess(String process_id) {
+      return (Processes.get(process_id));
+   }
+
+   ProcessStats getProcessStats(String process_id) {
+      return (ProcessTotals.get(process_id));
+   }
+
+   Vector<Job> removeProcess(String process_id) {
+      Vector<Job> process = Processes.remove(process_id);
+      ProcessStats stats = ProcessTotals.remove(process_id);
+      if (process != null) {
+         for (Job ajob : process) {
+            TrackedJob tracked = TrackedJobs.get(ajob.getID());
+            if (tracked != null && tracked.isInProcess(stats)) {
+               tracked.setProcess(null, null);
+               untrackIfUnused(tracked);
+            }
+         }
+      }
+      return (process);
+   }
+
+   List<String> getProcessIds() {
+      return (new ArrayList<>(Processes.keySet()));
+   }
+
+   /**
+    * Returns the id of the process the job belongs to, or null if it doesn't belong to one.
+    */
+   String getProcessID(String job_id) {
+      TrackedJob tracked = TrackedJobs.get(job_id);
+      return (tracked != null ? tracked.getProcessId() : null);
+   }
+
+   // ------------------------------------------------------------------------
+
+   Map<String, String> getJobIDXref() {
+      return (JobIDXref);
+   }
+
+   // ------------------------------------------------------------------------
+
+   private TrackedJob track(Job ajob) {
+      String job_id = ajob.getID();
+      TrackedJob tracked = TrackedJobs.get(job_id);
+      if (tracked == null) {
+         TrackedJob new_tracked = new TrackedJob(ajob);
+         tracked = TrackedJobs.putIfAbsent(job_id, new_tracked);
+         if (tracked == null) {
+            tracked = new_tracked;
+            ajob.addJobStatusListener(this);
+            ajob.setProgressListener(this);
+         }
+      }
+      return (tracked);
+   }
+
+   private void untrackIfUnused(TrackedJob tracked) {
+      if (tracked.isUnused() && TrackedJobs.remove(tracked.MyJob.getID(), tracked)) {
+         tracked.MyJob.removeJobStatusListener(this);
+         tracked.MyJob.setProgressListener(null);
+      }
+   }
+
+   @Override
+   public void jobStatusChanged(String job_id, JobStatus old_status, JobStatus new_status) {
+      TrackedJob tracked = TrackedJobs.get(job_id);
+      if (tracked != null) {
+         tracked.update();
+      }
+   }
+
+   @Override
+   public void jobProgressChanged(Job ajob) {
+      TrackedJob tracked = TrackedJobs.get(ajob.getID());
+      if (tracked != null) {
+         tracked.update();
+      }
+   }
+
+   // ------------------------------------------------------------------------
+
+   /*
+    * The part one job has in the totals. Compares what it last added to the totals with its
+    * current state, amount completed and estimated runtime, adding the difference.
+    */
+   private final class TrackedJob {
+
+      private final Job MyJob;
+      private boolean Queued;
+      private String ProcessId;
+      private ProcessStats Process;
+      private JobStatus State; // null until first added to the totals.
+      private long Amount; // millionths, only while running or done.
+      private long Runtime;
+
+      private TrackedJob(Job ajob) {
+         MyJob = ajob;
+      }
+
+      synchronized void update() {
+         JobStatus state = MyJob.getState();
+         long amount = 0;
+         if (state.isRunning() || state.isDone()) {
+            amount = Math.round(MyJob.getAmountCompleted() * AMOUNT_SCALE);
+         }
+         long runtime = MyJob.getEstimatedRuntime();
+
+         if (Queued) {
+            QueuedCounts.move(State, state);
+         }
+         if (Process != null) {
+            Process.Counts.move(State, state);
+            Process.Amount.addAndGet(amount - Amount);
+            Process.Runtime.addAndGet(runtime - Runtime);
+         }
+         State = state;
+         Amount = amount;
+         Runtime = runtime;
+      }
+
+      synchronized void setQueued(boolean queued) {
+         if (queued != Queued) {
+            if (queued) {
+               QueuedCounts.move(null, State);
+            }
+            else {
+               QueuedCounts.move(State, null);
+            }
+            Queued = queued;
+         }
+         if (Queued) {
+            update();
+         }
+      }
+
+      synchronized void setProcess(String process_id, ProcessStats process) {
+         if (Process != null) {
+            Process.remove(State, Amount, Runtime);
+         }
+         ProcessId = process_id;
+         Process = process;
+         if (Process != null) {
+            Process.add(State, Amount, Runtime);
+            update();
+         }
+      }
+
+      synchronized String getProcessId() {
+         return (ProcessId);
+      }
+
+      synchronized boolean isInProcess(ProcessStats process) {
+         return (Process == process);
+      }
+
+      synchronized boolean isUnused() {
+         return (!Queued && Process == null);
+      }
+   }
+
+   /*
+    * Counts of jobs by their state.
+    */
+   static final class StatusCounts {
+
+      private final AtomicIntegerArray Counts = new AtomicIntegerArray(JobStatus.values().length);
+
+      int get(JobStatus state) {
+         return (Counts.get(state.ordinal()));
+      }
+
+      private void move(JobStatus from, JobStatus to) {
+         if (from != to) {
+            if (from != null) {
+               Counts.decrementAndGet(from.ordinal());
+            }
+            if (to != null) {
+               Counts.incrementAndGet(to.ordinal());
+            }
+         }
+      }
+   }
+
+   /*
+    * Running totals for the jobs in a process.
+    */
+   static final class ProcessStats {
+
+      private final StatusCounts Counts = new StatusCounts();
+      private final AtomicInteger NumJobs = new AtomicInteger(0);
+      private final AtomicLong Amount = new AtomicLong(0); // millionths.
+      private final AtomicLong Runtime = new AtomicLong(0);
+
+      int getNumJobs() {
+         return (NumJobs.get());
+      }
+
+      int getCount(JobStatus state) {
+         return (Counts.get(state));
+      }
+
+      // The average amount completed of the process's jobs, counting only running and done jobs.
+      double getAmountCompleted() {
+         int num_jobs = NumJobs.get();
+         return (num_jobs > 0 ? Amount.get() / AMOUNT_SCALE / num_jobs : 0.0d);
+      }
+
+      long getEstimatedRuntime() {
+         return (Runtime.get());
+      }
+
+      private void add(JobStatus state, long amount, long runtime) {
+         NumJobs.incrementAndGet();
+         Counts.move(null, state);
+         Amount.addAndGet(amount);
+         Runtime.addAndGet(runtime);
+      }
+
+      private void remove(JobStatus state, long amount, long runtime) {
+         NumJobs.decrementAndGet();
+         Counts.move(state, null);
+         Amount.addAndGet(-amount);
+         Runtime.addAndGet(-runtime);
+      }
+   }
+}
@@ -1,6 +1,7 @@
 package com.jc.command.task;
 
 import java.util.List;
+import java.util.concurrent.TimeoutException;
 
 /*
  *   A convenience class that wraps a single Job object to run it. Depending on
@@ -16,6 +17,7 @@ public class JobRunner {
 
    private boolean runMultiThreaded;
    private int maxTasksRun;
+   private long timeout; // ms, 0 waits until the job finishes.
    private List<Task> jobTasks;
 
    private Job myJob;
@@ -44,6 +46,18 @@ public class JobRunner {
       this.maxTasksRun = maxTasksRun;
    }
 
+   /*
+    * Sets the number of ms that run() waits for the job to finish; if it doesn't finish
+    * in time, the job is stopped and a TimeoutException is thrown. 0, the default,
+    * waits until the job finishes.
+    */
+   public void setTimeout(long timeout) {
+      if (timeout < 0) {
+         throw new IllegalArgumentException("Timeout must be 0 or greater; timeout = " + timeout + ".");
+      }
+      this.timeout = timeout;
+   }
+
    public List<? extends Object> run() throws Exception {
       if (jobTasks != null && !jobTasks.isEmpty()) {
          myJob = new Job(jobTasks.get(0), runMultiThreaded);
@@ -65,35 +79,22 @@ public class JobRunner {
             myJob.addTask(jobTask);
          }
 
-         long estRunTime = myJob.getEstimatedRuntime();
-         if (estRunTime < 1001) {
-            estRunTime = 1000;
-         }
-         else {
-            estRunTime = Math.round(estRunTime * 0.75);
-         }
-
-         //      estRunTime = 60000;
-
          myJob.start();
 
-         while (myJob.isRunning() || myJob.isQueued() || myJob.isWaiting()) {
+         // Wakes up as soon as the job is done, errored or stopped.
+         long deadline = System.currentTimeMillis() + timeout;
+         while (!myJob.isFinished()) {
             try {
-               Thread.sleep(estRunTime);
-
-               estRunTime = myJob.getEstimatedRuntime();
-               if (estRunTime < 1001) {
-                  estRunTime = 1000;
+               if (timeout == 0) {
+                  myJob.awaitCompletion();
                }
                else {
-                  estRunTime = Math.round(estRunTime * 0.75);
+                  long remaining = deadline - System.currentTimeMillis();
+                  if (remaining <= 0 || !myJob.awaitCompletion(remaining)) {
+                     myJob.stop();
+                     throw new TimeoutException("Job " + myJob.getID() + " didn't finish within " + timeout + " ms.");
+                  }
                }
-
-               //               estRunTime = 60000;
-               //               DecimalFormat df = new DecimalFormat("0.00");
-               //               System.out.println("AC[" + df.format(myJob.getAmountCompleted()) + "] ~RT[" + myJob.getEstimatedRuntime() + "]ms. SM["
-               //                     + myJob.getStatusMessage() + "]");
-
             }
             catch (InterruptedException e) {
                // eat it for now...
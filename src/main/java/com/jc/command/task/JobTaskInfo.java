@@ -6,6 +6,7 @@ public class JobTaskInfo {
    private double AmountCompleted;
    private double Weight;
    private long EstimatedRuntime;
+   private boolean Started;
 
    public JobTaskInfo(Task atask) {
       MyTask = atask;
@@ -31,6 +32,15 @@ public class JobTaskInfo {
       AmountCompleted = amount;
    }
 
+   // Returns true the first time it's called, when the job starts the task.
+   synchronized boolean markStarted() {
+      if (Started) {
+         return (false);
+      }
+      Started = true;
+      return (true);
+   }
+
    public Task getTaskObject() {
       return (MyTask);
    }
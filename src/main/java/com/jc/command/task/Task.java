@@ -6,12 +6,16 @@ import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 import com.jc.command.Command;
 import com.jc.log.ExceptionMessageHandler;
 import com.jc.log.Logger;
 import com.jc.util.ConfigInfo;
+import com.jc.util.Timer;
 
 /**
  * A task is a type of Command that operates in its own thread and is expected to take some "lengthy" amount of time.
@@ -73,12 +77,12 @@ public abstract class Task extends Command implements Runnable {
    private Object TaskResult;
    private long EstimatedProcessingTime;
    private Vector<TaskListener> TaskListeners;
-   private TaskStatus State;
+   private volatile TaskStatus State; // also set by interrupt() from other threads.
    private boolean AnotherCommand;
    private final int IdNumber;
    private String IDPrefix;
 
-   private String taskThreadId; // the id given by ThreadMonitor of the thread running this task.
+   private volatile String taskThreadId; // the id given by ThreadMonitor of the thread running this task.
 
    private boolean StatusTrackingOn;
    private StatusTracker Status;
@@ -128,6 +132,13 @@ public abstract class Task extends Command implements Runnable {
       return (task_info.getMaxActiveTaskLimit());
    }
 
+   /**
+    * Returns the run limit, with its waiting task and wait time metrics, that applies to the task.
+    */
+   public static TaskRunInfo getTaskRunLimit(Task task_obj) {
+      return (getTaskRunInfo(task_obj));
+   }
+
    private static TaskRunInfo getTaskRunInfo(String task_classname) {
       TaskRunInfo info = null;
       if (!ActiveTasks.containsKey(task_classname)) {
@@ -184,6 +195,12 @@ public abstract class Task extends Command implements Runnable {
             logMessage(Level.INFO, "No thread limitation imposed on this class of Task. Good to go.");
          }
 
+         if (was_waiting) {
+            State = TaskStatus.INTERRUPTED;
+            updateStatusMessage(INTERRUPTED_TASK_STATUS_MSG + getID() + " - while waiting to run");
+            notifyListenersTaskInterrupted();
+         }
+
          String exception_msg = "";
          if (!isInterrupted()) {
             State = TaskStatus.RUNNING;
@@ -279,14 +296,11 @@ public abstract class Task extends Command implements Runnable {
    }
 
    /**
-    * Returns the StatusTracker's thread id assigned to it by the ThreadMonitor. Use this to query the ThreadMonitor about this Task.
+    * Status tracking no longer runs in a thread of its own, so there's no thread id to return; always returns null.
     */
+   @Deprecated
    public String getStatusThreadId() {
-      String threadId = null;
-      if (Status != null) {
-         threadId = Status.getStatusThreadId();
-      }
-      return threadId;
+      return null;
    }
 
    /**
@@ -388,10 +402,12 @@ public abstract class Task extends Command implements Runnable {
    }
 
    /**
-    * Starts the task in it's own thread.
+    * Starts the task on the ThreadMonitor's execution backend.
     */
    public void start() {
-      taskThreadId = ThreadMonitor.startNewThread(this, Thread.NORM_PRIORITY);
+      // Set the id first, a pooled thread may run the task before submit() returns.
+      taskThreadId = ThreadMonitor.newThreadId();
+      ThreadMonitor.submit(taskThreadId, this, Thread.NORM_PRIORITY);
       logMessage(Level.INFO, "Starting task thread[" + taskThreadId + "].");
    }
 
@@ -593,7 +609,7 @@ public abstract class Task extends Command implements Runnable {
    }
 
    /**
-    * Starts a thread to track the status of the Task. Should be called in the execute() method.
+    * Starts tracking the status of the Task on the shared scheduler. Should be called in the execute() method.
     */
    protected void startStatusTracking() {
       if (statusTrackingOn()) {
@@ -603,7 +619,7 @@ public abstract class Task extends Command implements Runnable {
    }
 
    /**
-    * Stops a thread to track the status of the Task. Should be called in the execute() method.
+    * Stops tracking the status of the Task. Should be called in the execute() method.
     */
    protected synchronized void stopStatusTracking() {
       if (statusTrackingOn()) {
@@ -703,80 +719,88 @@ public abstract class Task extends Command implements Runnable {
 
    private boolean wait(TaskRunInfo info) {
       boolean interrupted = false;
-      synchronized (info.TaskWaiting) {
-         logMessage(Level.INFO, "Before taking resource: " + info);
-         info.setTaskWaiting(); // Each task is put into a waiting state...
-         logMessage(Level.INFO, "After setting wait to true: " + info);
-         while (true) {
-            if (!info.maxActiveTasksReached()) { // Continuous test to see when the number of active tasks falls below the maximum...
-               info.activateThread(this); // Task is activated and released from waiting.
-               logMessage(Level.INFO, "After taking resource: " + info);
-               break;
-            }
-         }
+      logMessage(Level.INFO, "Before taking resource: " + info);
+      try {
+         info.activateThread(this); // Blocks until the task is activated and released from waiting.
+         logMessage(Level.INFO, "After taking resource: " + info);
+      }
+      catch (InterruptedException ex) {
+         logMessage(Level.INFO, "Interrupted while waiting for resource: " + info);
+         interrupted = true;
       }
       return (interrupted);
    }
 
+   /*
+    * Calls the task's updateStatus() every SleepTime ms. It doesn't have a thread of its own:
+    * it's run by the shared Timer scheduler, which hands each update to ThreadMonitor's
+    * execution backend so a slow updateStatus() can't hold up other timers.
+    */
    private class StatusTracker implements Runnable {
 
       private final Task MyTask;
       private final long SleepTime;
-      private boolean Running;
-      private final String statusThreadId; // the id given by ThreadMonitor of the thread running this task.
+      private volatile boolean Running;
+      private final AtomicBoolean Updating = new AtomicBoolean(false); // skips a tick if the last update hasn't finished.
+      private final ScheduledFuture<?> Tick;
 
       private StatusTracker(Task task, long sleep_time) {
          outputDebugStatement("Sleep intervals set to: [" + sleep_time + "]");
          SleepTime = sleep_time; // 5 seconds by default...
          MyTask = task;
-
-         String thread_name = "StatusThread_" + task.getID();
-         statusThreadId = ThreadMonitor.startNewThread(this, Thread.MIN_PRIORITY + 1);
+         Running = true;
+         Tick = Timer.scheduleAtFixedRate(this, SleepTime);
       }
 
       /**
-       * Implements the Runnable interface.
+       * Implements the Runnable interface; run every SleepTime ms by the shared scheduler.
        */
       @Override
       public void run() {
-         Running = true;
-         while (Running) {
-            try {
-               outputDebugStatement("Going to sleep.");
-               Thread.sleep(SleepTime);
-               if (MyTask != null && (MyTask.isNotRunning() || MyTask.isRunning())) {
-                  // outputDebugStatement("Updating status.");
-                  MyTask.updateStatus();
+         if (!Running) {
+            return;
+         }
+
+         if (MyTask.isNotRunning() || MyTask.isRunning()) {
+            if (Updating.compareAndSet(false, true)) {
+               Runnable update = new Runnable() {
+
+                  @Override
+                  public void run() {
+                     try {
+                        if (Running) {
+                           MyTask.updateStatus();
+                        }
+                     }
+                     catch (RuntimeException ex) {
+                        logMessage(Level.WARNING, "Status update failed.", ex);
+                     }
+                     finally {
+                        Updating.set(false);
+                     }
+                  }
+               };
+
+               Executor executor = ThreadMonitor.getExecutor();
+               if (executor != null) {
+                  executor.execute(update);
                }
                else {
-                  outputDebugStatement("Task[" + MyTask.getID() + "] not running or queued; status[" + MyTask.State + "].");
-                  Running = false;
+                  update.run();
                }
             }
-            catch (InterruptedException ex) {
-               outputDebugStatement("Interrupt Exception.");
-               Running = false;
-               outputDebugStatement("Setting 'running' to false.");
-            }
          }
-      }
-
-      public void interrupt() {
-         outputDebugStatement("START request thread interrupt.");
-         ThreadMonitor.stopThread(statusThreadId);
-         outputDebugStatement("END request thread interrupt.");
-
-         if (Running) {
-            Running = false;
-            outputDebugStatement("Setting 'running' to false.");
+         else {
+            outputDebugStatement("Task[" + MyTask.getID() + "] not running or queued; status[" + MyTask.State + "].");
+            interrupt();
          }
       }
 
-      /**
-       * Returns the StatusTracker's thread id assigned to it by the ThreadMonitor. Use this to query the ThreadMonitor about this Task.
-       */
-      public String getStatusThreadId() {
-         return statusThreadId;
+      public void interrupt() {
+         outputDebugStatement("START request status tracking stop.");
+         Running = false;
+         Tick.cancel(false);
+         outputDebugStatement("END request status tracking stop.");
       }
 
       // This one is for this private class only.
@@ -1,11 +1,25 @@
 package com.jc.command.task;
 
+import java.util.ArrayDeque;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.jc.util.FileSystem;
 
+/*
+ * Holds the limit on the number of tasks of a class that may run at once, and hands
+ * out the permits to run. Tasks waiting for a permit block, rather than spin, and are
+ * let through in the order they arrived; a waiting task that is interrupted gives up
+ * its place. Since the limit can be changed at any time, the permits are counted here
+ * rather than held in a Semaphore.
+ */
+
 public class TaskRunInfo {
 
    private final AtomicInteger NumActiveTasks = new AtomicInteger(0);
@@ -14,7 +28,13 @@ public class TaskRunInfo {
    private final String ClassName; // For debugging purposes, the class name associated with this object.
    private final Vector<Task> ActiveThreads = new Vector<Task>();
 
-   AtomicBoolean TaskWaiting = new AtomicBoolean(false);
+   private final ReentrantLock PermitLock = new ReentrantLock(true);
+   private final Condition PermitReleased = PermitLock.newCondition();
+   private final ArrayDeque<Task> WaitingTasks = new ArrayDeque<Task>(); // guarded by PermitLock, in arrival order.
+
+   private final AtomicLong NumWaits = new AtomicLong(0);
+   private final AtomicLong TotalWaitTime = new AtomicLong(0); // ns
+   private final AtomicLong MaxWaitTime = new AtomicLong(0); // ns
 
    TaskRunInfo(String classname) {
       ClassName = classname;
@@ -24,10 +44,6 @@ public class TaskRunInfo {
       return (NumActiveTasks.get() >= MaxActiveTaskLimit.get());
    }
 
-   void setTaskWaiting() {
-      TaskWaiting.compareAndSet(false, true);
-   }
-
    String getTaskClassName() {
       return (ClassName);
    }
@@ -42,21 +58,134 @@ public class TaskRunInfo {
 
    void setMaxActiveTaskLimit(int max_num) {
       MaxActiveTaskLimit.set(max_num);
+
+      // a raised limit may let waiting tasks through...
+      PermitLock.lock();
+      try {
+         PermitReleased.signalAll();
+      }
+      finally {
+         PermitLock.unlock();
+      }
    }
 
-   int getMaxActiveTaskLimit() {
+   public int getMaxActiveTaskLimit() {
       return (MaxActiveTaskLimit.get());
    }
 
+   /**
+    * Blocks until the task can run, then counts it as active. Tasks are let through in the
+    * order they asked. If the waiting thread is interrupted the task gives up its place and
+    * InterruptedException is thrown.
+    */
+   void activateThread(final Task atask) throws InterruptedException {
+      long start = System.nanoTime();
+      PermitLock.lock();
+      try {
+         WaitingTasks.addLast(atask);
+         try {
+            // On a ForkJoinPool the pool makes up for the blocked worker, so waiting tasks can't use up the pool.
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+
+               @Override
+               public boolean block() throws InterruptedException {
+                  if (!isReleasable()) {
+                     PermitReleased.await();
+                  }
+                  return isReleasable();
+               }
+
+               @Override
+               public boolean isReleasable() {
+                  return WaitingTasks.peekFirst() == atask && !maxActiveTasksReached();
+               }
+            });
+         }
+         catch (InterruptedException ex) {
+            WaitingTasks.remove(atask);
+            PermitReleased.signalAll(); // in case this task was next in line...
+            throw ex;
+         }
+         WaitingTasks.removeFirst();
+         NumActiveTasks.incrementAndGet();
+         ActiveThreads.add(atask);
+         PermitReleased.signalAll(); // the next in line may also fit under the limit.
+      }
+      finally {
+         PermitLock.unlock();
+      }
+      recordWait(System.nanoTime() - start);
+   }
+
    void deactivateThread(Task atask) {
       ActiveThreads.remove(atask);
       NumActiveTasks.decrementAndGet(); // decrement task count
+
+      PermitLock.lock();
+      try {
+         PermitReleased.signalAll();
+      }
+      finally {
+         PermitLock.unlock();
+      }
+   }
+
+   private void recordWait(long wait_time) {
+      NumWaits.incrementAndGet();
+      TotalWaitTime.addAndGet(wait_time);
+      long max = MaxWaitTime.get();
+      while (wait_time > max && !MaxWaitTime.compareAndSet(max, wait_time)) {
+         max = MaxWaitTime.get();
+      }
+   }
+
+   /**
+    * Returns the number of tasks currently running under this limit.
+    */
+   public int getNumActiveTasks() {
+      return (NumActiveTasks.get());
+   }
+
+   /**
+    * Returns the number of tasks currently waiting to run.
+    */
+   public int getNumWaitingTasks() {
+      PermitLock.lock();
+      try {
+         return (WaitingTasks.size());
+      }
+      finally {
+         PermitLock.unlock();
+      }
+   }
+
+   /**
+    * Returns the number of tasks that have been let through to run, whether or not they had to wait.
+    */
+   public long getNumWaits() {
+      return (NumWaits.get());
+   }
+
+   /**
+    * Returns the total time, in ms, tasks have spent waiting to run.
+    */
+   public long getTotalWaitTime() {
+      return (TimeUnit.NANOSECONDS.toMillis(TotalWaitTime.get()));
+   }
+
+   /**
+    * Returns the longest time, in ms, any task has spent waiting to run.
+    */
+   public long getMaxWaitTime() {
+      return (TimeUnit.NANOSECONDS.toMillis(MaxWaitTime.get()));
    }
 
-   void activateThread(Task atask) {
-      NumActiveTasks.incrementAndGet();
-      ActiveThreads.add(atask);
-      TaskWaiting.compareAndSet(true, false);
+   /**
+    * Returns the average time, in ms, tasks have spent waiting to run.
+    */
+   public double getAverageWaitTime() {
+      long num_waits = NumWaits.get();
+      return (num_waits == 0 ? 0.0 : TotalWaitTime.get() / (num_waits * 1000000.0));
    }
 
    String outputActiveThreads() {
@@ -74,7 +203,7 @@ public class TaskRunInfo {
 
    @Override
    public String toString() {
-      return ("Waiting[" + TaskWaiting + "] Active[" + NumActiveTasks + "] MaxTasks[" + MaxActiveTaskLimit + "] Exclusive[" + Exclusive + "] TaskClass["
-            + ClassName + "]");
+      return ("Waiting[" + getNumWaitingTasks() + "] Active[" + NumActiveTasks + "] MaxTasks[" + MaxActiveTaskLimit + "] Exclusive[" + Exclusive
+            + "] AvgWait[" + getAverageWaitTime() + "ms] MaxWait[" + getMaxWaitTime() + "ms] TaskClass[" + ClassName + "]");
    }
 }
@@ -7,35 +7,74 @@ import java.lang.management.ThreadMXBean;
 import java.util.Hashtable;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 
 import com.jc.log.Logger;
 import com.jc.util.ConfigInfo;
 import com.jc.util.FileSystem;
 
+/*
+ * Starts and keeps track of the threads that run jobs and tasks, logging blocked and
+ * deadlocked ones. Work handed to submit(), such as Task.start(), runs on the execution
+ * backend, which is chosen with the threadMonitor.executor property:
+ * 
+ *    pool    - (default) a bounded work-stealing pool of threadMonitor.poolSize threads,
+ *              4 per processor with a minimum of 16 if not set.
+ *    virtual - a virtual thread per task on JDKs that support them, otherwise the pool.
+ *    thread  - a new thread per task, as before the backend existed.
+ * 
+ * setExecutor() plugs in any other Executor. Pooled work is tracked like a thread while it
+ * runs, under its own id and with the worker renamed to it, so monitoring, interrupts and
+ * the deadlock checks work the same either way. Work that waits on other work for long
+ * periods should use startNewThread() so it can't use up the pool.
+ */
+
 public class ThreadMonitor implements Runnable {
 
    public final static String THREAD_ID_PREFIX = "THREAD_";
 
-   private static Hashtable<String, ThreadVar> THREADS = new Hashtable<>();
+   private static ConcurrentHashMap<String, ThreadVar> THREADS = new ConcurrentHashMap<>();
    private static ThreadMonitor SELF;
    private static long MAX_THREAD_RUNTIME = 0;
    private static String MONITOR_THREAD_ID; // the id given by ThreadMonitor of the thread running the ThreadMonitor.
+   private static volatile Executor EXECUTOR; // null runs each submitted task on a new thread.
 
    private final static Random RANDOM_GENERATOR = new Random();
 
    static {
       SELF = new ThreadMonitor();
 
+      int pool_size = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+      String executor = "pool";
       try {
          ConfigInfo info = ConfigInfo.getInstance();
          if (info.hasProperty("threadMonitor.maxThreadRuntime")) {
             MAX_THREAD_RUNTIME = info.getPropertyAsLong("threadMonitor.maxThreadRuntime");
          }
+         if (info.hasProperty("threadMonitor.poolSize")) {
+            pool_size = info.getPropertyAsInteger("threadMonitor.poolSize");
+         }
+         if (info.hasProperty("threadMonitor.executor")) {
+            executor = info.getProperty("threadMonitor.executor").trim().toLowerCase();
+         }
       }
       catch (FileNotFoundException ex) {
          Logger.log(ThreadMonitor.class, Level.SEVERE, ex);
       }
+
+      if (executor.equals("virtual")) {
+         EXECUTOR = newVirtualThreadExecutor();
+         if (EXECUTOR == null) {
+            Logger.log(ThreadMonitor.class, Level.WARNING, "Virtual threads aren't supported by this JDK, using a pool of " + pool_size + " threads.");
+         }
+      }
+      if (EXECUTOR == null && !executor.equals("thread")) {
+         EXECUTOR = newWorkStealingPool(pool_size);
+      }
    }
 
    private boolean Running;
@@ -53,13 +92,71 @@ public class ThreadMonitor implements Runnable {
       return MONITOR_THREAD_ID;
    }
 
-   public static String startNewThread(Runnable runnable, int priority) {
-      //      String id = THREAD_ID_PREFIX + Math.abs(ThreadLocalRandom.current().nextInt());
-      String id = THREAD_ID_PREFIX + Math.abs(RANDOM_GENERATOR.nextInt());
+   /**
+    * Sets the execution backend that submit() runs work on; null starts a new thread for each.
+    */
+   public static void setExecutor(Executor executor) {
+      EXECUTOR = executor;
+   }
 
-      // DEV NOTE: more unique id by using String uniqueID = UUID.randomUUID().toString();
-      //     though less human readable for logging purposes...
+   public static Executor getExecutor() {
+      return EXECUTOR;
+   }
+
+   /**
+    * Returns a bounded work-stealing pool of daemon threads. Tasks that block waiting for a
+    * TaskRunInfo permit don't count against the pool's size while they wait.
+    */
+   public static ForkJoinPool newWorkStealingPool(int pool_size) {
+      if (pool_size < 1) {
+         throw new IllegalArgumentException("Pool size must be greater than 0; pool size = " + pool_size + ".");
+      }
+      return new ForkJoinPool(pool_size, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+   }
 
+   /**
+    * Returns an executor that starts a virtual thread per task, or null if the JDK doesn't have them.
+    */
+   public static Executor newVirtualThreadExecutor() {
+      try {
+         return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      }
+      catch (ReflectiveOperationException ex) {
+         return null;
+      }
+   }
+
+   /**
+    * Runs the runnable on the execution backend, returning the id used to query and stop it
+    * just as for startNewThread(). The priority is applied to pooled platform threads only
+    * while the runnable runs.
+    */
+   public static String submit(Runnable runnable, int priority) {
+      return submit(newThreadId(), runnable, priority);
+   }
+
+   // For a runnable that needs to know its id before it starts running, see newThreadId().
+   static String submit(String id, Runnable runnable, int priority) {
+      Executor executor = EXECUTOR;
+      if (executor == null) {
+         return startNewThread(id, runnable, priority);
+      }
+
+      ThreadVar a_thread = new ThreadVar(id);
+      addThreadVar(id, a_thread);
+      executor.execute(new PooledRunnable(id, a_thread, runnable, priority));
+
+      if (SELF != null) {
+         SELF.logMessage(Level.INFO, id + " submitted to " + executor.getClass().getSimpleName() + ".");
+      }
+      return id;
+   }
+
+   public static String startNewThread(Runnable runnable, int priority) {
+      return startNewThread(newThreadId(), runnable, priority);
+   }
+
+   private static String startNewThread(String id, Runnable runnable, int priority) {
       if (SELF != null) {
          SELF.logMessage(Level.INFO, "Starting new thread for " + id + " ....");
       }
@@ -82,6 +179,14 @@ public class ThreadMonitor implements Runnable {
       return id;
    }
 
+   static String newThreadId() {
+      //      String id = THREAD_ID_PREFIX + Math.abs(ThreadLocalRandom.current().nextInt());
+      return THREAD_ID_PREFIX + Math.abs(RANDOM_GENERATOR.nextInt());
+
+      // DEV NOTE: more unique id by using String uniqueID = UUID.randomUUID().toString();
+      //     though less human readable for logging purposes...
+   }
+
    public static void stopThread(String id) {
       ThreadVar a_thread = getThreadVar(id);
       if (a_thread != null) {
@@ -154,12 +259,15 @@ public class ThreadMonitor implements Runnable {
    }
 
    private void checkThreads() {
-      synchronized (THREADS) {
+      synchronized (THREADS) { // only to keep the checks from overlapping; the map itself is concurrent.
          Object[] keys = THREADS.keySet().toArray();
          if (keys.length > 1) {
             Hashtable<String, ThreadVar> blocked = new Hashtable<>();
             for (Object key : keys) {
                ThreadVar a_thread = THREADS.get(key);
+               if (a_thread == null) {
+                  continue; // pooled work that finished since the keys were taken.
+               }
                String thread_name = a_thread.getName();
                if (!thread_name.equals(MONITOR_THREAD_ID)) {
                   ThreadStatus status = a_thread.getStatus();
@@ -217,13 +325,18 @@ public class ThreadMonitor implements Runnable {
       Object[] keys = blocked.keySet().toArray();
       for (Object key : keys) {
          ThreadVar blocked_thread = blocked.get(key);
-         ThreadVar blocking_thread = getBlockingThread(blocked_thread.MyThread);
+         Thread blocked_t = blocked_thread.get();
+         if (blocked_t == null) {
+            continue; // finished since it was found blocked.
+         }
+         ThreadVar blocking_thread = getBlockingThread(blocked_t);
 
-         StackTraceElement[] elements = blocked_thread.MyThread.getStackTrace();
+         StackTraceElement[] elements = blocked_t.getStackTrace();
          String blocked_method = elements[0].getClassName() + "." + elements[0].getMethodName();
 
-         if (blocking_thread != null) {
-            StackTraceElement[] elements2 = blocking_thread.MyThread.getStackTrace();
+         Thread blocking_t = blocking_thread != null ? blocking_thread.get() : null;
+         if (blocking_t != null) {
+            StackTraceElement[] elements2 = blocking_t.getStackTrace();
             String blocking_method = elements2[0].getClassName() + "." + elements2[0].getMethodName();
 
             sb.append(blocked_thread.getName() + " is being blocked at: " + blocked_method + "; RT[" + blocked_thread.getRuntime() + "] STATE["
@@ -250,7 +363,7 @@ public class ThreadMonitor implements Runnable {
 
       if (blocking_threads.size() > 0 && MAX_THREAD_RUNTIME > 0) {
          for (ThreadVar blocking_thread : blocking_threads) {
-            blocking_thread.MyThread.interrupt();
+            blocking_thread.interrupt();
             logMessage(Level.INFO, "Requested interrupt on " + blocking_thread.getName() + ".");
          }
       }
@@ -273,8 +386,9 @@ public class ThreadMonitor implements Runnable {
          String key = (String) keys[i];
 
          ThreadVar a_thread = THREADS.get(key);
-         if (!a_thread.getName().equals(MONITOR_THREAD_ID) && !a_thread.getName().equals(blocked_thread.getName())) {
-            StackTraceElement[] stack = a_thread.MyThread.getStackTrace();
+         Thread thread = a_thread != null ? a_thread.get() : null;
+         if (thread != null && !a_thread.getName().equals(MONITOR_THREAD_ID) && !a_thread.getName().equals(blocked_thread.getName())) {
+            StackTraceElement[] stack = thread.getStackTrace();
             Thread.State state = a_thread.getState();
             for (StackTraceElement element : stack) {
                String thread_location = element.getClassName() + "." + element.getMethodName();
@@ -289,12 +403,9 @@ public class ThreadMonitor implements Runnable {
       return (blocking_thread);
    }
 
-   private synchronized static ThreadVar getThreadVar(String id) {
-      ThreadVar a_thread = null;
-      if (THREADS.containsKey(id)) {
-         a_thread = THREADS.get(id);
-      }
-      else {
+   private static ThreadVar getThreadVar(String id) {
+      ThreadVar a_thread = (id != null ? THREADS.get(id) : null);
+      if (a_thread == null) {
          // log threadvar not found for id
          if (SELF != null) {
             SELF.logMessage(Level.WARNING, "WARNING: No thread var was found for " + id + " while trying to retrieve it.");
@@ -303,54 +414,68 @@ public class ThreadMonitor implements Runnable {
       return (a_thread);
    }
 
-   private synchronized static void addThreadVar(String id, ThreadVar a_thread) {
-      if (!THREADS.containsKey(id)) {
-         THREADS.put(id, a_thread);
+   private static void addThreadVar(String id, ThreadVar a_thread) {
+      if (THREADS.putIfAbsent(id, a_thread) == null) {
          if (SELF != null) {
             SELF.logMessage(Level.INFO, "Added " + id + " to THREADS.");
          }
       }
       else {
-         if (SELF != null) {
-            ThreadVar existing_thread = THREADS.get(id);
-            SELF.logMessage(Level.INFO,
-                  "Duplicate thread, " + id + ", found; new[" + a_thread.get().getId() + "] existing[" + existing_thread.get().getId() + "].");
-         }
-
-         // duplicate..
-         ThreadVar dup_thread = THREADS.get(id);
-         if (!dup_thread.MyThread.isAlive()) {
-            dup_thread.clear();
-            THREADS.put(id, a_thread);
+         synchronized (ThreadMonitor.class) {
+            ThreadVar dup_thread = THREADS.get(id);
             if (SELF != null) {
-               SELF.logMessage(Level.INFO, "Duplicate thread, " + id + ", not alive, replacing it with a new ThreadVar object.");
+               SELF.logMessage(Level.INFO, "Duplicate thread, " + id + ", found; new[" + a_thread.getThreadId() + "] existing["
+                     + (dup_thread != null ? dup_thread.getThreadId() : "n/a") + "].");
+            }
+
+            // duplicate..
+            if (dup_thread == null || !dup_thread.isAlive()) {
+               if (dup_thread != null) {
+                  dup_thread.clear();
+               }
+               THREADS.put(id, a_thread);
+               if (SELF != null) {
+                  SELF.logMessage(Level.INFO, "Duplicate thread, " + id + ", not alive, replacing it with a new ThreadVar object.");
+               }
+            }
+            else {
+               // log duplicate was still alive...
+               Exception ex = new Exception("Duplicate thread, " + id + ", alive.... ignoring.");
+               String outfile = Logger.saveStackTrace(ex);
+               String message = "Duplicate thread, " + id + ", alive.... ignoring. See the out file for more details: " + outfile;
+               Logger.log(ThreadMonitor.class, Level.SEVERE, message);
             }
-         }
-         else {
-            // log duplicate was still alive...
-            Exception ex = new Exception("Duplicate thread, " + id + ", alive.... ignoring.");
-            String outfile = Logger.saveStackTrace(ex);
-            String message = "Duplicate thread, " + id + ", alive.... ignoring. See the out file for more details: " + outfile;
-            Logger.log(ThreadMonitor.class, Level.SEVERE, message);
          }
       }
    }
 
    /**
     * Class that maintains reference to current thread under separate synchronization control.
+    * For pooled work the thread is only set while the work is running on it.
     */
    static class ThreadVar {
 
+      private final String Name;
+      private final boolean Pooled;
       private Thread MyThread;
+      private boolean Finished; // pooled work only...
       private final long StartTime;
       private boolean InterruptedRequested;
       private long TimeMarker;
 
       ThreadVar(Thread t) {
+         Name = t.getName();
+         Pooled = false;
          MyThread = t;
          StartTime = System.currentTimeMillis();
       }
 
+      ThreadVar(String id) {
+         Name = id;
+         Pooled = true;
+         StartTime = System.currentTimeMillis();
+      }
+
       synchronized Thread get() {
          return (MyThread);
       }
@@ -359,6 +484,20 @@ public class ThreadMonitor implements Runnable {
          MyThread = null;
       }
 
+      // Pooled work has started on the thread; passes on an interrupt requested while it was queued.
+      synchronized void attach(Thread t) {
+         MyThread = t;
+         if (InterruptedRequested) {
+            t.interrupt();
+         }
+      }
+
+      // Pooled work has finished; the thread goes back to the pool and can't be interrupted through this.
+      synchronized void detach() {
+         MyThread = null;
+         Finished = true;
+      }
+
       // This method show the amount of time since the thread was added to the monintor
       // and is not an indication of the amount of time the thread has been running.
       long getRuntime() {
@@ -374,18 +513,41 @@ public class ThreadMonitor implements Runnable {
       }
 
       String getName() {
-         return (MyThread.getName());
+         return (Name);
+      }
+
+      String getThreadId() {
+         Thread t = get();
+         return (t != null ? String.valueOf(t.getId()) : "n/a");
+      }
+
+      synchronized boolean isQueued() {
+         return (Pooled && !Finished && MyThread == null);
+      }
+
+      boolean isAlive() {
+         Thread t = get();
+         return (t != null ? t.isAlive() : isQueued());
       }
 
       Thread.State getState() {
-         return (MyThread.getState());
+         Thread t = get();
+         if (t == null) {
+            return (isQueued() ? Thread.State.NEW : Thread.State.TERMINATED);
+         }
+         return (t.getState());
       }
 
       ThreadStatus getStatus() {
+         Thread t = get();
+         if (t == null) {
+            return (isQueued() ? ThreadStatus.ALIVE : ThreadStatus.DEAD);
+         }
+
          ThreadStatus status = ThreadStatus.ALIVE;
-         boolean alive = MyThread.isAlive();
-         boolean interrupted = MyThread.isInterrupted();
-         boolean terminated = MyThread.getState().equals(Thread.State.TERMINATED);
+         boolean alive = t.isAlive();
+         boolean interrupted = t.isInterrupted();
+         boolean terminated = t.getState().equals(Thread.State.TERMINATED);
 
          if ((!alive && !interrupted && !InterruptedRequested) || (!alive && !interrupted && InterruptedRequested)) {
             if (terminated) {
@@ -413,11 +575,52 @@ public class ThreadMonitor implements Runnable {
          return (InterruptedRequested);
       }
 
-      void interrupt() {
+      synchronized void interrupt() {
          if (MyThread != null) {
             MyThread.interrupt();
             InterruptedRequested = true;
          }
+         else if (isQueued()) {
+            InterruptedRequested = true; // passed on when it starts running.
+         }
+      }
+   }
+
+   /**
+    * Runs submitted work on a pooled thread, tracking the thread under the work's id while it runs.
+    */
+   private static class PooledRunnable implements Runnable {
+
+      private final String Id;
+      private final ThreadVar MyThreadVar;
+      private final Runnable MyRunnable;
+      private final int Priority;
+
+      private PooledRunnable(String id, ThreadVar thread_var, Runnable runnable, int priority) {
+         Id = id;
+         MyThreadVar = thread_var;
+         MyRunnable = runnable;
+         Priority = priority;
+      }
+
+      @Override
+      public void run() {
+         Thread t = Thread.currentThread();
+         String name = t.getName();
+         int priority = t.getPriority();
+         try {
+            t.setName(Id);
+            t.setPriority(Priority);
+            MyThreadVar.attach(t);
+            MyRunnable.run();
+         }
+         finally {
+            MyThreadVar.detach();
+            Thread.interrupted(); // don't pass an interrupt meant for this work on to the next.
+            t.setName(name);
+            t.setPriority(priority);
+            THREADS.remove(Id, MyThreadVar);
+         }
       }
    }
 
@@ -20,6 +20,7 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 import javax.naming.NamingException;
@@ -34,7 +35,10 @@ import com.jc.util.Timer.TimerListener;
 
 public class DBConnection implements DatasourcePropKeys, TimerListener {
 
+   public final static int DEFAULT_FETCH_SIZE = 1000;
+
    private static int MAX_INACTIVE_MINUTES = 1; // each JDBC connection can be inactive for only these many minutes
+   private static int MAX_CACHED_STATEMENTS = 50; // number of idle prepared statements kept open for each JDBC connection
 
    private final static Random RANDOM_GENERATOR = new Random();
 
@@ -45,8 +49,16 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
 
    private Connection AConnection;
    private Timer ATimer;
+   private StatementCache StmtCache; // bound to AConnection...
    private boolean InUse; // Indicates if the DBConnection object is in the process of being used to run a SQL query.
-   private boolean Active; // Indicates if the DBConnection has been given out by the DBConnection Pool for use. Active = true (yes); Active = false (no).
+   private final AtomicBoolean Active = new AtomicBoolean(false); // Indicates if the DBConnection has been given out by the DBConnection Pool for use.
+
+   // Set by the DBConnectionPool for validation and leak detection...
+   private volatile long ActivatedTime;
+   private volatile String ActivatedBy;
+   private volatile long ReleasedTime;
+
+   DBConnectionPool.ConnectionQueue PoolQueue;
 
    private final String ConnectionId;
 
@@ -157,6 +169,39 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
       MAX_INACTIVE_MINUTES = num_mins;
    }
 
+   /**
+    * Sets the number of prepared statements kept open for reuse on each JDBC connection, defaults to 50; 0 turns statement caching off. Only applies to JDBC
+    * connections opened after it's called.
+    */
+   public static void setStatementCacheSize(int size) {
+      if (size < 0) {
+         throw new IllegalArgumentException("Statement cache size must be 0 or greater; size = " + size + ".");
+      }
+      MAX_CACHED_STATEMENTS = size;
+   }
+
+   /**
+    * Sets the maximum number of DBConnections that can be in use at one time for each username/datasource, defaults to 50. Only applies to username/datasource
+    * combinations that haven't been used yet.
+    */
+   public static void setMaxPoolSize(int maxPoolSize) {
+      DBConnectionPool.setMaxPoolSize(maxPoolSize);
+   }
+
+   /**
+    * Sets the number of ms getInstance() waits for a DBConnection when all of them are in use, defaults to 30 seconds.
+    */
+   public static void setAcquireTimeout(long timeout) {
+      DBConnectionPool.setAcquireTimeout(timeout);
+   }
+
+   /**
+    * Sets the number of ms a DBConnection can be out of the pool before it's logged as a possible leak, defaults to 10 minutes; 0 turns it off.
+    */
+   public static void setLeakDetectionThreshold(long threshold) {
+      DBConnectionPool.setLeakDetectionThreshold(threshold);
+   }
+
    /**
     * Forces the connection closed, turning off the inactivity timer, and removing it from the cached connections.
     * 
@@ -167,6 +212,7 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
          // First remove the connection store to assure that no stale connections are reused.
          DBConnectionPool.removeDBConnection(getID());
          if (AConnection != null && !AConnection.isClosed()) {
+            closeStatementCache();
             AConnection.close();
             AConnection = null;
             stopTimer();
@@ -182,11 +228,73 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
    }
 
    boolean isActive() {
-      return (Active);
+      return (Active.get());
+   }
+
+   // Returns false if the DBConnection was already active.
+   boolean activate() {
+      if (Active.compareAndSet(false, true)) {
+         ActivatedTime = System.currentTimeMillis();
+         ActivatedBy = Thread.currentThread().getName();
+         return true;
+      }
+      return false;
+   }
+
+   // Returns false if the DBConnection wasn't active, i.e. it's already been released.
+   boolean deactivate() {
+      if (Active.compareAndSet(true, false)) {
+         ReleasedTime = System.currentTimeMillis();
+         return true;
+      }
+      return false;
    }
 
-   void setActive(boolean active) {
-      Active = active;
+   // Closes the JDBC connection of a DBConnection the pool took back because it wasn't released.
+   void closeAbandoned() {
+      Connection conn = AConnection;
+      if (conn != null) {
+         try {
+            closeStatementCache();
+            conn.close();
+            logMessage(Level.WARNING, "Closed JDBC connection " + conn.hashCode() + ", it was taken from the pool and not released.");
+         }
+         catch (SQLException ex) {
+            logException(ex);
+         }
+      }
+   }
+
+   long getActivatedTime() {
+      return ActivatedTime;
+   }
+
+   String getActivatedBy() {
+      return ActivatedBy;
+   }
+
+   long getReleasedTime() {
+      return ReleasedTime;
+   }
+
+   /*
+    * Called by the pool before an idle DBConnection is handed out; if its JDBC connection is no longer valid
+    * it's closed so that a new one is opened when the DBConnection is used.
+    */
+   void validate(int timeoutSecs) {
+      Connection conn = AConnection;
+      if (conn != null && !inUse()) {
+         try {
+            if (!conn.isClosed() && !conn.isValid(timeoutSecs)) {
+               logMessage(Level.INFO, "JDBC connection " + conn.hashCode() + " failed validation; closing it.");
+               closeStatementCache();
+               conn.close();
+            }
+         }
+         catch (SQLException ex) {
+            logException(ex);
+         }
+      }
    }
 
    private Connection openNewConnection() throws Exception {
@@ -202,6 +310,9 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
             time = System.currentTimeMillis() - time;
 
             if (connection != null) {
+               closeStatementCache();
+               StmtCache = new StatementCache(connection, MAX_CACHED_STATEMENTS);
+
                ATimer = new Timer(Timer.ONE_MINUTE_INTERVAL * MAX_INACTIVE_MINUTES);
                ATimer.addTimerListener(this);
                // ATimer.logMessages(LOGMESSAGES);
@@ -295,18 +406,45 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
    }
 
    private void stopTimer() {
-      if (ATimer != null && ATimer.isRunning()) {
-         ATimer.stop();
+      if (ATimer != null) {
+         if (ATimer.isRunning()) {
+            ATimer.stop();
+         }
          ATimer.removeTimerListener(this);
       }
       ATimer = null;
    }
 
+   private void closeStatementCache() {
+      StatementCache cache = StmtCache;
+      if (cache != null) {
+         StmtCache = null;
+         cache.close();
+         logMessage(Level.INFO, "Closed statement cache; hits[" + cache.getHits() + "], misses[" + cache.getMisses() + "], evictions[" + cache.getEvictions() + "].");
+      }
+   }
+
+   /**
+    * Returns the number of times a prepared statement was reused from the statement cache of the current JDBC connection.
+    */
+   public long getStatementCacheHits() {
+      StatementCache cache = StmtCache;
+      return cache == null ? 0 : cache.getHits();
+   }
+
+   /**
+    * Returns the number of times a statement had to be prepared because it wasn't in the statement cache of the current JDBC connection.
+    */
+   public long getStatementCacheMisses() {
+      StatementCache cache = StmtCache;
+      return cache == null ? 0 : cache.getMisses();
+   }
+
    private void releaseConnection() {
       if (!transactionStarted()) {
          InUse = false;
          if (ATimer != null) {
-            ATimer.start(); // Use to time the connection's inactivity.
+            ATimer.start(); // Use to time the connection's inactivity, scheduled on the shared timer.
          }
          DBConnectionPool.releaseConnection(this);
       }
@@ -480,24 +618,28 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
                logDebugMessage(Level.INFO, "Start execute update, query id " + query_id + "...");
                long time = System.currentTimeMillis();
 
-               PreparedStatement stmt = conn.prepareStatement(query);
-               stmt = addParametersToStatement(parameterList, stmt);
+               PreparedStatement stmt = StmtCache.prepareStatement(query);
+               try {
+                  stmt = addParametersToStatement(parameterList, stmt);
 
-               int num_updated = stmt.executeUpdate();
-               logDebugMessage(Level.INFO, "Fished executing query id " + query_id + ", execution time: " + (System.currentTimeMillis() - time));
+                  int num_updated = stmt.executeUpdate();
+                  logDebugMessage(Level.INFO, "Fished executing query id " + query_id + ", execution time: " + (System.currentTimeMillis() - time));
 
-               if (!transactionStarted() && !auto_commit) {
-                  conn.commit();
-               }
-               db_result.setNumRowsUpdated(num_updated);
-               SQLWarning warning = stmt.getWarnings();
-               if (warning != null) {
-                  while (warning != null) {
-                     db_result.addWarning(warning.getMessage());
-                     warning = warning.getNextWarning();
+                  if (!transactionStarted() && !auto_commit) {
+                     conn.commit();
+                  }
+                  db_result.setNumRowsUpdated(num_updated);
+                  SQLWarning warning = stmt.getWarnings();
+                  if (warning != null) {
+                     while (warning != null) {
+                        db_result.addWarning(warning.getMessage());
+                        warning = warning.getNextWarning();
+                     }
                   }
                }
-               stmt.close();
+               finally {
+                  StmtCache.release(stmt);
+               }
                if (!transactionStarted() && !auto_commit) {
                   conn.setAutoCommit(true);
                }
@@ -542,6 +684,114 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
       return db_result;
    }
 
+   /**
+    * Executes the supplied SQL Insert/Update/Delete once for each of the parameter lists, sending them to the database in JDBC batches of batchSize statements.
+    * Unless a transaction has been started all of the batches are committed, or rolled back, together. The total number of rows updated is returned in the
+    * DBResult object along with, if returnGeneratedKeys is true, the keys generated for inserted rows.
+    */
+   public DBResult executeSQLBatch(String query, List<List<Object>> parameterLists, int batchSize, boolean returnGeneratedKeys) throws Exception {
+      if (batchSize < 1) {
+         throw new IllegalArgumentException("Batch size must be 1 or greater; batch size = " + batchSize + ".");
+      }
+
+      int query_id = Math.abs(RANDOM_GENERATOR.nextInt());
+      DBResult db_result = new DBResult();
+      String connection_hashcode = null;
+      if (query != null && query.length() > 0) {
+         try {
+            Connection conn = getConnection(query_id);
+            connection_hashcode = "" + conn.hashCode();
+            logDebugMessage(Level.INFO, "Got connection " + connection_hashcode + " for query id " + query_id + ".");
+
+            try {
+               db_result.startPerfTracking();
+               db_result.setQuery(query);
+               if (!transactionStarted()) {
+                  conn.setAutoCommit(false);
+               }
+
+               logDebugMessage(Level.INFO, "Start execute batch of " + parameterLists.size() + " statements, query id " + query_id + "...");
+               long time = System.currentTimeMillis();
+
+               PreparedStatement stmt = StmtCache.prepareStatement(query, returnGeneratedKeys);
+
+               try {
+                  int num_updated = 0;
+                  int num_batched = 0;
+                  for (List<Object> parameterList : parameterLists) {
+                     stmt = addParametersToStatement(parameterList, stmt);
+                     stmt.addBatch();
+                     num_batched++;
+
+                     if (num_batched == batchSize) {
+                        num_updated += executeBatch(stmt, db_result, returnGeneratedKeys);
+                        num_batched = 0;
+                     }
+                  }
+
+                  if (num_batched > 0) {
+                     num_updated += executeBatch(stmt, db_result, returnGeneratedKeys);
+                  }
+                  logDebugMessage(Level.INFO, "Fished executing query id " + query_id + ", execution time: " + (System.currentTimeMillis() - time));
+
+                  if (!transactionStarted()) {
+                     conn.commit();
+                  }
+                  db_result.setNumRowsUpdated(num_updated);
+                  SQLWarning warning = stmt.getWarnings();
+                  while (warning != null) {
+                     db_result.addWarning(warning.getMessage());
+                     warning = warning.getNextWarning();
+                  }
+               }
+               finally {
+                  StmtCache.release(stmt);
+               }
+
+               if (!transactionStarted()) {
+                  conn.setAutoCommit(true);
+               }
+            }
+            catch (SQLException sql_ex) {
+               if (!transactionStarted()) {
+                  try {
+                     conn.rollback();
+                     conn.setAutoCommit(true);
+
+                     String errorMessage = "SQL batch error occurred and a rollback was completed.";
+                     db_result.addError(new Exception(errorMessage));
+                  }
+                  catch (SQLException sql_ex2) {
+                     db_result.addError(sql_ex2);
+                  }
+               }
+               else {
+                  // don't rollback here... allow transaction manager to rollback.
+                  String errorMessage = "SQL batch error occurred during a transaction, no rollback was completed.";
+                  db_result.addError(new Exception(errorMessage));
+               }
+               db_result.addError(sql_ex);
+            }
+            db_result.stopPerfTracking();
+         }
+         catch (Exception conn_ex) {
+            db_result.addError(conn_ex);
+         }
+         finally {
+            releaseConnection();
+            logDebugMessage(Level.INFO, "Returned connection " + connection_hashcode + " for query id " + query_id + ".");
+         }
+      }
+      else {
+         String errorMessage = "SQL query was blank or otherwise invalid.";
+         db_result.addError(new Exception(errorMessage));
+      }
+
+      addToDBLog(db_result, connection_hashcode, query_id);
+
+      return db_result;
+   }
+
    /**
     * Executes the supplied SQL query returning results.
     */
@@ -574,8 +824,8 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
             ResultSet rs = null;
 
             try {
-               stmt = conn.prepareStatement(query);
-               stmt.setFetchSize(1000);
+               stmt = StmtCache.prepareStatement(query);
+               stmt.setFetchSize(DEFAULT_FETCH_SIZE);
 
                if (parameterList != null && !parameterList.isEmpty()) {
                   stmt = addParametersToStatement(parameterList, stmt);
@@ -612,14 +862,7 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
                   }
                }
 
-               if (stmt != null) {
-                  try {
-                     stmt.close();
-                  }
-                  catch (SQLException sql_ex) {
-                     processor.addError(sql_ex);
-                  }
-               }
+               StmtCache.release(stmt);
                processor.stopPerfTracking();
             }
 
@@ -644,6 +887,63 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
       return (processor);
    }
 
+   /**
+    * Executes the supplied SQL query leaving the ResultSet open so that its rows can be read one at a time as they are fetched from the database. The connection
+    * is held by the returned DBCursor until it is closed; while it is open no other query can be run on this DBConnection.
+    */
+   public DBCursor openCursor(String query, List<Object> parameterList, int fetchSize) throws Exception {
+      if (query == null || query.isEmpty()) {
+         throw new IllegalArgumentException("SQL query was blank or otherwise invalid.");
+      }
+
+      int query_id = Math.abs(RANDOM_GENERATOR.nextInt());
+
+      PreparedStatement stmt = null;
+      try {
+         Connection conn = getConnection(query_id);
+         if (!transactionStarted()) {
+            conn.setAutoCommit(false);
+         }
+
+         stmt = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+         stmt.setFetchSize(fetchSize);
+
+         if (parameterList != null && !parameterList.isEmpty()) {
+            stmt = addParametersToStatement(parameterList, stmt);
+         }
+
+         ResultSet rs = stmt.executeQuery();
+         logDebugMessage(Level.INFO, "Opened cursor on connection " + conn.hashCode() + " for query id " + query_id + ".");
+         return new DBCursor(this, stmt, rs, query_id);
+      }
+      catch (Exception ex) {
+         logMessage(Level.SEVERE, "Unable to open cursor for query id " + query_id + "; QUERY: " + query);
+         closeCursor(stmt, null, query_id);
+         throw ex;
+      }
+   }
+
+   void closeCursor(PreparedStatement stmt, ResultSet rs, int query_id) {
+      try {
+         if (rs != null) {
+            rs.close();
+         }
+         if (stmt != null) {
+            stmt.close();
+         }
+         if (!transactionStarted() && AConnection != null && !AConnection.isClosed()) {
+            AConnection.setAutoCommit(true);
+         }
+         logDebugMessage(Level.INFO, "Closed cursor for query id " + query_id + ".");
+      }
+      catch (Exception ex) {
+         logException(ex);
+      }
+      finally {
+         releaseConnection();
+      }
+   }
+
    /**
     * Executes the supplied named database stored procedure returning outputs that match the out_types supplied. out_types should be a java.sql.Types or vendor specific type, like oracle.jdbc.driver.OracleTypes. The resulting object returned will contain statistical and error info as well as the outputs.
     * 
@@ -683,7 +983,7 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
 
          try {
             statementTemplate = createCallProcTemplate(procedureName, numParams);
-            CallableStatement statement = conn.prepareCall(statementTemplate);
+            CallableStatement statement = StmtCache.prepareCall(statementTemplate);
             setStatementParameters(statement, inParams, outTypes, false);
             result = executeCallableStatement(statement, inParams, outTypes, false, query_id);
          }
@@ -856,12 +1156,7 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
             }
          }
 
-         try {
-            statement.close();
-         }
-         catch (SQLException e) {
-            result.addError(e);
-         }
+         StmtCache.release(statement);
          result.stopPerfTracking();
       }
 
@@ -948,6 +1243,32 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
       result.setOutParameter(outParam, columnName, sqlType, cls, columnIndex);
    }
 
+   private int executeBatch(PreparedStatement stmt, DBResult db_result, boolean returnGeneratedKeys) throws SQLException {
+      int num_updated = 0;
+      int[] counts = stmt.executeBatch();
+      for (int count : counts) {
+         if (count > 0) {
+            num_updated += count;
+         }
+         else if (count == Statement.SUCCESS_NO_INFO) {
+            num_updated++; // driver ran the statement but didn't report a count...
+         }
+      }
+
+      if (returnGeneratedKeys) {
+         ResultSet keys = stmt.getGeneratedKeys();
+         try {
+            while (keys.next()) {
+               db_result.addGeneratedKey(keys.getObject(1));
+            }
+         }
+         finally {
+            keys.close();
+         }
+      }
+      return num_updated;
+   }
+
    private PreparedStatement addParametersToStatement(List<Object> parameterList, PreparedStatement stmt) throws Exception {
       int numParams = parameterList.size();
       for (int i = 0; i < numParams; i++) {
@@ -1202,14 +1523,14 @@ public class DBConnection implements DatasourcePropKeys, TimerListener {
          if (inUse()) {
             // This can only happen if the ATimer is being used to time
             // the connection's activity...
-            ATimer.stop();
-            ATimer.start();
+            ATimer.start(); // restarts the timer...
             logDebugMessage(Level.INFO, "ActivityTimer for connection, " + AConnection.hashCode() + ", expired; restarting timer.");
          }
          else {
             // This can only happen if the conn_info.ATimer is being used to time
             // the connection's inactivity...
             try {
+               closeStatementCache();
                AConnection.close();
                if (AConnection.isClosed()) {
                   AConnection = null;
@@ -1,49 +1,90 @@
 package com.jc.db;
 
-import java.util.Calendar;
-import java.util.Hashtable;
-import java.util.Vector;
+import java.sql.SQLTransientConnectionException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import com.jc.log.Logger;
 import com.jc.util.Timer;
 import com.jc.util.Timer.TimerListener;
 
+/*
+ * Pool of DBConnection objects, one ConnectionQueue per connection id (username:datasource).
+ * Each queue keeps its idle DBConnections in a lock-free deque, the most recently released
+ * one is handed out first so its JDBC connection is the one most likely still open. The
+ * number of DBConnections given out at a time for a connection id is bounded by a fair
+ * semaphore; when all of them are in use callers wait, in order, up to the acquire timeout.
+ *
+ * Idle DBConnections that have sat in the pool for a while have their JDBC connection
+ * validated before they're handed out; an invalid connection is closed so that a new one
+ * is opened when the DBConnection is next used. The master timer periodically drops
+ * closed idle DBConnections and reclaims any DBConnection that has been out of the pool for
+ * longer than the leak detection threshold: its JDBC connection is closed, it's removed from
+ * the pool and its permit is given back, so connections that are never released don't use
+ * up the pool.
+ */
+
 final class DBConnectionPool implements TimerListener {
 
    private final static int MAX_MASTER_TIME = 30; // number of minutes to set the master timer for before waking up to clean up closed connection.
 
-   private static final Hashtable<String, Vector<DBConnection>> DBCONNECTION_STORE;
+   private final static long VALIDATION_BYPASS_TIME = Timer.ONE_SECOND_INTERVAL * 5; // connections idle for less than this aren't validated when borrowed.
+   private final static int VALIDATION_TIMEOUT_SECS = 5;
+
+   private static int MAX_POOL_SIZE = 50; // max number of DBConnections given out at one time per connection id.
+   private static long ACQUIRE_TIMEOUT = Timer.ONE_SECOND_INTERVAL * 30;
+   private static long LEAK_DETECTION_THRESHOLD = Timer.ONE_MINUTE_INTERVAL * 10; // 0 turns leak detection off.
+
+   private static final ConcurrentMap<String, ConnectionQueue> DBCONNECTION_STORE;
 
    private static DBConnectionPool SELF;
 
    static {
-      DBCONNECTION_STORE = new Hashtable<String, Vector<DBConnection>>();
+      DBCONNECTION_STORE = new ConcurrentHashMap<String, ConnectionQueue>();
       SELF = new DBConnectionPool();
    }
 
-   private Timer MasterTimer; // A timer to close down the DBConnection object before Midnight each night.
+   private Timer MasterTimer; // A timer to periodically clean up closed DBConnection objects.
 
    private DBConnectionPool() {
       startTimer();
    }
 
+   // Only applies to connection ids that haven't been used yet.
+   static void setMaxPoolSize(int maxPoolSize) {
+      if (maxPoolSize < 1) {
+         throw new IllegalArgumentException("Max pool size must be 1 or greater; max pool size = " + maxPoolSize + ".");
+      }
+      MAX_POOL_SIZE = maxPoolSize;
+   }
+
+   static void setAcquireTimeout(long timeout) {
+      ACQUIRE_TIMEOUT = timeout;
+   }
+
+   static void setLeakDetectionThreshold(long threshold) {
+      LEAK_DETECTION_THRESHOLD = threshold;
+   }
+
    static void printConnectionInfo() throws Exception {
-      String[] keys = DBCONNECTION_STORE.keySet().toArray(new String[DBCONNECTION_STORE.size()]);
-      for (String key : keys) {
+      for (String key : DBCONNECTION_STORE.keySet()) {
          printConnectionInfo(key);
       }
    }
 
    static void printConnectionInfo(String connection_id) throws Exception {
-      if (DBCONNECTION_STORE.containsKey(connection_id)) {
-         Vector<DBConnection> connections = DBCONNECTION_STORE.get(connection_id);
-         int num_connections = connections.size();
-         System.out.println("CONN_ID[" + connection_id + "] has " + num_connections + " connections.");
-         for (int j = 0; j < num_connections; j++) {
-            DBConnection conn = connections.get(j);
+      ConnectionQueue queue = DBCONNECTION_STORE.get(connection_id);
+      if (queue != null) {
+         System.out.println("CONN_ID[" + connection_id + "] has " + queue.connections.size() + " connections, " + queue.idle.size() + " idle.");
+         for (DBConnection conn : queue.connections) {
             boolean in_use = conn.inUse();
-            System.out.println("     " + conn.getID() + " IN_USE[" + in_use + "] CLOSED[" + conn.isClosed() + "]");
+            System.out.println("     " + conn.getID() + " IN_USE[" + in_use + "] ACTIVE[" + conn.isActive() + "] CLOSED[" + conn.isClosed() + "]");
          }
          System.out.println("-------------------------------------------------");
       }
@@ -51,8 +92,7 @@ final class DBConnectionPool implements TimerListener {
 
    static int getNumberOfConnections() throws Exception {
       int total_connections = 0;
-      String[] keys = DBCONNECTION_STORE.keySet().toArray(new String[DBCONNECTION_STORE.size()]);
-      for (String key : keys) {
+      for (String key : DBCONNECTION_STORE.keySet()) {
          total_connections += getNumberOfConnections(key);
       }
       return (total_connections);
@@ -60,17 +100,16 @@ final class DBConnectionPool implements TimerListener {
 
    static int getNumberOfConnections(String connection_id) throws Exception {
       int num_connections = 0;
-      if (DBCONNECTION_STORE.containsKey(connection_id)) {
-         Vector<DBConnection> connections = DBCONNECTION_STORE.get(connection_id);
-         num_connections = connections.size();
+      ConnectionQueue queue = DBCONNECTION_STORE.get(connection_id);
+      if (queue != null) {
+         num_connections = queue.connections.size();
       }
       return (num_connections);
    }
 
    static int getNumberOfInUseConnections() throws Exception {
       int num_active = 0;
-      String[] keys = DBCONNECTION_STORE.keySet().toArray(new String[DBCONNECTION_STORE.size()]);
-      for (String key : keys) {
+      for (String key : DBCONNECTION_STORE.keySet()) {
          num_active += getNumberOfInUseConnections(key);
       }
       return (num_active);
@@ -78,13 +117,10 @@ final class DBConnectionPool implements TimerListener {
 
    static int getNumberOfInUseConnections(String connection_id) throws Exception {
       int num_active = 0;
-      if (DBCONNECTION_STORE.containsKey(connection_id)) {
-         Vector<DBConnection> connections = DBCONNECTION_STORE.get(connection_id);
-         int num_connections = connections.size();
-         for (int j = 0; j < num_connections; j++) {
-            DBConnection conn = connections.get(j);
-            boolean in_use = conn.inUse();
-            if (in_use) {
+      ConnectionQueue queue = DBCONNECTION_STORE.get(connection_id);
+      if (queue != null) {
+         for (DBConnection conn : queue.connections) {
+            if (conn.inUse()) {
                num_active++;
             }
          }
@@ -94,8 +130,7 @@ final class DBConnectionPool implements TimerListener {
 
    static int getNumberOfNotInUseConnections() throws Exception {
       int num_inactive = 0;
-      String[] keys = DBCONNECTION_STORE.keySet().toArray(new String[DBCONNECTION_STORE.size()]);
-      for (String key : keys) {
+      for (String key : DBCONNECTION_STORE.keySet()) {
          num_inactive += getNumberOfNotInUseConnections(key);
       }
       return (num_inactive);
@@ -103,11 +138,9 @@ final class DBConnectionPool implements TimerListener {
 
    static int getNumberOfNotInUseConnections(String connection_id) throws Exception {
       int num_inactive = 0;
-      if (DBCONNECTION_STORE.containsKey(connection_id)) {
-         Vector<DBConnection> connections = DBCONNECTION_STORE.get(connection_id);
-         int num_connections = connections.size();
-         for (int j = 0; j < num_connections; j++) {
-            DBConnection conn = connections.get(j);
+      ConnectionQueue queue = DBCONNECTION_STORE.get(connection_id);
+      if (queue != null) {
+         for (DBConnection conn : queue.connections) {
             if (!conn.inUse()) {
                num_inactive++;
             }
@@ -116,80 +149,50 @@ final class DBConnectionPool implements TimerListener {
       return (num_inactive);
    }
 
-   static synchronized DBConnection getDBConnection(String connection_id, String connectionMethod) throws Exception {
-      DBConnection connection = null;
-      boolean found = false;
-      if (DBCONNECTION_STORE.containsKey(connection_id)) {
-         Vector<DBConnection> connvec = DBCONNECTION_STORE.get(connection_id);
-         int num_connections = connvec.size();
-
-         DBConnectionPool.logMessage("Connection pool contains " + num_connections + " DBConnection objects for " + connection_id + ".");
-
-         for (int i = 0; i < num_connections && !found; i++) {
-            connection = connvec.get(i);
-            if (!connection.isActive() && !connection.inUse() && !connection.isClosed()) {
-               connection.setActive(true);
-               found = true;
-               DBConnectionPool.logMessage("Found " + connection.getID() + " connection.", connection);
-            }
-         }
-
-         if (!found) {
-            DBConnectionPool.logMessage("No DBConnection object found that wasn't in use and had an open connection.");
-            connection = new DBConnection(connection_id, connectionMethod);
-            connection.setActive(true);
-            connvec.add(connection);
-            found = true;
-            DBConnectionPool.logMessage("Created a new DBConnection object, " + connection.getID() + ".", connection);
+   static DBConnection getDBConnection(String connection_id, String connectionMethod) throws Exception {
+      ConnectionQueue queue = DBCONNECTION_STORE.get(connection_id);
+      if (queue == null) {
+         ConnectionQueue newQueue = new ConnectionQueue(connection_id, MAX_POOL_SIZE);
+         queue = DBCONNECTION_STORE.putIfAbsent(connection_id, newQueue);
+         if (queue == null) {
+            queue = newQueue;
+            DBConnectionPool.logMessage("Created connection pool for " + connection_id + " with a max size of " + newQueue.maxSize + ".");
          }
       }
-      else {
-         DBConnectionPool.logMessage("Connection pool does not have any DBConnection objects for " + connection_id + ".");
-         Vector<DBConnection> connvec = new Vector<DBConnection>();
-         connection = new DBConnection(connection_id, connectionMethod);
-         connection.setActive(true);
-         connvec.add(connection);
-         found = true;
-         DBCONNECTION_STORE.put(connection_id, connvec);
-         DBConnectionPool.logMessage("Created a new DBConnection object, " + connection.getID() + ".", connection);
-      }
-
-      DBConnectionPool.logMessage("Returning DBConnection[" + connection.getID() + "].", connection);
-      return (connection);
+      return queue.acquire(connectionMethod);
    }
 
    /*
     * This removes one DBConnection from the pool.
     */
-   static synchronized void removeDBConnection(String dbconn_id) throws Exception {
+   static void removeDBConnection(String dbconn_id) throws Exception {
       boolean found = false;
       String connection_id = "";
 
-      String[] keys = DBCONNECTION_STORE.keySet().toArray(new String[DBCONNECTION_STORE.size()]);
-      for (int i = 0; i < keys.length && !found; i++) {
-         Vector<DBConnection> connections = DBCONNECTION_STORE.get(keys[i]);
-         int num_connections = connections.size();
-         for (int j = 0; j < num_connections && !found; j++) {
-            DBConnection conn = connections.get(j);
+      for (ConnectionQueue queue : DBCONNECTION_STORE.values()) {
+         for (DBConnection conn : queue.connections) {
             if (conn.getID().equals(dbconn_id)) {
-               found = true;
-               connections.remove(j);
-               connection_id = keys[i];
+               found = queue.discard(conn);
+               connection_id = queue.connectionId;
+               break;
             }
          }
+         if (found) {
+            break;
+         }
       }
 
       DBConnectionPool.logMessage("Removed[" + found + "] " + dbconn_id + " from DBCONNECTION_STORE with connection id of '" + connection_id + "'.");
    }
 
    /*
-    * This removes the set of DBConnections from the pool referenced by connection_id
+    * This removes the set of DBConnections from the pool referenced by connection_id; DBConnections that are
+    * in use are left to finish but aren't returned to the pool.
     */
-   static synchronized void remove(String connection_id) throws Exception {
-      if (DBCONNECTION_STORE.containsKey(connection_id)) {
-         Vector<DBConnection> connvec = DBCONNECTION_STORE.get(connection_id);
-         connvec.clear();
-         DBCONNECTION_STORE.remove(connection_id);
+   static void remove(String connection_id) throws Exception {
+      ConnectionQueue queue = DBCONNECTION_STORE.remove(connection_id);
+      if (queue != null) {
+         queue.clear();
       }
 
       DBConnectionPool.logMessage("Removed all DBConnection objects from DBCONNECTION_STORE with key of '" + connection_id + "'.");
@@ -199,31 +202,31 @@ final class DBConnectionPool implements TimerListener {
       }
       else {
          StringBuilder sb = new StringBuilder();
-         if (!DBCONNECTION_STORE.isEmpty()) {
-            sb.append("They are: ");
-         }
-
-         String[] keys = DBCONNECTION_STORE.keySet().toArray(new String[DBCONNECTION_STORE.size()]);
-         for (Object key : keys) {
+         for (String key : DBCONNECTION_STORE.keySet()) {
             if (sb.length() > 0) {
                sb.append(", ");
             }
             sb.append(key);
          }
 
-         DBConnectionPool.logMessage("DBCONNECTION_STORE now has " + DBCONNECTION_STORE.size() + " connection object(s) left. " + sb.toString());
+         DBConnectionPool.logMessage("DBCONNECTION_STORE now has " + DBCONNECTION_STORE.size() + " connection object(s) left. They are: " + sb.toString());
       }
    }
 
-   static synchronized void removeAll() throws Exception {
-      String[] keys = DBCONNECTION_STORE.keySet().toArray(new String[DBCONNECTION_STORE.size()]);
-      for (String key : keys) {
+   static void removeAll() throws Exception {
+      for (String key : DBCONNECTION_STORE.keySet()) {
          remove(key);
       }
    }
 
    static void releaseConnection(DBConnection connection) {
-      connection.setActive(false);
+      ConnectionQueue queue = connection.PoolQueue;
+      if (queue != null) {
+         queue.release(connection);
+      }
+      else {
+         connection.deactivate();
+      }
    }
 
    private static void logMessage(String message) throws Exception {
@@ -243,21 +246,10 @@ final class DBConnectionPool implements TimerListener {
    }
 
    private void startTimer() {
-      Calendar c = Calendar.getInstance();
-      long now = c.getTimeInMillis();
+      long runtime = Timer.ONE_MINUTE_INTERVAL * MAX_MASTER_TIME; // Wake up every 30 minutes...
 
-      c.set(Calendar.HOUR_OF_DAY, 0);
-      c.set(Calendar.MINUTE, 0);
-      c.set(Calendar.SECOND, 0);
-      c.set(Calendar.MILLISECOND, 0);
-      c.add(Calendar.DAY_OF_MONTH, 1);
-      long midnight = c.getTimeInMillis();
-
-      // long runtime = midnight - now; // Run until midnight...
-
-      long runtime = Timer.ONE_MINUTE_INTERVAL * MAX_MASTER_TIME; // Run for 30 minutes only...
-
-      MasterTimer = new Timer(runtime);
+      // Repeats on the shared timer scheduler until the JVM exits.
+      MasterTimer = new Timer(runtime, Long.MAX_VALUE);
       MasterTimer.addTimerListener(this);
       MasterTimer.logMessages(false);
       MasterTimer.start();
@@ -268,42 +260,141 @@ final class DBConnectionPool implements TimerListener {
    @Override
    public void timeExpired() {
       try {
-         MasterTimer.stop();
-         MasterTimer.removeTimerListener(this);
-         MasterTimer = null;
-
-         if (!DBCONNECTION_STORE.isEmpty()) {
-            synchronized (DBCONNECTION_STORE) {
-               int num_connections = DBConnectionPool.getNumberOfConnections();
-               int num_closed = 0;
-
-               String[] ids = DBCONNECTION_STORE.keySet().toArray(new String[DBCONNECTION_STORE.size()]);
-               for (String id : ids) {
-                  Vector<DBConnection> connvec = DBCONNECTION_STORE.get(id);
-                  Vector<DBConnection> connvec_new = new Vector<DBConnection>();
-                  DBConnection[] connray = connvec.toArray(new DBConnection[connvec.size()]);
-                  for (DBConnection element : connray) {
-                     if (element.isClosed()) {
-                        DBConnectionPool.logMessage(id + "." + element.getID() + " was closed and not in use, removed from the DBConnectionPool.");
-                        num_closed++;
-                     }
-                     else {
-                        connvec_new.add(element);
-                     }
+         int num_connections = 0;
+         int num_closed = 0;
+         long now = System.currentTimeMillis();
+         for (ConnectionQueue queue : DBCONNECTION_STORE.values()) {
+            num_connections += queue.connections.size();
+            num_closed += queue.removeClosedIdleConnections();
+
+            if (LEAK_DETECTION_THRESHOLD > 0) {
+               queue.reclaimLeakedConnections(LEAK_DETECTION_THRESHOLD, now);
+            }
+         }
+
+         if (num_closed > 0) {
+            DBConnectionPool.logMessage("DBConnectionPool removed " + num_closed + " closed DBConnections out of " + num_connections + " total DBConnections.");
+         }
+      }
+      catch (Exception ex) {}
+   }
+
+   // ------------------------------------------------------------------------
+
+   static final class ConnectionQueue {
+
+      private final String connectionId;
+      private final int maxSize;
+
+      private final Semaphore permits; // one per DBConnection given out...
+      private final ConcurrentLinkedDeque<DBConnection> idle;
+      private final Set<DBConnection> connections; // all pooled DBConnections, idle or not...
+
+      ConnectionQueue(String connectionId, int maxSize) {
+         this.connectionId = connectionId;
+         this.maxSize = maxSize;
+         permits = new Semaphore(maxSize, true);
+         idle = new ConcurrentLinkedDeque<DBConnection>();
+         connections = Collections.newSetFromMap(new ConcurrentHashMap<DBConnection, Boolean>());
+      }
+
+      DBConnection acquire(String connectionMethod) throws Exception {
+         try {
+            // tryAcquire() takes a free permit without queuing, only wait in line when there's none...
+            if (!permits.tryAcquire() && !permits.tryAcquire(ACQUIRE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+               String message = "Timed out after " + ACQUIRE_TIMEOUT + " ms waiting for one of the " + maxSize + " DBConnections for " + connectionId + ".";
+               DBConnectionPool.logMessage(message);
+               throw new SQLTransientConnectionException(message);
+            }
+         }
+         catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a DBConnection for " + connectionId + ".", ex);
+         }
+
+         try {
+            DBConnection connection = idle.pollFirst();
+            while (connection != null) {
+               if (connection.activate()) {
+                  if (System.currentTimeMillis() - connection.getReleasedTime() > VALIDATION_BYPASS_TIME) {
+                     connection.validate(VALIDATION_TIMEOUT_SECS);
                   }
-                  DBCONNECTION_STORE.put(id, connvec_new);
+                  return connection;
                }
+               // else another thread has it, can only happen if it was released twice...
+               connection = idle.pollFirst();
+            }
 
-               if (num_connections != num_closed) {
-                  DBConnectionPool.logMessage("DBConnection closed " + num_closed + " DBConnections out of " + num_connections + " total DBConnections.");
-               }
+            connection = new DBConnection(connectionId, connectionMethod);
+            connection.PoolQueue = this;
+            connection.activate();
+            connections.add(connection);
+            DBConnectionPool.logMessage("Created a new DBConnection object, " + connection.getID() + ".", connection);
+            return connection;
+         }
+         catch (Exception ex) {
+            permits.release();
+            throw ex;
+         }
+      }
+
+      void release(DBConnection connection) {
+         if (connection.deactivate()) {
+            if (connections.contains(connection)) {
+               idle.offerFirst(connection);
             }
+            permits.release();
          }
+      }
 
-         startTimer();
+      // Returns true if the connection was in the pool.
+      boolean discard(DBConnection connection) {
+         idle.remove(connection);
+         return connections.remove(connection);
+      }
 
-         // logDebugMessage("Master timer restarted.");
+      void clear() {
+         idle.clear();
+         connections.clear();
+      }
+
+      /*
+       * Takes back the DBConnections that have been out of the pool for longer than the threshold;
+       * each is closed and dropped from the pool and its permit released. A later release of one
+       * of them is ignored. Returns the number reclaimed.
+       */
+      int reclaimLeakedConnections(long threshold, long now) throws Exception {
+         int num_reclaimed = 0;
+         for (DBConnection conn : connections) {
+            long activatedTime = conn.getActivatedTime();
+            if (conn.isActive() && activatedTime > 0 && now - activatedTime > threshold && conn.deactivate()) {
+               DBConnectionPool.logMessage("Possible leak, " + connectionId + "." + conn.getID() + " was taken from the pool by thread '" + conn.getActivatedBy()
+                     + "' " + (now - activatedTime) + " ms ago and hasn't been released; reclaimed it.", conn);
+               discard(conn);
+               conn.PoolQueue = null;
+               conn.closeAbandoned();
+               permits.release();
+               num_reclaimed++;
+            }
+         }
+         return num_reclaimed;
+      }
+
+      int removeClosedIdleConnections() throws Exception {
+         int num_closed = 0;
+         for (DBConnection conn : idle) {
+            if (conn.isClosed() && idle.remove(conn)) { // only one of this and acquire() can remove it...
+               connections.remove(conn);
+               DBConnectionPool.logMessage(connectionId + "." + conn.getID() + " was closed and not in use, removed from the DBConnectionPool.");
+               num_closed++;
+            }
+         }
+         return num_closed;
+      }
+
+      @Override
+      public String toString() {
+         return connectionId + " " + connections.size() + "/" + maxSize;
       }
-      catch (Exception ex) {}
    }
 }
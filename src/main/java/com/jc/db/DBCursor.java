@@ -0,0 +1,44 @@
+package com.jc.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/*
+ * An open, forward only ResultSet returned by DBConnection.openCursor(). The
+ * DBConnection stays in use until the cursor is closed, at which point the
+ * statement is closed and the connection is released back to the pool, unless it
+ * is part of a transaction.
+ */
+
+public class DBCursor implements AutoCloseable {
+
+   private final DBConnection dbConn;
+   private final PreparedStatement statement;
+   private final ResultSet resultSet;
+   private final int queryId;
+
+   private boolean closed;
+
+   DBCursor(DBConnection dbConn, PreparedStatement statement, ResultSet resultSet, int queryId) {
+      this.dbConn = dbConn;
+      this.statement = statement;
+      this.resultSet = resultSet;
+      this.queryId = queryId;
+   }
+
+   public ResultSet getResultSet() {
+      return resultSet;
+   }
+
+   public boolean isClosed() {
+      return closed;
+   }
+
+   @Override
+   public void close() {
+      if (!closed) {
+         closed = true;
+         dbConn.closeCursor(statement, resultSet, queryId);
+      }
+   }
+}
@@ -10,6 +10,7 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,22 +23,31 @@ import java.util.Map.Entry;
  */
 public class DBResult extends ResultSetProcessor {
 
-   // The data set retrieved from the ResultSet object for the query request.
-   private final List<List<Object>> Data;
+   // The data set retrieved from the ResultSet object for the query request, stored a column at a time.
+   private ResultColumn[] Columns;
+   private int NumRows;
 
    private Map<String, ColumnMetaData> ColumnInfo;
 
+   // Column name to zero based column id, rebuilt whenever ColumnInfo changes.
+   private Map<String, Integer> ColumnIds;
+
    // The index into the Data collection.
    private int RowIndex = -1;
 
    private int NumRowsUpdated = 0;
 
+   // Keys generated by the database for inserted rows, if they were requested.
+   private final List<Object> GeneratedKeys;
+
    // If set, the request was a simple query.
    private String Query;
 
    public DBResult() {
-      Data = new ArrayList<List<Object>>();
+      Columns = new ResultColumn[0];
       ColumnInfo = new LinkedHashMap<String, ColumnMetaData>();
+      ColumnIds = new HashMap<String, Integer>();
+      GeneratedKeys = new ArrayList<Object>();
    }
 
    public Object getValue(int columnIndex) {
@@ -209,7 +219,7 @@ public class DBResult extends ResultSetProcessor {
     * Moves the row index pointer one row from its current position. The row index pointer is initially positioned before the first row (1). The first call to this method makes the first row the current row, the second call makes the second row the current row and so on.
     */
    public boolean next() {
-      if (RowIndex + 1 < Data.size()) {
+      if (RowIndex + 1 < NumRows) {
          RowIndex++;
          return true;
       }
@@ -227,7 +237,7 @@ public class DBResult extends ResultSetProcessor {
     * Set the row index pointer to the row specified. If the supplied value is greater than the size of the data set, then the pointer is reset to the beginning of the data set. If the supplied value is less than 0 then the pointer is reset to the beginning of the data set.
     */
    public void setRowIndex(int index) {
-      if (0 <= index && index < Data.size()) {
+      if (0 <= index && index < NumRows) {
          RowIndex = index;
       }
       else {
@@ -247,7 +257,7 @@ public class DBResult extends ResultSetProcessor {
     * returns true for an empty result set
     */
    public boolean isEmpty() {
-      return Data.isEmpty();
+      return NumRows == 0;
    }
 
    /**
@@ -257,6 +267,13 @@ public class DBResult extends ResultSetProcessor {
       return NumRowsUpdated;
    }
 
+   /**
+    * The keys generated by the database for the inserted rows, in insert order, when generated keys were requested.
+    */
+   public List<Object> getGeneratedKeys() {
+      return GeneratedKeys;
+   }
+
    /**
     * Returns the query string that was sent to the database.
     */
@@ -342,12 +359,12 @@ public class DBResult extends ResultSetProcessor {
 
       int len = sb.length();
 
-      for (List<Object> row : Data) {
-         for (Object value : row) {
+      for (int row = 0; row < NumRows; row++) {
+         for (ResultColumn column : Columns) {
             if (sb.length() > len) {
                sb.append('\t');
             }
-            sb.append(value);
+            sb.append(column.get(row));
          }
          sb.append('\n');
       }
@@ -361,6 +378,7 @@ public class DBResult extends ResultSetProcessor {
          for (int i = 0; i < columnNames.length; i++) {
             ColumnInfo.put(columnNames[i].toLowerCase(), new ColumnMetaData(columnNames[i], i));
          }
+         indexColumns();
       }
       else {
          // TODO: don't allow this to happen... throw exception??? or just ignore???
@@ -368,10 +386,18 @@ public class DBResult extends ResultSetProcessor {
    }
 
    protected void setData(Object[][] data) {
-      Data.clear();
+      int numColumns = data.length > 0 ? data[0].length : 0;
+      Columns = new ResultColumn[numColumns];
+      for (int i = 0; i < numColumns; i++) {
+         Columns[i] = new ResultColumn.ObjectColumn();
+      }
+
       for (Object[] rowData : data) {
-         Data.add(Arrays.asList(rowData));
+         for (int i = 0; i < numColumns; i++) {
+            Columns[i].add(rowData[i]);
+         }
       }
+      NumRows = data.length;
    }
 
    // This method saves these values to use in error reporting.
@@ -413,21 +439,19 @@ public class DBResult extends ResultSetProcessor {
     * Given the row and column number the data value of that location in the data set is returned.
     */
    Object getDataAt(int row, int column) {
-      if (checkArrayBound(row, Data.size()) && checkArrayBound(column, Data.get(0).size())) {
-         List<Object> row_data = Data.get(row);
-         Object value = row_data.get(column);
-         return (value);
-      }
-      throw new IllegalArgumentException("No data at row " + row + ", col " + column);
+      return getColumnAt(row, column).get(row);
    }
 
    /**
     * Returns the specified row of data from the table of results. First row is 0.
     */
    Object[] getDataRow(int index) {
-      if (checkArrayBound(index, Data.size())) {
-         List<Object> dataList = Data.get(index);
-         return dataList.toArray(new Object[dataList.size()]);
+      if (checkArrayBound(index, NumRows)) {
+         Object[] rowData = new Object[Columns.length];
+         for (int i = 0; i < Columns.length; i++) {
+            rowData[i] = Columns[i].get(index);
+         }
+         return rowData;
       }
       throw new IllegalArgumentException("Invalid row index " + index);
    }
@@ -436,33 +460,46 @@ public class DBResult extends ResultSetProcessor {
       NumRowsUpdated = numRowsUpdated;
    }
 
+   void addGeneratedKey(Object key) {
+      GeneratedKeys.add(key);
+   }
+
    @Override
    public void processResultSet(ResultSet result) throws SQLException {
-      ColumnInfo = DBResult.getColumnInfo(result, false);
+      ResultSetMetaData metaData = result.getMetaData();
+      int numColumns = metaData.getColumnCount();
 
-      Map<String, ColumnMetaData> columnInfo = getColumnInfo();
+      ColumnMetaData[] columnData = new ColumnMetaData[numColumns];
+      ResultColumn[] columns = new ResultColumn[numColumns];
+      Map<String, ColumnMetaData> columnInfo = new LinkedHashMap<String, ColumnMetaData>();
+      for (int i = 0; i < numColumns; i++) {
+         columnData[i] = new ColumnMetaData(metaData, i + 1);
+         columns[i] = ResultColumn.create(columnData[i]);
+         columnInfo.put(columnData[i].getColumnName(), columnData[i]);
+      }
 
-      while (result.next()) {
-         List<Object> columns = new ArrayList<Object>(columnInfo.size());
+      ColumnInfo = columnInfo;
+      Columns = columns;
+      NumRows = 0;
+      indexColumns();
 
-         for (Map.Entry<String, ColumnMetaData> entry : columnInfo.entrySet()) {
-            ColumnMetaData column = entry.getValue();
-            Object value = DBResult.getValueFromResultSet(column, result);
-            columns.add(value);
+      while (result.next()) {
+         for (int i = 0; i < numColumns; i++) {
+            columns[i].read(columnData[i], result);
          }
-         addColumnData(columns);
+         NumRows++;
          incrementRecordCount();
       }
+
+      for (ResultColumn column : columns) {
+         column.trimToSize();
+      }
    }
 
    Map<String, ColumnMetaData> getColumnInfo() {
       return (ColumnInfo);
    }
 
-   void addColumnData(List<Object> column_data) {
-      Data.add(column_data);
-   }
-
    void setErrors(Throwable[] errorExceptions) {
       for (Throwable error : errorExceptions) {
          addError(error);
@@ -479,37 +516,43 @@ public class DBResult extends ResultSetProcessor {
       String className = cls == null ? null : cls.getName();
       ColumnMetaData metadata = new ColumnMetaData(columnName, sqlType, className, columnIndex);
       ColumnInfo.put(metadata.getColumnName().toLowerCase(), metadata);
+      indexColumns();
       if (value != null) {
-         // Assume that Data will have only one row...
-         if (Data.size() > 1) {
-            Data.clear();
+         // Assume that the data will have only one row...
+         if (NumRows > 1) {
+            Columns = new ResultColumn[0];
+            NumRows = 0;
          }
 
-         if (Data.isEmpty()) {
-            Data.add(new ArrayList<Object>());
+         if (Columns.length < columnIndex) {
+            // Add columns of nulls up to and including the column we are going to add to.
+            int numColumns = Columns.length;
+            Columns = Arrays.copyOf(Columns, columnIndex);
+            for (int i = numColumns; i < columnIndex; i++) {
+               Columns[i] = new ResultColumn.ObjectColumn();
+               for (int row = 0; row < NumRows; row++) {
+                  Columns[i].add(null);
+               }
+            }
          }
 
-         List<Object> row = Data.get(0);
-
-         if (row.size() < columnIndex + 1) {
-            List<Object> tmp = new ArrayList<Object>(columnIndex + 1);
-
-            // Transfer all the data from 'row' to the tmp object...
-            for (Object element : row) {
-               tmp.add(element);
+         if (NumRows == 0) {
+            for (ResultColumn column : Columns) {
+               column.add(null);
             }
+            NumRows = 1;
+         }
 
-            // Add nulls up to and including the column we are going to add to.
-            for (int i = row.size(); i < columnIndex; i++) {
-               tmp.add(null);
+         ResultColumn column = Columns[columnIndex - 1];
+         if (!(column instanceof ResultColumn.ObjectColumn)) {
+            // replaces a column from the procedure's result set...
+            ResultColumn.ObjectColumn objectColumn = new ResultColumn.ObjectColumn();
+            for (int row = 0; row < NumRows; row++) {
+               objectColumn.add(column.get(row));
             }
-
-            // point 'row' to the tmp object...
-            row = tmp;
+            Columns[columnIndex - 1] = column = objectColumn;
          }
-
-         row.set(columnIndex - 1, value);
-         Data.set(0, row); // have to re-set it to location 0 because row object is not the same as was was retrieved from Data to begin with.
+         ((ResultColumn.ObjectColumn) column).set(0, value);
       }
    }
 
@@ -517,13 +560,32 @@ public class DBResult extends ResultSetProcessor {
       return 0 <= index && index < max;
    }
 
+   private ResultColumn getColumnAt(int row, int column) {
+      if (checkArrayBound(row, NumRows) && checkArrayBound(column, Columns.length)) {
+         return Columns[column];
+      }
+      throw new IllegalArgumentException("No data at row " + row + ", col " + column);
+   }
+
+   private void indexColumns() {
+      Map<String, Integer> columnIds = new HashMap<String, Integer>(ColumnInfo.size() * 2);
+      for (Map.Entry<String, ColumnMetaData> entry : ColumnInfo.entrySet()) {
+         columnIds.put(entry.getKey(), Integer.valueOf(entry.getValue().index() - 1));
+      }
+      ColumnIds = columnIds;
+   }
+
    /**
-    * Returns the column id for the supplied column name. If not found, then a -1 is returned.
+    * Returns the column id for the supplied column name. If not found, then an IllegalArgumentException is thrown.
     */
    private int getColumnIdFor(String columnName) {
-      String key = columnName.toLowerCase();
-      if (ColumnInfo.containsKey(key)) {
-         return ColumnInfo.get(key).index() - 1;
+      Integer columnId = ColumnIds.get(columnName); // keys are lower case, try as is before lower casing...
+      if (columnId == null) {
+         columnId = ColumnIds.get(columnName.toLowerCase());
+      }
+
+      if (columnId != null) {
+         return columnId.intValue();
       }
       else {
          throw (new IllegalArgumentException("Unknown column \"" + columnName + "\""));
@@ -588,6 +650,11 @@ public class DBResult extends ResultSetProcessor {
     *            if the value at (row, column) can't be cast to a double
     */
    private double getDoubleAt(int row, int column) {
+      ResultColumn resultColumn = getColumnAt(row, column);
+      if (resultColumn.isNumeric() && !resultColumn.isNull(row)) {
+         return resultColumn.getDouble(row); // no boxing...
+      }
+
       try {
          Object data = getDataAt(row, column);
          if (data == null) {
@@ -623,6 +690,11 @@ public class DBResult extends ResultSetProcessor {
     *            if the value at (row, column) can't be cast to a long
     */
    private long getLongAt(int row, int column) throws NullValueException {
+      ResultColumn resultColumn = getColumnAt(row, column);
+      if (resultColumn.isNumeric() && !resultColumn.isNull(row)) {
+         return resultColumn.getLong(row); // no boxing...
+      }
+
       try {
          Object data = getDataAt(row, column);
          if (data == null) {
@@ -693,6 +765,11 @@ public class DBResult extends ResultSetProcessor {
     *            if the value at (row, column) can't be cast to an integer
     */
    private int getIntegerAt(int row, int column) throws NullValueException {
+      ResultColumn resultColumn = getColumnAt(row, column);
+      if (resultColumn.isNumeric() && !resultColumn.isNull(row)) {
+         return resultColumn.getInt(row); // no boxing...
+      }
+
       try {
          Object data = getDataAt(row, column);
          if (data == null) {
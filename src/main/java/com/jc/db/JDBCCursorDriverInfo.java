@@ -0,0 +1,12 @@
+package com.jc.db;
+
+/*
+ * Implemented by a JDBCDriverInfo whose driver needs a particular fetch size before it streams a
+ * cursor's rows from the database instead of reading the whole result set into memory.
+ */
+
+public interface JDBCCursorDriverInfo extends JDBCDriverInfo {
+
+   // Returns the fetch size that makes the driver stream a cursor's rows rather than reading them all into memory.
+   public int getCursorFetchSize();
+}
@@ -0,0 +1,12 @@
+package com.jc.db;
+
+/*
+ * Implemented by a JDBCDriverInfo whose SQL dialect can limit a query to a page of rows, so the
+ * JDBC Dao layer pages queries it generates in the database rather than skipping rows on the client.
+ */
+
+public interface JDBCPagingDriverInfo extends JDBCDriverInfo {
+
+   // Returns the query limited to length rows starting at row start, using the dialect's paging syntax.
+   public String createPagedQuery(String query, int start, int length);
+}
@@ -49,8 +49,9 @@ public abstract class LoadDataTask extends Task {
 
    @Override
    public void doTask() throws Exception {
+      DBConnection conn = null;
+      boolean queried = false;
       try {
-         DBConnection conn = null;
          String datasource = getDatasource();
          if (datasource == null) { // Use default datasource...
             conn = DBConnection.getInstance();
@@ -69,6 +70,7 @@ public abstract class LoadDataTask extends Task {
             // result = conn.executeStoredProcedure(stored_proc_name, in_params, out_params);
          }
          else {
+            queried = true;
             result = conn.executeSQLQuery(getQuery());
          }
 
@@ -90,6 +92,11 @@ public abstract class LoadDataTask extends Task {
          ErrorMessage = ExceptionMessageHandler.formatExceptionMessage(ex);
          throw ex;
       }
+      finally {
+         if (conn != null && !queried) {
+            DBConnectionPool.releaseConnection(conn); // running a query releases it...
+         }
+      }
    }
 
    @Override
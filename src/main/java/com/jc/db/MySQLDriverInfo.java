@@ -2,10 +2,18 @@ package com.jc.db;
 
 import java.io.Serializable;
 
-public class MySQLDriverInfo implements JDBCDriverInfo, Serializable {
+public class MySQLDriverInfo implements JDBCPagingDriverInfo, JDBCCursorDriverInfo, Serializable {
 
    private static final long serialVersionUID = -7471054844472476315L;
 
+   public final static String JDBC_DRIVER = "com.mysql.jdbc.Driver";
+
+   // MySQL has no "no limit" keyword, the documented way to offset without a limit is the max row count.
+   private final static String MAX_ROWS = "18446744073709551615";
+
+   // Connector/J only streams a result set row by row when the fetch size is Integer.MIN_VALUE.
+   public final static int CURSOR_FETCH_SIZE = Integer.MIN_VALUE;
+
    private final String ip;
    private final String schema;
 
@@ -16,14 +24,29 @@ public class MySQLDriverInfo implements JDBCDriverInfo, Serializable {
 
    @Override
    public String getJDBCDriver() {
-      String jdbcDriver = "com.mysql.jdbc.Driver";
-      return jdbcDriver;
+      return JDBC_DRIVER;
    }
 
    @Override
    public String getJDBCUrl() {
-      String dbUrl = "jdbc:mysql://" + ip + "/" + schema + "?zeroDateTimeBehavior=convertToNull";
+      // rewriteBatchedStatements lets Connector/J send a batch of inserts as multi-row statements...
+      String dbUrl = "jdbc:mysql://" + ip + "/" + schema + "?zeroDateTimeBehavior=convertToNull&rewriteBatchedStatements=true";
       return dbUrl;
    }
 
+   @Override
+   public String createPagedQuery(String query, int start, int length) {
+      if (start < 0 || length < 0) {
+         throw new IllegalArgumentException("Start and length parameters must both be 0 or greater. Start = " + start + " and length = " + length + ".");
+      }
+
+      String limit = length > 0 ? String.valueOf(length) : MAX_ROWS;
+      return query + " LIMIT " + limit + " OFFSET " + start;
+   }
+
+   @Override
+   public int getCursorFetchSize() {
+      return CURSOR_FETCH_SIZE;
+   }
+
 }
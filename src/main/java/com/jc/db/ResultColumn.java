@@ -0,0 +1,572 @@
+package com.jc.db;
+
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Date;
+
+import com.jc.db.DBResult.ColumnMetaData;
+
+/*
+ * One column of the data held by a DBResult. Numeric, boolean and date columns are
+ * kept in primitive arrays with a bitmap marking the null rows, so no object is
+ * created per value until one is asked for; everything else is kept as objects.
+ * Values read back with get() have the same types DBResult.getValueFromResultSet()
+ * returns for the column's SQL type.
+ */
+
+abstract class ResultColumn {
+
+   private final static int INITIAL_CAPACITY = 16;
+
+   private long[] nulls = new long[1]; // a bit per row, set if the row's value is null
+   private int size;
+
+   // Returns a column suited to the SQL type of the supplied column.
+   static ResultColumn create(ColumnMetaData column) {
+      switch (column.getSqlType()) {
+         case Types.BIT:
+            return new BooleanColumn();
+         case Types.TINYINT:
+         case Types.SMALLINT:
+         case Types.INTEGER:
+            return new IntColumn(column.getSqlType());
+         case Types.BIGINT:
+            return new LongColumn();
+         case Types.DOUBLE:
+            return new DoubleColumn();
+         case Types.FLOAT:
+            return new FloatColumn();
+         case Types.TIME:
+         case Types.TIMESTAMP:
+         case Types.DATE:
+            return new DateColumn();
+         default:
+            return new ObjectColumn();
+      }
+   }
+
+   int size() {
+      return size;
+   }
+
+   boolean isNull(int row) {
+      return (nulls[row >>> 6] & (1L << row)) != 0;
+   }
+
+   // Reads the value for this column from the current row of the result set and appends it.
+   abstract void read(ColumnMetaData column, ResultSet result) throws SQLException;
+
+   // Appends the supplied value, which must be of the type get() returns or null.
+   abstract void add(Object value);
+
+   abstract Object get(int row);
+
+   // True if getLong() and getDouble() can be used for the non-null rows.
+   boolean isNumeric() {
+      return false;
+   }
+
+   long getLong(int row) {
+      throw new UnsupportedOperationException();
+   }
+
+   double getDouble(int row) {
+      throw new UnsupportedOperationException();
+   }
+
+   int getInt(int row) {
+      return (int) getLong(row);
+   }
+
+   // Drops any spare capacity once all of the rows have been added.
+   void trimToSize() {
+      nulls = Arrays.copyOf(nulls, (size >>> 6) + 1);
+      trimValues(size);
+   }
+
+   abstract void trimValues(int length);
+
+   // Returns the row to store the next value at, growing the storage if needed; don't index
+   // the values array in the same expression, it may be replaced.
+   int nextRow(boolean isNull) {
+      if (size == capacity()) {
+         grow(Math.max(INITIAL_CAPACITY, size + (size >> 1)));
+      }
+      if (size >>> 6 == nulls.length) {
+         nulls = Arrays.copyOf(nulls, nulls.length * 2);
+      }
+      if (isNull) {
+         nulls[size >>> 6] |= 1L << size;
+      }
+      return size++;
+   }
+
+   void setNull(int row, boolean isNull) {
+      if (isNull) {
+         nulls[row >>> 6] |= 1L << row;
+      }
+      else {
+         nulls[row >>> 6] &= ~(1L << row);
+      }
+   }
+
+   abstract int capacity();
+
+   abstract void grow(int capacity);
+
+   // ------------------------------------------------------------------------
+
+   static final class ObjectColumn extends ResultColumn {
+
+      private Object[] values = new Object[0];
+
+      @Override
+      void read(ColumnMetaData column, ResultSet result) throws SQLException {
+         add(DBResult.getValueFromResultSet(column, result));
+      }
+
+      @Override
+      void add(Object value) {
+         int row = nextRow(value == null);
+         values[row] = value;
+      }
+
+      // Only used for single row results, like stored procedure out parameters.
+      void set(int row, Object value) {
+         values[row] = value;
+         setNull(row, value == null);
+      }
+
+      @Override
+      Object get(int row) {
+         return values[row];
+      }
+
+      @Override
+      int capacity() {
+         return values.length;
+      }
+
+      @Override
+      void grow(int capacity) {
+         values = Arrays.copyOf(values, capacity);
+      }
+
+      @Override
+      void trimValues(int length) {
+         values = Arrays.copyOf(values, length);
+      }
+   }
+
+   // ------------------------------------------------------------------------
+
+   static final class BooleanColumn extends ResultColumn {
+
+      private boolean[] values = new boolean[0];
+
+      @Override
+      void read(ColumnMetaData column, ResultSet result) throws SQLException {
+         boolean value = result.getBoolean(column.index());
+         if (result.wasNull()) {
+            nextRow(true);
+         }
+         else {
+            int row = nextRow(false);
+            values[row] = value;
+         }
+      }
+
+      @Override
+      void add(Object value) {
+         if (value == null) {
+            nextRow(true);
+         }
+         else {
+            int row = nextRow(false);
+            values[row] = ((Boolean) value).booleanValue();
+         }
+      }
+
+      @Override
+      Object get(int row) {
+         return isNull(row) ? null : Boolean.valueOf(values[row]);
+      }
+
+      @Override
+      int capacity() {
+         return values.length;
+      }
+
+      @Override
+      void grow(int capacity) {
+         values = Arrays.copyOf(values, capacity);
+      }
+
+      @Override
+      void trimValues(int length) {
+         values = Arrays.copyOf(values, length);
+      }
+   }
+
+   // ------------------------------------------------------------------------
+
+   // TINYINT, SMALLINT and INTEGER values, returned as a Byte, Short or Integer respectively.
+   static final class IntColumn extends ResultColumn {
+
+      private final int sqlType;
+      private int[] values = new int[0];
+
+      IntColumn(int sqlType) {
+         this.sqlType = sqlType;
+      }
+
+      @Override
+      void read(ColumnMetaData column, ResultSet result) throws SQLException {
+         int value;
+         if (sqlType == Types.TINYINT) {
+            value = result.getByte(column.index());
+         }
+         else if (sqlType == Types.SMALLINT) {
+            value = result.getShort(column.index());
+         }
+         else {
+            value = result.getInt(column.index());
+         }
+
+         if (result.wasNull()) {
+            nextRow(true);
+         }
+         else {
+            int row = nextRow(false);
+            values[row] = value;
+         }
+      }
+
+      @Override
+      void add(Object value) {
+         if (value == null) {
+            nextRow(true);
+         }
+         else {
+            int row = nextRow(false);
+            values[row] = ((Number) value).intValue();
+         }
+      }
+
+      @Override
+      Object get(int row) {
+         if (isNull(row)) {
+            return null;
+         }
+         else if (sqlType == Types.TINYINT) {
+            return Byte.valueOf((byte) values[row]);
+         }
+         else if (sqlType == Types.SMALLINT) {
+            return Short.valueOf((short) values[row]);
+         }
+         return Integer.valueOf(values[row]);
+      }
+
+      @Override
+      boolean isNumeric() {
+         return true;
+      }
+
+      @Override
+      long getLong(int row) {
+         return values[row];
+      }
+
+      @Override
+      double getDouble(int row) {
+         return values[row];
+      }
+
+      @Override
+      int capacity() {
+         return values.length;
+      }
+
+      @Override
+      void grow(int capacity) {
+         values = Arrays.copyOf(values, capacity);
+      }
+
+      @Override
+      void trimValues(int length) {
+         values = Arrays.copyOf(values, length);
+      }
+   }
+
+   // ------------------------------------------------------------------------
+
+   // BIGINT values, returned as a BigInteger.
+   static final class LongColumn extends ResultColumn {
+
+      private long[] values = new long[0];
+
+      @Override
+      void read(ColumnMetaData column, ResultSet result) throws SQLException {
+         long value = result.getLong(column.index());
+         if (result.wasNull()) {
+            nextRow(true);
+         }
+         else {
+            int row = nextRow(false);
+            values[row] = value;
+         }
+      }
+
+      @Override
+      void add(Object value) {
+         if (value == null) {
+            nextRow(true);
+         }
+         else {
+            int row = nextRow(false);
+            values[row] = ((Number) value).longValue();
+         }
+      }
+
+      @Override
+      Object get(int row) {
+         return isNull(row) ? null : BigInteger.valueOf(values[row]);
+      }
+
+      @Override
+      boolean isNumeric() {
+         return true;
+      }
+
+      @Override
+      long getLong(int row) {
+         return values[row];
+      }
+
+      @Override
+      double getDouble(int row) {
+         return values[row];
+      }
+
+      @Override
+      int capacity() {
+         return values.length;
+      }
+
+      @Override
+      void grow(int capacity) {
+         values = Arrays.copyOf(values, capacity);
+      }
+
+      @Override
+      void trimValues(int length) {
+         values = Arrays.copyOf(values, length);
+      }
+   }
+
+   // ------------------------------------------------------------------------
+
+   static final class DoubleColumn extends ResultColumn {
+
+      private double[] values = new double[0];
+
+      @Override
+      void read(ColumnMetaData column, ResultSet result) throws SQLException {
+         double value = result.getDouble(column.index());
+         if (result.wasNull()) {
+            nextRow(true);
+         }
+         else {
+            int row = nextRow(false);
+            values[row] = value;
+         }
+      }
+
+      @Override
+      void add(Object value) {
+         if (value == null) {
+            nextRow(true);
+         }
+         else {
+            int row = nextRow(false);
+            values[row] = ((Number) value).doubleValue();
+         }
+      }
+
+      @Override
+      Object get(int row) {
+         return isNull(row) ? null : Double.valueOf(values[row]);
+      }
+
+      @Override
+      boolean isNumeric() {
+         return true;
+      }
+
+      @Override
+      long getLong(int row) {
+         return (long) values[row];
+      }
+
+      @Override
+      int getInt(int row) {
+         return (int) values[row];
+      }
+
+      @Override
+      double getDouble(int row) {
+         return values[row];
+      }
+
+      @Override
+      int capacity() {
+         return values.length;
+      }
+
+      @Override
+      void grow(int capacity) {
+         values = Arrays.copyOf(values, capacity);
+      }
+
+      @Override
+      void trimValues(int length) {
+         values = Arrays.copyOf(values, length);
+      }
+   }
+
+   // ------------------------------------------------------------------------
+
+   static final class FloatColumn extends ResultColumn {
+
+      private float[] values = new float[0];
+
+      @Override
+      void read(ColumnMetaData column, ResultSet result) throws SQLException {
+         float value = result.getFloat(column.index());
+         if (result.wasNull()) {
+            nextRow(true);
+         }
+         else {
+            int row = nextRow(false);
+            values[row] = value;
+         }
+      }
+
+      @Override
+      void add(Object value) {
+         if (value == null) {
+            nextRow(true);
+         }
+         else {
+            int row = nextRow(false);
+            values[row] = ((Number) value).floatValue();
+         }
+      }
+
+      @Override
+      Object get(int row) {
+         return isNull(row) ? null : Float.valueOf(values[row]);
+      }
+
+      @Override
+      boolean isNumeric() {
+         return true;
+      }
+
+      @Override
+      long getLong(int row) {
+         return (long) values[row];
+      }
+
+      @Override
+      int getInt(int row) {
+         return (int) values[row];
+      }
+
+      @Override
+      double getDouble(int row) {
+         return values[row];
+      }
+
+      @Override
+      int capacity() {
+         return values.length;
+      }
+
+      @Override
+      void grow(int capacity) {
+         values = Arrays.copyOf(values, capacity);
+      }
+
+      @Override
+      void trimValues(int length) {
+         values = Arrays.copyOf(values, length);
+      }
+   }
+
+   // ------------------------------------------------------------------------
+
+   // TIME, TIMESTAMP and DATE values, kept as epoch milliseconds and returned as a java.util.Date.
+   static final class DateColumn extends ResultColumn {
+
+      private long[] values = new long[0];
+
+      @Override
+      void read(ColumnMetaData column, ResultSet result) throws SQLException {
+         java.util.Date value;
+         int sqlType = column.getSqlType();
+         String className = column.getClassName();
+         if (sqlType == Types.TIME || (sqlType == Types.DATE && "java.sql.Time".equalsIgnoreCase(className))) {
+            value = result.getTime(column.index());
+         }
+         else if (sqlType == Types.TIMESTAMP || (sqlType == Types.DATE && "java.sql.Timestamp".equalsIgnoreCase(className))) {
+            value = result.getTimestamp(column.index());
+         }
+         else {
+            value = result.getDate(column.index());
+         }
+
+         if (value == null) {
+            nextRow(true);
+         }
+         else {
+            int row = nextRow(false);
+            values[row] = value.getTime();
+         }
+      }
+
+      @Override
+      void add(Object value) {
+         if (value == null) {
+            nextRow(true);
+         }
+         else {
+            int row = nextRow(false);
+            values[row] = ((java.util.Date) value).getTime();
+         }
+      }
+
+      @Override
+      Object get(int row) {
+         return isNull(row) ? null : new Date(values[row]);
+      }
+
+      @Override
+      int capacity() {
+         return values.length;
+      }
+
+      @Override
+      void grow(int capacity) {
+         values = Arrays.copyOf(values, capacity);
+      }
+
+      @Override
+      void trimValues(int length) {
+         values = Arrays.copyOf(values, length);
+      }
+   }
+}
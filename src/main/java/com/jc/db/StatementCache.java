@@ -0,0 +1,179 @@
+package com.jc.db;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * An LRU cache of the PreparedStatements and CallableStatements prepared on a
+ * single JDBC Connection, so that the same SQL text isn't parsed again by the
+ * database each time it's run. Statements are checked out while in use and
+ * handed back with release(); the least recently used statement is closed once
+ * more than maxSize are idle. The cache belongs to its Connection and must be
+ * closed when the Connection is.
+ */
+
+final class StatementCache {
+
+   private final Connection connection;
+   private final int maxSize;
+
+   private final LinkedHashMap<String, PreparedStatement> idle; // access ordered, eldest is least recently used...
+   private final Map<Statement, String> checkedOut;
+
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong misses = new AtomicLong();
+   private final AtomicLong evictions = new AtomicLong();
+
+   private boolean closed;
+
+   StatementCache(Connection connection, int maxSize) {
+      this.connection = connection;
+      this.maxSize = maxSize;
+      idle = new LinkedHashMap<>(16, 0.75f, true);
+      checkedOut = new IdentityHashMap<>();
+   }
+
+   PreparedStatement prepareStatement(String sql) throws SQLException {
+      PreparedStatement stmt = take("S:" + sql);
+      if (stmt == null) {
+         stmt = connection.prepareStatement(sql);
+         checkOut("S:" + sql, stmt);
+      }
+      return stmt;
+   }
+
+   PreparedStatement prepareStatement(String sql, boolean returnGeneratedKeys) throws SQLException {
+      if (!returnGeneratedKeys) {
+         return prepareStatement(sql);
+      }
+
+      PreparedStatement stmt = take("K:" + sql);
+      if (stmt == null) {
+         stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+         checkOut("K:" + sql, stmt);
+      }
+      return stmt;
+   }
+
+   CallableStatement prepareCall(String sql) throws SQLException {
+      CallableStatement stmt = (CallableStatement) take("C:" + sql);
+      if (stmt == null) {
+         stmt = connection.prepareCall(sql);
+         checkOut("C:" + sql, stmt);
+      }
+      return stmt;
+   }
+
+   /*
+    * Returns a statement to the cache once it's been used; its parameters, batch
+    * and warnings are cleared. Statements that can't be reset, weren't prepared by
+    * this cache or are returned after the cache was closed are closed instead.
+    */
+   void release(PreparedStatement stmt) {
+      if (stmt == null) {
+         return;
+      }
+
+      String key;
+      synchronized (this) {
+         key = checkedOut.remove(stmt);
+      }
+
+      if (key != null && maxSize > 0) {
+         try {
+            stmt.clearParameters();
+            stmt.clearBatch();
+            stmt.clearWarnings();
+         }
+         catch (SQLException ex) {
+            key = null; // can't be reused...
+         }
+      }
+
+      PreparedStatement evicted = null;
+      synchronized (this) {
+         if (key != null && maxSize > 0 && !closed && !idle.containsKey(key)) {
+            idle.put(key, stmt);
+            stmt = null;
+            if (idle.size() > maxSize) {
+               Iterator<PreparedStatement> iterator = idle.values().iterator();
+               evicted = iterator.next();
+               iterator.remove();
+               evictions.incrementAndGet();
+            }
+         }
+      }
+
+      closeQuietly(stmt);
+      closeQuietly(evicted);
+   }
+
+   // Closes all of the idle statements, statements still checked out are closed when released.
+   void close() {
+      PreparedStatement[] statements;
+      synchronized (this) {
+         closed = true;
+         statements = idle.values().toArray(new PreparedStatement[idle.size()]);
+         idle.clear();
+      }
+
+      for (PreparedStatement stmt : statements) {
+         closeQuietly(stmt);
+      }
+   }
+
+   synchronized int size() {
+      return idle.size();
+   }
+
+   long getHits() {
+      return hits.get();
+   }
+
+   long getMisses() {
+      return misses.get();
+   }
+
+   long getEvictions() {
+      return evictions.get();
+   }
+
+   private synchronized PreparedStatement take(String key) {
+      if (closed) {
+         throw new IllegalStateException("Statement cache has been closed.");
+      }
+
+      PreparedStatement stmt = idle.remove(key);
+      if (stmt != null) {
+         hits.incrementAndGet();
+         checkedOut.put(stmt, key);
+      }
+      else {
+         misses.incrementAndGet();
+      }
+      return stmt;
+   }
+
+   private synchronized void checkOut(String key, PreparedStatement stmt) {
+      checkedOut.put(stmt, key);
+   }
+
+   private static void closeQuietly(Statement stmt) {
+      if (stmt != null) {
+         try {
+            stmt.close();
+         }
+         catch (SQLException ex) {
+            // statement is being thrown away...
+         }
+      }
+   }
+}
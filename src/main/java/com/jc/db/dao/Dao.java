@@ -28,6 +28,12 @@ public interface Dao<K, E> {
 
    public List<E> findAll(int start, int length, Map<String, String> sortOn, FilterInfo filterOn) throws Exception;
 
+   // Keyset paging; returns up to length records that sort after lastData, or the first page if lastData is null.
+   public List<E> findAllAfter(E lastData, int length, Map<String, String> sortOn, FilterInfo filterOn) throws Exception;
+
+   // Reads the records one at a time rather than as a list; the returned cursor must be closed.
+   public EntityCursor<E> stream(Map<String, String> sortOn, FilterInfo filterOn) throws Exception;
+
    public long countAll(FilterInfo filterOn) throws Exception;
 
    public List<E> getDataListByField(String fieldname, Object fieldvalue, FilterMethod methodType) throws Exception;
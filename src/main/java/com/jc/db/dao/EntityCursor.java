@@ -0,0 +1,17 @@
+package com.jc.db.dao;
+
+import java.util.Iterator;
+
+/*
+ * Iterates over the results of a query one entity at a time, as rows are read from
+ * the database, instead of loading the whole result list into memory. A cursor holds
+ * its database connection until it is closed; it closes itself once the last entity
+ * has been read, otherwise it should be closed with try-with-resources or in a
+ * finally block.
+ */
+
+public interface EntityCursor<E> extends Iterator<E>, AutoCloseable {
+
+   @Override
+   public void close();
+}
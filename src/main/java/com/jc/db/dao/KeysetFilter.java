@@ -0,0 +1,86 @@
+package com.jc.db.dao;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Builds the sort and filter used for keyset (seek) paging. Rather than skipping
+ * start rows, the next page is selected with a where clause that continues on from
+ * the sort key values of the last record returned, e.g. for a sort on name, id:
+ * 
+ *    (name > ?) or (name = ? and id > ?)
+ * 
+ * so a deep page costs the same as the first one when the sort columns are indexed.
+ * The id field is always added as the last sort key so that the order is total.
+ */
+
+public final class KeysetFilter {
+
+   private KeysetFilter() {}
+
+   // Returns a copy of sortOn, in its iteration order, with the id field appended if it isn't already a sort key.
+   public static Map<String, String> createSortOn(Map<String, String> sortOn, String idFieldName) {
+      if (idFieldName == null || idFieldName.isEmpty()) {
+         throw new IllegalArgumentException("'idFieldName' cannot be null or empty.");
+      }
+
+      Map<String, String> keysetSortOn = new LinkedHashMap<>();
+      boolean hasIdField = false;
+      if (sortOn != null) {
+         for (Map.Entry<String, String> entry : sortOn.entrySet()) {
+            keysetSortOn.put(entry.getKey(), entry.getValue());
+            if (entry.getKey().equalsIgnoreCase(idFieldName)) {
+               hasIdField = true;
+            }
+         }
+      }
+
+      if (!hasIdField) {
+         keysetSortOn.put(idFieldName, "asc");
+      }
+      return keysetSortOn;
+   }
+
+   /*
+    * Returns a filter that selects the records after the one with the supplied sort key values,
+    * ANDed with filterOn if it isn't null. Sort key values can't be null since a null can't be
+    * compared in a where clause.
+    */
+   public static FilterInfo createSeekFilter(Map<String, String> sortOn, Map<String, Object> lastValues, FilterInfo filterOn) throws Exception {
+      List<String> fieldNames = new ArrayList<>(sortOn.keySet());
+
+      FilterInfo[] seekFilters = new FilterInfo[fieldNames.size()];
+      for (int i = 0; i < fieldNames.size(); i++) {
+         FilterInfo[] keyFilters = new FilterInfo[i + 1];
+         for (int j = 0; j < i; j++) {
+            String fieldName = fieldNames.get(j);
+            keyFilters[j] = new FilterInfo(fieldName, getLastValue(lastValues, fieldName), FilterMethod.MATCH_EXACT);
+         }
+
+         String fieldName = fieldNames.get(i);
+         FilterMethod method = FilterMethod.GREATERTHAN;
+         if ("desc".equalsIgnoreCase(sortOn.get(fieldName))) {
+            method = FilterMethod.LESSTHAN;
+         }
+         keyFilters[i] = new FilterInfo(fieldName, getLastValue(lastValues, fieldName), method);
+
+         seekFilters[i] = new FilterInfo(FilterMethod.AND_FIELD_GROUP, keyFilters);
+      }
+
+      FilterInfo seekFilter = new FilterInfo(FilterMethod.OR_FIELD_GROUP, seekFilters);
+      if (filterOn != null) {
+         seekFilter = new FilterInfo(FilterMethod.AND_FIELD_GROUP, filterOn, seekFilter);
+      }
+      return seekFilter;
+   }
+
+   private static Object getLastValue(Map<String, Object> lastValues, String fieldName) {
+      Object value = lastValues.get(fieldName);
+      if (value == null) {
+         throw new IllegalArgumentException("No value found for sort field '" + fieldName + "'; keyset paging requires non-null sort values.");
+      }
+      return value;
+   }
+}
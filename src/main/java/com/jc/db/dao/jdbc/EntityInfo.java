@@ -6,6 +6,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -39,6 +40,7 @@ public class EntityInfo {
 
    private Map<String, String> columnPropFieldNameXREF; // key=columnProperty/value=entityFieldName
    private Map<String, FieldInfo> fieldInfoMap; // key=entityFieldName/value=entityFieldInfo
+   private List<String> columnPropKeys; // read only, in columnPropFieldNameXREF key order
 
    private final JoinInfo selectInfo;
    private final Map<String, JoinInfo> joinInfoMap; // key=tableAlias/value=tableJoinInfo
@@ -114,6 +116,9 @@ public class EntityInfo {
             sb.append("FieldInfo for '" + key + "' is invalid: " + fieldInfo.getInvalidMsg() + ".");
             error = true;
          }
+         else {
+            fieldInfo.createAccessor();
+         }
       }
 
       if (error) {
@@ -135,7 +140,7 @@ public class EntityInfo {
    }
 
    public Map<String, JoinInfo> getJoinInfo() {
-      return joinInfoMap;
+      return Collections.unmodifiableMap(joinInfoMap);
    }
 
    public String getAliasForTableName(String tableName) {
@@ -146,6 +151,10 @@ public class EntityInfo {
       return objClass.getName();
    }
 
+   public Class<?> getEntityClass() {
+      return objClass;
+   }
+
    public String getSchemaName() {
       return schemaName;
    }
@@ -155,7 +164,7 @@ public class EntityInfo {
    }
 
    public List<String> getColumPropKeys() {
-      return new ArrayList<String>(columnPropFieldNameXREF.keySet());
+      return columnPropKeys;
    }
 
    public FieldInfo getFieldInfoByColumnProperty(String columnProp) {
@@ -350,7 +359,7 @@ public class EntityInfo {
          FieldInfo fieldInfo = entry.getValue();
 
          if (fieldInfo.getFieldClass().isAnnotationPresent(Entity.class)) {
-            EntityInfo entityInfo = new EntityInfo(fieldInfo.getFieldClass());
+            EntityInfo entityInfo = EntityInfoCache.getEntityInfo(fieldInfo.getFieldClass());
             fieldInfo.setEntityInfo(entityInfo);
          }
 
@@ -368,6 +377,8 @@ public class EntityInfo {
       if (!idFieldFound) {
          throw (new IllegalArgumentException("Unable to determine the id field from the supplied entity class: " + objClass.getName()));
       }
+
+      columnPropKeys = Collections.unmodifiableList(new ArrayList<String>(columnPropFieldNameXREF.keySet()));
    }
 
    private void assignSchemaAndTableName(Class<?> classObj) {
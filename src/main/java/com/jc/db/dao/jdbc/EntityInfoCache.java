@@ -0,0 +1,64 @@
+package com.jc.db.dao.jdbc;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * Process wide registry of EntityInfo objects keyed by entity class. Building an
+ * EntityInfo requires scanning the class hierarchy for annotations so it is only
+ * done once per entity class; every code path in this package shares the same
+ * EntityInfo/FieldInfo/JoinInfo graph, which is not modified once created.
+ */
+
+public final class EntityInfoCache {
+
+   private static final ConcurrentMap<Class<?>, EntityInfo> ENTITY_INFO_STORE = new ConcurrentHashMap<>();
+
+   private EntityInfoCache() {}
+
+   public static EntityInfo getEntityInfo(Class<?> entityClass) {
+      if (entityClass == null) {
+         throw new IllegalArgumentException("Supplied entity class was null.");
+      }
+
+      EntityInfo entityInfo = ENTITY_INFO_STORE.get(entityClass);
+      if (entityInfo == null) {
+         // Built outside of the map so that nested entities can be registered while
+         // this one is being created; if two threads race, the first one in wins.
+         EntityInfo newEntityInfo = new EntityInfo(entityClass);
+         entityInfo = ENTITY_INFO_STORE.putIfAbsent(entityClass, newEntityInfo);
+         if (entityInfo == null) {
+            entityInfo = newEntityInfo;
+         }
+      }
+      return entityInfo;
+   }
+
+   // Builds the EntityInfo for each of the supplied classes, intended to be called at startup.
+   public static void preload(List<Class<?>> entityClasses) {
+      if (entityClasses != null) {
+         for (Class<?> entityClass : entityClasses) {
+            getEntityInfo(entityClass);
+         }
+      }
+   }
+
+   public static boolean contains(Class<?> entityClass) {
+      return ENTITY_INFO_STORE.containsKey(entityClass);
+   }
+
+   public static int size() {
+      return ENTITY_INFO_STORE.size();
+   }
+
+   public static void remove(Class<?> entityClass) {
+      ENTITY_INFO_STORE.remove(entityClass);
+      EntityRowMapper.remove(entityClass);
+   }
+
+   public static void clear() {
+      ENTITY_INFO_STORE.clear();
+      EntityRowMapper.clear();
+   }
+}
@@ -0,0 +1,239 @@
+package com.jc.db.dao.jdbc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.jc.db.DBResult;
+import com.jc.db.DBResult.ColumnMetaData;
+
+/*
+ * Hydrates entity objects from a ResultSet row. A mapper is compiled once per
+ * entity class from its EntityInfo: the column property keys, the field accessors,
+ * the setter parameter types and the mappers for any sub-entities are all resolved
+ * up front. Each query then binds the mapper to its result set's column metadata,
+ * so mapping a row is just a walk over arrays.
+ */
+
+final class EntityRowMapper {
+
+   private static final ConcurrentMap<Class<?>, EntityRowMapper> MAPPER_STORE = new ConcurrentHashMap<>();
+
+   private final String entityClassName;
+   private final EntityCreator creator;
+
+   private final String[] columnKeys; // lower case column properties, null for sub-entity fields
+   private final FieldAccessor[] accessors;
+   private final Class<?>[] paramTypes;
+   private final String[] setterNames;
+   private final EntityRowMapper[] subMappers; // null for non sub-entity fields
+
+   private EntityRowMapper(EntityInfo entityInfo) {
+      entityClassName = entityInfo.getEntityClassName();
+      creator = EntityCreator.create(entityInfo.getEntityClass());
+
+      List<String> colPropKeys = entityInfo.getColumPropKeys();
+      int size = colPropKeys.size();
+
+      columnKeys = new String[size];
+      accessors = new FieldAccessor[size];
+      paramTypes = new Class<?>[size];
+      setterNames = new String[size];
+      subMappers = new EntityRowMapper[size];
+
+      for (int i = 0; i < size; i++) {
+         String columnProp = colPropKeys.get(i);
+         FieldInfo info = entityInfo.getFieldInfoByColumnProperty(columnProp);
+
+         accessors[i] = info.getAccessor();
+         paramTypes[i] = info.getSetterMethod().getParameterTypes()[0];
+         setterNames[i] = info.getSetterMethod().getName();
+
+         if (info.hasEntityInfo()) {
+            subMappers[i] = forEntity(info.getEntityInfo());
+         }
+         else {
+            columnKeys[i] = columnProp.toLowerCase();
+         }
+      }
+   }
+
+   static EntityRowMapper forEntity(EntityInfo entityInfo) {
+      Class<?> entityClass = entityInfo.getEntityClass();
+      EntityRowMapper mapper = MAPPER_STORE.get(entityClass);
+      if (mapper == null) {
+         EntityRowMapper newMapper = new EntityRowMapper(entityInfo);
+         mapper = MAPPER_STORE.putIfAbsent(entityClass, newMapper);
+         if (mapper == null) {
+            mapper = newMapper;
+         }
+      }
+      return mapper;
+   }
+
+   static void remove(Class<?> entityClass) {
+      MAPPER_STORE.remove(entityClass);
+   }
+
+   static void clear() {
+      MAPPER_STORE.clear();
+   }
+
+   // Resolves the column metadata for each field once for the supplied result set.
+   Binding bind(Map<String, ColumnMetaData> metadata) {
+      return new Binding(this, metadata);
+   }
+
+   static Object convertValue(Object value, Class<?> paramType) {
+      Class<?> valueClass = value.getClass();
+
+      if (paramType.equals(valueClass)) {
+         return value;
+      }
+      else if (paramType.isPrimitive()) {
+         if (paramType.equals(Integer.TYPE) && valueClass.equals(Integer.class)) {
+            return value;
+         }
+         else if (paramType.equals(Long.TYPE) && valueClass.equals(Long.class)) {
+            return value;
+         }
+         else if (paramType.equals(Boolean.TYPE) && valueClass.equals(Boolean.class)) {
+            return value;
+         }
+         else if (paramType.equals(Double.TYPE) && valueClass.equals(Double.class)) {
+            return value;
+         }
+         else if (paramType.equals(Float.TYPE) && valueClass.equals(Float.class)) {
+            return value;
+         }
+         else if (paramType.equals(Boolean.TYPE) && valueClass.equals(Integer.class)) {
+            return Boolean.valueOf(((Integer) value).intValue() != 0);
+         }
+      }
+      else if (paramType.equals(Long.class) && valueClass.equals(BigInteger.class)) {
+         return Long.valueOf(((BigInteger) value).longValue());
+      }
+      else if (paramType.equals(Long.class) && valueClass.equals(Integer.class)) {
+         return Long.valueOf(((Integer) value).longValue());
+      }
+      else if (paramType.equals(Boolean.class) && valueClass.equals(Integer.class)) {
+         return Boolean.valueOf(((Integer) value).intValue() != 0);
+      }
+      else if (paramType.equals(BigInteger.class) && valueClass.equals(Long.class)) {
+         return BigInteger.valueOf(((Long) value).longValue());
+      }
+      return null; // no conversion available...
+   }
+
+   // ------------------------------------------------------------------------
+
+   static final class Binding {
+
+      private final EntityRowMapper mapper;
+      private final ColumnMetaData[] columns;
+      private final Binding[] subBindings;
+
+      private Binding(EntityRowMapper mapper, Map<String, ColumnMetaData> metadata) {
+         this.mapper = mapper;
+
+         int size = mapper.columnKeys.length;
+         columns = new ColumnMetaData[size];
+         subBindings = new Binding[size];
+         for (int i = 0; i < size; i++) {
+            if (mapper.subMappers[i] != null) {
+               subBindings[i] = mapper.subMappers[i].bind(metadata);
+            }
+            else {
+               columns[i] = metadata.get(mapper.columnKeys[i]); // null if not queried...
+            }
+         }
+      }
+
+      // Returns null if none of the entity's columns have data for the current row.
+      Object mapRow(ResultSet result) throws Exception {
+         Object entity = null;
+
+         for (int i = 0; i < columns.length; i++) {
+            Object value = null;
+            Class<?> paramType = mapper.paramTypes[i];
+
+            if (subBindings[i] == null) {
+               ColumnMetaData column = columns[i];
+               if (column != null) {
+                  value = DBResult.getValueFromResultSet(column, result);
+                  if (value != null) {
+                     Object converted = convertValue(value, paramType);
+                     if (converted == null) {
+                        throw new JDBCQueryException(value.getClass().getName(), mapper.setterNames[i], paramType.getName(), mapper.entityClassName);
+                     }
+                     value = converted;
+                  }
+                  // else no data exists for this field...
+               }
+               // else no data was queried for this field...
+            }
+            else {
+               value = subBindings[i].mapRow(result);
+               if (value != null && !paramType.equals(value.getClass())) {
+                  throw new JDBCQueryException(value.getClass().getName(), mapper.setterNames[i], paramType.getName(), mapper.entityClassName);
+               }
+            }
+
+            if (value != null) {
+               if (entity == null) {
+                  entity = mapper.creator.newInstance();
+               }
+               mapper.accessors[i].set(entity, value);
+            }
+         }
+
+         return entity;
+      }
+   }
+
+   // ------------------------------------------------------------------------
+
+   static abstract class EntityCreator {
+
+      abstract Object newInstance() throws Exception;
+
+      static EntityCreator create(final Class<?> entityClass) {
+         try {
+            final MethodHandle constructor = MethodHandles.publicLookup().findConstructor(entityClass, MethodType.methodType(void.class))
+                  .asType(MethodType.methodType(Object.class));
+            return new EntityCreator() {
+
+               @Override
+               Object newInstance() throws Exception {
+                  try {
+                     return constructor.invokeExact();
+                  }
+                  catch (Exception ex) {
+                     throw ex;
+                  }
+                  catch (Throwable ex) {
+                     throw new IllegalStateException("Unable to create an instance of " + entityClass.getName() + ".", ex);
+                  }
+               }
+            };
+         }
+         catch (NoSuchMethodException | IllegalAccessException ex) {
+            return new EntityCreator() {
+
+               @Override
+               Object newInstance() throws Exception {
+                  Constructor<?> constructor = entityClass.getConstructor();
+                  return constructor.newInstance();
+               }
+            };
+         }
+      }
+   }
+}
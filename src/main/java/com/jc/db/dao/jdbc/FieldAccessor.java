@@ -0,0 +1,105 @@
+package com.jc.db.dao.jdbc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/*
+ * Reads and writes an entity field through its getter and setter methods. The
+ * methods are bound to MethodHandles once, when the owning EntityInfo is created;
+ * if a handle can't be created for a method (e.g. the entity class isn't public)
+ * the accessor falls back to plain reflection.
+ */
+
+abstract class FieldAccessor {
+
+   abstract Object get(Object entity) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException;
+
+   abstract void set(Object entity, Object value) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException;
+
+   abstract boolean isMethodHandleAccessor();
+
+   static FieldAccessor create(Method getterMethod, Method setterMethod) {
+      FieldAccessor accessor = null;
+      try {
+         accessor = new MethodHandleAccessor(getterMethod, setterMethod);
+      }
+      catch (IllegalAccessException iaex) {
+         accessor = new ReflectionAccessor(getterMethod, setterMethod);
+      }
+      return accessor;
+   }
+
+   // ------------------------------------------------------------------------
+
+   static final class MethodHandleAccessor extends FieldAccessor {
+
+      private final MethodHandle getter; // (Object)Object
+      private final MethodHandle setter; // (Object,Object)void
+
+      MethodHandleAccessor(Method getterMethod, Method setterMethod) throws IllegalAccessException {
+         MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+         getter = lookup.unreflect(getterMethod).asType(MethodType.methodType(Object.class, Object.class));
+         setter = lookup.unreflect(setterMethod).asType(MethodType.methodType(void.class, Object.class, Object.class));
+      }
+
+      @Override
+      Object get(Object entity) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+         try {
+            return getter.invokeExact(entity);
+         }
+         catch (ClassCastException ccex) {
+            throw new IllegalArgumentException(ccex);
+         }
+         catch (Throwable ex) {
+            throw new InvocationTargetException(ex);
+         }
+      }
+
+      @Override
+      void set(Object entity, Object value) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+         try {
+            setter.invokeExact(entity, value);
+         }
+         catch (ClassCastException ccex) {
+            throw new IllegalArgumentException(ccex);
+         }
+         catch (Throwable ex) {
+            throw new InvocationTargetException(ex);
+         }
+      }
+
+      @Override
+      boolean isMethodHandleAccessor() {
+         return true;
+      }
+   }
+
+   static final class ReflectionAccessor extends FieldAccessor {
+
+      private final Method getterMethod;
+      private final Method setterMethod;
+
+      ReflectionAccessor(Method getterMethod, Method setterMethod) {
+         this.getterMethod = getterMethod;
+         this.setterMethod = setterMethod;
+      }
+
+      @Override
+      Object get(Object entity) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+         return getterMethod.invoke(entity);
+      }
+
+      @Override
+      void set(Object entity, Object value) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+         setterMethod.invoke(entity, value);
+      }
+
+      @Override
+      boolean isMethodHandleAccessor() {
+         return false;
+      }
+   }
+}
@@ -18,6 +18,7 @@ public class FieldInfo {
    private Class<?> fieldClass;
    private Method getterMethod;
    private Method setterMethod;
+   private FieldAccessor accessor;
 
    private EntityAssociation association = EntityAssociation.NONE;
    private boolean associationOwner = true;
@@ -36,7 +37,7 @@ public class FieldInfo {
       return tableName;
    }
 
-   public void setTableName(String tableName) {
+   void setTableName(String tableName) {
       this.tableName = tableName;
    }
 
@@ -44,7 +45,7 @@ public class FieldInfo {
       return columnName;
    }
 
-   public void setColumnName(String columnName) {
+   void setColumnName(String columnName) {
       this.columnName = columnName;
    }
 
@@ -52,7 +53,7 @@ public class FieldInfo {
       return refColumnName;
    }
 
-   public void setRefColumnName(String refColumnName) {
+   void setRefColumnName(String refColumnName) {
       this.refColumnName = refColumnName;
    }
 
@@ -60,7 +61,7 @@ public class FieldInfo {
       return association;
    }
 
-   public void setAssociation(EntityAssociation association) {
+   void setAssociation(EntityAssociation association) {
       this.association = association;
    }
 
@@ -68,7 +69,7 @@ public class FieldInfo {
       return associationOwner;
    }
 
-   public void setAssociationOwner(boolean associationOwner) {
+   void setAssociationOwner(boolean associationOwner) {
       this.associationOwner = associationOwner;
    }
 
@@ -76,7 +77,7 @@ public class FieldInfo {
       return mappedBy;
    }
 
-   public void setMappedBy(String mappedBy) {
+   void setMappedBy(String mappedBy) {
       this.mappedBy = mappedBy;
    }
 
@@ -84,7 +85,7 @@ public class FieldInfo {
       return xrefSchema;
    }
 
-   public void setXREFSchemaName(String xrefSchema) {
+   void setXREFSchemaName(String xrefSchema) {
       this.xrefSchema = xrefSchema;
    }
 
@@ -92,7 +93,7 @@ public class FieldInfo {
       return xrefTable;
    }
 
-   public void setXREFTableName(String xrefTable) {
+   void setXREFTableName(String xrefTable) {
       this.xrefTable = xrefTable;
    }
 
@@ -100,7 +101,7 @@ public class FieldInfo {
       return xrefSrcColumn;
    }
 
-   public void setXREFSrcColumn(String xrefSrcColumn) {
+   void setXREFSrcColumn(String xrefSrcColumn) {
       this.xrefSrcColumn = xrefSrcColumn;
    }
 
@@ -108,7 +109,7 @@ public class FieldInfo {
       return xrefDestColumn;
    }
 
-   public void setXREFDestColumn(String xrefDestColumn) {
+   void setXREFDestColumn(String xrefDestColumn) {
       this.xrefDestColumn = xrefDestColumn;
    }
 
@@ -116,7 +117,7 @@ public class FieldInfo {
       return idField;
    }
 
-   public void setIdField(boolean idField) {
+   void setIdField(boolean idField) {
       this.idField = idField;
    }
 
@@ -124,7 +125,7 @@ public class FieldInfo {
       return fieldName;
    }
 
-   public void setFieldName(String fieldName) {
+   void setFieldName(String fieldName) {
       this.fieldName = fieldName;
    }
 
@@ -132,7 +133,7 @@ public class FieldInfo {
       return fieldClass;
    }
 
-   public void setFieldClass(Class<?> fieldClass) {
+   void setFieldClass(Class<?> fieldClass) {
       this.fieldClass = fieldClass;
    }
 
@@ -140,7 +141,7 @@ public class FieldInfo {
       return getterMethod;
    }
 
-   public void setGetterMethod(Method getterMethod) {
+   void setGetterMethod(Method getterMethod) {
       this.getterMethod = getterMethod;
    }
 
@@ -148,7 +149,7 @@ public class FieldInfo {
       return setterMethod;
    }
 
-   public void setSetterMethod(Method setterMethod) {
+   void setSetterMethod(Method setterMethod) {
       this.setterMethod = setterMethod;
    }
 
@@ -156,7 +157,7 @@ public class FieldInfo {
       return entityInfo;
    }
 
-   public void setEntityInfo(EntityInfo entityInfo) {
+   void setEntityInfo(EntityInfo entityInfo) {
       this.entityInfo = entityInfo;
    }
 
@@ -165,13 +166,27 @@ public class FieldInfo {
    }
 
    public Object getEntityValueForField(Object entityObj) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
-      //     try {
-      Object value = getterMethod.invoke(entityObj);
-      return value;
-      //      }
-      //      catch (NullPointerException npe) {
-      //         return null;
-      //      }
+      if (accessor != null) {
+         return accessor.get(entityObj);
+      }
+      return getterMethod.invoke(entityObj);
+   }
+
+   public void setEntityValueForField(Object entityObj, Object value) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+      if (accessor != null) {
+         accessor.set(entityObj, value);
+      }
+      else {
+         setterMethod.invoke(entityObj, value);
+      }
+   }
+
+   FieldAccessor getAccessor() {
+      return accessor;
+   }
+
+   void createAccessor() {
+      accessor = FieldAccessor.create(getterMethod, setterMethod);
    }
 
    public boolean hasEntityInfo() {
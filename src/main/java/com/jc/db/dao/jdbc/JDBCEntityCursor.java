@@ -0,0 +1,92 @@
+package com.jc.db.dao.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.jc.db.DBCursor;
+import com.jc.db.DBResult;
+import com.jc.db.DBResult.ColumnMetaData;
+import com.jc.db.dao.EntityCursor;
+
+/*
+ * EntityCursor over a DBCursor; each entity is hydrated by the entity's row mapper
+ * only when next() is called. The DBCursor is closed when the rows run out, when an
+ * error occurs, or when the caller closes this cursor.
+ */
+
+final class JDBCEntityCursor<E> implements EntityCursor<E> {
+
+   private final DBCursor cursor;
+   private final ResultSet resultSet;
+   private final EntityRowMapper.Binding rowMapper;
+
+   private boolean rowFetched;
+   private boolean hasRow;
+
+   JDBCEntityCursor(DBCursor cursor, Class<?> entityClass) throws SQLException {
+      this.cursor = cursor;
+      this.resultSet = cursor.getResultSet();
+
+      Map<String, ColumnMetaData> metadata = DBResult.getColumnInfo(resultSet, true);
+      EntityInfo entityInfo = EntityInfoCache.getEntityInfo(entityClass);
+      rowMapper = EntityRowMapper.forEntity(entityInfo).bind(metadata);
+   }
+
+   @Override
+   public boolean hasNext() {
+      if (!rowFetched) {
+         if (cursor.isClosed()) {
+            hasRow = false;
+         }
+         else {
+            try {
+               hasRow = resultSet.next();
+            }
+            catch (SQLException ex) {
+               close();
+               throw new JDBCQueryException(ex);
+            }
+
+            if (!hasRow) {
+               close();
+            }
+         }
+         rowFetched = true;
+      }
+      return hasRow;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public E next() {
+      if (!hasNext()) {
+         throw new NoSuchElementException();
+      }
+      rowFetched = false;
+
+      try {
+         return (E) rowMapper.mapRow(resultSet);
+      }
+      catch (Exception ex) {
+         close();
+         if (!(ex instanceof JDBCQueryException)) {
+            throw new JDBCQueryException(ex);
+         }
+         else {
+            throw (JDBCQueryException) ex;
+         }
+      }
+   }
+
+   @Override
+   public void remove() {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void close() {
+      cursor.close();
+   }
+}
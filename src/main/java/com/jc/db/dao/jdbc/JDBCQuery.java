@@ -1,7 +1,5 @@
 package com.jc.db.dao.jdbc;
 
-import java.lang.reflect.Method;
-import java.math.BigInteger;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -17,10 +15,11 @@ import javax.persistence.Parameter;
 import javax.persistence.Query;
 import javax.persistence.TemporalType;
 
+import com.jc.db.DBCursor;
 import com.jc.db.DBResult;
 import com.jc.db.DBResult.ColumnMetaData;
 import com.jc.db.ResultSetProcessor;
-import com.jc.util.ObjectFactory;
+import com.jc.db.dao.EntityCursor;
 
 public class JDBCQuery extends ResultSetProcessor implements Query {
 
@@ -63,12 +62,13 @@ public class JDBCQuery extends ResultSetProcessor implements Query {
          }
 
          Map<String, ColumnMetaData> metadata = DBResult.getColumnInfo(result, true);
-         EntityInfo entityInfo = new EntityInfo(entityClass);
+         EntityInfo entityInfo = EntityInfoCache.getEntityInfo(entityClass);
+         EntityRowMapper.Binding rowMapper = EntityRowMapper.forEntity(entityInfo).bind(metadata);
 
          int numRecsProcessed = 0;
          while (result.next()) {
             try {
-               Object entity = createEntityObject(result, metadata, entityInfo);
+               Object entity = rowMapper.mapRow(result);
                entityObjs.add(entity);
 
                numRecsProcessed++;
@@ -288,6 +288,21 @@ public class JDBCQuery extends ResultSetProcessor implements Query {
       this.parameterList = parameterList;
    }
 
+   // Opens a cursor over the query's results rather than reading them into a list.
+   <T> EntityCursor<T> getResultCursor() {
+      DBCursor cursor = null;
+      try {
+         cursor = entityManager.openJDBCCursor(this);
+         return new JDBCEntityCursor<T>(cursor, entityClass);
+      }
+      catch (Exception ex) {
+         if (cursor != null) {
+            cursor.close();
+         }
+         throw new JDBCQueryException(ex);
+      }
+   }
+
    Long getRecordCount() throws Exception {
       recordCountQuery = true;
       return (Long) getSingleResult();
@@ -297,116 +312,4 @@ public class JDBCQuery extends ResultSetProcessor implements Query {
       this.queryStr = queryStr;
       this.entityClass = entityClass;
    }
-
-   // ---------------------------- Private Methods ----------------------------
-
-   private Object createEntityObject(ResultSet result, Map<String, ColumnMetaData> metadata, EntityInfo entInfo) throws Exception {
-      Object entity = null;
-
-      List<String> colPropKeys = entInfo.getColumPropKeys();
-      for (String columnProp : colPropKeys) {
-
-         FieldInfo info = entInfo.getFieldInfoByColumnProperty(columnProp);
-
-         if (!info.hasEntityInfo()) {
-            Object value = null;
-            ColumnMetaData column = metadata.get(columnProp.toLowerCase());
-            if (column != null) {
-               value = DBResult.getValueFromResultSet(column, result);
-               if (value != null) {
-                  if (entity == null) {
-                     entity = ObjectFactory.getInstance(entInfo.getEntityClassName());
-                  }
-                  Method setMethod = info.getSetterMethod();
-
-                  Class<? extends Object> valueClass = value.getClass();
-                  Class<?>[] methodParamTypes = setMethod.getParameterTypes();
-
-                  boolean skipReTest = false; // methodParamType != valueClass, but no conversion needed; so don't retest if set to true.
-                  if (methodParamTypes[0].equals(Integer.TYPE) && valueClass.equals(Integer.class)) {
-                     skipReTest = true;
-                  }
-                  else if (methodParamTypes[0].equals(Long.TYPE) && valueClass.equals(Long.class)) {
-                     skipReTest = true;
-                  }
-                  else if (methodParamTypes[0].equals(Boolean.TYPE) && valueClass.equals(Boolean.class)) {
-                     skipReTest = true;
-                  }
-                  else if (methodParamTypes[0].equals(Double.TYPE) && valueClass.equals(Double.class)) {
-                     skipReTest = true;
-                  }
-                  else if (methodParamTypes[0].equals(Float.TYPE) && valueClass.equals(Float.class)) {
-                     skipReTest = true;
-                  }
-                  else if (methodParamTypes[0].equals(Long.class) && valueClass.equals(BigInteger.class)) {
-                     // convert value from BigInteger to Long...
-                     long longValue = ((BigInteger) value).longValue();
-                     value = new Long(longValue);
-                     valueClass = value.getClass();
-                  }
-                  else if (methodParamTypes[0].equals(Long.class) && valueClass.equals(Integer.class)) {
-                     // convert value from Integer to Long...
-                     long longValue = ((Integer) value).longValue();
-                     value = new Long(longValue);
-                     valueClass = value.getClass();
-                  }
-                  else if (methodParamTypes[0].equals(Boolean.class) && valueClass.equals(Integer.class)) {
-                     // convert value from Integer to Boolean...
-                     boolean boolValue = true;
-                     int intValue = ((Integer) value).intValue();
-                     if (intValue == 0) {
-                        boolValue = false;
-                     }
-                     value = new Boolean(boolValue);
-                     valueClass = value.getClass();
-                  }
-                  else if (methodParamTypes[0].equals(Boolean.TYPE) && valueClass.equals(Integer.class)) {
-                     // convert value from Integer to Boolean...
-                     boolean boolValue = true;
-                     int intValue = ((Integer) value).intValue();
-                     if (intValue == 0) {
-                        boolValue = false;
-                     }
-                     value = new Boolean(boolValue);
-                     skipReTest = true;
-                  }
-                  else if (methodParamTypes[0].equals(BigInteger.class) && valueClass.equals(Long.class)) {
-                     // convert value from Long to BigInteger...
-                     value = new BigInteger(((Long) value).toString());
-                     valueClass = value.getClass();
-                  }
-
-                  // compare the value type with the object's field type...
-                  if (!skipReTest && !methodParamTypes[0].equals(valueClass)) {
-                     throw new JDBCQueryException(valueClass.getName(), setMethod.getName(), methodParamTypes[0].getName(), entInfo.getEntityClassName());
-                  }
-
-                  setMethod.invoke(entity, value);
-               }
-               // else no data exists for this field...
-            }
-            // else no data was queried for this field...
-         }
-         else {
-            Object subEntity = createEntityObject(result, metadata, info.getEntityInfo());
-            if (subEntity != null) {
-               if (entity == null) {
-                  entity = ObjectFactory.getInstance(entInfo.getEntityClassName());
-               }
-               Method setMethod = info.getSetterMethod();
-
-               // compare the value type with the object's field type...
-               Class<? extends Object> valueClass = subEntity.getClass();
-               Class<?>[] paramTypes = setMethod.getParameterTypes();
-               if (!paramTypes[0].equals(valueClass)) {
-                  throw new JDBCQueryException(valueClass.getName(), setMethod.getName(), paramTypes[0].getName(), entInfo.getEntityClassName());
-               }
-
-               setMethod.invoke(entity, subEntity);
-            }
-         }
-      }
-
-      return entity;
-   }
 }
@@ -44,8 +44,7 @@ public class JDBCTransaction implements DAOTransaction {
             if (databaseInfo.isEnabled()) { // if database is marked enabled, create a factory...
 
                JDBCDriverInfo driverInfo = databaseInfo.getJDBCDriverInfo();
-               manager = new JdbcEntityManager(datasource, databaseInfo.getUsername(), databaseInfo.getPassword(), driverInfo.getJDBCDriver(),
-                     driverInfo.getJDBCUrl());
+               manager = new JdbcEntityManager(datasource, databaseInfo.getUsername(), databaseInfo.getPassword(), driverInfo);
 
                // ask manager to test connection if enabled...???
                //         boolean enabled = manager.validateDBConnection();
@@ -7,25 +7,33 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.jc.db.JDBCDriverInfo;
+import com.jc.db.JDBCPagingDriverInfo;
 import com.jc.db.dao.Dao;
+import com.jc.db.dao.EntityCursor;
 import com.jc.db.dao.FilterInfo;
 import com.jc.db.dao.FilterMethod;
+import com.jc.db.dao.KeysetFilter;
 
 public abstract class JdbcDao<K, E> implements Dao<K, E> {
 
+   public final static int DEFAULT_BATCH_SIZE = 500;
+
    private final Class<E> entityClass;
-   private EntityInfo entityInfo;
+   private final EntityInfo entityInfo;
 
    private JdbcEntityManager MyEntityManager;
 
    private String datasource;
    private String passwordSecurityKey;
 
+   private int batchSize = DEFAULT_BATCH_SIZE;
+
    @SuppressWarnings("unchecked")
    public JdbcDao() {
       ParameterizedType genericSuperclass = (ParameterizedType) getClass().getGenericSuperclass();
       entityClass = (Class<E>) genericSuperclass.getActualTypeArguments()[1];
-      entityInfo = new EntityInfo(entityClass);
+      entityInfo = EntityInfoCache.getEntityInfo(entityClass);
    }
 
    public JdbcDao(String datasource) throws Exception {
@@ -70,19 +78,31 @@ public abstract class JdbcDao<K, E> implements Dao<K, E> {
       return (entityManager);
    }
 
+   public int getBatchSize() {
+      return batchSize;
+   }
+
+   // The number of statements sent to the database at a time by the list versions of addData, updateData and removeData.
+   public void setBatchSize(int batchSize) {
+      if (batchSize < 1) {
+         throw new IllegalArgumentException("Batch size must be 1 or greater; batch size = " + batchSize + ".");
+      }
+      this.batchSize = batchSize;
+   }
+
    @Override
    public E addData(E data) throws Exception {
       return persistData(data, SAVE);
    }
 
+   /*
+    * Inserts the list in JDBC batches. Unlike addData(E) the entities aren't read back from the database, the
+    * supplied entities are returned with the ids generated by the database set.
+    */
    @Override
    public List<E> addData(List<E> dataList) throws Exception {
-      ArrayList<E> updatedList = new ArrayList<E>();
-      for (E data : dataList) {
-         data = addData(data);
-         updatedList.add(data);
-      }
-      return updatedList;
+      persistDataList(dataList, SAVE);
+      return new ArrayList<E>(dataList);
    }
 
    @Override
@@ -92,18 +112,30 @@ public abstract class JdbcDao<K, E> implements Dao<K, E> {
 
    @Override
    public List<E> updateData(List<E> dataList) throws Exception {
-      ArrayList<E> updatedList = new ArrayList<E>();
-      for (E data : dataList) {
-         data = updateData(data);
-         updatedList.add(data);
-      }
-      return updatedList;
+      persistDataList(dataList, UPDATE);
+      return new ArrayList<E>(dataList);
    }
 
    @Override
    public void removeData(List<E> dataList) throws Exception {
-      for (E data : dataList) {
-         removeData(data);
+      if (dataList.isEmpty()) {
+         return;
+      }
+
+      JdbcEntityManager entityManager = getEntityManager();
+      boolean previouslyStarted = entityManager.transactionStarted();
+      try {
+         entityManager.removeAll(dataList, batchSize);
+      }
+      catch (Exception ex) {
+         if (previouslyStarted) {
+            throw ex;
+         }
+         else {
+            // the entity manager has rolled back the batch...
+            String message = "Error while removing data. " + ex.getMessage();
+            throw new Exception(message);
+         }
       }
    }
 
@@ -159,6 +191,34 @@ public abstract class JdbcDao<K, E> implements Dao<K, E> {
       }
    }
 
+   private void persistDataList(List<E> dataList, int persistType) throws Exception {
+      if (dataList.isEmpty()) {
+         return;
+      }
+
+      JdbcEntityManager entityManager = getEntityManager();
+      boolean previouslyStarted = entityManager.transactionStarted();
+      try {
+         if (persistType == SAVE) {
+            entityManager.persistAll(dataList, batchSize); // batched Inserts
+         }
+         else {
+            entityManager.mergeAll(dataList, batchSize); // batched Updates
+         }
+      }
+      catch (Exception ex) {
+         if (previouslyStarted) {
+            // rollback should be handled by the "global" transaction...
+            throw ex;
+         }
+         else {
+            // the entity manager has rolled back the batch...
+            String message = "Error while persisting data. " + ex.getMessage();
+            throw new Exception(message);
+         }
+      }
+   }
+
    @Override
    public void removeData(E data) throws Exception {
       JdbcEntityManager entityManager = getEntityManager();
@@ -220,6 +280,52 @@ public abstract class JdbcDao<K, E> implements Dao<K, E> {
       return (List<E>) findAll(entityClass, start, length, sortOn, filterOn);
    }
 
+   @Override
+   public List<E> findAllAfter(E lastData, int length, Map<String, String> sortOn, FilterInfo filterOn) throws Exception {
+      String idFieldName = entityInfo.getIdFieldInfo().getFieldName();
+      Map<String, String> keysetSortOn = KeysetFilter.createSortOn(sortOn, idFieldName);
+
+      if (lastData != null) {
+         Map<String, Object> lastValues = new HashMap<String, Object>();
+         for (String fieldName : keysetSortOn.keySet()) {
+            lastValues.put(fieldName, getFieldValue(lastData, fieldName));
+         }
+         filterOn = KeysetFilter.createSeekFilter(keysetSortOn, lastValues, filterOn);
+      }
+
+      return findAll(0, length, keysetSortOn, filterOn);
+   }
+
+   @Override
+   public EntityCursor<E> stream(Map<String, String> sortOn, FilterInfo filterOn) throws Exception {
+      List<Object> parameterList = null;
+      String queryString = "";
+
+      try {
+         queryString = SQLGenerator.createSQL(entityClass, filterOn, sortOn);
+         parameterList = SQLGenerator.createParameterListForWhereClause(filterOn);
+
+         JdbcEntityManager entityManager = getEntityManager();
+         JDBCQuery query = entityManager.createJDBCQuery(entityClass, queryString);
+         if (parameterList != null && !parameterList.isEmpty()) {
+            query.setParameterList(parameterList);
+         }
+
+         return query.getResultCursor();
+      }
+      catch (Exception ex) {
+         if (parameterList != null && !parameterList.isEmpty()) {
+            for (int i = 0; i < parameterList.size(); i++) {
+               Object value = parameterList.get(i);
+               queryString = queryString.replaceFirst("\\?", value.toString());
+            }
+         }
+         Throwable[] errorExceptions = new Throwable[1];
+         errorExceptions[0] = ex;
+         throw new JDBCDaoException(errorExceptions, queryString);
+      }
+   }
+
    @Override
    public long countAll(FilterInfo filterOn) throws Exception {
       return countAll(entityClass, filterOn);
@@ -262,19 +368,27 @@ public abstract class JdbcDao<K, E> implements Dao<K, E> {
       String queryString = "";
 
       try {
-         queryString = SQLGenerator.createSQL(entityClass, filterOn, sortOn);
-         parameterList = SQLGenerator.createParameterListForWhereClause(filterOn);
+         if (start < 0 || length < 0) {
+            throw new Exception("Start and length parameters must both be 0 or greater. Start = " + start + " and length = " + length + ".");
+         }
 
          entityManager = getEntityManager();
+         JDBCDriverInfo driverInfo = entityManager.getJDBCDriverInfo();
+         if (driverInfo instanceof JDBCPagingDriverInfo) {
+            queryString = SQLGenerator.createSQL(entityClass, filterOn, sortOn, (JDBCPagingDriverInfo) driverInfo, start, length);
+         }
+         else {
+            queryString = SQLGenerator.createSQL(entityClass, filterOn, sortOn);
+         }
+         parameterList = SQLGenerator.createParameterListForWhereClause(filterOn);
+
          JDBCQuery query = entityManager.createJDBCQuery(entityClass, queryString);
          if (parameterList != null && !parameterList.isEmpty()) {
             query.setParameterList(parameterList);
          }
 
-         if (start < 0 || length < 0) {
-            throw new Exception("Start and length parameters must both be 0 or greater. Start = " + start + " and length = " + length + ".");
-         }
-         else if (start > 0 || length > 0) {
+         if (!(driverInfo instanceof JDBCPagingDriverInfo) && (start > 0 || length > 0)) {
+            // dialect unknown, page by skipping rows in the result set...
             query.setFirstResult(start);
             query.setMaxResults(length);
          }
@@ -356,18 +470,20 @@ public abstract class JdbcDao<K, E> implements Dao<K, E> {
 
    public static List<?> findAll(JdbcEntityManager entityManager, Class<?> entityClass, int start, int length, String queryString, List<Object> parameterList)
          throws Exception {
+      if (start < 0 || length < 0) {
+         throw (new Exception("Start and length parameters must both be 0 or greater. Start = " + start + " and length = " + length + "."));
+      }
+
       JDBCQuery query = entityManager.createJDBCQuery(entityClass, queryString);
       if (parameterList != null && !parameterList.isEmpty()) {
          query.setParameterList(parameterList);
       }
 
-      if (start < 0 || length < 0) {
-         throw (new Exception("Start and length parameters must both be 0 or greater. Start = " + start + " and length = " + length + "."));
-      }
-      else if (start == 0 && length == 0) {
+      if (start == 0 && length == 0) {
          // skip it and return everything....
       }
       else {
+         // the caller's SQL may already page, lock or end the statement, page by skipping rows in the result set...
          query.setFirstResult(start);
          query.setMaxResults(length);
       }
@@ -427,6 +543,24 @@ public abstract class JdbcDao<K, E> implements Dao<K, E> {
       }
    }
 
+   // Returns the value of a field or, for a field path such as 'address.city', a sub-entity's field.
+   private Object getFieldValue(E data, String fieldName) throws Exception {
+      String[] fieldPath = fieldName.split("\\.");
+      EntityInfo info = entityInfo;
+      Object value = data;
+      for (int i = 0; i < fieldPath.length && value != null; i++) {
+         FieldInfo fieldInfo = info.getFieldInfoByFieldName(fieldPath[i]);
+         value = fieldInfo.getEntityValueForField(value);
+         if (i + 1 < fieldPath.length) {
+            if (!fieldInfo.hasEntityInfo()) {
+               throw new IllegalArgumentException("Field '" + fieldPath[i] + "' of '" + fieldName + "' is not a sub-entity.");
+            }
+            info = fieldInfo.getEntityInfo();
+         }
+      }
+      return value;
+   }
+
    private <T> FilterInfo getFilterInfoFor(T entity) throws Exception {
       List<FilterInfo> filterList = new ArrayList<FilterInfo>();
 
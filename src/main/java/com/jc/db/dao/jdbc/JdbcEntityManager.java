@@ -1,6 +1,7 @@
 package com.jc.db.dao.jdbc;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -20,18 +21,32 @@ import javax.persistence.criteria.CriteriaUpdate;
 import javax.persistence.metamodel.Metamodel;
 
 import com.jc.db.DBConnection;
+import com.jc.db.DBCursor;
 import com.jc.db.DBResult;
+import com.jc.db.JDBCCursorDriverInfo;
+import com.jc.db.JDBCDriverInfo;
 import com.jc.db.command.JDBCConnection;
 import com.jc.db.dao.EntityAssociation;
 
 public class JdbcEntityManager implements EntityManager {
 
+   private final static int BATCH_INSERT = 0;
+   private final static int BATCH_UPDATE = 1;
+   private final static int BATCH_DELETE = 2;
+
    private String datasource;
    private String passwordSecurityKey;
 
    private JDBCConnection jdbcConnection;
    private DBConnection dbConn;
 
+   private JDBCDriverInfo driverInfo; // null if the SQL dialect is not known...
+
+   public JdbcEntityManager(String datasource, String username, String password, JDBCDriverInfo driverInfo) {
+      this(datasource, username, password, driverInfo.getJDBCDriver(), driverInfo.getJDBCUrl());
+      this.driverInfo = driverInfo;
+   }
+
    public JdbcEntityManager(String datasource, String username, String password, String driver, String url) {
       jdbcConnection = new JDBCConnection(username, password, driver, url);
       jdbcConnection.setDatasource(datasource);
@@ -83,6 +98,15 @@ public class JdbcEntityManager implements EntityManager {
       dbConn = null;
    }
 
+   public JDBCDriverInfo getJDBCDriverInfo() {
+      return driverInfo;
+   }
+
+   // Allows queries to be paged by the database, without it paging is done by skipping rows in the result set.
+   public void setJDBCDriverInfo(JDBCDriverInfo driverInfo) {
+      this.driverInfo = driverInfo;
+   }
+
    JDBCQuery createJDBCQuery(Class<?> entityClass, String queryStr) throws Exception {
       JDBCQuery query = new JDBCQuery(this);
       query.setQueryString(entityClass, queryStr);
@@ -101,7 +125,7 @@ public class JdbcEntityManager implements EntityManager {
       try {
          // create insert query based on entity info.
          Class<?> entityClass = entity.getClass();
-         EntityInfo entityInfo = new EntityInfo(entityClass);
+         EntityInfo entityInfo = EntityInfoCache.getEntityInfo(entityClass);
 
          String query = createInsertQuery(entity, entityInfo);
          List<Object> parameterList = createParameterList(entity, entityInfo);
@@ -138,7 +162,7 @@ public class JdbcEntityManager implements EntityManager {
 
       try {
          Class<?> entityClass = entity.getClass();
-         EntityInfo entityInfo = new EntityInfo(entityClass);
+         EntityInfo entityInfo = EntityInfoCache.getEntityInfo(entityClass);
 
          String query = createUpdateQuery(entity, entityInfo);
          List<Object> parameterList = createParameterList(entity, entityInfo);
@@ -177,7 +201,7 @@ public class JdbcEntityManager implements EntityManager {
 
       try {
          Class<?> entityClass = entity.getClass();
-         EntityInfo entityInfo = new EntityInfo(entityClass);
+         EntityInfo entityInfo = EntityInfoCache.getEntityInfo(entityClass);
 
          String query = createDeleteQuery(entity, entityInfo);
 
@@ -208,6 +232,49 @@ public class JdbcEntityManager implements EntityManager {
       }
    }
 
+   /**
+    * Inserts the entities using JDBC batches of batchSize statements. Entities that share the same insert statement are batched together; the ids generated
+    * by the database are set on entities that were inserted without one.
+    */
+   public void persistAll(List<?> entities, int batchSize) {
+      try {
+         executeBatch(entities, batchSize, BATCH_INSERT);
+      }
+      catch (Exception ex) {
+         Throwable[] errorExceptions = new Throwable[1];
+         errorExceptions[0] = ex;
+         throw new JDBCDaoInsertException(errorExceptions);
+      }
+   }
+
+   /**
+    * Updates the entities using JDBC batches of batchSize statements.
+    */
+   public void mergeAll(List<?> entities, int batchSize) {
+      try {
+         executeBatch(entities, batchSize, BATCH_UPDATE);
+      }
+      catch (Exception ex) {
+         Throwable[] errorExceptions = new Throwable[1];
+         errorExceptions[0] = ex;
+         throw new JDBCDaoUpdateException(errorExceptions);
+      }
+   }
+
+   /**
+    * Deletes the entities using JDBC batches of batchSize statements.
+    */
+   public void removeAll(List<?> entities, int batchSize) {
+      try {
+         executeBatch(entities, batchSize, BATCH_DELETE);
+      }
+      catch (Exception ex) {
+         Throwable[] errorExceptions = new Throwable[1];
+         errorExceptions[0] = ex;
+         throw new JDBCDaoDeleteException(errorExceptions);
+      }
+   }
+
    @Override
    public <T> T find(Class<T> entityClass, Object primaryKey) {
       throw (new UnsupportedOperationException());
@@ -453,6 +520,20 @@ public class JdbcEntityManager implements EntityManager {
       dbConn.executeSQLQuery(query);
    }
 
+   DBCursor openJDBCCursor(JDBCQuery query) throws Exception {
+      int fetchSize = DBConnection.DEFAULT_FETCH_SIZE;
+      if (driverInfo instanceof JDBCCursorDriverInfo) {
+         fetchSize = ((JDBCCursorDriverInfo) driverInfo).getCursorFetchSize();
+      }
+
+      DBConnection conn = dbConn;
+      if (conn == null) {
+         // not part of a transaction, the connection is released when the cursor is closed...
+         conn = getDBConnection();
+      }
+      return conn.openCursor(query.getQuery(), query.getParameterList(), fetchSize);
+   }
+
    // -------------------- PRIVATE METHODS ----------------------
 
    private DBConnection getDBConnection() {
@@ -494,6 +575,97 @@ public class JdbcEntityManager implements EntityManager {
       return dbConn.executeSQLUpdate(query);
    }
 
+   private void executeBatch(List<?> entities, int batchSize, int batchType) throws Exception {
+      // Group the entities by statement, insert statements only include non-null columns so may differ between entities of the same class...
+      Map<String, List<Object>> entityGroups = new LinkedHashMap<String, List<Object>>();
+      Map<String, List<List<Object>>> parameterGroups = new LinkedHashMap<String, List<List<Object>>>();
+      for (Object entity : entities) {
+         EntityInfo entityInfo = EntityInfoCache.getEntityInfo(entity.getClass());
+
+         String query = null;
+         List<Object> parameterList = null;
+         if (batchType == BATCH_INSERT) {
+            query = createInsertQuery(entity, entityInfo);
+            parameterList = createParameterList(entity, entityInfo);
+         }
+         else if (batchType == BATCH_UPDATE) {
+            query = createUpdateQuery(entity, entityInfo, true);
+            parameterList = createParameterList(entity, entityInfo);
+            parameterList.add(getValueFromEntity(entity, entityInfo.getIdFieldInfo()));
+         }
+         else {
+            query = createBatchDeleteQuery(entityInfo);
+            parameterList = new ArrayList<Object>();
+            parameterList.add(getValueFromEntity(entity, entityInfo.getIdFieldInfo()));
+         }
+
+         List<Object> entityGroup = entityGroups.get(query);
+         if (entityGroup == null) {
+            entityGroup = new ArrayList<Object>();
+            entityGroups.put(query, entityGroup);
+            parameterGroups.put(query, new ArrayList<List<Object>>());
+         }
+         entityGroup.add(entity);
+         parameterGroups.get(query).add(parameterList);
+      }
+
+      boolean previouslyStarted = transactionStarted();
+      try {
+         if (!previouslyStarted) {
+            startTransaction();
+         }
+
+         for (Map.Entry<String, List<Object>> entry : entityGroups.entrySet()) {
+            String query = entry.getKey();
+            List<Object> entityGroup = entry.getValue();
+
+            boolean returnGeneratedKeys = batchType == BATCH_INSERT && !hasIdValue(entityGroup.get(0));
+            DBResult result = dbConn.executeSQLBatch(query, parameterGroups.get(query), batchSize, returnGeneratedKeys);
+            if (result.hasErrors()) {
+               throw new JDBCDaoException(result.getErrors(), query);
+            }
+
+            if (returnGeneratedKeys) {
+               setGeneratedIds(entityGroup, result.getGeneratedKeys());
+            }
+         }
+
+         if (!previouslyStarted) {
+            endTransaction();
+         }
+      }
+      catch (Exception ex) {
+         if (!previouslyStarted && transactionStarted()) {
+            rollBackTransaction();
+         }
+         throw ex;
+      }
+   }
+
+   private boolean hasIdValue(Object entity) throws Exception {
+      EntityInfo entityInfo = EntityInfoCache.getEntityInfo(entity.getClass());
+      return getValueFromEntity(entity, entityInfo.getIdFieldInfo()) != null;
+   }
+
+   private void setGeneratedIds(List<Object> entities, List<Object> generatedKeys) throws Exception {
+      if (generatedKeys.size() != entities.size()) {
+         throw new Exception("Expected " + entities.size() + " generated keys but the database returned " + generatedKeys.size() + ".");
+      }
+
+      for (int i = 0; i < entities.size(); i++) {
+         Object entity = entities.get(i);
+         FieldInfo idFieldInfo = EntityInfoCache.getEntityInfo(entity.getClass()).getIdFieldInfo();
+         Class<?> idType = idFieldInfo.getSetterMethod().getParameterTypes()[0];
+
+         Object key = generatedKeys.get(i);
+         Object idValue = EntityRowMapper.convertValue(key, idType);
+         if (idValue == null) {
+            throw new JDBCQueryException(key.getClass().getName(), idFieldInfo.getSetterMethod().getName(), idType.getName(), entity.getClass().getName());
+         }
+         idFieldInfo.setEntityValueForField(entity, idValue);
+      }
+   }
+
    private String createInsertQuery(Object entity, EntityInfo entityInfo) throws Exception {
 
       StringBuilder columnList = new StringBuilder();
@@ -527,15 +699,26 @@ public class JdbcEntityManager implements EntityManager {
    }
 
    private String createUpdateQuery(Object entity, EntityInfo entityInfo) throws Exception {
+      return createUpdateQuery(entity, entityInfo, false);
+   }
+
+   /*
+    * Sets the entity's non-null columns. With idAsParameter the WHERE clause takes the id as a parameter,
+    * to follow the column values, so the same statement can be batched for many entities.
+    */
+   private String createUpdateQuery(Object entity, EntityInfo entityInfo, boolean idAsParameter) throws Exception {
 
       StringBuilder setList = new StringBuilder();
       String table = (entityInfo.getSchemaName() + "." + entityInfo.getTableName()).toLowerCase();
 
       FieldInfo idFieldInfo = entityInfo.getIdFieldInfo();
-      Object idValueObj = getValueFromEntity(entity, idFieldInfo);
-      String idValue = idValueObj.toString(); // Assume id is a number value.
-      if (idValueObj instanceof String) {
-         idValue = "'" + idValueObj + "',";
+      String idValue = "?";
+      if (!idAsParameter) {
+         Object idValueObj = getValueFromEntity(entity, idFieldInfo);
+         idValue = idValueObj.toString(); // Assume id is a number value.
+         if (idValueObj instanceof String) {
+            idValue = "'" + idValueObj + "',";
+         }
       }
 
       List<String> colPropKeys = entityInfo.getColumPropKeys();
@@ -594,6 +777,12 @@ public class JdbcEntityManager implements EntityManager {
       return query.toString();
    }
 
+   private String createBatchDeleteQuery(EntityInfo entityInfo) throws Exception {
+      String table = (entityInfo.getSchemaName() + "." + entityInfo.getTableName()).toLowerCase();
+      String idfield = entityInfo.getIdFieldInfo().getColumnProperty();
+      return "DELETE FROM " + table + " WHERE " + idfield + "=?";
+   }
+
    private Object getValueFromEntity(Object entity, FieldInfo fieldInfo) throws Exception {
       Object value = null;
       if (fieldInfo.hasEntityInfo()) {
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.jc.db.JDBCPagingDriverInfo;
 import com.jc.db.dao.FilterInfo;
 import com.jc.db.dao.FilterMethod;
 
@@ -13,7 +14,7 @@ public class SQLGenerator {
    private final static String ALIAS_LIST = "ALIAS_LIST";
 
    public static String createCountSQL(Class<?> entityClass, FilterInfo filterOn) throws Exception {
-      EntityInfo entityInfo = new EntityInfo(entityClass);
+      EntityInfo entityInfo = EntityInfoCache.getEntityInfo(entityClass);
 
       String queryString = createFindCountQuery(entityInfo, filterOn);
 
@@ -36,7 +37,7 @@ public class SQLGenerator {
    }
 
    public static String createSQL(Class<?> entityClass, FilterInfo filterOn, Map<String, String> sortOn) throws Exception {
-      EntityInfo entityInfo = new EntityInfo(entityClass);
+      EntityInfo entityInfo = EntityInfoCache.getEntityInfo(entityClass);
 
       String queryString = createFindAllQuery(entityInfo, filterOn);
 
@@ -54,6 +55,20 @@ public class SQLGenerator {
       return queryString;
    }
 
+   // Pages the query in the database using the driver's SQL dialect, start and length of 0 returns everything.
+   public static String createSQL(Class<?> entityClass, FilterInfo filterOn, Map<String, String> sortOn, JDBCPagingDriverInfo driverInfo, int start, int length)
+         throws Exception {
+      if (driverInfo == null) {
+         throw new IllegalArgumentException("Supplied driverInfo was null.");
+      }
+
+      String queryString = createSQL(entityClass, filterOn, sortOn);
+      if (start > 0 || length > 0) {
+         queryString = driverInfo.createPagedQuery(queryString, start, length);
+      }
+      return queryString;
+   }
+
    public static List<Object> createParameterListForWhereClause(FilterInfo filterInfo) throws Exception {
       List<Object> parameterList = new ArrayList<Object>();
       if (filterInfo != null) {
@@ -99,7 +114,7 @@ public class SQLGenerator {
    }
 
    static String createVerifyDataInsertSQL(Class<?> entityClass, FilterInfo filterOn) throws Exception {
-      EntityInfo entityInfo = new EntityInfo(entityClass);
+      EntityInfo entityInfo = EntityInfoCache.getEntityInfo(entityClass);
 
       String queryString = createFindAllQuery(entityInfo, filterOn);
 
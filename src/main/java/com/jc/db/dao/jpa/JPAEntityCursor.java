@@ -0,0 +1,92 @@
+package com.jc.db.dao.jpa;
+
+import java.util.NoSuchElementException;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.ScrollableResults;
+
+import com.jc.db.dao.EntityCursor;
+
+/*
+ * EntityCursor over Hibernate's forward only ScrollableResults. Each entity is
+ * detached as it is handed out so the persistence context doesn't grow with the
+ * number of rows read. If the cursor owns its EntityManager it is closed along
+ * with the cursor.
+ */
+
+final class JPAEntityCursor<E> implements EntityCursor<E> {
+
+   private final EntityManager entityManager;
+   private final ScrollableResults results;
+   private final boolean closeEntityManager;
+
+   private boolean rowFetched;
+   private boolean hasRow;
+   private boolean closed;
+
+   JPAEntityCursor(EntityManager entityManager, ScrollableResults results, boolean closeEntityManager) {
+      this.entityManager = entityManager;
+      this.results = results;
+      this.closeEntityManager = closeEntityManager;
+   }
+
+   @Override
+   public boolean hasNext() {
+      if (!rowFetched) {
+         if (closed) {
+            hasRow = false;
+         }
+         else {
+            try {
+               hasRow = results.next();
+            }
+            catch (RuntimeException ex) {
+               close();
+               throw ex;
+            }
+
+            if (!hasRow) {
+               close();
+            }
+         }
+         rowFetched = true;
+      }
+      return hasRow;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public E next() {
+      if (!hasNext()) {
+         throw new NoSuchElementException();
+      }
+      rowFetched = false;
+
+      E entity = (E) results.get(0);
+      if (entity != null) {
+         entityManager.detach(entity);
+      }
+      return entity;
+   }
+
+   @Override
+   public void remove() {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void close() {
+      if (!closed) {
+         closed = true;
+         try {
+            results.close();
+         }
+         finally {
+            if (closeEntityManager && entityManager.isOpen()) {
+               entityManager.close();
+            }
+         }
+      }
+   }
+}
@@ -1,5 +1,6 @@
 package com.jc.db.dao.jpa;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -11,10 +12,17 @@ import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Query;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+
+import com.jc.db.DBConnection;
 import com.jc.db.DatabaseErrorCode;
+import com.jc.db.MySQLDriverInfo;
 import com.jc.db.dao.Dao;
+import com.jc.db.dao.EntityCursor;
 import com.jc.db.dao.FilterInfo;
 import com.jc.db.dao.FilterMethod;
+import com.jc.db.dao.KeysetFilter;
 import com.jc.exception.LoggableException;
 import com.jc.exception.SystemInfoException;
 
@@ -215,6 +223,81 @@ public abstract class JpaDao<K, E> implements Dao<K, E> {
       return (List<E>) findAll(entityClass, start, length, sortOn, filterOn);
    }
 
+   /*
+    * Like findById, this method assumes that the entity has an id field of 'id'.
+    */
+   @Override
+   public List<E> findAllAfter(E lastData, int length, Map<String, String> sortOn, FilterInfo filterOn) throws Exception {
+      Map<String, String> keysetSortOn = KeysetFilter.createSortOn(sortOn, "id");
+
+      if (lastData != null) {
+         Map<String, Object> lastValues = new HashMap<>();
+         for (String fieldName : keysetSortOn.keySet()) {
+            lastValues.put(fieldName, getFieldValue(lastData, fieldName));
+         }
+         filterOn = KeysetFilter.createSeekFilter(keysetSortOn, lastValues, filterOn);
+      }
+
+      return findAll(0, length, keysetSortOn, filterOn);
+   }
+
+   @Override
+   public EntityCursor<E> stream(Map<String, String> sortOn, FilterInfo filterOn) throws Exception {
+      EntityManager entityManager = null;
+      List<Object> parameterList = null;
+      String queryString = "";
+
+      try {
+         queryString = JPQLGenerator.createJPQL(entityClass, filterOn, sortOn);
+         if (queryString != null && !queryString.isEmpty()) {
+            entityManager = getEntityManager();
+            Query query = entityManager.createQuery(queryString);
+
+            parameterList = JPQLGenerator.createParameterList(entityClass, filterOn);
+            if (parameterList != null && !parameterList.isEmpty()) {
+               for (int i = 0; i < parameterList.size(); i++) {
+                  Object value = parameterList.get(i);
+                  query.setParameter(i + 1, value);
+               }
+            }
+
+            // JPA 2.1 has no streaming query API, so use Hibernate's scrollable results...
+            org.hibernate.Query hqlQuery = query.unwrap(org.hibernate.Query.class);
+            hqlQuery.setFetchSize(getCursorFetchSize(entityManager));
+            hqlQuery.setReadOnly(true);
+            ScrollableResults results = hqlQuery.scroll(ScrollMode.FORWARD_ONLY);
+
+            return new JPAEntityCursor<E>(entityManager, results, !isExternalTransactionMonitoring());
+         }
+         else {
+            throw (new Exception("No query string could be constructed for " + entityClass + "."));
+         }
+      }
+      catch (Exception ex) {
+         if (!isExternalTransactionMonitoring() && entityManager != null) {
+            entityManager.close();
+         }
+
+         String message = "";
+         if (parameterList != null && !parameterList.isEmpty()) {
+            for (int i = 0; i < parameterList.size(); i++) {
+               Object value = parameterList.get(i);
+               queryString = queryString.replaceFirst("\\?", value.toString());
+            }
+            message = "Query: " + queryString;
+         }
+         else if (queryString != null && !queryString.isEmpty()) {
+            message = "Query: " + queryString;
+         }
+
+         if (!message.isEmpty()) {
+            ex = LoggableException.createLoggableException(entityClass, Level.SEVERE, message, ex);
+         }
+
+         throw ex;
+      }
+   }
+
    @Override
    public long countAll(FilterInfo filterOn) throws Exception {
       return countAll(entityClass, filterOn);
@@ -431,6 +514,40 @@ public abstract class JpaDao<K, E> implements Dao<K, E> {
       return new SystemInfoException(Level.SEVERE, errorCode, sb.toString());
    }
 
+   // Returns the value of a field or, for a field path such as 'address.city', a related entity's field.
+   private Object getFieldValue(Object data, String fieldName) throws Exception {
+      String[] fieldPath = fieldName.split("\\.");
+      Object value = data;
+      for (int i = 0; i < fieldPath.length && value != null; i++) {
+         Field field = findField(value.getClass(), fieldPath[i]);
+         if (field == null) {
+            throw new IllegalArgumentException("Unknown field '" + fieldName + "' for " + data.getClass().getName() + ".");
+         }
+         field.setAccessible(true);
+         value = field.get(value);
+      }
+      return value;
+   }
+
+   private static int getCursorFetchSize(EntityManager entityManager) {
+      Object driver = entityManager.getEntityManagerFactory().getProperties().get("javax.persistence.jdbc.driver");
+      if (MySQLDriverInfo.JDBC_DRIVER.equals(driver)) {
+         return MySQLDriverInfo.CURSOR_FETCH_SIZE;
+      }
+      return DBConnection.DEFAULT_FETCH_SIZE;
+   }
+
+   private static Field findField(Class<?> objClass, String fieldName) {
+      for (Class<?> aClass = objClass; aClass != null && !aClass.equals(Object.class); aClass = aClass.getSuperclass()) {
+         for (Field field : aClass.getDeclaredFields()) {
+            if (field.getName().equals(fieldName)) {
+               return field;
+            }
+         }
+      }
+      return null;
+   }
+
    //
    //
    //
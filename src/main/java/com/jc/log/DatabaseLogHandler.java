@@ -1,26 +1,128 @@
 package com.jc.log;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.ErrorManager;
-import java.util.logging.Formatter;
 import java.util.logging.Handler;
 import java.util.logging.LogManager;
 import java.util.logging.LogRecord;
 
+/*
+ * Writes log records to a LogDatasource. By default each record is persisted on the
+ * thread that logged it. In async mode records are put in a bounded queue and a
+ * background writer thread persists them in batches through LogDatasource.persist(List);
+ * when the queue is full the OverflowPolicy decides whether the logging thread
+ * waits, the record is dropped, or the record is appended to a spill file instead.
+ */
+
 public class DatabaseLogHandler extends Handler {
 
+   public final static int DEFAULT_QUEUE_SIZE = 8192;
+   public final static int DEFAULT_BATCH_SIZE = 256;
+
+   private final static long FLUSH_TIMEOUT = 5000; // ms
+   private final static long CLOSE_TIMEOUT = 10000; // ms
+
+   public enum OverflowPolicy {
+      BLOCK, // the logging thread waits for room in the queue
+      DROP, // the record is discarded
+      SPILL // the record is appended to the spill file
+   }
+
    private static final int STATE_FRESH = 0;
    private static final int STATE_PUBLISHED = 1;
    private static final int STATE_CLOSED = 2;
 
-   private int streamState = STATE_FRESH;
+   private volatile int streamState = STATE_FRESH;
 
    private final LogDatasource datasource;
+   private LogFileFormatter entryFormatter; // creates the LogEntry fields, even if another formatter is set
+
+   // Only used in async mode...
+   private final BlockingQueue<PendingRecord> queue;
+   private final int batchSize;
+   private final OverflowPolicy overflowPolicy;
+   private final File spillFile;
+   private Writer spillWriter;
+   private final Thread writerThread;
+   private final Thread shutdownHook; // removed on close so a closed handler isn't kept until the JVM exits
+
+   private final AtomicLong numQueued = new AtomicLong();
+   private final AtomicLong numDropped = new AtomicLong();
+   private final Object writtenLock = new Object();
+   private long numWritten; // guarded by writtenLock, includes records that failed to persist
 
    public DatabaseLogHandler(LogDatasource datasource) throws IOException, SecurityException {
       super();
       init();
       this.datasource = datasource;
+
+      queue = null;
+      batchSize = 1;
+      overflowPolicy = null;
+      spillFile = null;
+      writerThread = null;
+      shutdownHook = null;
+   }
+
+   /*
+    * Creates a handler in async mode. spillFile is only used with OverflowPolicy.SPILL,
+    * if it's null a file in the java tmpdir is used.
+    */
+   public DatabaseLogHandler(LogDatasource datasource, int queueSize, int batchSize, OverflowPolicy overflowPolicy, File spillFile)
+         throws IOException, SecurityException {
+      super();
+      init();
+      if (queueSize < 1 || batchSize < 1) {
+         throw new IllegalArgumentException("Queue size and batch size must be 1 or greater; queue size = " + queueSize + ", batch size = " + batchSize + ".");
+      }
+      if (overflowPolicy == null) {
+         throw new IllegalArgumentException("Supplied overflow policy was null.");
+      }
+
+      this.datasource = datasource;
+      this.batchSize = batchSize;
+      this.overflowPolicy = overflowPolicy;
+
+      if (overflowPolicy == OverflowPolicy.SPILL && spillFile == null) {
+         spillFile = new File(System.getProperty("java.io.tmpdir"), datasource.getClass().getSimpleName() + "_overflow.txt");
+      }
+      this.spillFile = spillFile;
+
+      queue = new ArrayBlockingQueue<PendingRecord>(queueSize);
+
+      writerThread = new Thread(new LogWriter(), "DatabaseLogWriter[" + datasource.getClass().getSimpleName() + "]");
+      writerThread.setDaemon(true);
+      writerThread.start();
+
+      // Write out whatever is still queued when the JVM exits.
+      shutdownHook = new Thread() {
+
+         @Override
+         public void run() {
+            close();
+         }
+      };
+      Runtime.getRuntime().addShutdownHook(shutdownHook);
+   }
+
+   public boolean isAsync() {
+      return queue != null;
+   }
+
+   // The number of records discarded because the queue was full, async mode only.
+   public long getNumDropped() {
+      return numDropped.get();
    }
 
    @Override
@@ -28,10 +130,33 @@ public class DatabaseLogHandler extends Handler {
       LogManager.getLogManager().checkAccess();
 
       try {
-         checkOpen();
+         synchronized (this) {
+            if (streamState == STATE_CLOSED) {
+               return;
+            }
+            streamState = STATE_CLOSED;
+         }
+
+         if (isAsync()) {
+            if (Thread.currentThread() != shutdownHook) {
+               try {
+                  Runtime.getRuntime().removeShutdownHook(shutdownHook);
+               }
+               catch (IllegalStateException ex) {
+                  // the JVM is already shutting down...
+               }
+            }
+
+            writerThread.join(CLOSE_TIMEOUT); // the writer drains the queue once closed...
+            synchronized (this) {
+               if (spillWriter != null) {
+                  spillWriter.close();
+                  spillWriter = null;
+               }
+            }
+         }
 
          if (datasource != null) {
-            streamState = STATE_CLOSED;
             datasource.close();
          }
       }
@@ -40,9 +165,36 @@ public class DatabaseLogHandler extends Handler {
       }
    }
 
+   // In async mode waits, for a few seconds at most, for the records queued so far to be persisted.
    @Override
    public void flush() {
-      // Not used in this implementation.
+      if (isAsync() && Thread.currentThread() != writerThread) {
+         long target = numQueued.get();
+         long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT;
+         try {
+            synchronized (writtenLock) {
+               long remaining = FLUSH_TIMEOUT;
+               while (numWritten < target && remaining > 0 && writerThread.isAlive()) {
+                  writtenLock.wait(remaining);
+                  remaining = deadline - System.currentTimeMillis();
+               }
+            }
+         }
+         catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+         }
+
+         synchronized (this) {
+            try {
+               if (spillWriter != null) {
+                  spillWriter.flush();
+               }
+            }
+            catch (IOException ex) {
+               reportError(null, ex, ErrorManager.FLUSH_FAILURE);
+            }
+         }
+      }
    }
 
    @Override
@@ -51,75 +203,156 @@ public class DatabaseLogHandler extends Handler {
          return;
       }
 
-      Formatter formatter = getFormatter();
-      String formattedMessage;
+      if (streamState == STATE_CLOSED) {
+         return;
+      }
 
+      // The entry is created on the logging thread, its class field info comes from this thread's stack...
+      LogEntry entry;
       try {
-         formattedMessage = formatter.format(record);
-         formattedMessage = formattedMessage.substring(0, formattedMessage.length() - 1);
+         entry = createLogEntry(record, System.nanoTime());
       }
       catch (Exception ex) {
          reportError(null, ex, ErrorManager.FORMAT_FAILURE);
          return;
       }
 
-      try {
-         int numFields = LogFieldsEnum.getNumberOfFields();
-
-         String[] fields = formattedMessage.split("\\|", numFields);
-
-         String head = formatter.getHead(this);
-         head = head.substring(0, head.length() - 1);
-
-         String[] fieldKeys = head.split("\\|", numFields);
-
-         if (fieldKeys.length == fields.length) {
-            for (int i = 0; i < fieldKeys.length; i++) {
-               LogFieldsEnum fieldKey = LogFieldsEnum.get(fieldKeys[i]);
-               switch (fieldKey) {
-                  case NANO_SECS:
-                     datasource.setNanoSecs(fields[i]);
-                     break;
-                  case DATE_STAMP:
-                     datasource.setDateStamp(fields[i]);
-                     break;
-                  case LOG_LEVEL:
-                     datasource.setLogLevel(fields[i]);
-                     break;
-                  case CLASS_FIELD_INFO:
-                     datasource.setClassFieldInfo(fields[i]);
-                     break;
-                  case MESSAGE:
-                     datasource.setMessage(fields[i]);
-                     break;
-                  default:
-                     // Ignore if it's unknown.
-                     break;
-               }
+      if (isAsync()) {
+         enqueue(new PendingRecord(record, entry));
+      }
+      else {
+         try {
+            datasource.persist(Collections.singletonList(entry));
+         }
+         catch (Exception ex) {
+            reportError(null, ex, ErrorManager.WRITE_FAILURE);
+         }
+      }
+   }
+
+   private void enqueue(PendingRecord pending) {
+      if (queue.offer(pending)) {
+         numQueued.incrementAndGet();
+         return;
+      }
+
+      // Queue is full... records logged by the datasource on the writer thread can't wait for it.
+      OverflowPolicy policy = overflowPolicy;
+      if (policy == OverflowPolicy.BLOCK && Thread.currentThread() == writerThread) {
+         policy = OverflowPolicy.DROP;
+      }
+
+      switch (policy) {
+         case BLOCK:
+            try {
+               queue.put(pending);
+               numQueued.incrementAndGet();
+            }
+            catch (InterruptedException ex) {
+               Thread.currentThread().interrupt();
+               drop();
             }
+            break;
+         case SPILL:
+            spill(pending);
+            break;
+         default:
+            drop();
+            break;
+      }
+   }
 
-            datasource.persist();
-         }
-         else {
-            throw (new IllegalArgumentException("Message fields and field keys are not the same number."));
+   private void drop() {
+      long dropped = numDropped.incrementAndGet();
+      if (dropped == 1 || dropped % 1000 == 0) {
+         reportError("Log queue is full, " + dropped + " log records have been dropped.", null, ErrorManager.WRITE_FAILURE);
+      }
+   }
+
+   private synchronized void spill(PendingRecord pending) {
+      try {
+         if (spillWriter == null) {
+            spillWriter = new BufferedWriter(new FileWriter(spillFile, true));
          }
+         spillWriter.write(getFormatter().format(pending.record));
       }
       catch (Exception ex) {
-         reportError(null, ex, ErrorManager.WRITE_FAILURE);
+         reportError("Unable to write log record to " + spillFile + ".", ex, ErrorManager.WRITE_FAILURE);
+         drop();
       }
    }
 
-   private void checkOpen() {
-      if (streamState == STATE_CLOSED) {
-         throw new IllegalStateException(this.toString() + " has been closed");
-      }
+   private LogEntry createLogEntry(LogRecord record, long nanoTime) {
+      return entryFormatter.createLogEntry(record, nanoTime, record.getMillis());
    }
 
    private void init() {
       LogFileFormatter formatterTxt = new LogFileFormatter();
       setFormatter(formatterTxt);
+      entryFormatter = formatterTxt;
 
       LogFilter filter = new LogFilter();
       setFilter(filter);
    }
+
+   // ------------------------------------------------------------------------
+
+   private static final class PendingRecord {
+
+      private final LogRecord record; // formatted again if it's spilled
+      private final LogEntry entry;
+
+      private PendingRecord(LogRecord record, LogEntry entry) {
+         this.record = record;
+         this.entry = entry;
+      }
+   }
+
+   // Drains the queue in batches until the handler is closed and the queue is empty.
+   private final class LogWriter implements Runnable {
+
+      @Override
+      public void run() {
+         List<PendingRecord> batch = new ArrayList<PendingRecord>(batchSize);
+         List<LogEntry> entries = new ArrayList<LogEntry>(batchSize);
+
+         while (streamState != STATE_CLOSED || !queue.isEmpty()) {
+            try {
+               PendingRecord first = queue.poll(250, TimeUnit.MILLISECONDS);
+               if (first == null) {
+                  continue;
+               }
+
+               batch.add(first);
+               queue.drainTo(batch, batchSize - 1);
+
+               try {
+                  for (PendingRecord pending : batch) {
+                     entries.add(pending.entry);
+                  }
+                  datasource.persist(entries);
+               }
+               catch (Exception ex) {
+                  reportError("Unable to persist " + batch.size() + " log records.", ex, ErrorManager.WRITE_FAILURE);
+               }
+
+               synchronized (writtenLock) {
+                  numWritten += batch.size();
+                  writtenLock.notifyAll();
+               }
+            }
+            catch (InterruptedException ex) {
+               // keep draining until closed...
+            }
+            finally {
+               batch.clear();
+               entries.clear();
+            }
+         }
+
+         synchronized (writtenLock) {
+            writtenLock.notifyAll();
+         }
+      }
+   }
 }
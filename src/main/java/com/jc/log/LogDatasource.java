@@ -1,5 +1,7 @@
 package com.jc.log;
 
+import java.util.List;
+
 public abstract class LogDatasource {
 
    private String nanoSecs;
@@ -12,6 +14,22 @@ public abstract class LogDatasource {
 
    public abstract void close();
 
+   /*
+    * Persists a batch of log entries, called by DatabaseLogHandler. By default each
+    * entry is set on this datasource and persist() is called for it; override this
+    * method to write the whole batch at once, e.g. with DBConnection.executeSQLBatch().
+    */
+   public synchronized void persist(List<LogEntry> entries) {
+      for (LogEntry entry : entries) {
+         setNanoSecs(entry.getNanoSecs());
+         setDateStamp(entry.getDateStamp());
+         setLogLevel(entry.getLogLevel());
+         setClassFieldInfo(entry.getClassFieldInfo());
+         setMessage(entry.getMessage());
+         persist();
+      }
+   }
+
    public void setNanoSecs(String nanoSecs) {
       this.nanoSecs = nanoSecs;
    }
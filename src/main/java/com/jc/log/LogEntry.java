@@ -0,0 +1,44 @@
+package com.jc.log;
+
+/*
+ * The fields of a single log message, as written to a LogDatasource. Created by
+ * LogFileFormatter from a LogRecord so that the fields don't have to be parsed
+ * back out of a formatted log line.
+ */
+
+public final class LogEntry {
+
+   private final String nanoSecs;
+   private final String dateStamp;
+   private final String logLevel;
+   private final String classFieldInfo;
+   private final String message;
+
+   public LogEntry(String nanoSecs, String dateStamp, String logLevel, String classFieldInfo, String message) {
+      this.nanoSecs = nanoSecs;
+      this.dateStamp = dateStamp;
+      this.logLevel = logLevel;
+      this.classFieldInfo = classFieldInfo;
+      this.message = message;
+   }
+
+   public String getNanoSecs() {
+      return nanoSecs;
+   }
+
+   public String getDateStamp() {
+      return dateStamp;
+   }
+
+   public String getLogLevel() {
+      return logLevel;
+   }
+
+   public String getClassFieldInfo() {
+      return classFieldInfo;
+   }
+
+   public String getMessage() {
+      return message;
+   }
+}
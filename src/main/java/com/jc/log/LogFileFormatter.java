@@ -14,24 +14,28 @@ import com.jc.util.FileSystem;
 public class LogFileFormatter extends Formatter {
 
    final static String LOGFILE_FIELD_SEPARATOR = "|";
+   final static String DEFAULT_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss:SS";
 
    private DateFormat MyDateFormat = null;
 
    public LogFileFormatter(String logid) {
+      MyDateFormat = new SimpleDateFormat(getDateFormat(logid));
+   }
+
+   // Returns the format of the DATE_STAMP field for the log; the default is used if one isn't configured.
+   static String getDateFormat(String logid) {
+      String date_format = DEFAULT_DATE_FORMAT;
       try {
          ConfigInfo info = ConfigInfo.getInstance();
-
-         // Get the date format, use the following as the default.
-         String date_format = "yyyy-MM-dd HH:mm:ss:SS";
          String propkey = "log." + logid + ".dateFormat";
          if (info.hasProperty(propkey)) {
             date_format = info.getProperty(propkey);
          }
-         MyDateFormat = new SimpleDateFormat(date_format);
       }
       catch (FileNotFoundException fnfex) {
          fnfex.printStackTrace();
       }
+      return date_format;
    }
 
    public LogFileFormatter() {
@@ -40,20 +44,31 @@ public class LogFileFormatter extends Formatter {
 
    @Override
    public String format(LogRecord logRec) {
+      LogEntry entry = createLogEntry(logRec, System.nanoTime(), System.currentTimeMillis());
+
+      // NANO_SECS|DATE_STAMP|LOG_LEVEL|CLASS_FIELD_INFO|MESSAGE
+      String logLine = entry.getNanoSecs() + LOGFILE_FIELD_SEPARATOR + entry.getDateStamp() + LOGFILE_FIELD_SEPARATOR + entry.getLogLevel()
+            + LOGFILE_FIELD_SEPARATOR + entry.getClassFieldInfo() + LOGFILE_FIELD_SEPARATOR + entry.getMessage() + FileSystem.NEWLINE;
+
+      return logLine;
+   }
+
+   // Creates the fields of a log line for a record that was logged at the supplied times.
+   LogEntry createLogEntry(LogRecord logRec, long nanoTime, long timeMillis) {
       String message = getMessage(logRec);
 
       Throwable cause = logRec.getThrown();
       ExceptionMessageHandler expHandler = new ExceptionMessageHandler(cause);
       String classfield_info = expHandler.getExceptionLocation();
-      String timestamp = MyDateFormat.format(new Date());
 
-      String logLevel = logRec.getLevel().getName();
+      String timestamp;
+      synchronized (MyDateFormat) { // SimpleDateFormat isn't thread safe...
+         timestamp = MyDateFormat.format(new Date(timeMillis));
+      }
 
-      // NANO_SECS|DATE_STAMP|LOG_LEVEL|CLASS_FIELD_INFO|MESSAGE
-      String logLine = System.nanoTime() + LOGFILE_FIELD_SEPARATOR + timestamp + LOGFILE_FIELD_SEPARATOR + logLevel + LOGFILE_FIELD_SEPARATOR + classfield_info
-            + LOGFILE_FIELD_SEPARATOR + message + FileSystem.NEWLINE;
+      String logLevel = logRec.getLevel().getName();
 
-      return logLine;
+      return new LogEntry(String.valueOf(nanoTime), timestamp, logLevel, classfield_info, message);
    }
 
    @Override
@@ -0,0 +1,597 @@
+package com.jc.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/*
+ * Reads the daily log files written by a LogFileHandler without reading them into memory.
+ * Each file is memory mapped and scanned a line at a time; the fields of a line are only
+ * decoded as the Query needs them, and a LogEntry is only created for the lines that match
+ * and fall in the requested page.
+ *
+ * For each file a sparse index is kept of the offset and DATE_STAMP time of the first line
+ * in every INDEX_INTERVAL bytes. It is built by looking at just those lines, is extended as
+ * the file grows, and lets a query with a from time start reading shortly before it rather
+ * than at the top of the file; between index points that are well inside the query's time
+ * range the lines' DATE_STAMPs don't need to be parsed at all.
+ */
+
+public final class LogFileReader {
+
+   private final static long INDEX_INTERVAL = 64 * 1024;
+   private final static long MAP_WINDOW = 64 * 1024 * 1024; // the most of a file mapped at once.
+   private final static long ORDER_SLACK = 1000; // ms a line's time may be behind the line before it.
+
+   private final static ConcurrentHashMap<String, FileIndex> INDEXES = new ConcurrentHashMap<>();
+
+   private final String logDir;
+   private final String filenamePrefix;
+   private final String dateFormat;
+   private final Charset charset;
+
+   /**
+    * Reads the files of the supplied log, which must be logging to a file.
+    */
+   public LogFileReader(String logid) {
+      LogMetadata metadata = Logger.getLogMetadata(logid);
+      if (metadata == null || metadata.getLogDir() == null) {
+         throw new IllegalArgumentException("The log '" + logid + "' is not written to a log file.");
+      }
+      this.logDir = metadata.getLogDir();
+      this.filenamePrefix = metadata.getFilenamePrefix();
+      this.dateFormat = LogFileFormatter.getDateFormat(Logger.DEFAULT_LOG_ID); // what LogFileHandler formats with.
+      this.charset = Charset.defaultCharset();
+   }
+
+   public LogFileReader(String logDir, String filenamePrefix, String dateFormat) {
+      this.logDir = logDir;
+      this.filenamePrefix = filenamePrefix;
+      this.dateFormat = dateFormat;
+      this.charset = Charset.defaultCharset();
+   }
+
+   /**
+    * Returns the entries matching the query, in the order they are in the files.
+    */
+   public List<LogEntry> read(Query query) throws Exception {
+      final List<LogEntry> entries = new ArrayList<>();
+      read(query, new EntryHandler() {
+
+         @Override
+         public boolean handleEntry(LogEntry entry) {
+            entries.add(entry);
+            return true;
+         }
+      });
+      return entries;
+   }
+
+   /**
+    * Hands the entries matching the query to the handler as they are read, in the order they
+    * are in the files, returning the number handed over.
+    */
+   public int read(Query query, EntryHandler handler) throws Exception {
+      List<File> logfiles = getLogFiles(query);
+      Scan scan = new Scan(query, handler);
+      for (File logfile : logfiles) {
+         if (logfile.exists()) {
+            scan.readFile(logfile);
+            if (scan.Done) {
+               break;
+            }
+         }
+      }
+      return scan.NumHandled;
+   }
+
+   // The files for each day from the query's from date through its to date.
+   private List<File> getLogFiles(Query query) {
+      if (query.getFrom() == null) {
+         throw new IllegalArgumentException("The query's from date is required.");
+      }
+
+      Date to = query.getTo();
+      Date lastDay = (to != null ? new Date(to.getTime() - 1) : new Date()); // to isn't included.
+
+      List<File> logfiles = new ArrayList<>();
+      Calendar cal = Calendar.getInstance();
+      cal.setTime(query.getFrom());
+      while (!cal.getTime().after(lastDay) || isSameDay(cal.getTime(), lastDay)) {
+         String fileDate;
+         synchronized (LogFileHandler.DATEFORMAT) {
+            fileDate = LogFileHandler.DATEFORMAT.format(cal.getTime());
+         }
+         logfiles.add(new File(logDir + filenamePrefix + "_" + fileDate + ".txt"));
+         cal.add(Calendar.DAY_OF_MONTH, 1);
+      }
+      return logfiles;
+   }
+
+   private static boolean isSameDay(Date date1, Date date2) {
+      Calendar cal1 = Calendar.getInstance();
+      cal1.setTime(date1);
+      Calendar cal2 = Calendar.getInstance();
+      cal2.setTime(date2);
+      return cal1.get(Calendar.YEAR) == cal2.get(Calendar.YEAR) && cal1.get(Calendar.DAY_OF_YEAR) == cal2.get(Calendar.DAY_OF_YEAR);
+   }
+
+   private static FileIndex getIndex(File logfile) throws IOException {
+      String path = logfile.getCanonicalPath();
+      FileIndex index = INDEXES.get(path);
+      if (index == null) {
+         FileIndex new_index = new FileIndex();
+         index = INDEXES.putIfAbsent(path, new_index);
+         if (index == null) {
+            index = new_index;
+         }
+      }
+      return index;
+   }
+
+   // ------------------------------------------------------------------------
+
+   /**
+    * Receives the entries as they are read; return false to stop reading.
+    */
+   public interface EntryHandler {
+
+      public boolean handleEntry(LogEntry entry) throws Exception;
+   }
+
+   /*
+    * What to read: entries from a date (required) up to, but not including, a date; optionally only
+    * those at or above a level and whose CLASS_FIELD_INFO contains a string; and a page of them.
+    */
+   public static final class Query {
+
+      private Date from;
+      private Date to;
+      private Level level;
+      private String classFilter;
+      private int first;
+      private int maxResults;
+
+      public Query setFrom(Date from) {
+         this.from = from;
+         return this;
+      }
+
+      public Date getFrom() {
+         return from;
+      }
+
+      public Query setTo(Date to) {
+         this.to = to;
+         return this;
+      }
+
+      public Date getTo() {
+         return to;
+      }
+
+      public Query setLevel(Level level) {
+         this.level = level;
+         return this;
+      }
+
+      public Level getLevel() {
+         return level;
+      }
+
+      public Query setClassFilter(String classFilter) {
+         this.classFilter = classFilter;
+         return this;
+      }
+
+      public String getClassFilter() {
+         return classFilter;
+      }
+
+      // The number of matching entries to skip.
+      public Query setFirst(int first) {
+         this.first = first;
+         return this;
+      }
+
+      public int getFirst() {
+         return first;
+      }
+
+      // The most entries to return, 0 for all of them.
+      public Query setMaxResults(int maxResults) {
+         this.maxResults = maxResults;
+         return this;
+      }
+
+      public int getMaxResults() {
+         return maxResults;
+      }
+   }
+
+   // ------------------------------------------------------------------------
+
+   /*
+    * The state of one read() across the files it reads.
+    */
+   private final class Scan {
+
+      private final EntryHandler Handler;
+      private final long From;
+      private final long To;
+      private final int MinLevel;
+      private final String ClassFilter;
+      private final int First;
+      private final int MaxResults;
+      private final TimeParser Parser;
+      private final Map<String, Integer> LevelValues = new HashMap<>();
+      private final long[] Separators = new long[LogFieldsEnum.getNumberOfFields() - 1];
+
+      private int NumMatched;
+      private int NumHandled;
+      private boolean Done;
+
+      private Scan(Query query, EntryHandler handler) {
+         Handler = handler;
+         From = query.getFrom().getTime();
+         To = (query.getTo() != null ? query.getTo().getTime() : Long.MAX_VALUE);
+         MinLevel = (query.getLevel() != null ? query.getLevel().intValue() : Integer.MIN_VALUE);
+         ClassFilter = query.getClassFilter();
+         First = query.getFirst();
+         MaxResults = query.getMaxResults();
+         Parser = new TimeParser(dateFormat);
+      }
+
+      private void readFile(File logfile) throws Exception {
+         try (RandomAccessFile raf = new RandomAccessFile(logfile, "r"); FileChannel channel = raf.getChannel()) {
+            MappedFile mapped = new MappedFile(channel);
+            FileIndex index = getIndex(logfile);
+            index.update(mapped, Parser, charset);
+
+            long pos = index.findStart(From - ORDER_SLACK);
+            long size = mapped.size();
+            long inside_until = -1; // the lines before this are known to be in the time range.
+            long recheck_at = pos;
+            while (pos < size && !Done) {
+               if (pos >= recheck_at) {
+                  inside_until = index.findInsideUntil(pos, From, To);
+                  recheck_at = Math.max(inside_until, index.findNextPoint(pos));
+               }
+
+               long end = mapped.indexOf((byte) '\n', pos, mapped.size());
+               if (end < 0) {
+                  break; // the last line is still being written...
+               }
+               readLine(mapped, pos, end, pos < inside_until);
+               pos = end + 1;
+            }
+         }
+      }
+
+      private void readLine(MappedFile mapped, long start, long end, boolean in_range) throws Exception {
+         if (end > start && mapped.get(end - 1) == '\r') {
+            end--;
+         }
+         if (!findSeparators(mapped, start, end, Separators)) {
+            return; // a header line or not a log line...
+         }
+
+         String dateStamp = null;
+         if (!in_range) {
+            dateStamp = mapped.decode(Separators[0] + 1, Separators[1], charset);
+            long time = Parser.parse(dateStamp);
+            if (time < From) {
+               return;
+            }
+            else if (time >= To) {
+               if (time >= To + ORDER_SLACK) {
+                  Done = true; // past the end of the query, lines later on are only later still.
+               }
+               return;
+            }
+         }
+
+         String logLevel = mapped.decode(Separators[1] + 1, Separators[2], charset);
+         if (MinLevel != Integer.MIN_VALUE && getLevelValue(logLevel) < MinLevel) {
+            return;
+         }
+
+         String classFieldInfo = mapped.decode(Separators[2] + 1, Separators[3], charset);
+         if (ClassFilter != null && !classFieldInfo.contains(ClassFilter)) {
+            return;
+         }
+
+         NumMatched++;
+         if (NumMatched <= First) {
+            return;
+         }
+
+         if (dateStamp == null) {
+            dateStamp = mapped.decode(Separators[0] + 1, Separators[1], charset);
+         }
+         String nanoSecs = mapped.decode(start, Separators[0], charset);
+         String message = mapped.decode(Separators[3] + 1, end, charset);
+         NumHandled++;
+         if (!Handler.handleEntry(new LogEntry(nanoSecs, dateStamp, logLevel, classFieldInfo, message)) || (MaxResults > 0 && NumHandled >= MaxResults)) {
+            Done = true;
+         }
+      }
+
+      private int getLevelValue(String logLevel) {
+         Integer value = LevelValues.get(logLevel);
+         if (value == null) {
+            try {
+               value = Level.parse(logLevel).intValue();
+            }
+            catch (IllegalArgumentException ex) {
+               value = Integer.MIN_VALUE; // not a level, so not at or above any level.
+            }
+            LevelValues.put(logLevel, value);
+         }
+         return value;
+      }
+   }
+
+   // Finds the separators between the fields of a log line, returning false if it isn't one.
+   private static boolean findSeparators(MappedFile mapped, long start, long end, long[] separators) throws IOException {
+      int found = mapped.indexesOf((byte) '|', start, end, separators);
+      if (found < separators.length || separators[0] == start) {
+         return false;
+      }
+
+      // The NANO_SECS field is a number, the header line has the field names.
+      for (long pos = start; pos < separators[0]; pos++) {
+         byte b = mapped.get(pos);
+         if ((b < '0' || b > '9') && !(b == '-' && pos == start)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   // ------------------------------------------------------------------------
+
+   /*
+    * The offsets and times of the first log line in each INDEX_INTERVAL bytes of a file, in file order.
+    */
+   private static final class FileIndex {
+
+      private long[] Offsets = new long[16];
+      private long[] Times = new long[16];
+      private int Size;
+      private long IndexedTo; // the offset just past the last line indexed.
+
+      synchronized void update(MappedFile mapped, TimeParser parser, Charset charset) throws IOException {
+         long size = mapped.size();
+         if (size < IndexedTo) {
+            Size = 0; // the file was replaced...
+            IndexedTo = 0;
+         }
+
+         long[] separators = new long[LogFieldsEnum.getNumberOfFields() - 1];
+         long pos = (Size == 0 ? 0 : (Offsets[Size - 1] / INDEX_INTERVAL + 1) * INDEX_INTERVAL);
+         pos = Math.max(pos, IndexedTo);
+         while (pos < size) {
+            // Start from the first line beginning at or after pos...
+            if (pos > 0 && mapped.get(pos - 1) != '\n') {
+               long newline = mapped.indexOf((byte) '\n', pos, mapped.size());
+               if (newline < 0) {
+                  break;
+               }
+               pos = newline + 1;
+            }
+
+            // ...and index the first log line from there.
+            long time = -1;
+            long start = pos;
+            while (time < 0 && pos < size) {
+               long end = mapped.indexOf((byte) '\n', pos, mapped.size());
+               if (end < 0) {
+                  break;
+               }
+               start = pos;
+               if (findSeparators(mapped, start, end, separators)) {
+                  time = parser.parse(mapped.decode(separators[0] + 1, separators[1], charset));
+               }
+               pos = end + 1;
+            }
+
+            if (time < 0) {
+               break;
+            }
+            add(start, time);
+            IndexedTo = pos;
+            pos = Math.max(pos, (start / INDEX_INTERVAL + 1) * INDEX_INTERVAL);
+         }
+      }
+
+      // Returns the offset up to which the lines from pos on are known to have times from 'from' up
+      // to 'to', taking lines to be no more than ORDER_SLACK out of order; -1 if none are known to.
+      synchronized long findInsideUntil(long pos, long from, long to) {
+         int point = findPoint(pos);
+         if (point < 0 || Times[point] < from + ORDER_SLACK) {
+            return -1;
+         }
+
+         int last = -1;
+         for (int i = point + 1; i < Size && Times[i] < to - ORDER_SLACK; i++) {
+            last = i;
+         }
+         return (last > -1 ? Offsets[last] : -1);
+      }
+
+      // Returns the offset of the first index point after pos, or Long.MAX_VALUE if there isn't one.
+      synchronized long findNextPoint(long pos) {
+         int point = findPoint(pos) + 1;
+         return (point < Size ? Offsets[point] : Long.MAX_VALUE);
+      }
+
+      // The last index point at or before pos, -1 if there isn't one.
+      private int findPoint(long pos) {
+         int low = 0;
+         int high = Size - 1;
+         int point = -1;
+         while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Offsets[mid] <= pos) {
+               point = mid;
+               low = mid + 1;
+            }
+            else {
+               high = mid - 1;
+            }
+         }
+         return point;
+      }
+
+      // Returns the offset of the last indexed line before the time, or 0 if there isn't one.
+      synchronized long findStart(long time) {
+         int low = 0;
+         int high = Size - 1;
+         long offset = 0;
+         while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Times[mid] < time) {
+               offset = Offsets[mid];
+               low = mid + 1;
+            }
+            else {
+               high = mid - 1;
+            }
+         }
+         return offset;
+      }
+
+      private void add(long offset, long time) {
+         if (Size == Offsets.length) {
+            Offsets = Arrays.copyOf(Offsets, Size * 2);
+            Times = Arrays.copyOf(Times, Size * 2);
+         }
+         Offsets[Size] = offset;
+         Times[Size] = time;
+         Size++;
+      }
+   }
+
+   /*
+    * Parses DATE_STAMP values, returning -1 for ones that can't be parsed. Lines logged together
+    * share a DATE_STAMP, so the last one parsed is remembered. Not thread safe.
+    */
+   private static final class TimeParser {
+
+      private final DateFormat Format;
+      private final ParsePosition Position = new ParsePosition(0);
+      private String LastDateStamp;
+      private long LastTime;
+
+      private TimeParser(String dateFormat) {
+         Format = new SimpleDateFormat(dateFormat);
+      }
+
+      long parse(String dateStamp) {
+         if (!dateStamp.equals(LastDateStamp)) {
+            Position.setIndex(0);
+            Position.setErrorIndex(-1);
+            Date date = Format.parse(dateStamp, Position);
+            LastDateStamp = dateStamp;
+            LastTime = (date != null ? date.getTime() : -1);
+         }
+         return LastTime;
+      }
+   }
+
+   /*
+    * Reads a file through a memory mapped window of it, moving the window as needed.
+    */
+   private static final class MappedFile {
+
+      private final FileChannel Channel;
+      private final long Size;
+      private MappedByteBuffer Window;
+      private long WindowStart;
+      private long WindowEnd;
+
+      private MappedFile(FileChannel channel) throws IOException {
+         Channel = channel;
+         Size = channel.size();
+      }
+
+      long size() {
+         return Size;
+      }
+
+      byte get(long pos) throws IOException {
+         if (pos < WindowStart || pos >= WindowEnd || Window == null) {
+            map(pos);
+         }
+         return Window.get((int) (pos - WindowStart));
+      }
+
+      // Returns the position of the byte from pos up to limit, or -1 if it isn't found.
+      long indexOf(byte b, long pos, long limit) throws IOException {
+         limit = Math.min(limit, Size);
+         while (pos < limit) {
+            if (pos < WindowStart || pos >= WindowEnd || Window == null) {
+               map(pos);
+            }
+            MappedByteBuffer window = Window;
+            int end = (int) (Math.min(WindowEnd, limit) - WindowStart);
+            for (int i = (int) (pos - WindowStart); i < end; i++) {
+               if (window.get(i) == b) {
+                  return WindowStart + i;
+               }
+            }
+            pos = WindowStart + end;
+         }
+         return -1;
+      }
+
+      // Fills positions with those of the byte from 'from' up to 'to', returning the number found.
+      int indexesOf(byte b, long from, long to, long[] positions) throws IOException {
+         int found = 0;
+         long pos = from;
+         while (pos < to && found < positions.length) {
+            pos = indexOf(b, pos, to);
+            if (pos < 0) {
+               break;
+            }
+            positions[found++] = pos++;
+         }
+         return found;
+      }
+
+      String decode(long from, long to, Charset charset) throws IOException {
+         if (from < WindowStart || to > WindowEnd || Window == null) {
+            map(from);
+         }
+         byte[] bytes = new byte[(int) (to - from)];
+         ByteBuffer buffer = Window.duplicate();
+         buffer.position((int) (from - WindowStart));
+         buffer.get(bytes);
+         return new String(bytes, charset);
+      }
+
+      private void map(long pos) throws IOException {
+         long length = Math.min(MAP_WINDOW, Size - pos);
+         Window = Channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+         WindowStart = pos;
+         WindowEnd = pos + length;
+      }
+   }
+}
@@ -29,6 +29,19 @@ import com.jc.util.FileSystem;
  *  log.<logid>.datasourceClass = string value that is the full package name of the datasource class that
  *                             will handle logging messages to a database. See DatabaseLogHandler and 
  *                             LogDatasource for more info.
+ *
+ *  log.<logid>.async = boolean value; if true, messages logged to a datasource are queued and written in
+ *                      batches by a background thread. Default is false. The following only apply in async mode:
+ *
+ *  log.<logid>.asyncQueueSize = the number of messages that can be queued, default is 8192.
+ *
+ *  log.<logid>.asyncBatchSize = the most messages written to the datasource at one time, default is 256.
+ *
+ *  log.<logid>.asyncOverflowPolicy = BLOCK, DROP or SPILL; what happens to a message when the queue is full.
+ *                                    Default is BLOCK, the logging thread waits. SPILL appends the message to
+ *                                    the asyncSpillFile.
+ *
+ *  log.<logid>.asyncSpillFile = the file that messages are spilled to, defaults to a file in the java tmpdir.
  *                             
  *  log.<logid>.directory = string value that represents the directory under which the log will be written.
  *                          This string value supports the Java Util Logging FileHandler wild cards.
@@ -295,7 +308,34 @@ public class Logger {
       String datasourceClassName = info.getProperty("datasourceClass");
       Class<?> classObj = Class.forName(datasourceClassName);
       LogDatasource datasource = (LogDatasource) classObj.newInstance();
-      Handler logHandler = new DatabaseLogHandler(datasource);
+
+      Handler logHandler = null;
+      if (info.hasProperty("async") && info.getPropertyAsBoolean("async")) {
+         int queueSize = DatabaseLogHandler.DEFAULT_QUEUE_SIZE;
+         if (info.hasProperty("asyncQueueSize")) {
+            queueSize = info.getPropertyAsInteger("asyncQueueSize");
+         }
+
+         int batchSize = DatabaseLogHandler.DEFAULT_BATCH_SIZE;
+         if (info.hasProperty("asyncBatchSize")) {
+            batchSize = info.getPropertyAsInteger("asyncBatchSize");
+         }
+
+         DatabaseLogHandler.OverflowPolicy overflowPolicy = DatabaseLogHandler.OverflowPolicy.BLOCK;
+         if (info.hasProperty("asyncOverflowPolicy")) {
+            overflowPolicy = DatabaseLogHandler.OverflowPolicy.valueOf(info.getProperty("asyncOverflowPolicy").toUpperCase());
+         }
+
+         File spillFile = null;
+         if (info.hasProperty("asyncSpillFile")) {
+            spillFile = new File(info.getProperty("asyncSpillFile").replace("\\", File.separator));
+         }
+
+         logHandler = new DatabaseLogHandler(datasource, queueSize, batchSize, overflowPolicy, spillFile);
+      }
+      else {
+         logHandler = new DatabaseLogHandler(datasource);
+      }
       return logHandler;
    }
 
@@ -21,6 +21,11 @@ package com.jc.util;
  * ConfigInfo objects, the child requests its parent to reload if necessary, and then
  * refreshes itself if the parent did reload information.
  *
+ * When snapshot mode is turned on with setSnapshotMode(true) before the ConfigInfo is
+ * created, getProperty() and hasProperty() read an immutable snapshot of the properties
+ * and the property file is instead reloaded by a file watching thread when it changes.
+ * Child ConfigInfo objects created in snapshot mode are not reloaded.
+ *
  * Properties can be added on an individual basis. Those added are considered "transient"
  * in that they are unaffected by a change in the root property file loaded, and once the
  * ConfigInfo object that contains the added properties is garbage collected, the property
@@ -43,6 +48,8 @@ public class ConfigInfo {
 
    private static String PROPERTY_FILE_NAME = System.getProperty("user.dir") + File.separatorChar + "configInfo.properties";
 
+   private static boolean SNAPSHOT_MODE = false;
+
    private static ConfigInfo SELF;
 
    private PropertyManager Manager;
@@ -50,6 +57,7 @@ public class ConfigInfo {
    private ConfigInfo() {
       Manager = new PropertyManager();
       Manager.setAutoRefresh(true);
+      Manager.setSnapshotMode(SNAPSHOT_MODE);
       Manager.addProperty(USER_DIR_PROPKEY, System.getProperty(USER_DIR_PROPKEY));
    }
 
@@ -70,6 +78,13 @@ public class ConfigInfo {
       PROPERTY_FILE_NAME = propertyFileName;
    }
 
+   /**
+    * Turns snapshot mode on or off for all instances created after this method has been called, see PropertyManager.setSnapshotMode().
+    */
+   public static void setSnapshotMode(boolean snapshotModeOn) {
+      SNAPSHOT_MODE = snapshotModeOn;
+   }
+
    /**
     * Returns a ConfigInfo object for the supplied property file. Note that the returned ConfigInfo object by this method and the one returned by the getInstance() method are not the same object.
     */
@@ -95,6 +110,7 @@ public class ConfigInfo {
       if (propMgr == null) { // no properties for 'path'...
          propMgr = new PropertyManager(); // create an empty property manager for use by ConfigInfo.
          propMgr.setAutoRefresh(false); // Assume off since this was not created with a file.
+         propMgr.setSnapshotMode(SNAPSHOT_MODE);
       }
 
       confInfo.Manager = propMgr;
@@ -309,6 +325,7 @@ public class ConfigInfo {
       if (Manager == null) {
          Manager = new PropertyManager();
          Manager.setAutoRefresh(true);
+         Manager.setSnapshotMode(SNAPSHOT_MODE);
          Manager.addProperty(USER_DIR_PROPKEY, System.getProperty(USER_DIR_PROPKEY));
       }
       Manager.addPropertiesFromFile(filepath);
@@ -1,138 +1,234 @@
 package com.jc.util;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/*
+ * Reads the rows of an uploaded CSV or Excel document. The process methods hand the rows to a
+ * RowHandler in batches as they are read, so a document of any size can be loaded without
+ * holding all of its rows; the parse methods collect all of the rows into a list.
+ *
+ * An XLSX document is read with POI's event model, streaming the first sheet's XML rather than
+ * building a Workbook; only its shared strings are held in memory. An XLS document is limited to
+ * 65536 rows and is still read as a Workbook. A CSV document is tokenized straight from a char
+ * buffer, and a field may be quoted to hold commas, quotes ("") or line breaks.
+ *
+ * Either way, each row holds the trimmed values of the same columns, with non-printable characters
+ * removed, and rows with no values are skipped.
+ */
 
 public abstract class ExcelProcessor {
 
    public static final String MISSING_DATA = "Missing Data";
+   public static final int DEFAULT_BATCH_SIZE = 1000;
+
+   /**
+    * Receives the rows of a document as they are read, a batch at a time.
+    */
+   public interface RowHandler {
+
+      public void handleRows(List<ArrayList<String>> rows) throws Exception;
+   }
 
    public static ArrayList<ArrayList<String>> parseCSVDocument(InputStream inputFile) throws Exception {
-      BufferedReader reader = null;
-      try {
-         ArrayList<ArrayList<String>> contents = new ArrayList<ArrayList<String>>();
+      RowCollector collector = new RowCollector();
+      processCSVDocument(inputFile, collector, DEFAULT_BATCH_SIZE);
+      return collector.Contents;
+   }
+
+   public static ArrayList<ArrayList<String>> parseExcelDocument(InputStream inputFile) throws Exception {
+      RowCollector collector = new RowCollector();
+      processExcelDocument(inputFile, collector, DEFAULT_BATCH_SIZE);
+      return collector.Contents;
+   }
+
+   /**
+    * Reads the CSV document, handing its rows to the handler batchSize at a time, and returns the
+    * number of rows handed over. The input stream is closed when done.
+    */
+   public static int processCSVDocument(InputStream inputFile, RowHandler handler, int batchSize) throws Exception {
+      try (Reader reader = new InputStreamReader(inputFile)) {
+         RowBatcher batcher = new RowBatcher(handler, batchSize);
+         CSVTokenizer tokenizer = new CSVTokenizer(reader);
 
-         reader = new BufferedReader(new InputStreamReader(inputFile));
-         String inputLine = null;
          int rowSize = -1;
-         int lineNum = 0;
-         do {
-            inputLine = reader.readLine();
-            lineNum++;
-            if (inputLine != null && inputLine.length() > 0) {
-               String[] fieldData = inputLine.split(",", -1);
-               if (rowSize == -1) { // initialize rowSize
-                  rowSize = fieldData.length;
-               }
-               else if (rowSize != fieldData.length) {
-                  throw (new Exception("Error while reading CSV file, row " + lineNum + " was not the same size as previously read rows."));
-               }
+         ArrayList<String> fieldData = new ArrayList<String>();
+         while (tokenizer.readRow(fieldData)) {
+            if (fieldData.size() == 1 && fieldData.get(0).isEmpty() && !tokenizer.wasQuoted()) {
+               continue; // an empty line...
+            }
 
-               int num_empty_cells = 0;
+            if (rowSize == -1) { // initialize rowSize
+               rowSize = fieldData.size();
+            }
+            else if (rowSize != fieldData.size()) {
+               throw (new Exception("Error while reading CSV file, row " + tokenizer.getLineNumber() + " was not the same size as previously read rows."));
+            }
 
-               ArrayList<String> rowData = new ArrayList<String>();
-               for (String data : fieldData) {
-                  data = cleanValueString(data.trim());
+            int num_empty_cells = 0;
 
-                  if (data.isEmpty()) {
-                     num_empty_cells++;
-                  }
-                  rowData.add(data);
-               }
+            ArrayList<String> rowData = new ArrayList<String>(rowSize);
+            for (String data : fieldData) {
+               data = cleanValueString(data.trim());
 
-               if (num_empty_cells < rowSize) {
-                  contents.add(rowData);
+               if (data.isEmpty()) {
+                  num_empty_cells++;
                }
+               rowData.add(data);
             }
-         } while (inputLine != null);
 
-         return contents;
-      }
-      catch (Exception ex) {
-         throw ex;
+            if (num_empty_cells < rowSize) {
+               batcher.add(rowData);
+            }
+         }
+         return batcher.finish();
       }
-      finally {
+   }
+
+   /**
+    * Reads the first sheet of the Excel document, handing its rows to the handler batchSize at a
+    * time, and returns the number of rows handed over. The input stream is closed when done. An
+    * XLSX document is first copied to a temporary file so it can be read without unzipping it
+    * into memory.
+    */
+   public static int processExcelDocument(InputStream inputFile, RowHandler handler, int batchSize) throws Exception {
+      try (InputStream input = new BufferedInputStream(inputFile)) {
+         if (POIFSFileSystem.hasPOIFSHeader(input)) {
+            return processWorkbook(input, handler, batchSize);
+         }
+
+         File tempFile = File.createTempFile("upload", ".xlsx");
          try {
-            reader.close();
+            try (OutputStream output = new FileOutputStream(tempFile)) {
+               byte[] buffer = new byte[64 * 1024];
+               int numRead;
+               while ((numRead = input.read(buffer)) != -1) {
+                  output.write(buffer, 0, numRead);
+               }
+            }
+            return processExcelDocument(tempFile, handler, batchSize);
          }
-         catch (IOException ex) {
-            throw (ex);
+         finally {
+            tempFile.delete();
          }
       }
    }
 
-   public static ArrayList<ArrayList<String>> parseExcelDocument(InputStream inputFile) throws Exception {
+   /**
+    * Reads the first sheet of the XLSX document, handing its rows to the handler batchSize at a time,
+    * and returns the number of rows handed over.
+    */
+   public static int processExcelDocument(File xlsxFile, RowHandler handler, int batchSize) throws Exception {
+      OPCPackage xlsxPackage = OPCPackage.open(xlsxFile.getPath(), PackageAccess.READ);
       try {
-         ArrayList<ArrayList<String>> contents = new ArrayList<ArrayList<String>>();
+         XSSFReader xssfReader = new XSSFReader(xlsxPackage);
+         ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(xlsxPackage);
+         RowBatcher batcher = new RowBatcher(handler, batchSize);
 
-         Workbook wb = WorkbookFactory.create(inputFile);
-         Sheet sheet = wb.getSheetAt(0);
-         Row row = null;
+         XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+         if (sheets.hasNext()) {
+            try (InputStream sheet = sheets.next()) {
+               SAXParserFactory factory = SAXParserFactory.newInstance();
+               factory.setNamespaceAware(true);
+               // The sheet XML comes from the uploaded file, don't let it declare or pull in external entities.
+               factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+               factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+               factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+               factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+               XMLReader sheetParser = factory.newSAXParser().getXMLReader();
+               sheetParser.setContentHandler(new SheetHandler(sharedStrings, batcher));
+               sheetParser.parse(new InputSource(sheet));
+            }
+            catch (HandlerException hex) {
+               throw hex.getHandlerCause();
+            }
+         }
+         return batcher.finish();
+      }
+      finally {
+         xlsxPackage.revert(); // opened read only, nothing to save.
+      }
+   }
 
-         short minColIdx = 0;
-         short maxColIdx = 0;
+   // Reads the first sheet of an XLS document as a Workbook.
+   private static int processWorkbook(InputStream inputFile, RowHandler handler, int batchSize) throws Exception {
+      RowBatcher batcher = new RowBatcher(handler, batchSize);
 
-         for (int i = 0; i <= sheet.getLastRowNum(); i++) {
-            row = sheet.getRow(i);
-            if (row != null) {
-               ArrayList<String> rowdata = new ArrayList<String>();
+      Workbook wb = WorkbookFactory.create(inputFile);
+      Sheet sheet = wb.getSheetAt(0);
+      Row row = null;
 
-               if (i == 0) {
-                  minColIdx = row.getFirstCellNum();
-                  maxColIdx = row.getLastCellNum();
-               }
+      short minColIdx = 0;
+      short maxColIdx = 0;
 
-               int num_empty_cells = 0;
+      for (int i = 0; i <= sheet.getLastRowNum(); i++) {
+         row = sheet.getRow(i);
+         if (row != null) {
+            ArrayList<String> rowdata = new ArrayList<String>();
 
-               for (short colIx = minColIdx; colIx < maxColIdx; colIx++) {
-                  Cell cell = row.getCell(colIx);
-                  if (cell != null) {
-                     String value = null;
+            if (i == 0) {
+               minColIdx = row.getFirstCellNum();
+               maxColIdx = row.getLastCellNum();
+            }
 
-                     cell.setCellType(Cell.CELL_TYPE_STRING);
-                     value = cell.getStringCellValue();
-                     value = cleanValueString(value.trim());
+            int num_empty_cells = 0;
 
-                     if (value.isEmpty()) {
-                        num_empty_cells++;
-                     }
+            for (short colIx = minColIdx; colIx < maxColIdx; colIx++) {
+               Cell cell = row.getCell(colIx);
+               if (cell != null) {
+                  String value = null;
 
-                     rowdata.add(value);
-                  }
-                  else {
+                  cell.setCellType(Cell.CELL_TYPE_STRING);
+                  value = cell.getStringCellValue();
+                  value = cleanValueString(value.trim());
+
+                  if (value.isEmpty()) {
                      num_empty_cells++;
-                     rowdata.add("");
                   }
-               }
 
-               if (num_empty_cells < maxColIdx) {
-                  contents.add(rowdata);
+                  rowdata.add(value);
+               }
+               else {
+                  num_empty_cells++;
+                  rowdata.add("");
                }
             }
-         }
 
-         return (contents);
-      }
-      catch (Exception ex) {
-         throw ex;
-      }
-      finally {
-         try {
-            inputFile.close();
-         }
-         catch (IOException ex) {
-            throw ex;
+            if (num_empty_cells < maxColIdx) {
+               batcher.add(rowdata);
+            }
          }
       }
+      return batcher.finish();
    }
 
    //   protected static Map<Integer, Integer> getColumnMap(ArrayList<String> row) throws Exception {
@@ -231,13 +327,372 @@ public abstract class ExcelProcessor {
    protected static String cleanValueString(String value) {
       char[] chars = value.toCharArray();
       char[] newchars = new char[chars.length];
-      for (int i = 0, j = 0; i < chars.length; i++) {
+      int j = 0;
+      for (int i = 0; i < chars.length; i++) {
          if (chars[i] > 31 && chars[i] < 127) {
             newchars[j] = chars[i];
             j++;
          }
       }
-      value = new String(newchars);
+      value = new String(newchars, 0, j);
       return (value);
    }
+
+   // ------------------------------------------------------------------------
+
+   /*
+    * Hands rows to a RowHandler a batch at a time.
+    */
+   private static final class RowBatcher {
+
+      private final RowHandler Handler;
+      private final int BatchSize;
+      private List<ArrayList<String>> Batch;
+      private int NumRows;
+
+      private RowBatcher(RowHandler handler, int batch_size) {
+         if (batch_size < 1) {
+            throw new IllegalArgumentException("The batch size must be at least 1, not " + batch_size + ".");
+         }
+         Handler = handler;
+         BatchSize = batch_size;
+         Batch = new ArrayList<ArrayList<String>>(Math.min(batch_size, DEFAULT_BATCH_SIZE));
+      }
+
+      void add(ArrayList<String> row) throws Exception {
+         Batch.add(row);
+         NumRows++;
+         if (Batch.size() >= BatchSize) {
+            flush();
+         }
+      }
+
+      int finish() throws Exception {
+         if (!Batch.isEmpty()) {
+            flush();
+         }
+         return NumRows;
+      }
+
+      private void flush() throws Exception {
+         List<ArrayList<String>> batch = Batch;
+         Batch = new ArrayList<ArrayList<String>>(Math.min(BatchSize, DEFAULT_BATCH_SIZE));
+         Handler.handleRows(batch);
+      }
+   }
+
+   private static final class RowCollector implements RowHandler {
+
+      private final ArrayList<ArrayList<String>> Contents = new ArrayList<ArrayList<String>>();
+
+      @Override
+      public void handleRows(List<ArrayList<String>> rows) {
+         Contents.addAll(rows);
+      }
+   }
+
+   /*
+    * Turns the SAX events of a sheet's XML into rows over the columns of the sheet's first row, as
+    * processWorkbook() does. A cell's value is what setting its type to string and getting its string
+    * value gives: the shared or inline string, TRUE or FALSE, or the raw (or cached formula) value.
+    */
+   private static final class SheetHandler extends DefaultHandler {
+
+      private final ReadOnlySharedStringsTable SharedStrings;
+      private final RowBatcher Batcher;
+
+      private int MinColIdx; // set by the first row, as for a Workbook...
+      private int MaxColIdx;
+      private int RowNum = -1;
+      private final ArrayList<String> Cells = new ArrayList<String>(); // the row's values by column, null if no cell.
+      private int ColIdx;
+      private String CellType;
+      private final StringBuilder Value = new StringBuilder();
+      private boolean InValue; // in a <v>, or a <t> of an inline string.
+      private boolean InInlineString;
+
+      private SheetHandler(ReadOnlySharedStringsTable sharedStrings, RowBatcher batcher) {
+         SharedStrings = sharedStrings;
+         Batcher = batcher;
+      }
+
+      @Override
+      public void startElement(String uri, String localName, String qName, Attributes attributes) {
+         if ("row".equals(localName)) {
+            String rowRef = attributes.getValue("r");
+            RowNum = (rowRef != null ? Integer.parseInt(rowRef) - 1 : RowNum + 1);
+            Cells.clear();
+            ColIdx = -1;
+         }
+         else if ("c".equals(localName)) {
+            String cellRef = attributes.getValue("r");
+            ColIdx = (cellRef != null ? new CellReference(cellRef).getCol() : ColIdx + 1);
+            CellType = attributes.getValue("t");
+            Value.setLength(0);
+            while (Cells.size() <= ColIdx) {
+               Cells.add(null);
+            }
+            Cells.set(ColIdx, "");
+         }
+         else if ("v".equals(localName)) {
+            InValue = true;
+         }
+         else if ("is".equals(localName)) {
+            InInlineString = true;
+         }
+         else if ("t".equals(localName) && InInlineString) {
+            InValue = true;
+         }
+      }
+
+      @Override
+      public void characters(char[] ch, int start, int length) {
+         if (InValue) {
+            Value.append(ch, start, length);
+         }
+      }
+
+      @Override
+      public void endElement(String uri, String localName, String qName) throws SAXException {
+         if ("v".equals(localName) || "t".equals(localName)) {
+            InValue = false;
+         }
+         else if ("is".equals(localName)) {
+            InInlineString = false;
+         }
+         else if ("c".equals(localName)) {
+            Cells.set(ColIdx, getCellValue());
+         }
+         else if ("row".equals(localName)) {
+            try {
+               endRow();
+            }
+            catch (Exception ex) {
+               throw new HandlerException(ex);
+            }
+         }
+      }
+
+      private String getCellValue() {
+         String value = Value.toString();
+         if ("s".equals(CellType)) {
+            return (value.isEmpty() ? "" : SharedStrings.getEntryAt(Integer.parseInt(value)));
+         }
+         else if ("b".equals(CellType)) {
+            return (value.isEmpty() ? "" : ("1".equals(value) ? "TRUE" : "FALSE"));
+         }
+         return value; // a number, inline string, formula string or error...
+      }
+
+      private void endRow() throws Exception {
+         if (RowNum == 0) {
+            MinColIdx = -1;
+            MaxColIdx = -1;
+            for (int i = 0; i < Cells.size(); i++) {
+               if (Cells.get(i) != null) {
+                  if (MinColIdx == -1) {
+                     MinColIdx = i;
+                  }
+                  MaxColIdx = i + 1;
+               }
+            }
+         }
+
+         ArrayList<String> rowdata = new ArrayList<String>();
+         int num_empty_cells = 0;
+         for (int colIx = MinColIdx; colIx < MaxColIdx; colIx++) {
+            String value = (colIx < Cells.size() ? Cells.get(colIx) : null);
+            if (value != null) {
+               value = cleanValueString(value.trim());
+               if (value.isEmpty()) {
+                  num_empty_cells++;
+               }
+               rowdata.add(value);
+            }
+            else {
+               num_empty_cells++;
+               rowdata.add("");
+            }
+         }
+
+         if (num_empty_cells < MaxColIdx) {
+            Batcher.add(rowdata);
+         }
+      }
+   }
+
+   // Carries an exception thrown by a RowHandler out of the SAX parser.
+   private static final class HandlerException extends SAXException {
+
+      private static final long serialVersionUID = 1L;
+
+      private final Exception HandlerCause;
+
+      private HandlerException(Exception cause) {
+         super(cause);
+         HandlerCause = cause;
+      }
+
+      Exception getHandlerCause() {
+         return HandlerCause;
+      }
+   }
+
+   /*
+    * Splits CSV text into rows of fields. Fields are cut straight out of the read buffer; only a
+    * quoted field with an escaped quote is copied a piece at a time. Text after a quoted field's
+    * closing quote is kept as part of the field.
+    */
+   private static final class CSVTokenizer {
+
+      private final Reader MyReader;
+      private char[] Buffer = new char[64 * 1024];
+      private int Position; // the next char to look at.
+      private int Limit; // the end of the chars read.
+      private int Mark; // the start of the chars still needed, kept when the buffer is refilled.
+      private boolean EndOfInput;
+      private int LineNumber;
+      private boolean Quoted; // a field in the last row read was quoted.
+
+      private CSVTokenizer(Reader reader) {
+         MyReader = reader;
+      }
+
+      int getLineNumber() {
+         return LineNumber;
+      }
+
+      boolean wasQuoted() {
+         return Quoted;
+      }
+
+      // Reads the fields of the next row into fields, returning false at the end of the input.
+      boolean readRow(List<String> fields) throws IOException {
+         fields.clear();
+         Quoted = false;
+         Mark = Position;
+         if (!ensure(0)) {
+            return false;
+         }
+
+         LineNumber++;
+         while (true) {
+            String field;
+            if (ensure(0) && Buffer[Position] == '"') {
+               Quoted = true;
+               field = readQuotedField();
+               String rest = readUnquotedField();
+               if (!rest.isEmpty()) {
+                  field = field + rest;
+               }
+            }
+            else {
+               field = readUnquotedField();
+            }
+            fields.add(field);
+
+            if (!ensure(0)) {
+               return true; // the last row had no line break.
+            }
+            char c = Buffer[Position++];
+            Mark = Position;
+            if (c == '\r') {
+               if (ensure(0) && Buffer[Position] == '\n') {
+                  Position++;
+                  Mark = Position;
+               }
+               return true;
+            }
+            else if (c == '\n') {
+               return true;
+            }
+            // else it was a comma, read the next field...
+         }
+      }
+
+      // Reads up to the next comma or line break.
+      private String readUnquotedField() throws IOException {
+         Mark = Position;
+         while (ensure(0)) {
+            char c = Buffer[Position];
+            if (c == ',' || c == '\n' || c == '\r') {
+               break;
+            }
+            Position++;
+         }
+         return new String(Buffer, Mark, Position - Mark);
+      }
+
+      // Reads a quoted field, leaving the position just after its closing quote.
+      private String readQuotedField() throws IOException {
+         StringBuilder value = null;
+         Position++; // the opening quote
+         Mark = Position;
+         while (true) {
+            if (!ensure(0)) {
+               throw new IOException("Error while reading CSV file, row " + LineNumber + " has a quoted field with no closing quote.");
+            }
+            char c = Buffer[Position];
+            if (c == '"') {
+               if (ensure(1) && Buffer[Position + 1] == '"') { // an escaped quote
+                  if (value == null) {
+                     value = new StringBuilder();
+                  }
+                  value.append(Buffer, Mark, Position + 1 - Mark);
+                  Position += 2;
+                  Mark = Position;
+               }
+               else {
+                  String field;
+                  if (value == null) {
+                     field = new String(Buffer, Mark, Position - Mark);
+                  }
+                  else {
+                     field = value.append(Buffer, Mark, Position - Mark).toString();
+                  }
+                  Position++; // the closing quote
+                  return field;
+               }
+            }
+            else {
+               if (c == '\n') {
+                  LineNumber++;
+               }
+               Position++;
+            }
+         }
+      }
+
+      // Makes sure the char 'ahead' of the position has been read, returning false if the input
+      // ends before it. Reading more may move the chars from the mark on to the start of the buffer.
+      private boolean ensure(int ahead) throws IOException {
+         while (Position + ahead >= Limit) {
+            if (EndOfInput) {
+               return false;
+            }
+            fill();
+         }
+         return true;
+      }
+
+      private void fill() throws IOException {
+         if (Mark > 0) {
+            System.arraycopy(Buffer, Mark, Buffer, 0, Limit - Mark);
+            Position -= Mark;
+            Limit -= Mark;
+            Mark = 0;
+         }
+         if (Limit == Buffer.length) {
+            Buffer = Arrays.copyOf(Buffer, Buffer.length * 2); // a field bigger than the buffer...
+         }
+
+         int numRead = MyReader.read(Buffer, Limit, Buffer.length - Limit);
+         if (numRead == -1) {
+            EndOfInput = true;
+         }
+         else {
+            Limit += numRead;
+         }
+      }
+   }
 }
@@ -0,0 +1,214 @@
+package com.jc.util;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.jc.log.Logger;
+
+/*
+ * Watches the property files of PropertyManagers in snapshot mode from a single daemon
+ * thread, asking each manager to reload a file when it is modified or replaced. Events
+ * for watched files arriving within SETTLE_TIME of each other are handled together so that
+ * a file being written in several steps is only reloaded once it has been written; events
+ * for other files in the same directories don't extend the wait, and changes are never held
+ * back longer than MAX_SETTLE_TIME. Managers are held weakly, a manager that is no longer
+ * used elsewhere simply stops being notified.
+ */
+
+final class PropertyFileWatcher implements Runnable {
+
+   private final static long SETTLE_TIME = 100; // milliseconds
+   private final static long MAX_SETTLE_TIME = 2000; // milliseconds
+
+   private static PropertyFileWatcher SELF;
+
+   private final WatchService Service;
+   private final Map<Path, WatchKey> Directories;
+   private final Map<Path, List<WeakReference<PropertyManager>>> Managers;
+
+   private PropertyFileWatcher() throws IOException {
+      Service = FileSystems.getDefault().newWatchService();
+      Directories = new HashMap<>();
+      Managers = new HashMap<>();
+   }
+
+   static synchronized PropertyFileWatcher getInstance() throws IOException {
+      if (SELF == null) {
+         SELF = new PropertyFileWatcher();
+         Thread thread = new Thread(SELF, "PropertyFileWatcher");
+         thread.setDaemon(true);
+         thread.start();
+      }
+      return SELF;
+   }
+
+   // Removes the manager from any files it was being notified for; safe to call if it never was.
+   static synchronized void unwatchAll(PropertyManager manager) {
+      if (SELF != null) {
+         SELF.unwatch(manager);
+      }
+   }
+
+   // Notifies the manager when the supplied file, an absolute path, is modified or replaced.
+   synchronized void watch(Path file, PropertyManager manager) throws IOException {
+      Path dir = file.getParent();
+      if (!Directories.containsKey(dir)) {
+         WatchKey key = dir.register(Service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+         Directories.put(dir, key);
+      }
+
+      List<WeakReference<PropertyManager>> managers = Managers.get(file);
+      if (managers == null) {
+         managers = new ArrayList<>();
+         Managers.put(file, managers);
+      }
+      else {
+         for (Iterator<WeakReference<PropertyManager>> it = managers.iterator(); it.hasNext();) {
+            PropertyManager next = it.next().get();
+            if (next == null) {
+               it.remove();
+            }
+            else if (next == manager) {
+               return; // already watching...
+            }
+         }
+      }
+      managers.add(new WeakReference<>(manager));
+   }
+
+   synchronized void unwatch(PropertyManager manager) {
+      for (Iterator<List<WeakReference<PropertyManager>>> files = Managers.values().iterator(); files.hasNext();) {
+         List<WeakReference<PropertyManager>> managers = files.next();
+         for (Iterator<WeakReference<PropertyManager>> it = managers.iterator(); it.hasNext();) {
+            PropertyManager next = it.next().get();
+            if (next == null || next == manager) {
+               it.remove();
+            }
+         }
+         if (managers.isEmpty()) {
+            files.remove();
+         }
+      }
+      removeUnusedDirectories();
+   }
+
+   @Override
+   public void run() {
+      try {
+         while (true) {
+            Set<Path> changed = new LinkedHashSet<>();
+            WatchKey key = Service.take();
+            if (!collectChanges(key, changed)) {
+               continue; // nothing that's being watched...
+            }
+
+            // wait for the watched files to settle, but not forever if they keep being written...
+            long now = System.currentTimeMillis();
+            long deadline = now + MAX_SETTLE_TIME;
+            long settled = now + SETTLE_TIME;
+            while (now < settled) {
+               key = Service.poll(settled - now, TimeUnit.MILLISECONDS);
+               if (key == null) {
+                  break;
+               }
+               now = System.currentTimeMillis();
+               if (collectChanges(key, changed)) {
+                  settled = Math.min(now + SETTLE_TIME, deadline);
+               }
+            }
+
+            for (Path file : changed) {
+               for (PropertyManager manager : getManagersFor(file)) {
+                  try {
+                     manager.reloadFile(file);
+                  }
+                  catch (Exception ex) {
+                     Logger.log(getClass(), Level.SEVERE, "Error reloading property file [" + file + "]; " + ex.getMessage());
+                  }
+               }
+            }
+         }
+      }
+      catch (InterruptedException | ClosedWatchServiceException ex) {
+         Logger.log(getClass(), Level.WARNING, "Property file watching has stopped, changes to property files will no longer be reloaded.");
+      }
+   }
+
+   // Adds the watched files changed in the key's directory, returns true if there were any.
+   private synchronized boolean collectChanges(WatchKey key, Set<Path> changed) {
+      boolean found = false;
+      Path dir = (Path) key.watchable();
+      for (WatchEvent<?> event : key.pollEvents()) {
+         if (event.kind() == StandardWatchEventKinds.OVERFLOW) { // events were lost, reload everything in dir...
+            for (Path file : Managers.keySet()) {
+               if (dir.equals(file.getParent())) {
+                  changed.add(file);
+                  found = true;
+               }
+            }
+         }
+         else {
+            Path file = dir.resolve((Path) event.context());
+            if (Managers.containsKey(file)) {
+               changed.add(file);
+               found = true;
+            }
+         }
+      }
+
+      if (!key.reset()) { // directory is no longer accessible...
+         Directories.remove(dir);
+      }
+      return found;
+   }
+
+   private synchronized List<PropertyManager> getManagersFor(Path file) {
+      List<PropertyManager> managers = new ArrayList<>();
+      List<WeakReference<PropertyManager>> refs = Managers.get(file);
+      if (refs != null) {
+         for (Iterator<WeakReference<PropertyManager>> it = refs.iterator(); it.hasNext();) {
+            PropertyManager manager = it.next().get();
+            if (manager == null) {
+               it.remove();
+            }
+            else {
+               managers.add(manager);
+            }
+         }
+      }
+      return managers;
+   }
+
+   private void removeUnusedDirectories() {
+      for (Iterator<Map.Entry<Path, WatchKey>> it = Directories.entrySet().iterator(); it.hasNext();) {
+         Map.Entry<Path, WatchKey> entry = it.next();
+         boolean used = false;
+         for (Path file : Managers.keySet()) {
+            if (entry.getKey().equals(file.getParent())) {
+               used = true;
+               break;
+            }
+         }
+         if (!used) {
+            entry.getValue().cancel();
+            it.remove();
+         }
+      }
+   }
+}
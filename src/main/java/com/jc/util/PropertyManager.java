@@ -6,7 +6,10 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
@@ -17,6 +20,11 @@ import com.jc.log.Logger;
 
 /**
  * This class manages a set of properties.
+ * 
+ * By default every lookup walks the property tree, and with AutoRefresh on checks each property file
+ * for changes first. In snapshot mode lookups read an immutable map of the properties instead, which
+ * is replaced whenever the properties change, and with AutoRefresh on the property files are reloaded
+ * by the PropertyFileWatcher thread when they change on disk.
  */
 
 public class PropertyManager {
@@ -27,7 +35,10 @@ public class PropertyManager {
    private final Map<String, PropFileInfo> PropertyFileInfo;
    private final PropertyNode RootNode;
 
-   private boolean AutoRefresh;
+   private volatile boolean AutoRefresh;
+
+   // Set only in snapshot mode, an unmodifiable map of full property path to value.
+   private volatile Map<String, String> Snapshot;
 
    public PropertyManager() {
       RootNode = new PropertyNode(PropertyNode.ROOT_KEY);
@@ -59,14 +70,43 @@ public class PropertyManager {
       AutoRefresh = auto_refresh_on;
    }
 
+   /**
+    * Turns snapshot mode on or off. While on, lookups neither walk the property tree nor check the
+    * property files; changes to the files are picked up by a single file watching thread if AutoRefresh
+    * is on.
+    */
+   public synchronized void setSnapshotMode(boolean snapshot_mode_on) {
+      if (snapshot_mode_on) {
+         if (Snapshot == null) {
+            refresh(); // pick up any changes made since the last lookup...
+            Snapshot = createSnapshot();
+            for (PropFileInfo info : PropertyFileInfo.values()) {
+               watch(info);
+            }
+         }
+      }
+      else if (Snapshot != null) {
+         Snapshot = null;
+         PropertyFileWatcher.unwatchAll(this);
+      }
+   }
+
+   public boolean isSnapshotMode() {
+      return Snapshot != null;
+   }
+
    /**
     * Adds properties from a given file.
     */
-   public void addPropertiesFromFile(String filename) throws FileNotFoundException {
+   public synchronized void addPropertiesFromFile(String filename) throws FileNotFoundException {
       PropFileInfo info = new PropFileInfo(filename);
       Properties props = info.load();
       addProperties(props, info.getId());
       PropertyFileInfo.put(info.getId(), info);
+      if (Snapshot != null) {
+         watch(info);
+         Snapshot = createSnapshot();
+      }
    }
 
    /**
@@ -88,8 +128,7 @@ public class PropertyManager {
       Properties propObj = null;
       if (hasProperties()) {
          propObj = new Properties();
-         PropertyNode node = RootNode;
-         Map<String, String> propertyMap = node.getPropertyPairs();
+         Map<String, String> propertyMap = getPropertyPairs();
          for (Map.Entry<String, String> entry : propertyMap.entrySet()) {
             String key = entry.getKey();
             String value = entry.getValue();
@@ -106,8 +145,7 @@ public class PropertyManager {
       Properties propObj = null;
       if (hasProperties()) {
          propObj = new Properties();
-         PropertyNode node = RootNode;
-         Map<String, String> propertyMap = node.getPropertyPairs();
+         Map<String, String> propertyMap = getPropertyPairs();
          path += ".";
          for (Map.Entry<String, String> entry : propertyMap.entrySet()) {
             String key = entry.getKey();
@@ -123,9 +161,10 @@ public class PropertyManager {
 
    /*
     * Returns a PropertyManager object with the properties of the supplied path loaded into it. 
-    * A null value is returned if there are no properties for the supplied path.
+    * A null value is returned if there are no properties for the supplied path. In snapshot mode
+    * the returned manager holds a snapshot of the properties as they are now and is not reloaded.
     */
-   public PropertyManager getManagerFor(String path) {
+   public synchronized PropertyManager getManagerFor(String path) {
       PropertyManager propMngr = null;
       if (isValidPath(path)) {
          PropertyNode rootNode = null;
@@ -137,6 +176,9 @@ public class PropertyManager {
          rootNode.FileId = null;
          rootNode.ParentNode = null;
          propMngr = new PropertyManager(rootNode, PropertyFileInfo, AutoRefresh);
+         if (Snapshot != null) {
+            propMngr.Snapshot = propMngr.createSnapshot();
+         }
       }
       return propMngr;
    }
@@ -144,8 +186,9 @@ public class PropertyManager {
    /**
     * Adds properties from a given Property object.
     */
-   public void addProperties(Properties prop_obj) {
+   public synchronized void addProperties(Properties prop_obj) {
       addProperties(prop_obj, NO_FILEID_AVAILABLE);
+      updateSnapshot();
       // AutoRefresh = false;
    }
 
@@ -153,6 +196,10 @@ public class PropertyManager {
     * Indicates whether properties exist.
     **/
    public boolean hasProperties() {
+      Map<String, String> snapshot = Snapshot;
+      if (snapshot != null) {
+         return !snapshot.isEmpty();
+      }
       refresh();
       return RootNode.hasChildren();
    }
@@ -161,31 +208,33 @@ public class PropertyManager {
     * Indicates whether a given property exists.
     **/
    public boolean hasProperty(String propkey) {
-      refresh();
-      return RootNode.hasProperty(propkey);
+      return lookup(propkey) != null;
    }
 
    /**
     * Removes supplied property. AutoRefresh if on is turned off after this operation.
     */
-   public void removeProperty(String path) {
+   public synchronized void removeProperty(String path) {
       RootNode.removeProperty(path);
+      updateSnapshot();
       // AutoRefresh = false;
    }
 
    /**
     * Clears all properties. AutoRefresh if on is turned off after this operation.
     */
-   public void removeAllProperties() {
+   public synchronized void removeAllProperties() {
       RootNode.removeAllProperties();
+      updateSnapshot();
       // AutoRefresh = false;
    }
 
    /**
     * Adds a given property value referenced by the path. For example the value "red" can be added to a path of "groceries.fruit.apples.color"; in a property file this would look like "groceries.fruit.apples.color = red".
     */
-   public void addProperty(String path, String value) {
+   public synchronized void addProperty(String path, String value) {
       RootNode.addProperty(path, value, NO_FILEID_AVAILABLE);
+      updateSnapshot();
    }
 
    /**
@@ -199,15 +248,12 @@ public class PropertyManager {
     * Returns a property associated with the given prop_name. Default return value is the given default_value.
     */
    public String getProperty(String path, String default_value) {
-      refresh();
-      String value_str = RootNode.getValue(path);
+      String value_str = lookup(path);
       return value_str == null ? default_value : value_str;
    }
 
    public String getProperty(String path, String default_value, String decrypt_key) throws GeneralSecurityException {
-      refresh();
-
-      String value_str = RootNode.getValue(path);
+      String value_str = lookup(path);
 
       if (value_str == null) {
          return default_value;
@@ -385,12 +431,13 @@ public class PropertyManager {
    }
 
    @Override
-   public String toString() {
+   public synchronized String toString() {
       return hasProperties() ? RootNode.toString() : StringUtils.EMPTY;
    }
 
+   // Does nothing in snapshot mode, where changed files are reloaded by the PropertyFileWatcher.
    public void refresh() {
-      if (AutoRefresh) {
+      if (AutoRefresh && Snapshot == null) {
          for (PropFileInfo info : PropertyFileInfo.values()) {
             Properties props = info.load();
             if (props != null) {
@@ -419,16 +466,72 @@ public class PropertyManager {
       return RootNode.isValidPath(path);
    }
 
+   // Returns the value for the path from the snapshot in snapshot mode, otherwise from the property tree.
+   private String lookup(String path) {
+      Map<String, String> snapshot = Snapshot;
+      if (snapshot != null) {
+         return snapshot.get(path);
+      }
+      refresh();
+      return RootNode.getValue(path);
+   }
+
+   private Map<String, String> getPropertyPairs() {
+      Map<String, String> snapshot = Snapshot;
+      return snapshot != null ? snapshot : RootNode.getPropertyPairs();
+   }
+
+   private Map<String, String> createSnapshot() {
+      Map<String, String> snapshot = new HashMap<String, String>();
+      RootNode.collectPropertyPairs(snapshot);
+      return Collections.unmodifiableMap(snapshot);
+   }
+
+   // Replaces the snapshot after the property tree has changed; must be called holding the lock.
+   private void updateSnapshot() {
+      if (Snapshot != null) {
+         Snapshot = createSnapshot();
+      }
+   }
+
+   private void watch(PropFileInfo info) {
+      try {
+         PropertyFileWatcher.getInstance().watch(info.getPath(), this);
+      }
+      catch (IOException ex) {
+         Logger.log(getClass(), Level.SEVERE, "Changes to the property file [" + info.getPath() + "] will not be reloaded; " + ex.getMessage());
+      }
+   }
+
+   // Called by the PropertyFileWatcher when the supplied file has been modified or replaced.
+   synchronized void reloadFile(Path file) {
+      if (AutoRefresh && Snapshot != null) {
+         for (PropFileInfo info : PropertyFileInfo.values()) {
+            if (info.getPath().equals(file)) {
+               Properties props = info.reload();
+               if (props != null) {
+                  String fileid = info.getId();
+                  RootNode.removePropertiesFor(fileid);
+                  addProperties(props, fileid);
+                  updateSnapshot();
+               }
+            }
+         }
+      }
+   }
+
    private static final class PropFileInfo {
 
       private String Id;
       private String Filename;
+      private Path FilePath;
       private long LastModified;
 
       PropFileInfo(String filename) throws FileNotFoundException {
          File prop_file = new File(filename);
          if (prop_file.exists()) {
             Filename = filename;
+            FilePath = Paths.get(filename).toAbsolutePath().normalize();
             Id = String.valueOf(filename.hashCode());
          }
          else {
@@ -452,10 +555,35 @@ public class PropertyManager {
          return prop_obj;
       }
 
+      // Loads the file whether or not its last modified time has changed, returning null if it can't be read.
+      public Properties reload() {
+         Properties prop_obj = null;
+         File prop_file = new File(Filename);
+         if (prop_file.exists()) {
+            try (FileInputStream in = new FileInputStream(prop_file)) {
+               LastModified = prop_file.lastModified();
+               Properties props = new Properties();
+               props.load(in);
+               prop_obj = props;
+            }
+            catch (Exception ex) {
+               ex.printStackTrace();
+            }
+         }
+         else {
+            Logger.log(getClass(), Level.SEVERE, "The property file, " + prop_file.getName() + ", was not found at [" + prop_file.getAbsolutePath() + "].");
+         }
+         return prop_obj;
+      }
+
       public String getId() {
          return Id;
       }
 
+      public Path getPath() {
+         return FilePath;
+      }
+
       private boolean reloadProperties(File prop_file) {
          boolean reload = false;
          if (prop_file.exists()) {
@@ -191,6 +191,27 @@ public class PropertyNode {
       return propPairs;
    }
 
+   // Adds the properties of the child nodes to the supplied map keyed by their full path; unlike
+   // getPropertyPairs() a value set on this node itself is left out, as getValue() can't reach it.
+   void collectPropertyPairs(Map<String, String> propPairs) {
+      if (Children != null) {
+         for (PropertyNode child : Children) {
+            child.collectPropertyPairs(child.Key, propPairs);
+         }
+      }
+   }
+
+   private void collectPropertyPairs(String path, Map<String, String> propPairs) {
+      if (Value != null) {
+         propPairs.put(path, Value);
+      }
+      if (Children != null) {
+         for (PropertyNode child : Children) {
+            child.collectPropertyPairs(path + "." + child.Key, propPairs);
+         }
+      }
+   }
+
    // --------------- //
 
    private int findChildIndexFor(String key) {
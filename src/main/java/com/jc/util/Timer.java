@@ -2,13 +2,23 @@ package com.jc.util;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.jc.command.Command;
 
 /*
- * This class runs a timer in it's own thread for a specified amount of time.
- * When the specified amount of time is up, all TimerListeners registered will 
- * be notified that the time has lapsed.
+ * This class runs a timer for a specified amount of time. When the specified
+ * amount of time is up, all TimerListeners registered will be notified that the
+ * time has lapsed.
+ * 
+ * Timers don't own a thread, all of them are run by a small shared scheduler
+ * made up of daemon threads; starting and stopping a Timer just schedules and
+ * cancels a task on it. Listeners and commands are called on one of the
+ * scheduler's threads, so they should hand off anything long running.
  */
 
 public class Timer implements Runnable {
@@ -16,12 +26,20 @@ public class Timer implements Runnable {
    public final static long ONE_SECOND_INTERVAL = 1000;
    public final static long ONE_MINUTE_INTERVAL = ONE_SECOND_INTERVAL * 60;
 
-   private static int INSTANCE_NUM = 0;
+   private final static int SCHEDULER_THREADS = 2;
+
+   private static final AtomicInteger INSTANCE_NUM = new AtomicInteger();
+
+   private static final ScheduledThreadPoolExecutor SCHEDULER;
+
+   static {
+      SCHEDULER = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS, new SchedulerThreadFactory());
+      SCHEDULER.setRemoveOnCancelPolicy(true); // stopped timers don't linger in the queue...
+   }
 
    private boolean LogMessages;
 
-   private Thread MyThread;
-   private int ThreadID;
+   private ScheduledFuture<?> MyFuture;
 
    private final List<TimerListener> Listeners;
 
@@ -49,43 +67,60 @@ public class Timer implements Runnable {
       LastWakeUpTime = totime;
       WakeUpOnce = wakeUpOnce;
       LogMessages = false;
-      Name = "Timer" + INSTANCE_NUM++;
+      Name = "Timer" + INSTANCE_NUM.getAndIncrement();
       Listeners = new CopyOnWriteArrayList<TimerListener>();
    }
 
+   /*
+    * Runs the supplied task once on the shared scheduler after the delay (in
+    * milliseconds) has passed; cancel the returned future to stop it.
+    */
+   public static ScheduledFuture<?> schedule(Runnable task, long delay) {
+      return SCHEDULER.schedule(task, delay, TimeUnit.MILLISECONDS);
+   }
+
+   /*
+    * Runs the supplied task on the shared scheduler every period (in milliseconds),
+    * starting one period from now; cancel the returned future to stop it.
+    */
+   public static ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+      return SCHEDULER.scheduleAtFixedRate(task, period, period, TimeUnit.MILLISECONDS);
+   }
+
    public void logMessages(boolean log) {
       LogMessages = log;
    }
 
-   // Starts the Timer in its own thread.
+   // Starts the Timer on the shared scheduler, restarting it if it's already running.
    public synchronized void start() {
-      MyThread = new Thread(this, "Thread" + ThreadID);
+      if (MyFuture != null) {
+         MyFuture.cancel(false);
+      }
       logMessage("Starting timer...");
-      MyThread.start();
+      if (WakeUpOnce) {
+         MyFuture = SCHEDULER.schedule(this, WakeUpTime, TimeUnit.MILLISECONDS);
+      }
+      else {
+         MyFuture = SCHEDULER.scheduleWithFixedDelay(this, WakeUpTime, WakeUpTime, TimeUnit.MILLISECONDS);
+      }
       BeginTime = System.currentTimeMillis();
-      ThreadID++;
    }
 
-   // Interrupts the timer, stopping it from what it's doing.
+   // Stops the timer; doesn't wait for listeners that are already being notified.
    public synchronized void stop() {
-      if (MyThread != null) {
+      if (MyFuture != null) {
          logMessage("Stopping timer (forced)...");
-         MyThread.interrupt();
-         try {
-            Thread.sleep(300);
-         }
-         catch (InterruptedException e) {
-            logMessage("WARNING: Interrupted when sleeping -- " + e.getMessage());
-         }
+         MyFuture.cancel(false);
+         MyFuture = null;
          EndTime = System.currentTimeMillis();
       }
       else {
-         logMessage("ERROR: When stopping, MyThread was null.");
+         logMessage("ERROR: When stopping, the timer wasn't running.");
       }
    }
 
-   public boolean isRunning() {
-      return MyThread != null && MyThread.isAlive();
+   public synchronized boolean isRunning() {
+      return MyFuture != null && !MyFuture.isDone();
    }
 
    public void addTimerListener(TimerListener listener) {
@@ -107,36 +142,40 @@ public class Timer implements Runnable {
       MyCommand = command;
    }
 
+   // Called by the shared scheduler each time the timer wakes up.
    @Override
    public void run() {
-      while (true) {
-         try {
-            logMessage("Sleeping...");
-            Thread.sleep(WakeUpTime);
-            logMessage("Awake...");
-            notifyListeners();
-
-            if (MyCommand != null) {
-               logMessage("Running command...");
-               MyCommand.execute();
-            }
-
-            if (WakeUpOnce || LastWakeUpTime <= System.currentTimeMillis()) {
-               logMessage("Done...");
-               break;
-            }
-            logMessage("Going back to sleep...");
-         }
-         catch (InterruptedException e) {
-            logMessage("Thread interrupted...");
-            break;
+      ScheduledFuture<?> future;
+      synchronized (this) {
+         future = MyFuture;
+      }
+
+      boolean done = WakeUpOnce;
+      try {
+         logMessage("Awake...");
+         notifyListeners();
+
+         if (MyCommand != null) {
+            logMessage("Running command...");
+            MyCommand.execute();
          }
-         catch (Exception ex) {
-            logMessage(ex.getMessage());
-            break;
+
+         if (!done && LastWakeUpTime <= System.currentTimeMillis()) {
+            done = true;
          }
       }
-      cleanUp();
+      catch (Exception ex) {
+         logMessage(ex.getMessage());
+         done = true;
+      }
+
+      if (done) {
+         logMessage("Done...");
+         cleanUp(future);
+      }
+      else {
+         logMessage("Going back to sleep...");
+      }
    }
 
    protected void notifyListeners() {
@@ -152,18 +191,19 @@ public class Timer implements Runnable {
       return Listeners;
    }
 
-   private void cleanUp() {
-      logMessage("Thread clean up...");
-      MyThread = null;
+   // A listener may have restarted the timer while being notified, in which case it's left alone.
+   private synchronized void cleanUp(ScheduledFuture<?> future) {
+      if (future != null && MyFuture == future) {
+         logMessage("Timer clean up...");
+         future.cancel(false);
+         MyFuture = null;
+         EndTime = System.currentTimeMillis();
+      }
    }
 
    protected void logMessage(String message) {
       if (LogMessages) {
-         String thread_name = "NullThread";
-         if (MyThread != null) {
-            thread_name = MyThread.getName();
-         }
-         System.out.println(Name + "[" + thread_name + "]: " + message);
+         System.out.println(Name + "[" + Thread.currentThread().getName() + "]: " + message);
       }
    }
 
@@ -171,4 +211,16 @@ public class Timer implements Runnable {
 
       public void timeExpired();
    }
+
+   private static class SchedulerThreadFactory implements ThreadFactory {
+
+      private final AtomicInteger threadNum = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+         Thread thread = new Thread(runnable, "TimerScheduler" + threadNum.getAndIncrement());
+         thread.setDaemon(true);
+         return thread;
+      }
+   }
 }
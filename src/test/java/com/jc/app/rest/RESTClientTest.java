@@ -0,0 +1,310 @@
+package com.jc.app.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jc.app.rest.exceptions.RESTConnectionException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * Runs RESTClient against an embedded HTTP server standing in for a REST service. The server
+ * answers with the client's port, so a test can tell whether a connection was reused.
+ */
+
+public class RESTClientTest {
+
+   private static final String BODY = "{\"a\":\"line one\\n\"}\nline two\r\né\n";
+
+   private static final AtomicInteger ACTIVE = new AtomicInteger();
+   private static final AtomicInteger MAX_ACTIVE = new AtomicInteger();
+
+   private static HttpServer server;
+   private static ExecutorService serverThreads;
+
+   @BeforeClass
+   public static void setUp() throws Exception {
+      serverThreads = Executors.newCachedThreadPool(new ThreadFactory() {
+
+         @Override
+         public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RESTClientTest-server");
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+
+      server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.setExecutor(serverThreads);
+      server.createContext("/body", new HttpHandler() {
+
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+            respond(exchange, 200, BODY.getBytes(StandardCharsets.UTF_8));
+         }
+      });
+      server.createContext("/port", new HttpHandler() {
+
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+            String port = String.valueOf(exchange.getRemoteAddress().getPort());
+            respond(exchange, 200, port.getBytes(StandardCharsets.UTF_8));
+         }
+      });
+      server.createContext("/status", new HttpHandler() {
+
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            int status = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+            respond(exchange, status, ("status " + status).getBytes(StandardCharsets.UTF_8));
+         }
+      });
+      server.createContext("/slow", new HttpHandler() {
+
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+            pause(2000);
+            respond(exchange, 200, BODY.getBytes(StandardCharsets.UTF_8));
+         }
+      });
+      server.createContext("/size", new HttpHandler() {
+
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = new byte[Integer.parseInt(path.substring(path.lastIndexOf('/') + 1))];
+            respond(exchange, 200, body);
+         }
+      });
+      server.createContext("/parallel", new HttpHandler() {
+
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+            int active = ACTIVE.incrementAndGet();
+            int max = MAX_ACTIVE.get();
+            while (active > max && !MAX_ACTIVE.compareAndSet(max, active)) {
+               max = MAX_ACTIVE.get();
+            }
+            pause(200);
+            ACTIVE.decrementAndGet();
+            respond(exchange, 200, new byte[0]);
+         }
+      });
+      server.start();
+   }
+
+   @AfterClass
+   public static void tearDown() {
+      server.stop(0);
+      serverThreads.shutdownNow();
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   @Test
+   public void testBodyIsReadExactly() throws Exception {
+      RESTfulResult result = new RESTClient().call(new RESTClient.Request("GET", getURL("/body")));
+      Assert.assertEquals(200, result.statusCode);
+      Assert.assertEquals(BODY, result.content);
+   }
+
+   @Test
+   public void testConnectionIsReused() throws Exception {
+      RESTClient client = new RESTClient();
+      String firstPort = client.call(new RESTClient.Request("GET", getURL("/port"))).content;
+      String secondPort = client.call(new RESTClient.Request("GET", getURL("/port"))).content;
+      Assert.assertEquals("Second call didn't reuse the first call's connection.", firstPort, secondPort);
+   }
+
+   @Test
+   public void testStatusMapping() throws Exception {
+      RESTClient client = new RESTClient();
+
+      RESTfulResult result = client.call(new RESTClient.Request("GET", getURL("/status/201")));
+      Assert.assertEquals(201, result.statusCode);
+      Assert.assertEquals("status 201", result.content);
+
+      assertStatus(client, 404, "Not found.");
+      assertStatus(client, 409, "Found duplicate.");
+      assertStatus(client, 405, "Invalid method.");
+      assertStatus(client, 401, "Unauthorized access.");
+
+      result = client.call(new RESTClient.Request("GET", getURL("/status/500")));
+      Assert.assertEquals(500, result.statusCode);
+      Assert.assertEquals("status 500", result.content);
+      Assert.assertEquals("", result.message);
+   }
+
+   @Test
+   public void testResponseHandlerStreamsBody() throws Exception {
+      final ByteArrayOutputStream received = new ByteArrayOutputStream();
+      RESTfulResult result = new RESTClient().call(new RESTClient.Request("GET", getURL("/body")), new RESTClient.ResponseHandler() {
+
+         @Override
+         public void handleResponse(InputStream body) throws Exception {
+            byte[] buffer = new byte[7];
+            int count;
+            while ((count = body.read(buffer)) != -1) {
+               received.write(buffer, 0, count);
+            }
+         }
+      });
+      Assert.assertEquals(200, result.statusCode);
+      Assert.assertNull(result.content);
+      Assert.assertEquals(BODY, new String(received.toByteArray(), StandardCharsets.UTF_8));
+   }
+
+   @Test
+   public void testUnreadBodyIsDrainedOnlyUpToLimit() throws Exception {
+      RESTClient client = new RESTClient();
+      RESTClient.ResponseHandler readFirstByte = new RESTClient.ResponseHandler() {
+
+         @Override
+         public void handleResponse(InputStream body) throws Exception {
+            body.read();
+         }
+      };
+
+      // a small unread remainder is drained and the connection kept...
+      String port = client.call(new RESTClient.Request("GET", getURL("/port"))).content;
+      client.call(new RESTClient.Request("GET", getURL("/size/4096")), readFirstByte);
+      Assert.assertEquals(port, client.call(new RESTClient.Request("GET", getURL("/port"))).content);
+
+      // a large one isn't read, the connection is closed instead...
+      long start = System.currentTimeMillis();
+      RESTfulResult result = client.call(new RESTClient.Request("GET", getURL("/size/" + (32 * 1024 * 1024))), readFirstByte);
+      Assert.assertEquals(200, result.statusCode);
+      Assert.assertTrue("Large unread body took too long to discard.", System.currentTimeMillis() - start < 5000);
+      Assert.assertNotEquals(port, client.call(new RESTClient.Request("GET", getURL("/port"))).content);
+   }
+
+   @Test
+   public void testReadTimeout() throws Exception {
+      RESTClient client = new RESTClient(RESTClient.DEFAULT_CONNECT_TIMEOUT, 200, 1);
+      try {
+         client.call(new RESTClient.Request("GET", getURL("/slow")));
+         Assert.fail("Expected the call to time out.");
+      }
+      catch (RESTConnectionException ex) {
+         Assert.assertTrue(ex.timedOut());
+      }
+   }
+
+   @Test
+   public void testConnectTimeout() throws Exception {
+      // A listening socket whose backlog is full and never accepted doesn't answer new connections...
+      try (ServerSocket unaccepted = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"))) {
+         List<Socket> backlog = new ArrayList<>();
+         try {
+            for (int i = 0; i < 4; i++) {
+               Socket socket = new Socket();
+               try {
+                  socket.connect(unaccepted.getLocalSocketAddress(), 200);
+                  backlog.add(socket);
+               }
+               catch (IOException ex) {
+                  socket.close();
+                  break; // backlog is full...
+               }
+            }
+
+            RESTClient client = new RESTClient(200, RESTClient.DEFAULT_READ_TIMEOUT, 1);
+            URL url = new URL("http", "127.0.0.1", unaccepted.getLocalPort(), "/body");
+            try {
+               client.call(new RESTClient.Request("GET", url));
+               Assert.fail("Expected the connection to time out.");
+            }
+            catch (RESTConnectionException ex) {
+               Assert.assertTrue(ex.timedOut());
+            }
+         }
+         finally {
+            for (Socket socket : backlog) {
+               socket.close();
+            }
+         }
+      }
+   }
+
+   @Test
+   public void testCallAllLimitsParallelCalls() throws Exception {
+      ACTIVE.set(0);
+      MAX_ACTIVE.set(0);
+
+      List<RESTClient.Request> requests = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+         requests.add(new RESTClient.Request("GET", getURL("/parallel")));
+      }
+
+      try (RESTClient client = new RESTClient(RESTClient.DEFAULT_CONNECT_TIMEOUT, RESTClient.DEFAULT_READ_TIMEOUT, 2)) {
+         List<Future<RESTfulResult>> results = client.callAll(requests);
+         Assert.assertEquals(requests.size(), results.size());
+         for (Future<RESTfulResult> result : results) {
+            Assert.assertEquals(200, result.get().statusCode);
+         }
+      }
+      Assert.assertEquals("Calls weren't limited to, or didn't reach, maxParallel at a time.", 2, MAX_ACTIVE.get());
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static URL getURL(String path) throws Exception {
+      return new URL("http", "127.0.0.1", server.getAddress().getPort(), path);
+   }
+
+   private static void assertStatus(RESTClient client, int status, String message) throws Exception {
+      RESTfulResult result = client.call(new RESTClient.Request("GET", getURL("/status/" + status)));
+      Assert.assertEquals(status, result.statusCode);
+      Assert.assertEquals("", result.content);
+      Assert.assertEquals(message, result.message);
+   }
+
+   private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+      try {
+         exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+         exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+         if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+               out.write(body);
+            }
+         }
+      }
+      catch (IOException ex) {
+         // the client closed the connection without reading the whole body...
+      }
+      finally {
+         exchange.close();
+      }
+   }
+
+   private static void pause(long millis) {
+      try {
+         Thread.sleep(millis);
+      }
+      catch (InterruptedException ex) {
+         Thread.currentThread().interrupt();
+      }
+   }
+}
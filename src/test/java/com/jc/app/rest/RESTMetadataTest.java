@@ -0,0 +1,232 @@
+package com.jc.app.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jc.app.rest.annotations.RDMetadata;
+import com.jc.log.Logger;
+
+/*
+ * Checks the shared metadata lists built for RESTData classes: that they're reused and can't be
+ * changed, that looking a field up by name finds what a search of the list would, and that value
+ * options from a ValueOptionsLoader are reloaded after the refresh interval.
+ */
+
+public class RESTMetadataTest {
+
+   @BeforeClass
+   public static void setUpClass() {
+      Logger.setConsoleLoggingOn(false);
+   }
+
+   @After
+   public void tearDown() {
+      RESTMetadata.setValueOptionsRefreshInterval(0, TimeUnit.MILLISECONDS);
+      CountingLoader.Fail = false;
+   }
+
+   @Test
+   public void testListIsSharedAndUnmodifiable() throws Exception {
+      List<RESTMetadata> metadataList = RESTMetadata.getFieldMetadata(OrderData.class);
+      Assert.assertSame(metadataList, RESTMetadata.getFieldMetadata(OrderData.class));
+      Assert.assertFalse(metadataList.isEmpty());
+
+      try {
+         metadataList.add(metadataList.get(0));
+         Assert.fail("Added to a shared metadata list.");
+      }
+      catch (UnsupportedOperationException ex) {
+         // expected...
+      }
+      try {
+         metadataList.remove(0);
+         Assert.fail("Removed from a shared metadata list.");
+      }
+      catch (UnsupportedOperationException ex) {
+         // expected...
+      }
+
+      RESTMetadata item = RESTMetadata.getFieldMetadata("item", metadataList);
+      try {
+         item.getFieldTypeMetadata().clear();
+         Assert.fail("Cleared a shared sub-metadata map.");
+      }
+      catch (UnsupportedOperationException ex) {
+         // expected...
+      }
+   }
+
+   @Test
+   public void testLookupMatchesSearch() throws Exception {
+      List<RESTMetadata> metadataList = RESTMetadata.getFieldMetadata(OrderData.class);
+      assertLookupMatchesSearch(metadataList);
+
+      // and in the sub-metadata of a field...
+      RESTMetadata items = RESTMetadata.getFieldMetadata("items", metadataList);
+      Assert.assertEquals(ItemData.class, items.getFieldType());
+      List<RESTMetadata> subMetadataList = items.getFieldTypeMetadata().get(ItemData.class.getSimpleName());
+      Assert.assertNotNull(subMetadataList);
+      assertLookupMatchesSearch(subMetadataList);
+      Assert.assertEquals(Integer.class, RESTMetadata.getFieldMetadata("quantity", subMetadataList).getFieldType());
+
+      // the sub-metadata of a class is shared by the fields of its type...
+      Assert.assertSame(subMetadataList, RESTMetadata.getFieldMetadata("item", metadataList).getFieldTypeMetadata().get(ItemData.class.getSimpleName()));
+   }
+
+   @Test
+   public void testLookupOfDuplicatedNameFindsFirst() throws Exception {
+      List<RESTMetadata> metadataList = RESTMetadata.getFieldMetadata(ChildData.class);
+
+      // the child's name field follows its parent's in the list...
+      int count = 0;
+      for (RESTMetadata mdata : metadataList) {
+         if (mdata.getFieldName().equals("name")) {
+            count++;
+         }
+      }
+      Assert.assertEquals(2, count);
+      assertLookupMatchesSearch(metadataList);
+      Assert.assertEquals("parent", RESTMetadata.getFieldMetadata("name", metadataList).getDescription());
+   }
+
+   @Test
+   public void testValueOptionsAreRefreshed() throws Exception {
+      CountingLoader.Loads = 0;
+      List<RESTMetadata> metadataList = RESTMetadata.getFieldMetadata(LoadedData.class);
+      RESTMetadata status = RESTMetadata.getFieldMetadata("status", metadataList);
+      Assert.assertEquals(options("1"), status.getValueOptions());
+
+      // loaded options can't be changed by one request for the others...
+      try {
+         status.getValueOptions().clear();
+         Assert.fail("Cleared shared value options.");
+      }
+      catch (UnsupportedOperationException ex) {
+         // expected...
+      }
+      try {
+         status.getValueOptions().get(0).put("value", "changed");
+         Assert.fail("Changed a shared value option.");
+      }
+      catch (UnsupportedOperationException ex) {
+         // expected...
+      }
+
+      // no refresh interval, loaded only once...
+      Thread.sleep(300);
+      RESTMetadata.getFieldMetadata(LoadedData.class);
+      Assert.assertEquals(1, CountingLoader.Loads);
+
+      RESTMetadata.setValueOptionsRefreshInterval(200, TimeUnit.MILLISECONDS);
+      RESTMetadata.getFieldMetadata(LoadedData.class);
+      Assert.assertEquals(options("2"), status.getValueOptions());
+
+      // not reloaded again within the interval...
+      RESTMetadata.getFieldMetadata(LoadedData.class);
+      Assert.assertEquals(2, CountingLoader.Loads);
+
+      // a failed reload keeps the current options...
+      CountingLoader.Fail = true;
+      Thread.sleep(300);
+      Assert.assertSame(metadataList, RESTMetadata.getFieldMetadata(LoadedData.class));
+      Assert.assertEquals(3, CountingLoader.Loads);
+      Assert.assertEquals(options("2"), status.getValueOptions());
+
+      CountingLoader.Fail = false;
+      Thread.sleep(300);
+      RESTMetadata.getFieldMetadata(LoadedData.class);
+      Assert.assertEquals(options("4"), status.getValueOptions());
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static void assertLookupMatchesSearch(List<RESTMetadata> metadataList) {
+      List<RESTMetadata> searched = new ArrayList<>(metadataList); // not indexed...
+      List<String> fieldNames = new ArrayList<>();
+      for (RESTMetadata mdata : metadataList) {
+         fieldNames.add(mdata.getFieldName());
+      }
+      fieldNames.add("noSuchField");
+
+      for (String fieldName : fieldNames) {
+         Assert.assertSame(fieldName, RESTMetadata.getFieldMetadata(fieldName, searched), RESTMetadata.getFieldMetadata(fieldName, metadataList));
+      }
+      Assert.assertNull(RESTMetadata.getFieldMetadata("noSuchField", metadataList));
+   }
+
+   private static List<Map<String, Object>> options(String value) {
+      Map<String, Object> option = new HashMap<>();
+      option.put("value", value);
+      return Collections.singletonList(option);
+   }
+
+   public static class OrderData extends RESTData {
+
+      private static final long serialVersionUID = 1L;
+
+      private Long id;
+      private String customer;
+      private ItemData item;
+      private List<ItemData> items;
+   }
+
+   public static class ItemData extends RESTData {
+
+      private static final long serialVersionUID = 1L;
+
+      private String product;
+      private Integer quantity;
+   }
+
+   public static class ParentData extends RESTData {
+
+      private static final long serialVersionUID = 1L;
+
+      @RDMetadata(description = "parent")
+      private String name;
+   }
+
+   public static class ChildData extends ParentData {
+
+      private static final long serialVersionUID = 1L;
+
+      @RDMetadata(description = "child")
+      private String name;
+      private Integer size;
+   }
+
+   public static class LoadedData extends RESTData {
+
+      private static final long serialVersionUID = 1L;
+
+      @RDMetadata(valueOptionLoaderClass = "com.jc.app.rest.RESTMetadataTest$CountingLoader")
+      private String status;
+   }
+
+   // Returns the number of times it's been asked for options as the only option.
+   public static class CountingLoader extends ValueOptionsLoader {
+
+      private static volatile int Loads;
+      private static volatile boolean Fail;
+
+      @Override
+      public List<Map<String, Object>> getValueOptions() throws Exception {
+         Loads++;
+         if (Fail) {
+            throw new Exception("Options aren't available.");
+         }
+         List<Map<String, Object>> options = new ArrayList<>();
+         options.addAll(options(String.valueOf(Loads)));
+         return options;
+      }
+   }
+}
@@ -2,6 +2,30 @@ package com.jc.app.rest;
 
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -10,6 +34,10 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import com.jc.CommonsTestUtils;
+import com.jc.app.rest.annotations.RDMetadata.BOOLEAN;
+import com.jc.app.rest.annotations.Transient;
+import com.jc.app.rest.exceptions.InvalidJSONDatatypeException;
+import com.jc.db.dao.EntityCursor;
 
 public class RESTUtilsTest {
 
@@ -56,4 +84,398 @@ public class RESTUtilsTest {
          fail("Inflated data object did not equal test data object.");
       }
    }
+
+   // -- writeJSON() must write the same JSON as the JSONObject path ----------------------
+
+   @Test
+   public void testWriteJSONMatchesJSONObject() throws Exception {
+      RESTDataTestObject testData = new RESTDataTestObject();
+      testData.init();
+
+      assertSameJSON(RESTUtils.createJSONObjectFromObject(testData), writeJSON(testData));
+   }
+
+   @Test
+   public void testWriteJSONCollapsed() throws Exception {
+      RESTDataTestObject testData = new RESTDataTestObject();
+      testData.init();
+      testData.getSubObjectVar().setCollapsed("http://localhost/sub/1");
+
+      JSONObject written = writeJSON(testData);
+      assertSameJSON(RESTUtils.createJSONObjectFromObject(testData), written);
+      Assert.assertEquals("http://localhost/sub/1", written.getJSONObject("subObjectVar").getString("href"));
+      Assert.assertEquals(1, written.getJSONObject("subObjectVar").length());
+
+      testData.setCollapsed("http://localhost/test/1");
+      written = writeJSON(testData);
+      assertSameJSON(RESTUtils.createJSONObjectFromObject(testData), written);
+      Assert.assertEquals("http://localhost/test/1", written.getString("href"));
+      Assert.assertEquals(1, written.length());
+   }
+
+   @Test
+   public void testWriteJSONTransientFields() throws Exception {
+      TransientFieldsObject testData = new TransientFieldsObject();
+
+      JSONObject written = writeJSON(testData);
+      assertSameJSON(RESTUtils.createJSONObjectFromObject(testData), written);
+      Assert.assertEquals("included", written.getString("includedVar"));
+      Assert.assertEquals("plain", written.getString("plainVar"));
+      Assert.assertFalse(written.has("excludedVar"));
+   }
+
+   @Test
+   public void testWriteJSONHiddenFields() throws Exception {
+      HidingFieldsObject testData = new HidingFieldsObject();
+      testData.stringVar = "subclass";
+      ((HiddenFieldsObject) testData).stringVar = "superclass";
+      ((HiddenFieldsObject) testData).intVar = 1;
+
+      // the superclass field's value is put last by the JSONObject path, so it's the one written...
+      JSONObject written = writeJSON(testData);
+      assertSameJSON(RESTUtils.createJSONObjectFromObject(testData), written);
+      Assert.assertEquals("superclass", written.getString("stringVar"));
+      Assert.assertEquals(1, written.getInt("intVar"));
+
+      ((HiddenFieldsObject) testData).stringVar = null; // unless it's null...
+      written = writeJSON(testData);
+      assertSameJSON(RESTUtils.createJSONObjectFromObject(testData), written);
+      Assert.assertEquals("subclass", written.getString("stringVar"));
+   }
+
+   @Test
+   public void testWriteJSONDates() throws Exception {
+      RESTDataTestObject testData = new RESTDataTestObject();
+      Date date = new Date(1502368496000L);
+      testData.setDateVar(date);
+
+      JSONObject written = writeJSON(testData);
+      assertSameJSON(RESTUtils.createJSONObjectFromObject(testData), written);
+      Assert.assertEquals("2017-08-10T12:34:56Z", written.getString("dateVar"));
+      Assert.assertEquals(RESTUtils.DATE_FORMAT_ISO8601.format(date), written.getString("dateVar"));
+   }
+
+   @Test
+   public void testWriteJSONMapsAndLists() throws Exception {
+      RESTDataTestObject testData = new RESTDataTestObject();
+      testData.init();
+
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("string", "line one\nline \"two\"");
+      map.put("long", Long.MAX_VALUE);
+      map.put("double", 0.1d);
+      map.put("list", testData.getListVar());
+      map.put("listOfLists", testData.getListListVar());
+      map.put("listOfMaps", testData.getListMapVar());
+      map.put("map", testData.getMapVar());
+      map.put("object", testData.getSubObjectVar());
+
+      assertSameJSON(RESTUtils.createJSONObjectFromMap(map), writeJSON(map));
+
+      List<Object> list = new ArrayList<>();
+      list.add(map);
+      list.add(testData.getListVar());
+      list.add(testData.getSubObjectVar());
+
+      StringWriter writer = new StringWriter();
+      RESTUtils.writeJSON(list, writer);
+      JSONArray expected = new JSONArray(RESTUtils.createJSONArrayFromList(list).toString());
+      Assert.assertTrue("Written array didn't match JSONArray.", expected.similar(new JSONArray(writer.toString())));
+   }
+
+   // -- createObjectFromJSON() must bind the same objects as the JSONObject path ---------
+
+   @Test
+   public void testCreateObjectFromJSONMatchesJSONObject() throws Exception {
+      RESTDataTestObject testData = new RESTDataTestObject();
+      testData.init();
+      testData.setFloatVar(null); // read back from text as Double, which a Float field doesn't accept...
+      testData.setBigDecimalVar(null);
+      testData.setByteVar(null); // read back as Integer...
+      testData.setCharVar(null); // read back as String...
+      testData.setBigIntVar(BigInteger.valueOf(12345678901L)); // only read back as a BigInteger from a Long...
+
+      String json = RESTUtils.createJSONObjectFromObject(testData).toString();
+      RESTDataTestObject dataObj = bindJSON(json, RESTDataTestObject.class);
+      if (!dataObj.equals(testData)) {
+         fail("Data object read from the stream did not equal test data object.");
+      }
+   }
+
+   @Test
+   public void testCreateObjectFromJSONCollapsed() throws Exception {
+      RESTDataTestObject testData = bindJSON("{\"subObjectVar\":{\"href\":\"http://localhost/sub/1\"}}", RESTDataTestObject.class);
+      Assert.assertNotNull(testData.getSubObjectVar());
+      Assert.assertNull(testData.getSubObjectVar().getStringVar1());
+   }
+
+   @Test
+   public void testCreateObjectFromJSONTransientFields() throws Exception {
+      String json = "{\"includedVar\":\"a\",\"excludedVar\":\"b\",\"plainVar\":\"c\"}";
+      TransientFieldsObject testData = bindJSON(json, TransientFieldsObject.class);
+      Assert.assertEquals("included", testData.includedVar); // only written, never read...
+      Assert.assertEquals("excluded", testData.excludedVar);
+      Assert.assertEquals("c", testData.plainVar);
+   }
+
+   @Test
+   public void testCreateObjectFromJSONHiddenFields() throws Exception {
+      HidingFieldsObject testData = bindJSON("{\"stringVar\":\"value\",\"intVar\":2}", HidingFieldsObject.class);
+      Assert.assertEquals("value", testData.stringVar);
+      Assert.assertEquals("value", ((HiddenFieldsObject) testData).stringVar);
+      Assert.assertEquals(Integer.valueOf(2), ((HiddenFieldsObject) testData).intVar);
+   }
+
+   @Test
+   public void testCreateObjectFromJSONDates() throws Exception {
+      RESTDataTestObject testData = bindJSON("{\"dateVar\":\"2017-08-10T12:34:56Z\"}", RESTDataTestObject.class);
+      Assert.assertEquals(new Date(1502368496000L), testData.getDateVar());
+   }
+
+   @Test
+   public void testCreateObjectFromJSONNumbers() throws Exception {
+      String json = "{\"id\":5,\"intVar\":7,\"doubleVar\":3,\"floatVar\":2,\"bigIntVar\":12345678901}";
+      RESTDataTestObject testData = bindJSON(json, RESTDataTestObject.class);
+      Assert.assertEquals(Long.valueOf(5), testData.getId());
+      Assert.assertEquals(Integer.valueOf(7), testData.getIntVar());
+      Assert.assertEquals(Double.valueOf(3), testData.getDoubleVar());
+      Assert.assertEquals(Float.valueOf(2), testData.getFloatVar());
+      Assert.assertEquals(new BigInteger("12345678901"), testData.getBigIntVar());
+
+      // both paths reject a value they can't convert in the same way...
+      json = "{\"floatVar\":2.5}";
+      String streamMessage = null;
+      try {
+         RESTUtils.createObjectFromJSON(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), RESTDataTestObject.class);
+      }
+      catch (InvalidJSONDatatypeException ex) {
+         streamMessage = ex.getMessage();
+      }
+      Assert.assertNotNull("A Double was bound to a Float field.", streamMessage);
+      exceptionThrown.expect(InvalidJSONDatatypeException.class);
+      exceptionThrown.expectMessage(streamMessage);
+      RESTUtils.createObjectFromJSONObject(new JSONObject(json), RESTDataTestObject.class);
+   }
+
+   @Test
+   public void testCreateObjectFromJSONMapsAndLists() throws Exception {
+      String json = "{\"listVar\":[\"a\",1,2.5,true,{\"stringVar1\":\"b\"}],"
+            + "\"listListVar\":[[1,\"x\"],[false,[2]]],"
+            + "\"listMapVar\":[{\"a\":1,\"b\":[1,2]},{\"c\":{\"d\":\"e\"}}],"
+            + "\"mapVar\":{\"k\":{\"n\":1},\"l\":[\"m\"]},"
+            + "\"subObjectListVar\":[{\"stringVar1\":\"f\",\"subObjectVar\":{\"intVar\":3}}]}";
+      RESTDataTestObject testData = bindJSON(json, RESTDataTestObject.class);
+      Assert.assertEquals(5, testData.getListVar().size());
+      Assert.assertEquals(2, testData.getListListVar().size());
+      Assert.assertEquals(2, testData.getListMapVar().size());
+      Assert.assertEquals(Integer.valueOf(3), testData.getSubObjectListVar().get(0).getSubObjectVar().getIntVar());
+   }
+
+   // -- createStreamingListResponse() and the _fields, _collapse, _count and _items params -
+
+   @Test
+   public void testStreamingList() throws Exception {
+      List<RESTDataTestObject> items = createTestItems();
+      TestCursor cursor = new TestCursor(items);
+
+      JSONObject written = new JSONObject(writeResponse(createStreamingListResponse(cursor, null, null)));
+      JSONArray writtenItems = written.getJSONArray(StreamingGenericList.ITEMS);
+      Assert.assertEquals(items.size(), writtenItems.length());
+      for (int i = 0; i < items.size(); i++) {
+         assertSameJSON(RESTUtils.createJSONObjectFromObject(items.get(i)), writtenItems.getJSONObject(i));
+      }
+      Assert.assertEquals(items.size(), written.getLong(StreamingGenericList.COUNT));
+      Assert.assertTrue("Cursor wasn't closed.", cursor.closed);
+   }
+
+   @Test
+   public void testStreamingListFields() throws Exception {
+      List<RESTDataTestObject> items = createTestItems();
+      TestCursor cursor = new TestCursor(items);
+
+      String json = writeResponse(createStreamingListResponse(cursor, RESTResource.QUERY_PARAM_FIELDSLIST + "=id, stringVar", null));
+      JSONArray writtenItems = new JSONObject(json).getJSONArray(StreamingGenericList.ITEMS);
+      for (int i = 0; i < items.size(); i++) {
+         JSONObject expected = RESTUtils.createJSONObjectFromObject(items.get(i));
+         JSONObject item = writtenItems.getJSONObject(i);
+         Assert.assertEquals(new HashSet<>(Arrays.asList("id", "stringVar")), item.keySet());
+         Assert.assertEquals(expected.getLong("id"), item.getLong("id"));
+         Assert.assertEquals(expected.getString("stringVar"), item.getString("stringVar"));
+      }
+   }
+
+   @Test
+   public void testStreamingListUnknownField() throws Exception {
+      TestCursor cursor = new TestCursor(createTestItems());
+
+      Response response = createStreamingListResponse(cursor, RESTResource.QUERY_PARAM_FIELDSLIST + "=id,bogusVar", null);
+      Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+      Assert.assertTrue("Cursor wasn't closed.", cursor.closed);
+   }
+
+   @Test
+   public void testStreamingListCollapsed() throws Exception {
+      List<RESTDataTestObject> items = createTestItems();
+
+      String json = writeResponse(createStreamingListResponse(new TestCursor(items), RESTResource.QUERY_PARAM_COLLAPSIBLE, null));
+      JSONArray writtenItems = new JSONObject(json).getJSONArray(StreamingGenericList.ITEMS);
+      for (int i = 0; i < items.size(); i++) {
+         items.get(i).setCollapsed(items.get(i).getHref());
+         assertSameJSON(RESTUtils.createJSONObjectFromObject(items.get(i)), writtenItems.getJSONObject(i));
+      }
+   }
+
+   @Test
+   public void testStreamingListCount() throws Exception {
+      List<RESTDataTestObject> items = createTestItems();
+
+      String json = writeResponse(createStreamingListResponse(new TestCursor(items), RESTResource.QUERY_PARAM_COUNTONLY, null));
+      Assert.assertEquals("{\"count\":" + items.size() + "}", json);
+
+      // a count that's supplied is written without reading the cursor...
+      TestCursor cursor = new TestCursor(items);
+      json = writeResponse(createStreamingListResponse(cursor, RESTResource.QUERY_PARAM_COUNTONLY, 42L));
+      Assert.assertEquals("{\"count\":42}", json);
+      Assert.assertEquals(0, cursor.read);
+      Assert.assertTrue("Cursor wasn't closed.", cursor.closed);
+   }
+
+   @Test
+   public void testStreamingListItems() throws Exception {
+      List<RESTDataTestObject> items = createTestItems();
+
+      String json = writeResponse(createStreamingListResponse(new TestCursor(items), RESTResource.QUERY_PARAM_ITEMSONLY, null));
+      JSONArray writtenItems = new JSONArray(json);
+      Assert.assertEquals(items.size(), writtenItems.length());
+      for (int i = 0; i < items.size(); i++) {
+         assertSameJSON(RESTUtils.createJSONObjectFromObject(items.get(i)), writtenItems.getJSONObject(i));
+      }
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static List<RESTDataTestObject> createTestItems() {
+      List<RESTDataTestObject> items = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+         RESTDataTestObject item = new RESTDataTestObject();
+         item.init();
+         item.setHref("http://localhost/test/" + i);
+         items.add(item);
+      }
+      return items;
+   }
+
+   // Calls createStreamingListResponse() with a query string of one parameter, or none if null.
+   private static Response createStreamingListResponse(TestCursor cursor, String queryParam, Long count) {
+      final MultivaluedMap<String, String> queryParams = new MultivaluedHashMap<>();
+      if (queryParam != null) {
+         String[] param = queryParam.split("=", 2);
+         queryParams.add(param[0], param.length > 1 ? param[1] : "");
+      }
+      UriInfo info = (UriInfo) Proxy.newProxyInstance(UriInfo.class.getClassLoader(), new Class<?>[] { UriInfo.class }, new InvocationHandler() {
+
+         @Override
+         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("getQueryParameters")) {
+               return queryParams;
+            }
+            throw new UnsupportedOperationException(method.getName());
+         }
+      });
+
+      RESTResource resource = new RESTResource() {};
+      return resource.createStreamingListResponse(RESTUtilsTest.class, cursor, RESTDataTestObject.class, info, count);
+   }
+
+   private static String writeResponse(Response response) throws Exception {
+      Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ((StreamingOutput) response.getEntity()).write(out);
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+   }
+
+   /*
+    * Binds the JSON text from a stream with createObjectFromJSON(), checking that it gives the same
+    * object, as written back to JSON, as createObjectFromJSONObject().
+    */
+   private static <T> T bindJSON(String json, Class<T> classType) throws Exception {
+      T fromStream = RESTUtils.createObjectFromJSON(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), classType);
+      T fromJSONObject = RESTUtils.createObjectFromJSONObject(new JSONObject(json), classType);
+      assertSameJSON(RESTUtils.createJSONObjectFromObject(fromJSONObject), writeJSON(fromStream));
+      return fromStream;
+   }
+
+   // Writes the data with writeJSON() and reads it back.
+   private static JSONObject writeJSON(Object data) throws Exception {
+      StringWriter writer = new StringWriter();
+      RESTUtils.writeJSON(data, writer);
+      return new JSONObject(writer.toString());
+   }
+
+   private static void assertSameJSON(JSONObject expected, JSONObject actual) {
+      // compare the expected object as it reads back from text, so numbers have the same types...
+      if (!new JSONObject(expected.toString()).similar(actual)) {
+         fail("Expected JSON " + expected + " but was " + actual);
+      }
+   }
+
+   private static class TestCursor implements EntityCursor<RESTDataTestObject> {
+
+      private final Iterator<RESTDataTestObject> items;
+      private int read;
+      private boolean closed;
+
+      TestCursor(List<RESTDataTestObject> items) {
+         this.items = items.iterator();
+      }
+
+      @Override
+      public boolean hasNext() {
+         return items.hasNext();
+      }
+
+      @Override
+      public RESTDataTestObject next() {
+         read++;
+         return items.next();
+      }
+
+      @Override
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void close() {
+         closed = true;
+      }
+   }
+
+   public static class TransientFieldsObject {
+
+      @Transient(includeInJson = BOOLEAN.YES)
+      private String includedVar = "included";
+
+      @Transient
+      private String excludedVar = "excluded";
+
+      private String plainVar = "plain";
+
+      public TransientFieldsObject() {}
+   }
+
+   public static class HiddenFieldsObject {
+
+      private String stringVar;
+      private Integer intVar;
+
+      public HiddenFieldsObject() {}
+   }
+
+   public static class HidingFieldsObject extends HiddenFieldsObject {
+
+      private String stringVar;
+
+      public HidingFieldsObject() {}
+   }
 }
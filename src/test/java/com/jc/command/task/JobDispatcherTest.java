@@ -0,0 +1,204 @@
+package com.jc.command.task;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jc.command.task.Job.JobStatus;
+import com.jc.log.Logger;
+
+/*
+ * Drives a JobDispatcher with jobs that only record when they're started and finish when
+ * the test says so, to check the order they're started in and the caps on running jobs.
+ */
+
+public final class JobDispatcherTest {
+
+   private static final long AGING_INTERVAL = 60000; // long enough that the jobs don't age during a test.
+
+   private static JobQueue Queue;
+
+   @BeforeClass
+   public static void setUp() {
+      Logger.setConsoleLoggingOn(false);
+      Queue = new JobQueue();
+   }
+
+   @Test
+   public void testJobsStartHighestPriorityFirst() throws Exception {
+      BlockingQueue<Job> started = new LinkedBlockingQueue<>();
+      JobDispatcher dispatcher = new JobDispatcher(Queue, 1, 0, AGING_INTERVAL);
+
+      DispatchedJob low = queue(dispatcher, "low", 1.0f, started);
+      DispatchedJob high = queue(dispatcher, "high", 3.0f, started);
+      DispatchedJob medium = queue(dispatcher, "medium", 2.0f, started);
+      DispatchedJob high2 = queue(dispatcher, "high2", 3.0f, started);
+
+      dispatcher.start();
+      try {
+         // one at a time, so each only starts once the one before it is done...
+         for (DispatchedJob expected : new DispatchedJob[] { high, high2, medium, low }) {
+            Job next = started.poll(5, TimeUnit.SECONDS);
+            Assert.assertSame("Expected job " + expected.Name + " to start next.", expected, next);
+            Assert.assertNull("A second job started while the cap was reached.", started.poll(100, TimeUnit.MILLISECONDS));
+            expected.finish();
+         }
+         Assert.assertEquals(0, dispatcher.getNumQueued());
+      }
+      finally {
+         dispatcher.stop();
+      }
+   }
+
+   @Test
+   public void testWaitingJobsAge() throws Exception {
+      BlockingQueue<Job> started = new LinkedBlockingQueue<>();
+      JobDispatcher dispatcher = new JobDispatcher(Queue, 1, 0, 10);
+
+      // queued 200ms earlier, which at 10ms per step outweighs the later job's extra priority...
+      DispatchedJob older = queue(dispatcher, "older", 1.0f, started);
+      Thread.sleep(200);
+      DispatchedJob newer = queue(dispatcher, "newer", 3.0f, started);
+
+      dispatcher.start();
+      try {
+         Assert.assertSame(older, started.poll(5, TimeUnit.SECONDS));
+         older.finish();
+         Assert.assertSame(newer, started.poll(5, TimeUnit.SECONDS));
+         newer.finish();
+      }
+      finally {
+         dispatcher.stop();
+      }
+   }
+
+   @Test
+   public void testJobsQueuedWhileRunningStartWithoutDelay() throws Exception {
+      BlockingQueue<Job> started = new LinkedBlockingQueue<>();
+      JobDispatcher dispatcher = new JobDispatcher(Queue, 2, 0, AGING_INTERVAL);
+      dispatcher.start();
+      try {
+         DispatchedJob first = queue(dispatcher, "first", 1.0f, started);
+         DispatchedJob second = queue(dispatcher, "second", 1.0f, started);
+         DispatchedJob third = queue(dispatcher, "third", 1.0f, started);
+
+         long time = System.currentTimeMillis();
+         Assert.assertSame(first, started.poll(5, TimeUnit.SECONDS));
+         Assert.assertSame(second, started.poll(5, TimeUnit.SECONDS));
+         Assert.assertTrue("Queued jobs weren't started promptly.", System.currentTimeMillis() - time < 500);
+         Assert.assertNull("A third job started while the cap was reached.", started.poll(200, TimeUnit.MILLISECONDS));
+
+         time = System.currentTimeMillis();
+         second.finish();
+         Assert.assertSame(third, started.poll(5, TimeUnit.SECONDS));
+         Assert.assertTrue("A finished job's place wasn't filled promptly.", System.currentTimeMillis() - time < 500);
+         first.finish();
+         third.finish();
+      }
+      finally {
+         dispatcher.stop();
+      }
+   }
+
+   @Test
+   public void testStoppedDispatcherStartsNothing() throws Exception {
+      BlockingQueue<Job> started = new LinkedBlockingQueue<>();
+      JobDispatcher dispatcher = new JobDispatcher(Queue, 0, 0, AGING_INTERVAL);
+      dispatcher.start();
+      dispatcher.stop();
+      Assert.assertFalse(dispatcher.isRunning());
+
+      DispatchedJob ajob = queue(dispatcher, "stopped", 1.0f, started);
+      Assert.assertNull("A job started after the dispatcher was stopped.", started.poll(1500, TimeUnit.MILLISECONDS));
+
+      dispatcher.start();
+      try {
+         Assert.assertSame(ajob, started.poll(5, TimeUnit.SECONDS));
+         ajob.finish();
+      }
+      finally {
+         dispatcher.stop();
+      }
+   }
+
+   @Test
+   public void testRestartRunsOneDispatchLoop() throws Exception {
+      Thread.sleep(1500); // lets the loops of dispatchers stopped by earlier tests exit.
+      int before = countDispatchLoops();
+
+      JobDispatcher dispatcher = new JobDispatcher(Queue, 0, 0, AGING_INTERVAL);
+      for (int i = 0; i < 50; i++) {
+         dispatcher.start();
+         dispatcher.stop();
+      }
+      dispatcher.start();
+      try {
+         Thread.sleep(1500); // loops left over from earlier starts exit within the idle wait.
+         Assert.assertEquals("Restarting the dispatcher left more than one dispatch loop running.", before + 1, countDispatchLoops());
+
+         BlockingQueue<Job> started = new LinkedBlockingQueue<>();
+         DispatchedJob ajob = queue(dispatcher, "restarted", 1.0f, started);
+         Assert.assertSame(ajob, started.poll(5, TimeUnit.SECONDS));
+         Assert.assertNull(started.poll(200, TimeUnit.MILLISECONDS));
+         ajob.finish();
+      }
+      finally {
+         dispatcher.stop();
+      }
+
+      Thread.sleep(1500);
+      Assert.assertEquals("Stopping the dispatcher didn't end its dispatch loop.", before, countDispatchLoops());
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static DispatchedJob queue(JobDispatcher dispatcher, String name, float priority, BlockingQueue<Job> started) {
+      DispatchedJob ajob = new DispatchedJob(name, started);
+      ajob.setState(JobStatus.QUEUED);
+      dispatcher.queue(ajob, priority);
+      return ajob;
+   }
+
+   private static int countDispatchLoops() {
+      int count = 0;
+      for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+         for (StackTraceElement element : entry.getValue()) {
+            if (element.getClassName().equals(JobDispatcher.class.getName()) && element.getMethodName().equals("dispatch")) {
+               count++;
+               break;
+            }
+         }
+      }
+      return count;
+   }
+
+   /*
+    * A job that records that it was started rather than running its task.
+    */
+   private static final class DispatchedJob extends Job {
+
+      private final String Name;
+      private final BlockingQueue<Job> Started;
+
+      private DispatchedJob(String name, BlockingQueue<Job> started) {
+         super(new TestTask(name, 1000), false);
+         Name = name;
+         Started = started;
+      }
+
+      @Override
+      public void start() {
+         setState(JobStatus.RUNNING);
+         Started.add(this);
+      }
+
+      private void finish() {
+         setState(JobStatus.DONE);
+      }
+   }
+}
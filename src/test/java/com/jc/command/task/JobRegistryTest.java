@@ -0,0 +1,253 @@
+package com.jc.command.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jc.command.task.Job.JobStatus;
+import com.jc.command.task.JobRegistry.ProcessStats;
+import com.jc.command.task.JobRegistry.StatusCounts;
+import com.jc.log.Logger;
+
+/*
+ * Checks that the running totals kept by a JobRegistry match the states, amounts completed
+ * and estimated runtimes of its jobs as they change. The jobs aren't run; their state and
+ * progress are set directly, which notifies the registry just as running them would.
+ */
+
+public final class JobRegistryTest {
+
+   @BeforeClass
+   public static void setUp() {
+      Logger.setConsoleLoggingOn(false);
+   }
+
+   @Test
+   public void testQueuedCountsFollowJobStates() {
+      JobRegistry registry = new JobRegistry();
+      Job first = createJob("first");
+      Job second = createJob("second");
+
+      Assert.assertTrue(registry.addJob(first));
+      Assert.assertTrue(registry.addJob(second));
+      Assert.assertFalse("The same job was added twice.", registry.addJob(first));
+      Assert.assertEquals(2, registry.getNumJobs());
+      assertCounts(registry.getQueuedCounts(), JobStatus.UNKNOWN, 2);
+
+      first.setState(JobStatus.QUEUED);
+      second.setState(JobStatus.QUEUED);
+      assertCounts(registry.getQueuedCounts(), JobStatus.QUEUED, 2);
+
+      first.setState(JobStatus.RUNNING);
+      second.setState(JobStatus.WAITING);
+      assertCounts(registry.getQueuedCounts(), JobStatus.RUNNING, 1, JobStatus.WAITING, 1);
+
+      first.setState(JobStatus.DONE);
+      second.setState(JobStatus.ERRORED);
+      assertCounts(registry.getQueuedCounts(), JobStatus.DONE, 1, JobStatus.ERRORED, 1);
+
+      Assert.assertSame(first, registry.removeJob(first.getID()));
+      Assert.assertNull(registry.getJob(first.getID()));
+      Assert.assertNull(registry.removeJob(first.getID()));
+      assertCounts(registry.getQueuedCounts(), JobStatus.ERRORED, 1);
+
+      // a removed job no longer counts, whatever it does afterwards...
+      first.setState(JobStatus.STOPPED);
+      assertCounts(registry.getQueuedCounts(), JobStatus.ERRORED, 1);
+      Assert.assertEquals(1, registry.getNumJobs());
+   }
+
+   @Test
+   public void testProcessTotals() {
+      JobRegistry registry = new JobRegistry();
+      Job first = createJob("first");
+      Job second = createJob("second");
+      Job third = createJob("third");
+
+      registry.putProcess("process", process(first, second, third));
+      ProcessStats stats = registry.getProcessStats("process");
+      Assert.assertEquals(3, stats.getNumJobs());
+      Assert.assertEquals("process", registry.getProcessID(second.getID()));
+      Assert.assertEquals(3, stats.getCount(JobStatus.UNKNOWN));
+      Assert.assertEquals(0.0d, stats.getAmountCompleted(), 0.0d);
+      Assert.assertEquals(totalRuntime(first, second, third), stats.getEstimatedRuntime());
+
+      first.setState(JobStatus.RUNNING);
+      setAmountCompleted(first, 0.5d);
+      second.setState(JobStatus.RUNNING);
+      setAmountCompleted(second, 1.0d);
+      second.setState(JobStatus.DONE);
+      third.setState(JobStatus.QUEUED);
+      setAmountCompleted(third, 0.4d); // not counted until it's running...
+
+      Assert.assertEquals(1, stats.getCount(JobStatus.RUNNING));
+      Assert.assertEquals(1, stats.getCount(JobStatus.DONE));
+      Assert.assertEquals(1, stats.getCount(JobStatus.QUEUED));
+      Assert.assertEquals(0, stats.getCount(JobStatus.UNKNOWN));
+      Assert.assertEquals((0.5d + 1.0d) / 3, stats.getAmountCompleted(), 0.000001d);
+
+      third.setState(JobStatus.RUNNING);
+      Assert.assertEquals((0.5d + 1.0d + 0.4d) / 3, stats.getAmountCompleted(), 0.000001d);
+
+      setEstimatedRuntime(first, 1200);
+      setEstimatedRuntime(third, 300);
+      Assert.assertEquals(totalRuntime(first, second, third), stats.getEstimatedRuntime());
+
+      // jobs in a process aren't part of the queued totals unless queued as well...
+      assertCounts(registry.getQueuedCounts());
+      Assert.assertEquals(0, registry.getNumJobs());
+   }
+
+   @Test
+   public void testJobInQueueAndProcess() {
+      JobRegistry registry = new JobRegistry();
+      Job queued = createJob("queued");
+      Job other = createJob("other");
+
+      registry.addJob(queued);
+      registry.putProcess("process", process(queued, other));
+      queued.setState(JobStatus.RUNNING);
+      assertCounts(registry.getQueuedCounts(), JobStatus.RUNNING, 1);
+      Assert.assertEquals(1, registry.getProcessStats("process").getCount(JobStatus.RUNNING));
+
+      // removing the process leaves the job queued...
+      Vector<Job> removed = registry.removeProcess("process");
+      Assert.assertEquals(2, removed.size());
+      Assert.assertNull(registry.getProcessStats("process"));
+      Assert.assertNull(registry.getProcessID(queued.getID()));
+      queued.setState(JobStatus.DONE);
+      assertCounts(registry.getQueuedCounts(), JobStatus.DONE, 1);
+
+      // ...and removing the job afterwards stops tracking it altogether.
+      registry.removeJob(queued.getID());
+      assertCounts(registry.getQueuedCounts());
+   }
+
+   @Test
+   public void testReplacedProcess() {
+      JobRegistry registry = new JobRegistry();
+      Job first = createJob("first");
+      Job second = createJob("second");
+      Job third = createJob("third");
+
+      registry.putProcess("process", process(first, second));
+      ProcessStats old_stats = registry.getProcessStats("process");
+
+      registry.putProcess("process", process(second, third));
+      ProcessStats stats = registry.getProcessStats("process");
+      Assert.assertNotSame(old_stats, stats);
+      Assert.assertEquals(2, stats.getNumJobs());
+      Assert.assertNull(registry.getProcessID(first.getID()));
+      Assert.assertEquals("process", registry.getProcessID(third.getID()));
+
+      first.setState(JobStatus.RUNNING);
+      second.setState(JobStatus.RUNNING);
+      third.setState(JobStatus.QUEUED);
+      Assert.assertEquals(1, stats.getCount(JobStatus.RUNNING));
+      Assert.assertEquals(1, stats.getCount(JobStatus.QUEUED));
+   }
+
+   @Test
+   public void testConcurrentStateChanges() throws Exception {
+      final JobRegistry registry = new JobRegistry();
+      final List<Job> jobs = new ArrayList<>();
+      Vector<Job> process = new Vector<>();
+      for (int i = 0; i < 40; i++) {
+         Job ajob = createJob("job" + i);
+         jobs.add(ajob);
+         registry.addJob(ajob);
+         if (i % 2 == 0) {
+            process.add(ajob);
+         }
+      }
+      registry.putProcess("process", process);
+
+      final JobStatus[] states = { JobStatus.QUEUED, JobStatus.RUNNING, JobStatus.WAITING, JobStatus.RUNNING };
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Thread> threads = new ArrayList<>();
+      for (int j = 0; j < jobs.size(); j++) {
+         final Job ajob = jobs.get(j);
+         final JobStatus end_state = j % 10 == 3 ? JobStatus.ERRORED : JobStatus.DONE;
+         Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+               try {
+                  start.await();
+                  for (int i = 0; i < 200; i++) {
+                     ajob.setState(states[i % states.length]);
+                  }
+                  ajob.setState(end_state);
+               }
+               catch (InterruptedException ex) {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         });
+         thread.setDaemon(true);
+         thread.start();
+         threads.add(thread);
+      }
+      start.countDown();
+      for (Thread thread : threads) {
+         thread.join(10000);
+      }
+
+      // jobs 3, 13, 23 and 33 errored, none of which are in the process...
+      assertCounts(registry.getQueuedCounts(), JobStatus.DONE, 36, JobStatus.ERRORED, 4);
+      ProcessStats stats = registry.getProcessStats("process");
+      Assert.assertEquals(20, stats.getNumJobs());
+      Assert.assertEquals(20, stats.getCount(JobStatus.DONE));
+      Assert.assertEquals(0, stats.getCount(JobStatus.RUNNING));
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static Job createJob(String name) {
+      return new Job(new TestTask(name, 1000), false);
+   }
+
+   private static Vector<Job> process(Job... jobs) {
+      Vector<Job> process = new Vector<>();
+      for (Job ajob : jobs) {
+         process.add(ajob);
+      }
+      return process;
+   }
+
+   private static void setAmountCompleted(Job ajob, double amount) {
+      String task_id = ajob.getTasks().keySet().iterator().next();
+      ajob.getTasks().get(task_id).setWeight(1.0d);
+      ajob.updateAmountCompleted(task_id, amount);
+   }
+
+   private static void setEstimatedRuntime(Job ajob, long runtime) {
+      ajob.updateEstimatedRuntime(ajob.getTasks().keySet().iterator().next(), runtime);
+   }
+
+   private static long totalRuntime(Job... jobs) {
+      long total = 0;
+      for (Job ajob : jobs) {
+         total += ajob.getEstimatedRuntime();
+      }
+      return total;
+   }
+
+   // Asserts the counts of the supplied states, given as state, count pairs; every other state must be 0.
+   private static void assertCounts(StatusCounts counts, Object... expected) {
+      for (JobStatus state : JobStatus.values()) {
+         int count = 0;
+         for (int i = 0; i < expected.length; i += 2) {
+            if (expected[i] == state) {
+               count = (Integer) expected[i + 1];
+            }
+         }
+         Assert.assertEquals("Count of " + state + " jobs.", count, counts.get(state));
+      }
+   }
+}
@@ -0,0 +1,144 @@
+package com.jc.command.task;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jc.log.Logger;
+
+/*
+ * Runs jobs of short sleeping tasks through JobRunner, to check it returns as soon as the job
+ * is finished rather than on a polling interval, and that its timeout stops a job.
+ */
+
+public final class JobRunnerTest {
+
+   @BeforeClass
+   public static void setUp() {
+      Logger.setConsoleLoggingOn(false);
+   }
+
+   @Test
+   public void testQuickJobReturnsPromptly() throws Exception {
+      JobRunner runner = new JobRunner();
+      runner.setJobTasks(createTasks(20, "page"));
+
+      long time = System.currentTimeMillis();
+      List<? extends Object> results = runner.run();
+      time = System.currentTimeMillis() - time;
+
+      Assert.assertTrue("Took " + time + " ms.", time < 500);
+      Assert.assertEquals(1, results.size());
+      Assert.assertEquals("page", results.get(0));
+      Assert.assertFalse(runner.hasErrors());
+   }
+
+   @Test
+   public void testAllTaskResultsAreReturned() throws Exception {
+      JobRunner runner = new JobRunner();
+      runner.setMaxParallelTasks(2);
+      runner.setJobTasks(createTasks(20, "a", "b", "c", "d"));
+
+      Set<Object> results = new HashSet<Object>(runner.run());
+      Assert.assertEquals(4, results.size());
+      Assert.assertTrue(results.contains("a") && results.contains("d"));
+   }
+
+   @Test
+   public void testSingleThreadedJob() throws Exception {
+      JobRunner runner = new JobRunner();
+      runner.setRunMultiThreaded(false);
+      runner.setJobTasks(createTasks(20, "a", "b", "c"));
+
+      long time = System.currentTimeMillis();
+      Set<Object> results = new HashSet<Object>(runner.run());
+      time = System.currentTimeMillis() - time;
+
+      Assert.assertEquals(3, results.size());
+      Assert.assertTrue("Took " + time + " ms.", time >= 60);
+   }
+
+   @Test
+   public void testErroredJobReturns() throws Exception {
+      List<Task> tasks = createTasks(20, "fails");
+      ((SleepTask) tasks.get(0)).Fail = true;
+      JobRunner runner = new JobRunner();
+      runner.setJobTasks(tasks);
+
+      long time = System.currentTimeMillis();
+      runner.run();
+      time = System.currentTimeMillis() - time;
+
+      Assert.assertTrue(runner.hasErrors());
+      Assert.assertTrue("Took " + time + " ms.", time < 500);
+   }
+
+   @Test
+   public void testTimeoutStopsJob() throws Exception {
+      JobRunner runner = new JobRunner();
+      runner.setTimeout(200);
+      runner.setJobTasks(createTasks(5000, "slow"));
+
+      long time = System.currentTimeMillis();
+      try {
+         runner.run();
+         Assert.fail("Expected the job to time out.");
+      }
+      catch (TimeoutException ex) {
+         // expected...
+      }
+      time = System.currentTimeMillis() - time;
+      Assert.assertTrue("Took " + time + " ms.", time >= 200 && time < 2000);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testNegativeTimeout() {
+      new JobRunner().setTimeout(-1);
+   }
+
+   @Test(expected = Exception.class)
+   public void testNoTasks() throws Exception {
+      JobRunner runner = new JobRunner();
+      runner.setJobTasks(new ArrayList<Task>());
+      runner.run();
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static List<Task> createTasks(long sleepTime, String... results) {
+      List<Task> tasks = new ArrayList<>();
+      for (String result : results) {
+         tasks.add(new SleepTask(sleepTime, result));
+      }
+      return tasks;
+   }
+
+   private static final class SleepTask extends Task {
+
+      private static final long serialVersionUID = 1L;
+
+      private final long SleepTime;
+      private final String Result;
+      private boolean Fail;
+
+      private SleepTask(long sleepTime, String result) {
+         SleepTime = sleepTime;
+         Result = result;
+      }
+
+      @Override
+      public void doTask() throws Exception {
+         Thread.sleep(SleepTime);
+         if (Fail) {
+            throw new Exception("Failed on purpose.");
+         }
+         setTaskResult(Result);
+      }
+   }
+}
@@ -0,0 +1,128 @@
+package com.jc.command.task;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jc.log.Logger;
+
+/*
+ * Checks that slave jobs act on their masters' status events as they happen, well inside the
+ * shared scheduler's backup check interval, and that status tracking ticks on the shared
+ * scheduler only while a task runs.
+ */
+
+public final class SlaveJobTest {
+
+   @BeforeClass
+   public static void setUp() {
+      Logger.setConsoleLoggingOn(false);
+   }
+
+   @Test
+   public void testSlaveStartsWhenMasterFinishes() throws Exception {
+      Job master = new Job(new SleepTask(300), true);
+      Job slave = new Job(new SleepTask(20), new Job[] { master }, true);
+
+      slave.start();
+      Assert.assertTrue(slave.isWaiting());
+      master.start();
+
+      Assert.assertTrue(master.awaitCompletion(5000));
+      long time = System.currentTimeMillis();
+      Assert.assertTrue(slave.awaitCompletion(5000));
+      time = System.currentTimeMillis() - time;
+
+      Assert.assertTrue(slave.isDone());
+      Assert.assertTrue("Slave finished " + time + " ms after its master.", time < 1000);
+   }
+
+   @Test
+   public void testSlaveOfFinishedMasterStartsRightAway() throws Exception {
+      Job master = new Job(new SleepTask(20), true);
+      master.start();
+      Assert.assertTrue(master.awaitCompletion(5000));
+
+      Job slave = new Job(new SleepTask(20), new Job[] { master }, true);
+      slave.start();
+      Assert.assertTrue(slave.awaitCompletion(1000));
+      Assert.assertTrue(slave.isDone());
+   }
+
+   @Test
+   public void testStoppedMasterStopsSlave() throws Exception {
+      Job master = new Job(new SleepTask(10000), true);
+      SleepTask slaveTask = new SleepTask(20);
+      Job slave = new Job(slaveTask, new Job[] { master }, true);
+
+      master.start();
+      slave.start();
+      master.stop();
+
+      Assert.assertTrue(slave.awaitCompletion(1000));
+      Assert.assertTrue(slave.isStopped());
+      Assert.assertEquals(0, slaveTask.Runs.get());
+   }
+
+   @Test
+   public void testSlaveWaitsForAllMasters() throws Exception {
+      Job first = new Job(new SleepTask(20), true);
+      Job second = new Job(new SleepTask(400), true);
+      Job slave = new Job(new SleepTask(20), new Job[] { first, second }, true);
+
+      slave.start();
+      first.start();
+      Assert.assertTrue(first.awaitCompletion(5000));
+      second.start();
+      Assert.assertFalse(slave.awaitCompletion(200));
+      Assert.assertTrue(slave.isWaiting());
+
+      Assert.assertTrue(slave.awaitCompletion(5000));
+      Assert.assertTrue(second.isDone());
+      Assert.assertTrue(slave.isDone());
+   }
+
+   @Test
+   public void testStatusIsTrackedWhileTaskRuns() throws Exception {
+      SleepTask task = new SleepTask(2600);
+      task.setStatusTrackingOn(true);
+      task.setStatusCheckInterval(1000);
+      Job job = new Job(task, true);
+
+      job.start();
+      Assert.assertTrue(job.awaitCompletion(10000));
+      int updates = task.StatusUpdates.get();
+      Assert.assertTrue("Status was updated " + updates + " times.", updates >= 2 && updates <= 3);
+
+      Thread.sleep(1500);
+      Assert.assertEquals("Status was still tracked after the task finished.", updates, task.StatusUpdates.get());
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static final class SleepTask extends Task {
+
+      private static final long serialVersionUID = 1L;
+
+      private final long SleepTime;
+      private final AtomicInteger Runs = new AtomicInteger();
+      private final AtomicInteger StatusUpdates = new AtomicInteger();
+
+      private SleepTask(long sleepTime) {
+         SleepTime = sleepTime;
+      }
+
+      @Override
+      public void doTask() throws Exception {
+         Runs.incrementAndGet();
+         Thread.sleep(SleepTime);
+      }
+
+      @Override
+      protected void updateStatus() {
+         StatusUpdates.incrementAndGet();
+      }
+   }
+}
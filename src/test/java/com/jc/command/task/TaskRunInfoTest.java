@@ -0,0 +1,177 @@
+package com.jc.command.task;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jc.log.Logger;
+
+/*
+ * Hands out TaskRunInfo permits to threads that stand in for running tasks, to check the limit
+ * is kept, waiting tasks get through in the order they arrived and the wait times are recorded.
+ */
+
+public final class TaskRunInfoTest {
+
+   @BeforeClass
+   public static void setUp() {
+      Logger.setConsoleLoggingOn(false);
+   }
+
+   @Test
+   public void testLimitIsKept() throws Exception {
+      TaskRunInfo info = new TaskRunInfo(TestTask.class.getName());
+      info.setMaxActiveTaskLimit(2);
+      BlockingQueue<Task> activated = new LinkedBlockingQueue<>();
+
+      Task first = activate(info, "first", activated);
+      Task second = activate(info, "second", activated);
+      Assert.assertSame(first, activated.poll(5, TimeUnit.SECONDS));
+      Assert.assertSame(second, activated.poll(5, TimeUnit.SECONDS));
+
+      Task third = activate(info, "third", activated);
+      awaitWaiting(info, 1);
+      Assert.assertNull(activated.poll(200, TimeUnit.MILLISECONDS));
+      Assert.assertEquals(2, info.getNumActiveTasks());
+
+      info.deactivateThread(first);
+      Assert.assertSame(third, activated.poll(5, TimeUnit.SECONDS));
+      Assert.assertEquals(2, info.getNumActiveTasks());
+      Assert.assertEquals(0, info.getNumWaitingTasks());
+   }
+
+   @Test
+   public void testWaitingTasksGetThroughInArrivalOrder() throws Exception {
+      TaskRunInfo info = new TaskRunInfo(TestTask.class.getName());
+      info.setMaxActiveTaskLimit(1);
+      BlockingQueue<Task> activated = new LinkedBlockingQueue<>();
+
+      Task running = activate(info, "running", activated);
+      Assert.assertSame(running, activated.poll(5, TimeUnit.SECONDS));
+
+      Task[] waiting = new Task[5];
+      for (int i = 0; i < waiting.length; i++) {
+         waiting[i] = activate(info, "waiting" + i, activated);
+         awaitWaiting(info, i + 1);
+      }
+
+      info.deactivateThread(running);
+      for (Task task : waiting) {
+         Assert.assertSame(task, activated.poll(5, TimeUnit.SECONDS));
+         Assert.assertNull(activated.poll(50, TimeUnit.MILLISECONDS)); // only one at a time...
+         info.deactivateThread(task);
+      }
+      Assert.assertEquals(0, info.getNumActiveTasks());
+   }
+
+   @Test
+   public void testInterruptedTaskGivesUpItsPlace() throws Exception {
+      final TaskRunInfo info = new TaskRunInfo(TestTask.class.getName());
+      info.setMaxActiveTaskLimit(1);
+      BlockingQueue<Task> activated = new LinkedBlockingQueue<>();
+
+      Task running = activate(info, "running", activated);
+      Assert.assertSame(running, activated.poll(5, TimeUnit.SECONDS));
+
+      final TestTask interrupted = new TestTask("interrupted", 1000);
+      final BlockingQueue<Throwable> thrown = new LinkedBlockingQueue<>();
+      Thread interruptedThread = new Thread(new Runnable() {
+
+         @Override
+         public void run() {
+            try {
+               info.activateThread(interrupted);
+            }
+            catch (Throwable ex) {
+               thrown.add(ex);
+            }
+         }
+      });
+      interruptedThread.start();
+      awaitWaiting(info, 1);
+      Task next = activate(info, "next", activated);
+      awaitWaiting(info, 2);
+
+      interruptedThread.interrupt();
+      Assert.assertTrue(thrown.poll(5, TimeUnit.SECONDS) instanceof InterruptedException);
+      awaitWaiting(info, 1);
+
+      info.deactivateThread(running);
+      Assert.assertSame(next, activated.poll(5, TimeUnit.SECONDS));
+      Assert.assertEquals(1, info.getNumActiveTasks());
+   }
+
+   @Test
+   public void testRaisedLimitLetsWaitingTasksThrough() throws Exception {
+      TaskRunInfo info = new TaskRunInfo(TestTask.class.getName());
+      info.setMaxActiveTaskLimit(1);
+      BlockingQueue<Task> activated = new LinkedBlockingQueue<>();
+
+      activate(info, "running", activated);
+      activate(info, "waiting1", activated);
+      activate(info, "waiting2", activated);
+      Assert.assertNotNull(activated.poll(5, TimeUnit.SECONDS));
+      awaitWaiting(info, 2);
+
+      info.setMaxActiveTaskLimit(3);
+      Assert.assertNotNull(activated.poll(5, TimeUnit.SECONDS));
+      Assert.assertNotNull(activated.poll(5, TimeUnit.SECONDS));
+      Assert.assertEquals(3, info.getNumActiveTasks());
+      Assert.assertEquals(0, info.getNumWaitingTasks());
+   }
+
+   @Test
+   public void testWaitTimesAreRecorded() throws Exception {
+      TaskRunInfo info = new TaskRunInfo(TestTask.class.getName());
+      info.setMaxActiveTaskLimit(1);
+      BlockingQueue<Task> activated = new LinkedBlockingQueue<>();
+
+      Task running = activate(info, "running", activated);
+      Assert.assertSame(running, activated.poll(5, TimeUnit.SECONDS));
+      Task waiting = activate(info, "waiting", activated);
+      awaitWaiting(info, 1);
+      Thread.sleep(200);
+      info.deactivateThread(running);
+      Assert.assertSame(waiting, activated.poll(5, TimeUnit.SECONDS));
+
+      Assert.assertEquals(2, info.getNumWaits());
+      Assert.assertTrue("Max wait " + info.getMaxWaitTime() + " ms.", info.getMaxWaitTime() >= 150);
+      Assert.assertTrue(info.getTotalWaitTime() >= info.getMaxWaitTime());
+      Assert.assertTrue(info.getAverageWaitTime() > 0.0);
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   // Activates a new task on its own thread, which adds the task to activated once it may run.
+   private static Task activate(final TaskRunInfo info, String name, final BlockingQueue<Task> activated) {
+      final TestTask task = new TestTask(name, 1000);
+      Thread thread = new Thread(new Runnable() {
+
+         @Override
+         public void run() {
+            try {
+               info.activateThread(task);
+               activated.add(task);
+            }
+            catch (InterruptedException ex) {
+               // gave up waiting...
+            }
+         }
+      }, name);
+      thread.setDaemon(true);
+      thread.start();
+      return task;
+   }
+
+   private static void awaitWaiting(TaskRunInfo info, int numWaiting) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (info.getNumWaitingTasks() != numWaiting) {
+         Assert.assertTrue("Expected " + numWaiting + " waiting tasks, " + info.getNumWaitingTasks() + " are.", System.currentTimeMillis() < deadline);
+         Thread.sleep(10);
+      }
+   }
+}
@@ -0,0 +1,180 @@
+package com.jc.command.task;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jc.log.Logger;
+
+/*
+ * Submits work to ThreadMonitor on a single pooled thread, to check pooled work is tracked and
+ * can be stopped under its id like a thread of its own, and that it leaves the worker as it
+ * found it.
+ */
+
+public final class ThreadMonitorExecutorTest {
+
+   private Executor previousExecutor;
+   private ExecutorService executor;
+
+   @BeforeClass
+   public static void setUpClass() {
+      Logger.setConsoleLoggingOn(false);
+   }
+
+   @Before
+   public void setUp() {
+      previousExecutor = ThreadMonitor.getExecutor();
+      executor = Executors.newSingleThreadExecutor();
+      ThreadMonitor.setExecutor(executor);
+   }
+
+   @After
+   public void tearDown() {
+      ThreadMonitor.setExecutor(previousExecutor);
+      executor.shutdownNow();
+   }
+
+   @Test
+   public void testWorkerIsRenamedWhileWorkRuns() throws Exception {
+      final BlockingQueue<String> names = new LinkedBlockingQueue<>();
+      final BlockingQueue<Integer> priorities = new LinkedBlockingQueue<>();
+      Runnable recordThread = new Runnable() {
+
+         @Override
+         public void run() {
+            names.add(Thread.currentThread().getName());
+            priorities.add(Thread.currentThread().getPriority());
+         }
+      };
+
+      String id = ThreadMonitor.submit(recordThread, Thread.MIN_PRIORITY);
+      Assert.assertTrue(id.startsWith(ThreadMonitor.THREAD_ID_PREFIX));
+      Assert.assertEquals(id, names.poll(5, TimeUnit.SECONDS));
+      Assert.assertEquals(Integer.valueOf(Thread.MIN_PRIORITY), priorities.poll(5, TimeUnit.SECONDS));
+
+      // the worker gets its own name and priority back...
+      executor.execute(recordThread);
+      String workerName = names.poll(5, TimeUnit.SECONDS);
+      Assert.assertNotEquals(id, workerName);
+      Assert.assertFalse(workerName.startsWith(ThreadMonitor.THREAD_ID_PREFIX));
+      Assert.assertEquals(Integer.valueOf(Thread.NORM_PRIORITY), priorities.poll(5, TimeUnit.SECONDS));
+   }
+
+   @Test
+   public void testRunningWorkCanBeStopped() throws Exception {
+      final CountDownLatch started = new CountDownLatch(1);
+      final BlockingQueue<Boolean> interrupted = new LinkedBlockingQueue<>();
+      String id = ThreadMonitor.submit(new Runnable() {
+
+         @Override
+         public void run() {
+            started.countDown();
+            try {
+               Thread.sleep(10000);
+               interrupted.add(false);
+            }
+            catch (InterruptedException ex) {
+               interrupted.add(true);
+            }
+         }
+      }, Thread.NORM_PRIORITY);
+
+      Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+      ThreadMonitor.stopThread(id);
+      Assert.assertEquals(Boolean.TRUE, interrupted.poll(5, TimeUnit.SECONDS));
+      Assert.assertFalse("Interrupt was passed on to the next work.", nextWorkIsInterrupted());
+   }
+
+   @Test
+   public void testQueuedWorkIsStoppedWhenItStarts() throws Exception {
+      final CountDownLatch release = new CountDownLatch(1);
+      ThreadMonitor.submit(new Runnable() {
+
+         @Override
+         public void run() {
+            try {
+               release.await();
+            }
+            catch (InterruptedException ex) {
+               // released...
+            }
+         }
+      }, Thread.NORM_PRIORITY);
+
+      final BlockingQueue<Boolean> interrupted = new LinkedBlockingQueue<>();
+      String queuedId = ThreadMonitor.submit(new Runnable() {
+
+         @Override
+         public void run() {
+            interrupted.add(Thread.currentThread().isInterrupted());
+         }
+      }, Thread.NORM_PRIORITY);
+
+      ThreadMonitor.stopThread(queuedId); // still waiting for the worker...
+      release.countDown();
+      Assert.assertEquals(Boolean.TRUE, interrupted.poll(5, TimeUnit.SECONDS));
+      Assert.assertFalse("Interrupt was passed on to the next work.", nextWorkIsInterrupted());
+   }
+
+   @Test
+   public void testNoExecutorStartsNewThread() throws Exception {
+      ThreadMonitor.setExecutor(null);
+      final BlockingQueue<Thread> threads = new LinkedBlockingQueue<>();
+      String id = ThreadMonitor.submit(new Runnable() {
+
+         @Override
+         public void run() {
+            threads.add(Thread.currentThread());
+         }
+      }, Thread.NORM_PRIORITY);
+
+      Thread thread = threads.poll(5, TimeUnit.SECONDS);
+      Assert.assertEquals(id, thread.getName());
+   }
+
+   @Test
+   public void testWorkStealingPool() throws Exception {
+      final CountDownLatch ran = new CountDownLatch(20);
+      ThreadMonitor.setExecutor(ThreadMonitor.newWorkStealingPool(2));
+      for (int i = 0; i < 20; i++) {
+         ThreadMonitor.submit(new Runnable() {
+
+            @Override
+            public void run() {
+               ran.countDown();
+            }
+         }, Thread.NORM_PRIORITY);
+      }
+      Assert.assertTrue(ran.await(5, TimeUnit.SECONDS));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testEmptyWorkStealingPool() {
+      ThreadMonitor.newWorkStealingPool(0);
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static boolean nextWorkIsInterrupted() throws InterruptedException {
+      final BlockingQueue<Boolean> interrupted = new LinkedBlockingQueue<>();
+      ThreadMonitor.submit(new Runnable() {
+
+         @Override
+         public void run() {
+            interrupted.add(Thread.currentThread().isInterrupted());
+         }
+      }, Thread.NORM_PRIORITY);
+      return interrupted.poll(5, TimeUnit.SECONDS);
+   }
+}
@@ -0,0 +1,209 @@
+package com.jc.db;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jc.db.DBConnectionPool.ConnectionQueue;
+import com.jc.log.Logger;
+
+/*
+ * Checks the pool's reuse of DBConnections and its bound on the number given out at once. The
+ * DBConnections only open a JDBC connection when they're used, through the RecordingDriver.
+ */
+
+public class DBConnectionPoolTest {
+
+   private final static long ACQUIRE_TIMEOUT = 30000;
+
+   @BeforeClass
+   public static void setUp() {
+      Logger.setConsoleLoggingOn(false);
+   }
+
+   @AfterClass
+   public static void tearDown() throws Exception {
+      DBConnectionPool.setAcquireTimeout(ACQUIRE_TIMEOUT);
+      DBConnectionPool.removeAll();
+   }
+
+   @Test
+   public void testMostRecentlyReleasedIsReusedFirst() throws Exception {
+      ConnectionQueue queue = new ConnectionQueue("pool:lifo", 2);
+      DBConnection first = queue.acquire("test");
+      DBConnection second = queue.acquire("test");
+      Assert.assertNotSame(first, second);
+
+      queue.release(first);
+      queue.release(second);
+      Assert.assertSame(second, queue.acquire("test"));
+      Assert.assertSame(first, queue.acquire("test"));
+   }
+
+   @Test
+   public void testAcquireTimesOutWhenAllAreInUse() throws Exception {
+      DBConnectionPool.setAcquireTimeout(200);
+      try {
+         ConnectionQueue queue = new ConnectionQueue("pool:timeout", 2);
+         queue.acquire("test");
+         queue.acquire("test");
+
+         long time = System.currentTimeMillis();
+         try {
+            queue.acquire("test");
+            Assert.fail("Expected the third acquire to time out.");
+         }
+         catch (SQLTransientConnectionException ex) {
+            time = System.currentTimeMillis() - time;
+            Assert.assertTrue("Timed out after " + time + " ms.", time >= 150 && time < 5000);
+         }
+      }
+      finally {
+         DBConnectionPool.setAcquireTimeout(ACQUIRE_TIMEOUT);
+      }
+   }
+
+   @Test
+   public void testWaitingCallerGetsReleasedConnection() throws Exception {
+      final ConnectionQueue queue = new ConnectionQueue("pool:wait", 1);
+      DBConnection connection = queue.acquire("test");
+
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+         Future<DBConnection> waiting = executor.submit(new Callable<DBConnection>() {
+
+            @Override
+            public DBConnection call() throws Exception {
+               return queue.acquire("test");
+            }
+         });
+
+         Thread.sleep(200);
+         Assert.assertFalse("Acquired a connection while the only one was in use.", waiting.isDone());
+         queue.release(connection);
+         Assert.assertSame(connection, waiting.get(5, TimeUnit.SECONDS));
+      }
+      finally {
+         executor.shutdownNow();
+      }
+   }
+
+   @Test
+   public void testReleasingTwiceFreesOnePermit() throws Exception {
+      DBConnectionPool.setAcquireTimeout(200);
+      try {
+         ConnectionQueue queue = new ConnectionQueue("pool:twice", 1);
+         DBConnection connection = queue.acquire("test");
+         queue.release(connection);
+         queue.release(connection);
+
+         Assert.assertSame(connection, queue.acquire("test"));
+         try {
+            queue.acquire("test");
+            Assert.fail("A second release of the same connection let two be given out.");
+         }
+         catch (SQLTransientConnectionException ex) {
+            // the pool's bound held...
+         }
+      }
+      finally {
+         DBConnectionPool.setAcquireTimeout(ACQUIRE_TIMEOUT);
+      }
+   }
+
+   @Test
+   public void testDiscardedConnectionIsNotReused() throws Exception {
+      ConnectionQueue queue = new ConnectionQueue("pool:discard", 2);
+      DBConnection connection = queue.acquire("test");
+      Assert.assertTrue(queue.discard(connection));
+      Assert.assertFalse(queue.discard(connection));
+
+      queue.release(connection);
+      Assert.assertNotSame(connection, queue.acquire("test"));
+   }
+
+   @Test
+   public void testLeakedConnectionIsReclaimed() throws Exception {
+      DBConnectionPool.setAcquireTimeout(200);
+      try {
+         ConnectionQueue queue = new ConnectionQueue("pool:leak", 1);
+         DBConnection leaked = queue.acquire("test");
+
+         // not out of the pool for longer than the threshold yet...
+         Assert.assertEquals(0, queue.reclaimLeakedConnections(60000, System.currentTimeMillis()));
+         Assert.assertEquals(1, queue.reclaimLeakedConnections(60000, System.currentTimeMillis() + 60001));
+         Assert.assertFalse(queue.discard(leaked));
+
+         DBConnection connection = queue.acquire("test");
+         Assert.assertNotSame(leaked, connection);
+
+         // a late release of the leaked one doesn't free another permit...
+         DBConnectionPool.releaseConnection(leaked);
+         try {
+            queue.acquire("test");
+            Assert.fail("Releasing a reclaimed connection let two be given out.");
+         }
+         catch (SQLTransientConnectionException ex) {
+            // the pool's bound held...
+         }
+
+         queue.release(connection);
+         Assert.assertSame(connection, queue.acquire("test"));
+      }
+      finally {
+         DBConnectionPool.setAcquireTimeout(ACQUIRE_TIMEOUT);
+      }
+   }
+
+   @Test
+   public void testPooledConnectionsShareJDBCConnections() throws Exception {
+      RecordingDriver.reset();
+
+      // one at a time, every query runs on the same DBConnection and JDBC connection...
+      for (int i = 0; i < 10; i++) {
+         DBConnection connection = DBConnection.getInstance(RecordingDriver.createJDBCConnection("serial"));
+         DBResult result = connection.executeSQLUpdate("update tst_entity set name = 'a'");
+         Assert.assertFalse(result.getErrorMessage(), result.hasErrors());
+      }
+      Assert.assertEquals(1, RecordingDriver.getConnectionsOpened());
+      Assert.assertEquals(1, DBConnectionPool.getNumberOfConnections("serial:recording"));
+      Assert.assertEquals(0, DBConnectionPool.getNumberOfInUseConnections("serial:recording"));
+
+      // at the same time, no more are opened than the pool gives out at once...
+      DBConnectionPool.setMaxPoolSize(3);
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try {
+         List<Future<DBResult>> results = new ArrayList<>();
+         for (int i = 0; i < 40; i++) {
+            results.add(executor.submit(new Callable<DBResult>() {
+
+               @Override
+               public DBResult call() throws Exception {
+                  DBConnection connection = DBConnection.getInstance(RecordingDriver.createJDBCConnection("parallel"));
+                  return connection.executeSQLUpdate("update tst_entity set name = 'b'");
+               }
+            }));
+         }
+         for (Future<DBResult> result : results) {
+            Assert.assertFalse(result.get().getErrorMessage(), result.get().hasErrors());
+         }
+      }
+      finally {
+         executor.shutdownNow();
+         DBConnectionPool.setMaxPoolSize(50);
+      }
+      int opened = DBConnectionPool.getNumberOfConnections("parallel:recording");
+      Assert.assertTrue("Opened " + opened + " connections.", opened >= 1 && opened <= 3);
+      Assert.assertEquals(1 + opened, RecordingDriver.getConnectionsOpened());
+   }
+}
@@ -0,0 +1,247 @@
+package com.jc.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * Reads stand-in ResultSets, Proxies over arrays of rows, into DBResult and checks the values
+ * come back with the types and nulls they went in with.
+ */
+
+public class DBResultTest {
+
+   private static final String[] COLUMNS = { "id", "count", "code", "amount", "ratio", "flag", "name", "created" };
+   private static final int[] SQL_TYPES = { Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.DOUBLE, Types.FLOAT, Types.BIT, Types.VARCHAR,
+         Types.TIMESTAMP };
+
+   @Test
+   public void testValuesKeepTheirTypes() throws Exception {
+      long time = 1500000000000L;
+      DBResult result = process(COLUMNS, SQL_TYPES, new Object[][] { { 7L, 3, (short) 2, 1.5d, 0.25f, true, "a", new Timestamp(time) } });
+
+      Assert.assertTrue(result.next());
+      Assert.assertEquals(BigInteger.valueOf(7), result.getValue(1));
+      Assert.assertEquals(Integer.valueOf(3), result.getValue(2));
+      Assert.assertEquals(Short.valueOf((short) 2), result.getValue(3));
+      Assert.assertEquals(Double.valueOf(1.5d), result.getValue(4));
+      Assert.assertEquals(Float.valueOf(0.25f), result.getValue(5));
+      Assert.assertEquals(Boolean.TRUE, result.getValue(6));
+      Assert.assertEquals("a", result.getValue(7));
+      Assert.assertEquals(new Date(time), result.getValue(8));
+
+      Assert.assertEquals(7L, result.getLong("id"));
+      Assert.assertEquals(3, result.getInt("count"));
+      Assert.assertEquals(1.5d, result.getDouble("amount"), 0d);
+      Assert.assertEquals(0.25f, result.getFloat("ratio"), 0f);
+      Assert.assertEquals("3", result.getString("count"));
+      Assert.assertFalse(result.next());
+   }
+
+   @Test
+   public void testNullsArePreserved() throws Exception {
+      DBResult result = process(COLUMNS, SQL_TYPES, new Object[][] { { null, null, null, null, null, null, null, null } });
+
+      Assert.assertTrue(result.next());
+      for (int i = 1; i <= COLUMNS.length; i++) {
+         Assert.assertNull(COLUMNS[i - 1], result.getValue(i));
+      }
+      Assert.assertTrue(Double.isNaN(result.getDouble("amount")));
+      Assert.assertTrue(Float.isNaN(result.getFloat("ratio")));
+      Assert.assertNull(result.getString("name"));
+      try {
+         result.getLong("id");
+         Assert.fail("Expected a null long to be reported.");
+      }
+      catch (NullValueException ex) {
+         // expected...
+      }
+      try {
+         result.getInt("count");
+         Assert.fail("Expected a null int to be reported.");
+      }
+      catch (NullValueException ex) {
+         // expected...
+      }
+   }
+
+   @Test
+   public void testManyRowsWithScatteredNulls() throws Exception {
+      // enough rows for the column storage and null bitmaps to grow several times...
+      Object[][] rows = new Object[300][];
+      for (int i = 0; i < rows.length; i++) {
+         rows[i] = new Object[] { (long) i, i % 7 == 0 ? null : i, (short) i, i % 5 == 0 ? null : i / 2d, (float) i, i % 2 == 0, "row" + i,
+               i % 3 == 0 ? null : new Timestamp(i * 1000L) };
+      }
+      DBResult result = process(COLUMNS, SQL_TYPES, rows);
+
+      Assert.assertFalse(result.isEmpty());
+      for (int i = 0; i < rows.length; i++) {
+         Assert.assertTrue(result.next());
+         Assert.assertEquals(i, result.getLong("id"));
+         Assert.assertEquals(i % 7 == 0 ? null : Integer.valueOf(i), result.getValue(2));
+         Assert.assertEquals(i % 5 == 0 ? null : Double.valueOf(i / 2d), result.getValue(4));
+         Assert.assertEquals(Boolean.valueOf(i % 2 == 0), result.getValue(6));
+         Assert.assertEquals("row" + i, result.getString("name"));
+         Assert.assertEquals(i % 3 == 0 ? null : new Date(i * 1000L), result.getValue(8));
+      }
+      Assert.assertFalse(result.next());
+   }
+
+   @Test
+   public void testRowNavigation() throws Exception {
+      DBResult result = process(new String[] { "n" }, new int[] { Types.INTEGER }, new Object[][] { { 1 }, { 2 }, { 3 } });
+
+      Assert.assertEquals(Integer.valueOf(1), result.getValue(1)); // before next() the first row is read...
+      result.setRowIndex(2);
+      Assert.assertEquals(3, result.getInt("n"));
+      Assert.assertFalse(result.next());
+
+      result.setRowIndex(3); // out of range resets...
+      Assert.assertTrue(result.next());
+      Assert.assertEquals(1, result.getInt("n"));
+
+      result.reset();
+      int count = 0;
+      while (result.next()) {
+         count++;
+      }
+      Assert.assertEquals(3, count);
+   }
+
+   @Test
+   public void testColumnLookup() throws Exception {
+      DBResult result = process(new String[] { "Name", "a", "a", "b" }, new int[] { Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.INTEGER },
+            new Object[][] { { "x", 1, 2, 3 } });
+      Assert.assertTrue(result.next());
+
+      Assert.assertEquals("x", result.getString("Name"));
+      Assert.assertEquals("x", result.getString("NAME"));
+
+      // a duplicate label doesn't shift the columns after it...
+      Assert.assertEquals(Integer.valueOf(2), result.getValue(3));
+      Assert.assertEquals(3, result.getInt("b"));
+      Assert.assertEquals(Integer.valueOf(3), result.getValue(4));
+
+      try {
+         result.getString("missing");
+         Assert.fail("Expected an unknown column to be rejected.");
+      }
+      catch (IllegalArgumentException ex) {
+         // expected...
+      }
+   }
+
+   @Test
+   public void testEmptyResult() throws Exception {
+      DBResult result = process(COLUMNS, SQL_TYPES, new Object[0][]);
+      Assert.assertTrue(result.isEmpty());
+      Assert.assertFalse(result.next());
+      Assert.assertEquals(COLUMNS.length, result.getColumnNames().length);
+      Assert.assertEquals(Types.DOUBLE, result.getColumnSQLType(3));
+   }
+
+   @Test
+   public void testOutParametersMakeOneRow() throws Exception {
+      DBResult result = new DBResult();
+      result.setOutParameter("value", "out1", Types.VARCHAR, String.class, 1);
+      result.setOutParameter(5, "out3", Types.INTEGER, Integer.class, 3);
+
+      Assert.assertTrue(result.next());
+      Assert.assertEquals("value", result.getString("out1"));
+      Assert.assertNull(result.getValue(2));
+      Assert.assertEquals(5, result.getInt("out3"));
+      Assert.assertFalse(result.next());
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static DBResult process(String[] columns, int[] sqlTypes, Object[][] rows) throws Exception {
+      DBResult result = new DBResult();
+      result.processResultSet(createResultSet(columns, sqlTypes, rows));
+      return result;
+   }
+
+   private static ResultSet createResultSet(final String[] columns, final int[] sqlTypes, final Object[][] rows) {
+      final ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(DBResultTest.class.getClassLoader(),
+            new Class<?>[] { ResultSetMetaData.class }, new InvocationHandler() {
+
+               @Override
+               public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                  switch (method.getName()) {
+                     case "getColumnCount":
+                        return columns.length;
+                     case "getColumnLabel":
+                     case "getColumnName":
+                        return columns[(Integer) args[0] - 1];
+                     case "getColumnType":
+                        return sqlTypes[(Integer) args[0] - 1];
+                     case "getColumnClassName":
+                        return Object.class.getName();
+                     case "getSchemaName":
+                        return "";
+                     case "getTableName":
+                        return "TST";
+                     default:
+                        throw new UnsupportedOperationException(method.getName());
+                  }
+               }
+            });
+
+      return (ResultSet) Proxy.newProxyInstance(DBResultTest.class.getClassLoader(), new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+
+         private int row = -1;
+         private boolean wasNull;
+
+         @Override
+         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+               case "getMetaData":
+                  return metaData;
+               case "next":
+                  return ++row < rows.length;
+               case "wasNull":
+                  return wasNull;
+               default:
+                  break;
+            }
+
+            if (!method.getName().startsWith("get") || args == null || !(args[0] instanceof Integer)) {
+               throw new UnsupportedOperationException(method.getName());
+            }
+
+            Object value = rows[row][(Integer) args[0] - 1];
+            wasNull = value == null;
+            switch (method.getName()) {
+               case "getObject":
+               case "getString":
+               case "getTimestamp":
+                  return value;
+               case "getBoolean":
+                  return value != null && (Boolean) value;
+               case "getShort":
+                  return value == null ? (short) 0 : ((Number) value).shortValue();
+               case "getInt":
+                  return value == null ? 0 : ((Number) value).intValue();
+               case "getLong":
+                  return value == null ? 0L : ((Number) value).longValue();
+               case "getFloat":
+                  return value == null ? 0f : ((Number) value).floatValue();
+               case "getDouble":
+                  return value == null ? 0d : ((Number) value).doubleValue();
+               default:
+                  throw new UnsupportedOperationException(method.getName());
+            }
+         }
+      });
+   }
+}
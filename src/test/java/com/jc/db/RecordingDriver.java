@@ -0,0 +1,402 @@
+package com.jc.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.jc.db.command.JDBCConnection;
+
+/*
+ * A JDBC driver for tests that need a database connection but not a database. Its connections
+ * and statements are proxies that record what's done with them, e.g. "prepare: <sql>",
+ * "set 1: <value>", "addBatch", "executeBatch: 2", "commit", as a list of events; batches
+ * update one row per statement and generate sequential keys, and queries return the rows set
+ * with setQueryResult().
+ */
+
+public final class RecordingDriver implements Driver {
+
+   public final static String DRIVER = RecordingDriver.class.getName();
+   public final static String URL = "jdbc:recording:test";
+
+   private final static List<String> EVENTS = Collections.synchronizedList(new ArrayList<String>());
+   private final static AtomicLong NEXT_KEY = new AtomicLong(1);
+   private final static AtomicInteger CONNECTIONS_OPENED = new AtomicInteger();
+   private static volatile SQLException BatchFailure;
+   private static volatile QueryResult Result = new QueryResult(new String[0], new int[0], new Object[0][]);
+
+   static {
+      try {
+         DriverManager.registerDriver(new RecordingDriver());
+      }
+      catch (SQLException ex) {
+         throw new ExceptionInInitializerError(ex);
+      }
+   }
+
+   public static JDBCConnection createJDBCConnection(String username) {
+      JDBCConnection jdbcConnection = new JDBCConnection(username, "password", DRIVER, URL);
+      jdbcConnection.setDatasource("recording");
+      return jdbcConnection;
+   }
+
+   public static void reset() {
+      EVENTS.clear();
+      NEXT_KEY.set(1);
+      CONNECTIONS_OPENED.set(0);
+      BatchFailure = null;
+      Result = new QueryResult(new String[0], new int[0], new Object[0][]);
+   }
+
+   public static List<String> getEvents() {
+      synchronized (EVENTS) {
+         return new ArrayList<>(EVENTS);
+      }
+   }
+
+   // Returns the recorded events that start with the prefix.
+   public static List<String> getEvents(String prefix) {
+      List<String> events = new ArrayList<>();
+      for (String event : getEvents()) {
+         if (event.startsWith(prefix)) {
+            events.add(event);
+         }
+      }
+      return events;
+   }
+
+   public static int getConnectionsOpened() {
+      return CONNECTIONS_OPENED.get();
+   }
+
+   // The next executeBatch() throws the exception.
+   public static void failNextBatch(SQLException ex) {
+      BatchFailure = ex;
+   }
+
+   // The rows, of the columns of table TST_ENTITY, that queries return; a null value is an SQL NULL.
+   public static void setQueryResult(String[] columns, int[] sqlTypes, Object[][] rows) {
+      Result = new QueryResult(columns, sqlTypes, rows);
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   @Override
+   public Connection connect(String url, Properties info) throws SQLException {
+      if (!acceptsURL(url)) {
+         return null;
+      }
+      CONNECTIONS_OPENED.incrementAndGet();
+      EVENTS.add("connect");
+      return (Connection) createProxy(Connection.class, new ConnectionHandler());
+   }
+
+   @Override
+   public boolean acceptsURL(String url) {
+      return url != null && url.startsWith(URL);
+   }
+
+   @Override
+   public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+      return new DriverPropertyInfo[0];
+   }
+
+   @Override
+   public int getMajorVersion() {
+      return 1;
+   }
+
+   @Override
+   public int getMinorVersion() {
+      return 0;
+   }
+
+   @Override
+   public boolean jdbcCompliant() {
+      return false;
+   }
+
+   @Override
+   public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+      throw new SQLFeatureNotSupportedException();
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static Object createProxy(Class<?> type, InvocationHandler handler) {
+      return Proxy.newProxyInstance(RecordingDriver.class.getClassLoader(), new Class<?>[] { type }, handler);
+   }
+
+   // The value a method that isn't recorded returns.
+   private static Object defaultValue(Class<?> type) {
+      if (type.equals(Boolean.TYPE)) {
+         return false;
+      }
+      else if (type.equals(Integer.TYPE)) {
+         return 0;
+      }
+      else if (type.equals(Long.TYPE)) {
+         return 0L;
+      }
+      return null;
+   }
+
+   private static abstract class RecordingHandler implements InvocationHandler {
+
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+         switch (method.getName()) {
+            case "equals":
+               return proxy == args[0];
+            case "hashCode":
+               return System.identityHashCode(proxy);
+            case "toString":
+               return getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+            default:
+               return handle(method, args);
+         }
+      }
+
+      abstract Object handle(Method method, Object[] args) throws Exception;
+   }
+
+   private static final class ConnectionHandler extends RecordingHandler {
+
+      private volatile boolean Closed;
+      private volatile boolean AutoCommit = true;
+
+      @Override
+      Object handle(Method method, Object[] args) throws Exception {
+         switch (method.getName()) {
+            case "createStatement":
+               return createProxy(Statement.class, new StatementHandler(null));
+            case "prepareStatement":
+               boolean keys = args.length > 1 && args[1] instanceof Integer && (Integer) args[1] == Statement.RETURN_GENERATED_KEYS;
+               EVENTS.add((keys ? "prepare keys: " : "prepare: ") + args[0]);
+               return createProxy(PreparedStatement.class, new StatementHandler((String) args[0]));
+            case "prepareCall":
+               EVENTS.add("prepare call: " + args[0]);
+               return createProxy(CallableStatement.class, new StatementHandler((String) args[0]));
+            case "setAutoCommit":
+               AutoCommit = (Boolean) args[0];
+               EVENTS.add("autoCommit: " + AutoCommit);
+               return null;
+            case "getAutoCommit":
+               return AutoCommit;
+            case "commit":
+            case "rollback":
+               EVENTS.add(method.getName());
+               return null;
+            case "isClosed":
+               return Closed;
+            case "isValid":
+               return !Closed;
+            case "close":
+               Closed = true;
+               EVENTS.add("close connection");
+               return null;
+            default:
+               return defaultValue(method.getReturnType());
+         }
+      }
+   }
+
+   private static final class StatementHandler extends RecordingHandler {
+
+      private final String Sql;
+      private final List<Object> Keys = new ArrayList<>();
+      private int Batched;
+
+      private StatementHandler(String sql) {
+         Sql = sql;
+      }
+
+      @Override
+      Object handle(Method method, Object[] args) throws Exception {
+         String name = method.getName();
+         if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer) {
+            EVENTS.add("set " + args[0] + ": " + args[1]);
+            return null;
+         }
+
+         switch (name) {
+            case "addBatch":
+               Batched++;
+               EVENTS.add("addBatch");
+               return null;
+            case "executeBatch":
+               SQLException failure = BatchFailure;
+               if (failure != null) {
+                  BatchFailure = null;
+                  EVENTS.add("executeBatch failed");
+                  throw failure;
+               }
+               EVENTS.add("executeBatch: " + Batched);
+               int[] counts = new int[Batched];
+               Keys.clear();
+               for (int i = 0; i < Batched; i++) {
+                  counts[i] = 1;
+                  Keys.add(NEXT_KEY.getAndIncrement());
+               }
+               Batched = 0;
+               return counts;
+            case "executeQuery":
+               EVENTS.add("executeQuery");
+               return createProxy(ResultSet.class, new ResultHandler(Result));
+            case "setFetchSize":
+               EVENTS.add("fetchSize: " + args[0]);
+               return null;
+            case "executeUpdate":
+               EVENTS.add(args != null && args.length > 0 ? "executeUpdate: " + args[0] : "executeUpdate");
+               Keys.clear();
+               Keys.add(NEXT_KEY.getAndIncrement());
+               return 1;
+            case "getGeneratedKeys":
+               return createProxy(ResultSet.class, new KeysHandler(new ArrayList<>(Keys)));
+            case "clearParameters":
+            case "clearBatch":
+               if (name.equals("clearBatch")) {
+                  Batched = 0;
+               }
+               return null;
+            case "close":
+               EVENTS.add(Sql != null ? "close statement: " + Sql : "close statement");
+               return null;
+            default:
+               return defaultValue(method.getReturnType());
+         }
+      }
+   }
+
+   private static final class QueryResult {
+
+      private final String[] Columns;
+      private final int[] SqlTypes;
+      private final Object[][] Rows;
+
+      private QueryResult(String[] columns, int[] sqlTypes, Object[][] rows) {
+         Columns = columns;
+         SqlTypes = sqlTypes;
+         Rows = rows;
+      }
+   }
+
+   private static final class ResultHandler extends RecordingHandler {
+
+      private final QueryResult Result;
+      private int Row = -1;
+      private boolean WasNull;
+
+      private ResultHandler(QueryResult result) {
+         Result = result;
+      }
+
+      @Override
+      Object handle(Method method, Object[] args) throws Exception {
+         switch (method.getName()) {
+            case "getMetaData":
+               return createProxy(ResultSetMetaData.class, new MetaDataHandler(Result));
+            case "next":
+               return ++Row < Result.Rows.length;
+            case "wasNull":
+               return WasNull;
+            case "close":
+               EVENTS.add("close resultSet");
+               return null;
+            default:
+               break;
+         }
+
+         if (!method.getName().startsWith("get") || args == null || !(args[0] instanceof Integer)) {
+            return defaultValue(method.getReturnType());
+         }
+         Object value = Result.Rows[Row][(Integer) args[0] - 1];
+         WasNull = value == null;
+         if (value == null || method.getName().equals("getObject") || method.getName().equals("getString")) {
+            return value != null ? value : defaultValue(method.getReturnType());
+         }
+         switch (method.getName()) {
+            case "getInt":
+               return ((Number) value).intValue();
+            case "getLong":
+               return ((Number) value).longValue();
+            case "getDouble":
+               return ((Number) value).doubleValue();
+            case "getBoolean":
+               return (Boolean) value;
+            default:
+               return value;
+         }
+      }
+   }
+
+   private static final class MetaDataHandler extends RecordingHandler {
+
+      private final QueryResult Result;
+
+      private MetaDataHandler(QueryResult result) {
+         Result = result;
+      }
+
+      @Override
+      Object handle(Method method, Object[] args) throws Exception {
+         switch (method.getName()) {
+            case "getColumnCount":
+               return Result.Columns.length;
+            case "getColumnLabel":
+            case "getColumnName":
+               return Result.Columns[(Integer) args[0] - 1];
+            case "getColumnType":
+               return Result.SqlTypes[(Integer) args[0] - 1];
+            case "getColumnClassName":
+               return Object.class.getName();
+            case "getSchemaName":
+               return "";
+            case "getTableName":
+               return "TST_ENTITY";
+            default:
+               return defaultValue(method.getReturnType());
+         }
+      }
+   }
+
+   private static final class KeysHandler extends RecordingHandler {
+
+      private final List<Object> Keys;
+      private int Row = -1;
+
+      private KeysHandler(List<Object> keys) {
+         Keys = keys;
+      }
+
+      @Override
+      Object handle(Method method, Object[] args) throws Exception {
+         switch (method.getName()) {
+            case "next":
+               return ++Row < Keys.size();
+            case "getObject":
+               return Keys.get(Row);
+            default:
+               return defaultValue(method.getReturnType());
+         }
+      }
+   }
+}
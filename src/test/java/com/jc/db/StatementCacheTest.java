@@ -0,0 +1,176 @@
+package com.jc.db;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/*
+ * Runs StatementCache on a RecordingDriver connection, which records each statement that's
+ * prepared and closed.
+ */
+
+public class StatementCacheTest {
+
+   private Connection connection;
+
+   @BeforeClass
+   public static void loadDriver() throws Exception {
+      Class.forName(RecordingDriver.DRIVER);
+   }
+
+   @Before
+   public void setUp() throws Exception {
+      RecordingDriver.reset();
+      connection = DriverManager.getConnection(RecordingDriver.URL);
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      connection.close();
+   }
+
+   @Test
+   public void testReleasedStatementIsReused() throws Exception {
+      StatementCache cache = new StatementCache(connection, 10);
+
+      PreparedStatement first = cache.prepareStatement("SELECT a");
+      cache.release(first);
+      PreparedStatement second = cache.prepareStatement("SELECT a");
+      Assert.assertSame(first, second);
+      cache.release(second);
+
+      Assert.assertEquals(Arrays.asList("prepare: SELECT a"), RecordingDriver.getEvents("prepare"));
+      Assert.assertTrue(RecordingDriver.getEvents("close statement").isEmpty());
+      Assert.assertEquals(1, cache.getHits());
+      Assert.assertEquals(1, cache.getMisses());
+      Assert.assertEquals(1, cache.size());
+   }
+
+   @Test
+   public void testStatementKindsAreCachedSeparately() throws Exception {
+      StatementCache cache = new StatementCache(connection, 10);
+
+      PreparedStatement plain = cache.prepareStatement("INSERT a");
+      PreparedStatement keys = cache.prepareStatement("INSERT a", true);
+      CallableStatement call = cache.prepareCall("INSERT a");
+      Assert.assertNotSame(plain, keys);
+      Assert.assertNotSame(plain, call);
+      cache.release(plain);
+      cache.release(keys);
+      cache.release(call);
+
+      Assert.assertSame(plain, cache.prepareStatement("INSERT a", false));
+      Assert.assertSame(keys, cache.prepareStatement("INSERT a", true));
+      Assert.assertSame(call, cache.prepareCall("INSERT a"));
+      Assert.assertEquals(Arrays.asList("prepare: INSERT a", "prepare keys: INSERT a", "prepare call: INSERT a"), RecordingDriver.getEvents("prepare"));
+   }
+
+   @Test
+   public void testStatementInUseIsNotShared() throws Exception {
+      StatementCache cache = new StatementCache(connection, 10);
+
+      PreparedStatement first = cache.prepareStatement("SELECT a");
+      PreparedStatement second = cache.prepareStatement("SELECT a");
+      Assert.assertNotSame(first, second);
+
+      // only one statement per SQL is kept idle, the other is closed...
+      cache.release(first);
+      cache.release(second);
+      Assert.assertEquals(1, cache.size());
+      Assert.assertEquals(Arrays.asList("close statement: SELECT a"), RecordingDriver.getEvents("close statement"));
+      Assert.assertSame(first, cache.prepareStatement("SELECT a"));
+   }
+
+   @Test
+   public void testLeastRecentlyUsedIsEvicted() throws Exception {
+      StatementCache cache = new StatementCache(connection, 2);
+
+      cache.release(cache.prepareStatement("SELECT a"));
+      cache.release(cache.prepareStatement("SELECT b"));
+      cache.release(cache.prepareStatement("SELECT a")); // b is now the least recently used...
+      cache.release(cache.prepareStatement("SELECT c"));
+
+      Assert.assertEquals(2, cache.size());
+      Assert.assertEquals(1, cache.getEvictions());
+      Assert.assertEquals(Arrays.asList("close statement: SELECT b"), RecordingDriver.getEvents("close statement"));
+
+      RecordingDriver.reset();
+      cache.release(cache.prepareStatement("SELECT a"));
+      cache.release(cache.prepareStatement("SELECT c"));
+      Assert.assertTrue(RecordingDriver.getEvents("prepare").isEmpty());
+   }
+
+   @Test
+   public void testZeroSizeCachesNothing() throws Exception {
+      StatementCache cache = new StatementCache(connection, 0);
+
+      cache.release(cache.prepareStatement("SELECT a"));
+      cache.release(cache.prepareStatement("SELECT a"));
+
+      Assert.assertEquals(0, cache.size());
+      Assert.assertEquals(Arrays.asList("prepare: SELECT a", "prepare: SELECT a"), RecordingDriver.getEvents("prepare"));
+      Assert.assertEquals(2, RecordingDriver.getEvents("close statement").size());
+   }
+
+   @Test
+   public void testUnknownStatementIsClosedOnRelease() throws Exception {
+      StatementCache cache = new StatementCache(connection, 10);
+
+      cache.release(connection.prepareStatement("SELECT x"));
+      cache.release(null);
+
+      Assert.assertEquals(0, cache.size());
+      Assert.assertEquals(Arrays.asList("close statement: SELECT x"), RecordingDriver.getEvents("close statement"));
+   }
+
+   @Test
+   public void testCloseClosesIdleAndLaterReleasedStatements() throws Exception {
+      StatementCache cache = new StatementCache(connection, 10);
+
+      cache.release(cache.prepareStatement("SELECT a"));
+      PreparedStatement inUse = cache.prepareStatement("SELECT b");
+      cache.close();
+      Assert.assertEquals(0, cache.size());
+      Assert.assertEquals(Arrays.asList("close statement: SELECT a"), RecordingDriver.getEvents("close statement"));
+
+      cache.release(inUse);
+      Assert.assertEquals(Arrays.asList("close statement: SELECT a", "close statement: SELECT b"), RecordingDriver.getEvents("close statement"));
+      Assert.assertEquals(0, cache.size());
+
+      try {
+         cache.prepareStatement("SELECT a");
+         Assert.fail("Expected a closed cache to refuse statements.");
+      }
+      catch (IllegalStateException ex) {
+         // expected...
+      }
+   }
+
+   @Test
+   public void testPooledConnectionReusesStatements() throws Exception {
+      DBConnection dbConnection = DBConnection.getInstance(RecordingDriver.createJDBCConnection("statementCache"));
+      List<Object> parameters = new ArrayList<Object>(Arrays.asList("b"));
+      DBResult result = dbConnection.executeSQLUpdate("UPDATE t SET a=?", parameters);
+      Assert.assertFalse(result.getErrorMessage(), result.hasErrors());
+      long hits = dbConnection.getStatementCacheHits();
+
+      RecordingDriver.reset();
+      dbConnection = DBConnection.getInstance(RecordingDriver.createJDBCConnection("statementCache"));
+      result = dbConnection.executeSQLUpdate("UPDATE t SET a=?", parameters);
+      Assert.assertFalse(result.getErrorMessage(), result.hasErrors());
+
+      Assert.assertTrue(RecordingDriver.getEvents("prepare").isEmpty());
+      Assert.assertEquals(Arrays.asList("set 1: b"), RecordingDriver.getEvents("set"));
+      Assert.assertEquals(hits + 1, dbConnection.getStatementCacheHits());
+   }
+}
@@ -0,0 +1,119 @@
+package com.jc.db.dao.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EntityInfoCacheTest {
+
+   @After
+   public void tearDown() {
+      EntityInfoCache.clear();
+   }
+
+   @Test
+   public void testEntityInfoIsBuiltOnce() {
+      EntityInfoCache.clear();
+      Assert.assertFalse(EntityInfoCache.contains(TestEntity.class));
+
+      EntityInfo entityInfo = EntityInfoCache.getEntityInfo(TestEntity.class);
+      Assert.assertEquals(TestEntity.class, entityInfo.getEntityClass());
+      Assert.assertTrue(EntityInfoCache.contains(TestEntity.class));
+      Assert.assertEquals(1, EntityInfoCache.size());
+      Assert.assertSame(entityInfo, EntityInfoCache.getEntityInfo(TestEntity.class));
+   }
+
+   @Test
+   public void testConcurrentCallersShareOneEntityInfo() throws Exception {
+      EntityInfoCache.clear();
+
+      int threads = 8;
+      final CountDownLatch start = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+         List<Future<EntityInfo>> results = new ArrayList<>();
+         for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(new Callable<EntityInfo>() {
+
+               @Override
+               public EntityInfo call() throws Exception {
+                  start.await();
+                  return EntityInfoCache.getEntityInfo(TestEntity.class);
+               }
+            }));
+         }
+         start.countDown();
+
+         EntityInfo first = results.get(0).get();
+         for (Future<EntityInfo> result : results) {
+            Assert.assertSame(first, result.get());
+         }
+         Assert.assertSame(first, EntityInfoCache.getEntityInfo(TestEntity.class));
+      }
+      finally {
+         executor.shutdownNow();
+      }
+   }
+
+   @Test
+   public void testRemoveAndClear() {
+      EntityInfoCache.clear();
+
+      EntityInfo entityInfo = EntityInfoCache.getEntityInfo(TestEntity.class);
+      EntityRowMapper mapper = EntityRowMapper.forEntity(entityInfo);
+      Assert.assertSame(mapper, EntityRowMapper.forEntity(entityInfo));
+
+      EntityInfoCache.remove(TestEntity.class);
+      Assert.assertFalse(EntityInfoCache.contains(TestEntity.class));
+      Assert.assertEquals(0, EntityInfoCache.size());
+      Assert.assertNotSame(entityInfo, EntityInfoCache.getEntityInfo(TestEntity.class));
+      Assert.assertNotSame("Removing the entity didn't drop its row mapper.", mapper, EntityRowMapper.forEntity(entityInfo));
+
+      EntityInfoCache.clear();
+      Assert.assertEquals(0, EntityInfoCache.size());
+   }
+
+   @Test
+   public void testPreload() {
+      EntityInfoCache.clear();
+
+      List<Class<?>> entityClasses = new ArrayList<>();
+      entityClasses.add(TestEntity.class);
+      EntityInfoCache.preload(entityClasses);
+      Assert.assertTrue(EntityInfoCache.contains(TestEntity.class));
+      Assert.assertEquals(1, EntityInfoCache.size());
+
+      EntityInfoCache.preload(null);
+      EntityInfoCache.preload(Collections.<Class<?>> emptyList());
+      Assert.assertEquals(1, EntityInfoCache.size());
+   }
+
+   @Test
+   public void testColumnProperties() {
+      EntityInfo entityInfo = EntityInfoCache.getEntityInfo(TestEntity.class);
+      Assert.assertEquals("TST_ENTITY", entityInfo.getTableName().toUpperCase());
+      Assert.assertEquals("id", entityInfo.getIdFieldInfo().getFieldName());
+
+      List<String> fieldNames = new ArrayList<>();
+      for (String columnProp : entityInfo.getColumPropKeys()) {
+         fieldNames.add(entityInfo.getFieldInfoByColumnProperty(columnProp).getFieldName());
+      }
+      Collections.sort(fieldNames);
+      Assert.assertEquals(Arrays.asList("active", "amount", "id", "name"), fieldNames);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testNullEntityClass() {
+      EntityInfoCache.getEntityInfo(null);
+   }
+}
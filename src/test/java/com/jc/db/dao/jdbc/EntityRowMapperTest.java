@@ -0,0 +1,157 @@
+package com.jc.db.dao.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jc.db.DBResult;
+import com.jc.db.DBResult.ColumnMetaData;
+
+/*
+ * Maps rows of a stand-in ResultSet, a Proxy over an array of column values, to TestEntity.
+ */
+
+public class EntityRowMapperTest {
+
+   private static final String[] COLUMNS = { "id", "name", "amount", "active" };
+   private static final int[] SQL_TYPES = { Types.BIGINT, Types.VARCHAR, Types.DOUBLE, Types.INTEGER };
+
+   @Test
+   public void testConvertValue() {
+      Assert.assertEquals(Long.valueOf(7), EntityRowMapper.convertValue(BigInteger.valueOf(7), Long.class));
+      Assert.assertEquals(Long.valueOf(7), EntityRowMapper.convertValue(Integer.valueOf(7), Long.class));
+      Assert.assertEquals(BigInteger.valueOf(7), EntityRowMapper.convertValue(Long.valueOf(7), BigInteger.class));
+      Assert.assertEquals(Boolean.TRUE, EntityRowMapper.convertValue(Integer.valueOf(1), Boolean.class));
+      Assert.assertEquals(Boolean.FALSE, EntityRowMapper.convertValue(Integer.valueOf(0), Boolean.TYPE));
+      Assert.assertEquals(Integer.valueOf(3), EntityRowMapper.convertValue(Integer.valueOf(3), Integer.TYPE));
+
+      String value = "same";
+      Assert.assertSame(value, EntityRowMapper.convertValue(value, String.class));
+
+      Assert.assertNull(EntityRowMapper.convertValue("text", Long.class));
+      Assert.assertNull(EntityRowMapper.convertValue(Double.valueOf(1.5), Integer.TYPE));
+   }
+
+   @Test
+   public void testMapRow() throws Exception {
+      ResultSet result = createResultSet(COLUMNS, SQL_TYPES, new Object[] { 42L, "answer", 12.5d, 1 });
+
+      EntityRowMapper.Binding binding = bind(result);
+      TestEntity entity = (TestEntity) binding.mapRow(result);
+      Assert.assertEquals(Long.valueOf(42), entity.getId());
+      Assert.assertEquals("answer", entity.getName());
+      Assert.assertEquals(Double.valueOf(12.5), entity.getAmount());
+      Assert.assertTrue(entity.isActive());
+   }
+
+   @Test
+   public void testMapRowLeavesUnqueriedAndNullFieldsUnset() throws Exception {
+      ResultSet result = createResultSet(new String[] { "id", "name" }, new int[] { Types.BIGINT, Types.VARCHAR }, new Object[] { 5L, null });
+
+      TestEntity entity = (TestEntity) bind(result).mapRow(result);
+      Assert.assertEquals(Long.valueOf(5), entity.getId());
+      Assert.assertNull(entity.getName());
+      Assert.assertNull(entity.getAmount());
+      Assert.assertFalse(entity.isActive());
+   }
+
+   @Test
+   public void testMapRowWithNoDataReturnsNull() throws Exception {
+      ResultSet result = createResultSet(COLUMNS, SQL_TYPES, new Object[] { null, null, null, null });
+      Assert.assertNull(bind(result).mapRow(result));
+   }
+
+   @Test(expected = JDBCQueryException.class)
+   public void testMapRowTypeMismatch() throws Exception {
+      // an INTEGER column can't be set on the String name field...
+      ResultSet result = createResultSet(new String[] { "name" }, new int[] { Types.INTEGER }, new Object[] { 9 });
+      bind(result).mapRow(result);
+   }
+
+   @Test
+   public void testBindingIsReusedAcrossRows() throws Exception {
+      Object[] row = new Object[] { 1L, "first", 1.0d, 0 };
+      ResultSet result = createResultSet(COLUMNS, SQL_TYPES, row);
+      EntityRowMapper.Binding binding = bind(result);
+
+      TestEntity first = (TestEntity) binding.mapRow(result);
+      row[0] = 2L;
+      row[1] = "second";
+      TestEntity second = (TestEntity) binding.mapRow(result);
+
+      Assert.assertNotSame(first, second);
+      Assert.assertEquals("first", first.getName());
+      Assert.assertEquals(Long.valueOf(2), second.getId());
+      Assert.assertEquals("second", second.getName());
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static EntityRowMapper.Binding bind(ResultSet result) throws Exception {
+      Map<String, ColumnMetaData> metadata = DBResult.getColumnInfo(result, true);
+      return EntityRowMapper.forEntity(EntityInfoCache.getEntityInfo(TestEntity.class)).bind(metadata);
+   }
+
+   private static ResultSet createResultSet(final String[] columns, final int[] sqlTypes, final Object[] row) {
+      final ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(EntityRowMapperTest.class.getClassLoader(),
+            new Class<?>[] { ResultSetMetaData.class }, new InvocationHandler() {
+
+               @Override
+               public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                  switch (method.getName()) {
+                     case "getColumnCount":
+                        return columns.length;
+                     case "getColumnLabel":
+                     case "getColumnName":
+                        return columns[(Integer) args[0] - 1];
+                     case "getColumnType":
+                        return sqlTypes[(Integer) args[0] - 1];
+                     case "getColumnClassName":
+                        return Object.class.getName();
+                     case "getSchemaName":
+                        return "";
+                     case "getTableName":
+                        return "TST_ENTITY";
+                     default:
+                        throw new UnsupportedOperationException(method.getName());
+                  }
+               }
+            });
+
+      return (ResultSet) Proxy.newProxyInstance(EntityRowMapperTest.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+            new InvocationHandler() {
+
+               @Override
+               public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                  if (method.getName().equals("getMetaData")) {
+                     return metaData;
+                  }
+                  else if (method.getName().startsWith("get") && args != null && args[0] instanceof Integer) {
+                     Object value = row[(Integer) args[0] - 1];
+                     switch (method.getName()) {
+                        case "getObject":
+                        case "getString":
+                           return value;
+                        case "getLong":
+                           return ((Number) value).longValue();
+                        case "getInt":
+                           return ((Number) value).intValue();
+                        case "getDouble":
+                           return ((Number) value).doubleValue();
+                        default:
+                           break;
+                     }
+                  }
+                  throw new UnsupportedOperationException(method.getName());
+               }
+            });
+   }
+}
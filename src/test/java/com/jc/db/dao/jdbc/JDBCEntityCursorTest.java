@@ -0,0 +1,173 @@
+package com.jc.db.dao.jdbc;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jc.db.DBConnection;
+import com.jc.db.RecordingDriver;
+import com.jc.db.dao.EntityCursor;
+import com.jc.log.Logger;
+
+/*
+ * Streams TestEntity rows against the RecordingDriver, through the query JdbcDao.stream() opens,
+ * and checks that entities are read one row at a time and that the cursor's statement and
+ * connection are let go once the rows run out or the cursor is closed.
+ */
+
+public class JDBCEntityCursorTest {
+
+   private static final String[] COLUMNS = { "id", "name", "amount", "active" };
+   private static final int[] SQL_TYPES = { Types.BIGINT, Types.VARCHAR, Types.DOUBLE, Types.INTEGER };
+
+   private static int TestNumber;
+
+   private JdbcEntityManager entityManager;
+
+   @BeforeClass
+   public static void setUpClass() {
+      Logger.setConsoleLoggingOn(false);
+   }
+
+   @Before
+   public void setUp() throws Exception {
+      RecordingDriver.reset();
+      // a user of its own so each test gets a new pooled connection...
+      String username = "stream" + (++TestNumber);
+      entityManager = new JdbcEntityManager("recording", username, "password", RecordingDriver.DRIVER, RecordingDriver.URL);
+   }
+
+   @Test
+   public void testStreamReadsAllRows() throws Exception {
+      RecordingDriver.setQueryResult(COLUMNS, SQL_TYPES, new Object[][] { { 1L, "one", 1.5d, 1 }, { 2L, null, null, 0 }, { 3L, "three", 3.5d, 1 } });
+
+      try (EntityCursor<TestEntity> cursor = stream()) {
+         TestEntity first = cursor.next();
+         Assert.assertEquals(Long.valueOf(1), first.getId());
+         Assert.assertEquals("one", first.getName());
+         Assert.assertEquals(Double.valueOf(1.5), first.getAmount());
+         Assert.assertTrue(first.isActive());
+
+         TestEntity second = cursor.next();
+         Assert.assertEquals(Long.valueOf(2), second.getId());
+         Assert.assertNull(second.getName());
+         Assert.assertNull(second.getAmount());
+         Assert.assertFalse(second.isActive());
+
+         Assert.assertTrue(cursor.hasNext());
+         Assert.assertTrue(cursor.hasNext()); // doesn't skip a row...
+         Assert.assertEquals(Long.valueOf(3), cursor.next().getId());
+         Assert.assertFalse(cursor.hasNext());
+      }
+
+      List<String> prepared = RecordingDriver.getEvents("prepare");
+      Assert.assertEquals(prepared.toString(), 1, prepared.size());
+      Assert.assertTrue(prepared.get(0), prepared.get(0).startsWith("prepare: SELECT "));
+      Assert.assertEquals(Arrays.asList("fetchSize: " + DBConnection.DEFAULT_FETCH_SIZE), RecordingDriver.getEvents("fetchSize"));
+      Assert.assertEquals(Arrays.asList("executeQuery"), RecordingDriver.getEvents("executeQuery"));
+   }
+
+   @Test
+   public void testCursorIsClosedWhenRowsRunOut() throws Exception {
+      RecordingDriver.setQueryResult(COLUMNS, SQL_TYPES, new Object[][] { { 1L, "one", 1.0d, 1 }, { 2L, "two", 2.0d, 1 } });
+
+      EntityCursor<TestEntity> cursor = stream();
+      // the query runs outside of autocommit while the cursor is open...
+      Assert.assertEquals(Arrays.asList("autoCommit: false"), RecordingDriver.getEvents("autoCommit"));
+      Assert.assertTrue(RecordingDriver.getEvents("close").isEmpty());
+
+      int count = 0;
+      while (cursor.hasNext()) {
+         cursor.next();
+         count++;
+      }
+      Assert.assertEquals(2, count);
+      assertCursorClosed();
+
+      try {
+         cursor.next();
+         Assert.fail("Expected NoSuchElementException past the last row.");
+      }
+      catch (NoSuchElementException ex) {
+         // expected...
+      }
+
+      // closing again does nothing more...
+      cursor.close();
+      Assert.assertEquals(1, RecordingDriver.getEvents("close resultSet").size());
+   }
+
+   @Test
+   public void testCloseBeforeLastRowReleasesConnection() throws Exception {
+      RecordingDriver.setQueryResult(COLUMNS, SQL_TYPES, new Object[][] { { 1L, "one", 1.0d, 1 }, { 2L, "two", 2.0d, 1 } });
+
+      try (EntityCursor<TestEntity> cursor = stream()) {
+         Assert.assertEquals(Long.valueOf(1), cursor.next().getId());
+      }
+      assertCursorClosed();
+
+      // the released connection is used for the next stream...
+      try (EntityCursor<TestEntity> cursor = stream()) {
+         Assert.assertTrue(cursor.hasNext());
+      }
+      Assert.assertEquals(1, RecordingDriver.getConnectionsOpened());
+      Assert.assertEquals(2, RecordingDriver.getEvents("close resultSet").size());
+   }
+
+   @Test
+   public void testEmptyResult() throws Exception {
+      RecordingDriver.setQueryResult(COLUMNS, SQL_TYPES, new Object[0][]);
+
+      EntityCursor<TestEntity> cursor = stream();
+      Assert.assertFalse(cursor.hasNext());
+      assertCursorClosed();
+   }
+
+   @Test
+   public void testMappingErrorClosesCursor() throws Exception {
+      // an INTEGER column can't be set on the String name field...
+      RecordingDriver.setQueryResult(new String[] { "id", "name" }, new int[] { Types.BIGINT, Types.INTEGER }, new Object[][] { { 1L, 9 }, { 2L, 10 } });
+
+      EntityCursor<TestEntity> cursor = stream();
+      try {
+         cursor.next();
+         Assert.fail("Expected the row to fail to map.");
+      }
+      catch (JDBCQueryException ex) {
+         // expected...
+      }
+      assertCursorClosed();
+      Assert.assertFalse(cursor.hasNext());
+   }
+
+   @Test(expected = UnsupportedOperationException.class)
+   public void testRemoveIsUnsupported() throws Exception {
+      RecordingDriver.setQueryResult(COLUMNS, SQL_TYPES, new Object[][] { { 1L, "one", 1.0d, 1 } });
+
+      try (EntityCursor<TestEntity> cursor = stream()) {
+         cursor.next();
+         cursor.remove();
+      }
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   // Opens a cursor the way JdbcDao.stream() does, for all rows in no particular order.
+   private EntityCursor<TestEntity> stream() throws Exception {
+      String query = SQLGenerator.createSQL(TestEntity.class, null);
+      return entityManager.createJDBCQuery(TestEntity.class, query).getResultCursor();
+   }
+
+   private static void assertCursorClosed() {
+      Assert.assertEquals(1, RecordingDriver.getEvents("close resultSet").size());
+      List<String> closed = RecordingDriver.getEvents("close statement: SELECT ");
+      Assert.assertEquals(RecordingDriver.getEvents().toString(), 1, closed.size());
+      Assert.assertEquals(Arrays.asList("autoCommit: false", "autoCommit: true"), RecordingDriver.getEvents("autoCommit"));
+   }
+}
@@ -0,0 +1,187 @@
+package com.jc.db.dao.jdbc;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jc.db.RecordingDriver;
+import com.jc.log.Logger;
+
+/*
+ * Runs the JdbcEntityManager batch operations against the RecordingDriver and checks the
+ * statements they prepare, the parameters they set and how they're batched and committed.
+ */
+
+public class JdbcEntityManagerBatchTest {
+
+   private static int TestNumber;
+
+   private JdbcEntityManager entityManager;
+
+   @BeforeClass
+   public static void setUpClass() {
+      Logger.setConsoleLoggingOn(false);
+   }
+
+   @Before
+   public void setUp() {
+      RecordingDriver.reset();
+      // a user of its own so each test gets a new pooled connection, with nothing in its statement cache...
+      String username = "batch" + (++TestNumber);
+      entityManager = new JdbcEntityManager("recording", username, "password", RecordingDriver.DRIVER, RecordingDriver.URL);
+   }
+
+   @Test
+   public void testPersistAllBatchesInserts() {
+      List<TestEntity> entities = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+         entities.add(createEntity(null, "name" + i, i + 0.5d));
+      }
+
+      entityManager.persistAll(entities, 2);
+
+      List<String> prepared = RecordingDriver.getEvents("prepare");
+      Assert.assertEquals(prepared.toString(), 1, prepared.size());
+      Assert.assertTrue(prepared.get(0), prepared.get(0).startsWith("prepare keys: INSERT INTO "));
+      Assert.assertEquals(5, RecordingDriver.getEvents("addBatch").size());
+      Assert.assertEquals(Arrays.asList("executeBatch: 2", "executeBatch: 2", "executeBatch: 1"), RecordingDriver.getEvents("executeBatch"));
+      assertCommitted();
+
+      // the generated keys are set on the entities in order...
+      for (int i = 0; i < entities.size(); i++) {
+         Assert.assertEquals(Long.valueOf(i + 1), entities.get(i).getId());
+      }
+   }
+
+   @Test
+   public void testPersistAllGroupsEntitiesByStatement() {
+      List<TestEntity> entities = new ArrayList<>();
+      entities.add(createEntity(null, "a", 1.0d));
+      entities.add(createEntity(null, "b", null)); // no amount column...
+      entities.add(createEntity(null, "c", 3.0d));
+
+      entityManager.persistAll(entities, 10);
+
+      List<String> prepared = RecordingDriver.getEvents("prepare");
+      Assert.assertEquals(prepared.toString(), 2, prepared.size());
+      Assert.assertTrue(prepared.get(0).contains("amount"));
+      Assert.assertFalse(prepared.get(1).contains("amount"));
+      Assert.assertEquals(Arrays.asList("executeBatch: 2", "executeBatch: 1"), RecordingDriver.getEvents("executeBatch"));
+      assertCommitted();
+
+      Assert.assertEquals(Long.valueOf(1), entities.get(0).getId());
+      Assert.assertEquals(Long.valueOf(3), entities.get(1).getId());
+      Assert.assertEquals(Long.valueOf(2), entities.get(2).getId());
+   }
+
+   @Test
+   public void testPersistAllWithIdsDoesNotAskForKeys() {
+      entityManager.persistAll(Arrays.asList(createEntity(7L, "a", 1.0d), createEntity(8L, "b", 2.0d)), 10);
+
+      List<String> prepared = RecordingDriver.getEvents("prepare");
+      Assert.assertEquals(1, prepared.size());
+      Assert.assertTrue(prepared.get(0), prepared.get(0).startsWith("prepare: INSERT INTO "));
+      Assert.assertTrue(RecordingDriver.getEvents().contains("set 1: 7"));
+      assertCommitted();
+   }
+
+   @Test
+   public void testMergeAllBatchesUpdatesWithTheIdLast() {
+      entityManager.mergeAll(Arrays.asList(createEntity(11L, "a", 1.0d), createEntity(12L, "b", 2.0d), createEntity(13L, "c", 3.0d)), 2);
+
+      List<String> prepared = RecordingDriver.getEvents("prepare");
+      Assert.assertEquals(prepared.toString(), 1, prepared.size());
+      Assert.assertTrue(prepared.get(0), prepared.get(0).startsWith("prepare: UPDATE "));
+      Assert.assertTrue(prepared.get(0), prepared.get(0).endsWith("=?"));
+      Assert.assertEquals(Arrays.asList("executeBatch: 2", "executeBatch: 1"), RecordingDriver.getEvents("executeBatch"));
+      assertCommitted();
+
+      // each statement's parameters are its column values, in the entity's column order, followed by its id...
+      List<List<String>> parameters = getBatchedParameters();
+      Assert.assertEquals(3, parameters.size());
+      Assert.assertEquals(Arrays.asList("set 1: 11", "set 2: a", "set 3: false", "set 4: 1.0", "set 5: 11"), parameters.get(0));
+      Assert.assertEquals(Arrays.asList("set 1: 13", "set 2: c", "set 3: false", "set 4: 3.0", "set 5: 13"), parameters.get(2));
+   }
+
+   @Test
+   public void testRemoveAllBatchesDeletesById() {
+      entityManager.removeAll(Arrays.asList(createEntity(21L, "a", null), createEntity(22L, "b", null)), 5);
+
+      List<String> prepared = RecordingDriver.getEvents("prepare");
+      Assert.assertEquals(1, prepared.size());
+      Assert.assertTrue(prepared.get(0), prepared.get(0).startsWith("prepare: DELETE FROM "));
+      Assert.assertTrue(prepared.get(0), prepared.get(0).endsWith("=?"));
+      Assert.assertEquals(Arrays.asList(Arrays.asList("set 1: 21"), Arrays.asList("set 1: 22")), getBatchedParameters());
+      Assert.assertEquals(Arrays.asList("executeBatch: 2"), RecordingDriver.getEvents("executeBatch"));
+      assertCommitted();
+   }
+
+   @Test
+   public void testFailedBatchIsRolledBack() {
+      RecordingDriver.failNextBatch(new SQLException("Duplicate entry"));
+      try {
+         entityManager.persistAll(Arrays.asList(createEntity(null, "a", 1.0d), createEntity(null, "b", 2.0d)), 10);
+         Assert.fail("Expected the failed batch to be reported.");
+      }
+      catch (JDBCDaoInsertException ex) {
+         // expected...
+      }
+
+      List<String> events = RecordingDriver.getEvents();
+      Assert.assertTrue(events.toString(), events.contains("rollback"));
+      Assert.assertFalse(events.toString(), events.contains("commit"));
+      Assert.assertFalse("The transaction was left open.", entityManager.transactionStarted());
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static TestEntity createEntity(Long id, String name, Double amount) {
+      TestEntity entity = new TestEntity();
+      entity.setId(id);
+      entity.setName(name);
+      entity.setAmount(amount);
+      return entity;
+   }
+
+   private static void assertCommitted() {
+      List<String> events = RecordingDriver.getEvents();
+      Assert.assertTrue(events.toString(), events.contains("commit"));
+      Assert.assertFalse(events.toString(), events.contains("rollback"));
+      Assert.assertEquals("Committed before the last batch was run.", "commit", lastOf(events, "commit", "executeBatch"));
+   }
+
+   // Returns which of the prefixes the last event starting with either of them has.
+   private static String lastOf(List<String> events, String first, String second) {
+      for (int i = events.size() - 1; i >= 0; i--) {
+         if (events.get(i).startsWith(first)) {
+            return first;
+         }
+         else if (events.get(i).startsWith(second)) {
+            return second;
+         }
+      }
+      return null;
+   }
+
+   // The parameters set for each batched statement, in order.
+   private static List<List<String>> getBatchedParameters() {
+      List<List<String>> parameters = new ArrayList<>();
+      List<String> statement = new ArrayList<>();
+      for (String event : RecordingDriver.getEvents()) {
+         if (event.startsWith("set ")) {
+            statement.add(event);
+         }
+         else if (event.equals("addBatch")) {
+            parameters.add(statement);
+            statement = new ArrayList<>();
+         }
+      }
+      return parameters;
+   }
+}
@@ -0,0 +1,136 @@
+package com.jc.db.dao.jdbc;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jc.db.MySQLDriverInfo;
+import com.jc.db.dao.FilterInfo;
+import com.jc.db.dao.FilterMethod;
+import com.jc.db.dao.KeysetFilter;
+
+/*
+ * Checks the paged and keyset (seek) SQL generated for TestEntity; no database is needed.
+ */
+
+public class SQLGeneratorTest {
+
+   private static final MySQLDriverInfo DRIVER_INFO = new MySQLDriverInfo("localhost", "test");
+
+   @Test
+   public void testPagedQuery() throws Exception {
+      FilterInfo filterOn = new FilterInfo("name", "abc", FilterMethod.MATCH_EXACT);
+      Map<String, String> sortOn = sortOn("name", "asc");
+
+      String query = SQLGenerator.createSQL(TestEntity.class, filterOn, sortOn);
+      Assert.assertEquals(query + " LIMIT 10 OFFSET 20", SQLGenerator.createSQL(TestEntity.class, filterOn, sortOn, DRIVER_INFO, 20, 10));
+      Assert.assertEquals(query + " LIMIT 10 OFFSET 0", SQLGenerator.createSQL(TestEntity.class, filterOn, sortOn, DRIVER_INFO, 0, 10));
+   }
+
+   @Test
+   public void testUnpagedQueryIsUnchanged() throws Exception {
+      String query = SQLGenerator.createSQL(TestEntity.class, null, sortOn("id", "asc"));
+      Assert.assertEquals(query, SQLGenerator.createSQL(TestEntity.class, null, sortOn("id", "asc"), DRIVER_INFO, 0, 0));
+   }
+
+   @Test
+   public void testOffsetWithoutLimit() throws Exception {
+      Map<String, String> sortOn = new LinkedHashMap<>();
+      String query = SQLGenerator.createSQL(TestEntity.class, null, sortOn);
+      Assert.assertEquals(query + " LIMIT 18446744073709551615 OFFSET 5", SQLGenerator.createSQL(TestEntity.class, null, sortOn, DRIVER_INFO, 5, 0));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testNegativePagingParameters() throws Exception {
+      SQLGenerator.createSQL(TestEntity.class, null, new LinkedHashMap<String, String>(), DRIVER_INFO, -1, 10);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testNullDriverInfo() throws Exception {
+      SQLGenerator.createSQL(TestEntity.class, null, new LinkedHashMap<String, String>(), null, 0, 10);
+   }
+
+   @Test
+   public void testKeysetSortOn() {
+      Map<String, String> keysetSortOn = KeysetFilter.createSortOn(sortOn("name", "desc"), "id");
+      Assert.assertEquals(Arrays.asList("name", "id"), Arrays.asList(keysetSortOn.keySet().toArray()));
+      Assert.assertEquals("asc", keysetSortOn.get("id"));
+
+      // an id already sorted on keeps its place and direction...
+      Map<String, String> sortOn = sortOn("ID", "desc");
+      sortOn.put("name", "asc");
+      keysetSortOn = KeysetFilter.createSortOn(sortOn, "id");
+      Assert.assertEquals(sortOn, keysetSortOn);
+      Assert.assertNotSame(sortOn, keysetSortOn);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testKeysetSortOnWithoutIdField() {
+      KeysetFilter.createSortOn(null, "");
+   }
+
+   @Test
+   public void testKeysetSeekFilter() throws Exception {
+      Map<String, String> keysetSortOn = KeysetFilter.createSortOn(sortOn("name", "desc"), "id");
+      Map<String, Object> lastValues = new LinkedHashMap<>();
+      lastValues.put("id", 7L);
+      lastValues.put("name", "m");
+
+      FilterInfo seekFilter = KeysetFilter.createSeekFilter(keysetSortOn, lastValues, null);
+
+      // (name < ?) or (name = ? and id > ?), a group of one is just its filter...
+      Assert.assertEquals(FilterMethod.OR_FIELD_GROUP, seekFilter.getFilterMethod());
+      List<FilterInfo> groups = seekFilter.getFilters();
+      Assert.assertEquals(2, groups.size());
+      assertFilter(groups.get(0), "name", FilterMethod.LESSTHAN);
+      Assert.assertEquals(FilterMethod.AND_FIELD_GROUP, groups.get(1).getFilterMethod());
+      assertFilter(groups.get(1).getFilters().get(0), "name", FilterMethod.MATCH_EXACT);
+      assertFilter(groups.get(1).getFilters().get(1), "id", FilterMethod.GREATERTHAN);
+
+      Assert.assertEquals(Arrays.<Object> asList("m", "m", 7L), SQLGenerator.createParameterListForWhereClause(seekFilter));
+
+      // the seek filter is ANDed after the caller's filter, so its parameters follow...
+      FilterInfo filterOn = new FilterInfo("amount", 1.5d, FilterMethod.GREATERTHAN);
+      FilterInfo filtered = KeysetFilter.createSeekFilter(keysetSortOn, lastValues, filterOn);
+      Assert.assertEquals(FilterMethod.AND_FIELD_GROUP, filtered.getFilterMethod());
+      Assert.assertEquals(Arrays.<Object> asList(1.5d, "m", "m", 7L), SQLGenerator.createParameterListForWhereClause(filtered));
+
+      String query = SQLGenerator.createSQL(TestEntity.class, filtered, keysetSortOn, DRIVER_INFO, 0, 10);
+      Assert.assertTrue(query, query.endsWith(" LIMIT 10 OFFSET 0"));
+      Assert.assertEquals(query, 4, countParameters(query));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testKeysetSeekFilterWithoutLastValue() throws Exception {
+      Map<String, Object> lastValues = new LinkedHashMap<>();
+      lastValues.put("name", "m");
+      KeysetFilter.createSeekFilter(KeysetFilter.createSortOn(sortOn("name", "asc"), "id"), lastValues, null);
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static Map<String, String> sortOn(String fieldName, String direction) {
+      Map<String, String> sortOn = new LinkedHashMap<>();
+      sortOn.put(fieldName, direction);
+      return sortOn;
+   }
+
+   private static void assertFilter(FilterInfo filter, String fieldName, FilterMethod method) {
+      Assert.assertEquals(fieldName, filter.getFieldName());
+      Assert.assertEquals(method, filter.getFilterMethod());
+   }
+
+   private static int countParameters(String query) {
+      int count = 0;
+      for (int i = 0; i < query.length(); i++) {
+         if (query.charAt(i) == '?') {
+            count++;
+         }
+      }
+      return count;
+   }
+}
@@ -0,0 +1,52 @@
+package com.jc.db.dao.jdbc;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/*
+ * A minimal entity for the tests in this package; the table doesn't need to exist.
+ */
+
+@Entity
+@Table(name = "tst_entity")
+public class TestEntity {
+
+   @Id
+   private Long id;
+   private String name;
+   private Double amount;
+   private boolean active;
+
+   public Long getId() {
+      return id;
+   }
+
+   public void setId(Long id) {
+      this.id = id;
+   }
+
+   public String getName() {
+      return name;
+   }
+
+   public void setName(String name) {
+      this.name = name;
+   }
+
+   public Double getAmount() {
+      return amount;
+   }
+
+   public void setAmount(Double amount) {
+      this.amount = amount;
+   }
+
+   public boolean isActive() {
+      return active;
+   }
+
+   public void setActive(boolean active) {
+      this.active = active;
+   }
+}
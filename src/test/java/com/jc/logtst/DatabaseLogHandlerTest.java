@@ -0,0 +1,293 @@
+package com.jc.logtst;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jc.log.DatabaseLogHandler;
+import com.jc.log.DatabaseLogHandler.OverflowPolicy;
+import com.jc.log.LogDatasource;
+import com.jc.log.LogEntry;
+
+/*
+ * Publishes records to DatabaseLogHandler, in both modes, with a datasource that keeps what it's
+ * asked to persist and can be held up to fill the async queue.
+ */
+
+public class DatabaseLogHandlerTest {
+
+   @Test
+   public void testSyncModePersistsOnLoggingThread() throws Exception {
+      RecordingDatasource datasource = new RecordingDatasource();
+      DatabaseLogHandler handler = new DatabaseLogHandler(datasource);
+      Assert.assertFalse(handler.isAsync());
+
+      handler.publish(createRecord("one"));
+      handler.publish(createRecord("two"));
+
+      Assert.assertEquals(messages("one", "two"), datasource.getMessages());
+      Assert.assertEquals(Collections.singletonList(Thread.currentThread().getName()), datasource.getThreadNames());
+      handler.close();
+      Assert.assertTrue(datasource.isClosed());
+   }
+
+   @Test
+   public void testAsyncModePersistsInBatchesOnWriterThread() throws Exception {
+      RecordingDatasource datasource = new RecordingDatasource();
+      datasource.hold(); // lets the queue fill up before the first batch is written...
+      DatabaseLogHandler handler = new DatabaseLogHandler(datasource, 100, 4, OverflowPolicy.BLOCK, null);
+      Assert.assertTrue(handler.isAsync());
+
+      List<String> expected = new ArrayList<>();
+      for (int i = 0; i < 21; i++) {
+         handler.publish(createRecord("message " + i));
+         expected.add("message " + i);
+      }
+      datasource.release();
+      handler.flush();
+
+      Assert.assertEquals(expected, datasource.getMessages());
+      for (int size : datasource.getBatchSizes()) {
+         Assert.assertTrue("Batch of " + size + " records.", size >= 1 && size <= 4);
+      }
+      Assert.assertTrue(datasource.getBatchSizes().size() < expected.size());
+      for (String threadName : datasource.getThreadNames()) {
+         Assert.assertTrue(threadName, threadName.startsWith("DatabaseLogWriter"));
+      }
+      handler.close();
+   }
+
+   @Test
+   public void testAsyncModeKeepsLoggingLocation() throws Exception {
+      RecordingDatasource datasource = new RecordingDatasource();
+      DatabaseLogHandler handler = new DatabaseLogHandler(datasource, 10, 10, OverflowPolicy.BLOCK, null);
+
+      handler.publish(createRecord("no throwable"));
+      handler.flush();
+
+      // the location is where the record was logged, not somewhere on the writer thread...
+      List<String> locations = datasource.getLocations();
+      Assert.assertEquals(1, locations.size());
+      Assert.assertTrue(locations.get(0), locations.get(0).startsWith("DatabaseLogHandlerTest.testAsyncModeKeepsLoggingLocation("));
+      handler.close();
+   }
+
+   @Test
+   public void testCloseWritesQueuedRecords() throws Exception {
+      RecordingDatasource datasource = new RecordingDatasource();
+      DatabaseLogHandler handler = new DatabaseLogHandler(datasource, 100, 10, OverflowPolicy.BLOCK, null);
+
+      for (int i = 0; i < 50; i++) {
+         handler.publish(createRecord("message " + i));
+      }
+      handler.close();
+
+      Assert.assertEquals(50, datasource.getMessages().size());
+      Assert.assertTrue(datasource.isClosed());
+
+      handler.publish(createRecord("after close"));
+      Thread.sleep(100);
+      Assert.assertEquals(50, datasource.getMessages().size());
+   }
+
+   @Test
+   public void testDropPolicyDiscardsWhenFull() throws Exception {
+      RecordingDatasource datasource = new RecordingDatasource();
+      datasource.hold();
+      DatabaseLogHandler handler = new DatabaseLogHandler(datasource, 2, 1, OverflowPolicy.DROP, null);
+
+      handler.publish(createRecord("taken"));
+      datasource.awaitWriting(); // the writer holds the first record, the queue is empty...
+      for (int i = 0; i < 5; i++) {
+         handler.publish(createRecord("message " + i));
+      }
+
+      Assert.assertEquals(3, handler.getNumDropped());
+      datasource.release();
+      handler.close();
+      Assert.assertEquals(messages("taken", "message 0", "message 1"), datasource.getMessages());
+   }
+
+   @Test
+   public void testSpillPolicyWritesOverflowToFile() throws Exception {
+      File spillFile = File.createTempFile("DatabaseLogHandlerTest", ".txt");
+      spillFile.deleteOnExit();
+
+      RecordingDatasource datasource = new RecordingDatasource();
+      datasource.hold();
+      DatabaseLogHandler handler = new DatabaseLogHandler(datasource, 1, 1, OverflowPolicy.SPILL, spillFile);
+
+      handler.publish(createRecord("taken"));
+      datasource.awaitWriting();
+      handler.publish(createRecord("queued"));
+      handler.publish(createRecord("spilled"));
+      handler.flush();
+
+      String spilled = new String(Files.readAllBytes(spillFile.toPath()), StandardCharsets.UTF_8);
+      Assert.assertTrue(spilled, spilled.contains("spilled"));
+      Assert.assertFalse(spilled, spilled.contains("queued"));
+      Assert.assertEquals(0, handler.getNumDropped());
+
+      datasource.release();
+      handler.close();
+      Assert.assertEquals(messages("taken", "queued"), datasource.getMessages());
+   }
+
+   @Test
+   public void testBlockPolicyWaitsForRoom() throws Exception {
+      final RecordingDatasource datasource = new RecordingDatasource();
+      datasource.hold();
+      final DatabaseLogHandler handler = new DatabaseLogHandler(datasource, 1, 1, OverflowPolicy.BLOCK, null);
+
+      handler.publish(createRecord("taken"));
+      datasource.awaitWriting();
+      handler.publish(createRecord("queued"));
+
+      final CountDownLatch published = new CountDownLatch(1);
+      Thread publisher = new Thread(new Runnable() {
+
+         @Override
+         public void run() {
+            handler.publish(createRecord("waited"));
+            published.countDown();
+         }
+      });
+      publisher.start();
+
+      Assert.assertFalse("Publisher didn't wait for room in the queue.", published.await(300, TimeUnit.MILLISECONDS));
+      datasource.release();
+      Assert.assertTrue(published.await(5, TimeUnit.SECONDS));
+      handler.close();
+      Assert.assertEquals(messages("taken", "queued", "waited"), datasource.getMessages());
+      Assert.assertEquals(0, handler.getNumDropped());
+   }
+
+   @Test
+   public void testOtherLoggersAreFiltered() throws Exception {
+      RecordingDatasource datasource = new RecordingDatasource();
+      DatabaseLogHandler handler = new DatabaseLogHandler(datasource);
+
+      LogRecord record = new LogRecord(Level.INFO, "elsewhere");
+      record.setLoggerName("org.example.Other");
+      handler.publish(record);
+
+      Assert.assertTrue(datasource.getMessages().isEmpty());
+      handler.close();
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testInvalidQueueSize() throws Exception {
+      new DatabaseLogHandler(new RecordingDatasource(), 0, 1, OverflowPolicy.DROP, null);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testMissingOverflowPolicy() throws Exception {
+      new DatabaseLogHandler(new RecordingDatasource(), 10, 1, null, null);
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static LogRecord createRecord(String message) {
+      LogRecord record = new LogRecord(Level.INFO, message);
+      record.setLoggerName(DatabaseLogHandlerTest.class.getName());
+      return record;
+   }
+
+   private static List<String> messages(String... messages) {
+      List<String> list = new ArrayList<>();
+      Collections.addAll(list, messages);
+      return list;
+   }
+
+   private static final class RecordingDatasource extends LogDatasource {
+
+      private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+      private final List<String> locations = Collections.synchronizedList(new ArrayList<String>());
+      private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+      private final List<String> threadNames = Collections.synchronizedList(new ArrayList<String>());
+      private final CountDownLatch writing = new CountDownLatch(1);
+      private volatile CountDownLatch gate = new CountDownLatch(0);
+      private volatile boolean closed;
+
+      // Holds the writer in persist() until release() is called.
+      void hold() {
+         gate = new CountDownLatch(1);
+      }
+
+      void release() {
+         gate.countDown();
+      }
+
+      // Waits for the writer to be in persist().
+      void awaitWriting() throws InterruptedException {
+         Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+      }
+
+      List<String> getMessages() {
+         synchronized (messages) {
+            return new ArrayList<>(messages);
+         }
+      }
+
+      List<String> getLocations() {
+         synchronized (locations) {
+            return new ArrayList<>(locations);
+         }
+      }
+
+      List<Integer> getBatchSizes() {
+         synchronized (batchSizes) {
+            return new ArrayList<>(batchSizes);
+         }
+      }
+
+      List<String> getThreadNames() {
+         synchronized (threadNames) {
+            return new ArrayList<>(new LinkedHashSet<>(threadNames));
+         }
+      }
+
+      boolean isClosed() {
+         return closed;
+      }
+
+      @Override
+      public void persist(List<LogEntry> entries) {
+         writing.countDown();
+         try {
+            gate.await();
+         }
+         catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+         }
+
+         batchSizes.add(entries.size());
+         threadNames.add(Thread.currentThread().getName());
+         for (LogEntry entry : entries) {
+            messages.add(entry.getMessage());
+            locations.add(entry.getClassFieldInfo());
+         }
+      }
+
+      @Override
+      public void persist() {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void close() {
+         closed = true;
+      }
+   }
+}
@@ -0,0 +1,277 @@
+package com.jc.logtst;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jc.log.LogEntry;
+import com.jc.log.LogFileReader;
+import com.jc.log.LogFileReader.Query;
+
+/*
+ * Reads generated log files, big enough to have several index points each, with LogFileReader
+ * and checks each query returns the same entries as filtering all of the lines by hand.
+ */
+
+public class LogFileReaderTest {
+
+   private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss:SS";
+   private static final String PREFIX = "gen";
+   private static final String[] LEVELS = { "INFO", "WARNING", "SEVERE", "FINE" };
+   private static final int LINES_PER_DAY = 20000; // a line a second, over 1MB a day...
+
+   private static File logDir;
+   private static List<Line> lines; // both days, in file order
+
+   @BeforeClass
+   public static void setUp() throws Exception {
+      logDir = File.createTempFile("LogFileReaderTest", "");
+      logDir.delete();
+      logDir.mkdirs();
+
+      lines = new ArrayList<>();
+      lines.addAll(writeDay(getDay(1), "", LINES_PER_DAY / 2)); // the handler reopened the file halfway through...
+      lines.addAll(writeDay(getDay(2), "", 0));
+   }
+
+   @AfterClass
+   public static void tearDown() {
+      for (File file : logDir.listFiles()) {
+         file.delete();
+      }
+      logDir.delete();
+   }
+
+   @Test
+   public void testTimeWindow() throws Exception {
+      Date from = time(1, 1, 0, 0);
+      Date to = time(1, 1, 10, 0);
+      List<LogEntry> entries = createReader().read(new Query().setFrom(from).setTo(to));
+
+      Assert.assertEquals(600, entries.size());
+      assertEntries(select(from, to, null, null, 0, 0), entries);
+   }
+
+   @Test
+   public void testLevelAndClassFilterWithPaging() throws Exception {
+      Date from = time(1, 0, 0, 0);
+      Date to = time(2, 0, 0, 0);
+      Query query = new Query().setFrom(from).setTo(to).setLevel(Level.WARNING).setClassFilter("method(3)").setFirst(100).setMaxResults(50);
+      List<LogEntry> entries = createReader().read(query);
+
+      Assert.assertEquals(50, entries.size());
+      assertEntries(select(from, to, Level.WARNING, "method(3)", 100, 50), entries);
+      for (LogEntry entry : entries) {
+         Assert.assertNotEquals("FINE", entry.getLogLevel());
+         Assert.assertNotEquals("INFO", entry.getLogLevel());
+      }
+   }
+
+   @Test
+   public void testAcrossDays() throws Exception {
+      Date from = time(1, 5, 30, 0);
+      Date to = time(2, 0, 30, 0);
+      List<LogEntry> entries = createReader().read(new Query().setFrom(from).setTo(to));
+
+      assertEntries(select(from, to, null, null, 0, 0), entries);
+      Assert.assertTrue(entries.get(entries.size() - 1).getDateStamp().startsWith(format(time(2, 0, 0, 0)).substring(0, 10)));
+   }
+
+   @Test
+   public void testHandlerCanStopReading() throws Exception {
+      final List<LogEntry> entries = new ArrayList<>();
+      int handled = createReader().read(new Query().setFrom(time(1, 0, 0, 0)), new LogFileReader.EntryHandler() {
+
+         @Override
+         public boolean handleEntry(LogEntry entry) {
+            entries.add(entry);
+            return entries.size() < 5;
+         }
+      });
+
+      Assert.assertEquals(5, handled);
+      Assert.assertEquals("message 0", entries.get(0).getMessage());
+      Assert.assertEquals("message 4", entries.get(4).getMessage());
+   }
+
+   @Test
+   public void testGrowingFile() throws Exception {
+      Calendar day = getDay(5);
+      File logfile = getLogFile(day);
+      List<Line> dayLines = writeDay(day, "partial", -1); // the last line is still being written...
+      Date from = time(5, 0, 0, 0);
+      Date to = time(6, 0, 0, 0);
+
+      LogFileReader reader = createReader();
+      List<LogEntry> entries = reader.read(new Query().setFrom(from).setTo(to));
+      Assert.assertEquals(dayLines.size(), entries.size());
+
+      // finish the partial line and add another hour of lines...
+      try (Writer writer = new OutputStreamWriter(new FileOutputStream(logfile, true), Charset.defaultCharset())) {
+         writer.write(" line\n");
+         Date start = new Date(dayLines.get(dayLines.size() - 1).Time + 1000);
+         for (int i = 0; i < 3600; i++) {
+            Line line = new Line(LINES_PER_DAY + i, new Date(start.getTime() + i * 1000L));
+            writer.write(line.toString());
+         }
+      }
+
+      entries = reader.read(new Query().setFrom(from).setTo(to));
+      Assert.assertEquals(dayLines.size() + 1 + 3600, entries.size());
+      Assert.assertEquals("partial line", entries.get(dayLines.size()).getMessage());
+      Assert.assertEquals("message " + (LINES_PER_DAY + 3599), entries.get(entries.size() - 1).getMessage());
+
+      // a window in the added lines, found through the extended index...
+      Date windowFrom = new Date(dayLines.get(dayLines.size() - 1).Time + 1000 + 1800 * 1000L);
+      entries = reader.read(new Query().setFrom(windowFrom).setTo(new Date(windowFrom.getTime() + 60000)));
+      Assert.assertEquals(60, entries.size());
+      Assert.assertEquals("message " + (LINES_PER_DAY + 1800), entries.get(0).getMessage());
+   }
+
+   @Test
+   public void testApplicationLog() throws Exception {
+      LogFileReader reader = new LogFileReader("src" + File.separator + "test" + File.separator + "java" + File.separator + "com" + File.separator + "jc"
+            + File.separator + "logtst" + File.separator, "app", DATE_FORMAT);
+      Calendar cal = Calendar.getInstance();
+      cal.clear();
+      cal.set(2017, Calendar.AUGUST, 10);
+      Date from = cal.getTime();
+      cal.add(Calendar.DAY_OF_MONTH, 1);
+      Date to = cal.getTime();
+
+      List<LogEntry> entries = reader.read(new Query().setFrom(from).setTo(to));
+      Assert.assertEquals(14, entries.size()); // the header isn't an entry...
+      Assert.assertEquals("31044455289645", entries.get(0).getNanoSecs());
+      Assert.assertEquals("LoggerTest.testLogging(46)", entries.get(0).getClassFieldInfo());
+
+      entries = reader.read(new Query().setFrom(from).setTo(to).setLevel(Level.SEVERE));
+      Assert.assertEquals(11, entries.size());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testFromIsRequired() throws Exception {
+      createReader().read(new Query());
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static LogFileReader createReader() {
+      return new LogFileReader(logDir.getPath() + File.separator, PREFIX, DATE_FORMAT);
+   }
+
+   private static Calendar getDay(int day) {
+      Calendar cal = Calendar.getInstance();
+      cal.clear();
+      cal.set(2020, Calendar.MARCH, day);
+      return cal;
+   }
+
+   private static Date time(int day, int hour, int minute, int second) {
+      Calendar cal = getDay(day);
+      cal.set(Calendar.HOUR_OF_DAY, hour);
+      cal.set(Calendar.MINUTE, minute);
+      cal.set(Calendar.SECOND, second);
+      return cal.getTime();
+   }
+
+   private static File getLogFile(Calendar day) {
+      return new File(logDir, PREFIX + "_" + new SimpleDateFormat("yyyyMMdd").format(day.getTime()) + ".txt");
+   }
+
+   /*
+    * Writes a line a second from midnight, with a header line at the top and, if headerAt > 0,
+    * again before that line. A partial last line is left without its end if one is given.
+    */
+   private static List<Line> writeDay(Calendar day, String partial, int headerAt) throws IOException {
+      List<Line> dayLines = new ArrayList<>();
+      try (Writer writer = new OutputStreamWriter(new FileOutputStream(getLogFile(day)), Charset.defaultCharset())) {
+         writer.write("NANO_SECS|DATE_STAMP|LOG_LEVEL|CLASS_FIELD_INFO|MESSAGE\n");
+         for (int i = 0; i < LINES_PER_DAY; i++) {
+            if (i == headerAt) {
+               writer.write("NANO_SECS|DATE_STAMP|LOG_LEVEL|CLASS_FIELD_INFO|MESSAGE\n");
+            }
+            Line line = new Line(i, new Date(day.getTimeInMillis() + i * 1000L));
+            writer.write(line.toString());
+            dayLines.add(line);
+         }
+         if (!partial.isEmpty()) {
+            writer.write("99|" + format(new Date(day.getTimeInMillis() + LINES_PER_DAY * 1000L)) + "|INFO|Gen.method(0)|" + partial);
+         }
+      }
+      return dayLines;
+   }
+
+   private static String format(Date date) {
+      return new SimpleDateFormat(DATE_FORMAT).format(date);
+   }
+
+   // The lines a query should return, filtered by hand.
+   private static List<Line> select(Date from, Date to, Level level, String classFilter, int first, int maxResults) {
+      List<Line> selected = new ArrayList<>();
+      int matched = 0;
+      for (Line line : lines) {
+         if (line.Time < from.getTime() || line.Time >= to.getTime()) {
+            continue;
+         }
+         if (level != null && Level.parse(line.Level).intValue() < level.intValue()) {
+            continue;
+         }
+         if (classFilter != null && !line.ClassFieldInfo.contains(classFilter)) {
+            continue;
+         }
+         if (++matched > first && (maxResults == 0 || selected.size() < maxResults)) {
+            selected.add(line);
+         }
+      }
+      return selected;
+   }
+
+   private static void assertEntries(List<Line> expected, List<LogEntry> entries) {
+      Assert.assertEquals(expected.size(), entries.size());
+      for (int i = 0; i < expected.size(); i++) {
+         Line line = expected.get(i);
+         LogEntry entry = entries.get(i);
+         Assert.assertEquals(line.NanoSecs, entry.getNanoSecs());
+         Assert.assertEquals(format(new Date(line.Time)), entry.getDateStamp());
+         Assert.assertEquals(line.Level, entry.getLogLevel());
+         Assert.assertEquals(line.ClassFieldInfo, entry.getClassFieldInfo());
+         Assert.assertEquals(line.Message, entry.getMessage());
+      }
+   }
+
+   private static final class Line {
+
+      private final String NanoSecs;
+      private final long Time;
+      private final String Level;
+      private final String ClassFieldInfo;
+      private final String Message;
+
+      private Line(int number, Date time) {
+         NanoSecs = String.valueOf(1000000L + number);
+         Time = time.getTime();
+         Level = LEVELS[number % LEVELS.length];
+         ClassFieldInfo = "Gen.method(" + (number % 5) + ")";
+         Message = "message " + number;
+      }
+
+      @Override
+      public String toString() {
+         return NanoSecs + "|" + format(new Date(Time)) + "|" + Level + "|" + ClassFieldInfo + "|" + Message + "\n";
+      }
+   }
+}
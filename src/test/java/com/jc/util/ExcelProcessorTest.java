@@ -0,0 +1,236 @@
+package com.jc.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * Streams CSV, XLSX and XLS documents through ExcelProcessor and checks the rows, and the batches
+ * they're handed over in, match what the documents hold.
+ */
+
+public class ExcelProcessorTest {
+
+   @Test
+   public void testCSVRowsAreTrimmedAndBatched() throws Exception {
+      StringBuilder csv = new StringBuilder("name, count\r\n");
+      for (int i = 0; i < 24; i++) {
+         csv.append(" row").append(i).append(" ,").append(i).append("\r\n");
+      }
+      BatchCollector collector = new BatchCollector();
+
+      int numRows = ExcelProcessor.processCSVDocument(toStream(csv.toString()), collector, 10);
+
+      Assert.assertEquals(25, numRows);
+      Assert.assertEquals(Arrays.asList(10, 10, 5), collector.BatchSizes);
+      Assert.assertEquals(Arrays.asList("name", "count"), collector.Rows.get(0));
+      Assert.assertEquals(Arrays.asList("row23", "23"), collector.Rows.get(24));
+   }
+
+   @Test
+   public void testCSVQuotedFields() throws Exception {
+      String csv = "a,b,c\n" + "\"x, y\",\"say \"\"hi\"\"\",\"two\nlines\"\n" + "\"\",plain,\"quoted\"tail";
+      List<ArrayList<String>> rows = ExcelProcessor.parseCSVDocument(toStream(csv));
+
+      Assert.assertEquals(3, rows.size());
+      Assert.assertEquals(Arrays.asList("x, y", "say \"hi\"", "twolines"), rows.get(1)); // line breaks are non-printable...
+      Assert.assertEquals(Arrays.asList("", "plain", "quotedtail"), rows.get(2));
+   }
+
+   @Test
+   public void testCSVEmptyRowsAreSkipped() throws Exception {
+      String csv = "a,b\n\n,\n1,2\r\n\r\n , \n3,\u00014\n";
+      List<ArrayList<String>> rows = ExcelProcessor.parseCSVDocument(toStream(csv));
+
+      Assert.assertEquals(3, rows.size());
+      Assert.assertEquals(Arrays.asList("1", "2"), rows.get(1));
+      Assert.assertEquals(Arrays.asList("3", "4"), rows.get(2));
+   }
+
+   @Test
+   public void testCSVLargeDocument() throws Exception {
+      // more than the tokenizer's buffer, with quoted fields and a field bigger than the buffer...
+      StringBuilder big = new StringBuilder();
+      while (big.length() < 100 * 1024) {
+         big.append("0123456789");
+      }
+      StringBuilder csv = new StringBuilder("id,text\n");
+      for (int i = 0; i < 5000; i++) {
+         csv.append(i).append(",\"text ").append(i).append(", \"\"quoted\"\"\"\n");
+         if (i == 2500) {
+            csv.append("big,\"").append(big).append("\"\n");
+         }
+      }
+      List<ArrayList<String>> rows = ExcelProcessor.parseCSVDocument(toStream(csv.toString()));
+
+      Assert.assertEquals(5002, rows.size());
+      for (int i = 0; i < 5000; i++) {
+         List<String> row = rows.get(i < 2501 ? i + 1 : i + 2);
+         Assert.assertEquals(Arrays.asList(String.valueOf(i), "text " + i + ", \"quoted\""), row);
+      }
+      Assert.assertEquals(big.toString(), rows.get(2502).get(1));
+   }
+
+   @Test
+   public void testCSVRowSizeMustMatch() throws Exception {
+      try {
+         ExcelProcessor.parseCSVDocument(toStream("a,b\n1,2\n3\n"));
+         Assert.fail("Expected a short row to be rejected.");
+      }
+      catch (Exception ex) {
+         Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("row 3"));
+      }
+   }
+
+   @Test(expected = java.io.IOException.class)
+   public void testCSVUnclosedQuote() throws Exception {
+      ExcelProcessor.parseCSVDocument(toStream("a,b\n\"open,2\n"));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testInvalidBatchSize() throws Exception {
+      ExcelProcessor.processCSVDocument(toStream("a\n"), new BatchCollector(), 0);
+   }
+
+   @Test
+   public void testHandlerExceptionIsThrown() throws Exception {
+      final Exception failure = new Exception("handler failed");
+      ExcelProcessor.RowHandler handler = new ExcelProcessor.RowHandler() {
+
+         @Override
+         public void handleRows(List<ArrayList<String>> rows) throws Exception {
+            throw failure;
+         }
+      };
+
+      try {
+         ExcelProcessor.processCSVDocument(toStream("a\n1\n"), handler, 1);
+         Assert.fail("Expected the handler's exception.");
+      }
+      catch (Exception ex) {
+         Assert.assertSame(failure, ex);
+      }
+      try {
+         ExcelProcessor.processExcelDocument(new ByteArrayInputStream(createWorkbook(new XSSFWorkbook())), handler, 1);
+         Assert.fail("Expected the handler's exception.");
+      }
+      catch (Exception ex) {
+         Assert.assertSame(failure, ex);
+      }
+   }
+
+   @Test
+   public void testXLSXAndXLSRows() throws Exception {
+      BatchCollector xlsx = new BatchCollector();
+      int numRows = ExcelProcessor.processExcelDocument(new ByteArrayInputStream(createWorkbook(new XSSFWorkbook())), xlsx, 2);
+      List<ArrayList<String>> xls = ExcelProcessor.parseExcelDocument(new ByteArrayInputStream(createWorkbook(new HSSFWorkbook())));
+
+      Assert.assertEquals(4, numRows);
+      Assert.assertEquals(Arrays.asList(2, 2), xlsx.BatchSizes);
+      Assert.assertEquals(Arrays.asList("name", "amount", "active"), xlsx.Rows.get(0));
+      Assert.assertEquals(Arrays.asList("first", "1.5", "TRUE"), xlsx.Rows.get(1));
+      Assert.assertEquals(Arrays.asList("", "2.0", "FALSE"), xlsx.Rows.get(2)); // a missing cell is empty, a number is its raw value...
+      Assert.assertEquals(Arrays.asList("last", "", ""), xlsx.Rows.get(3));
+
+      // an XLS number is formatted as a string by POI, otherwise the rows are the same...
+      Assert.assertEquals(xlsx.Rows.size(), xls.size());
+      Assert.assertEquals(Arrays.asList("", "2", "FALSE"), xls.get(2));
+      Assert.assertEquals(xlsx.Rows.get(0), xls.get(0));
+      Assert.assertEquals(xlsx.Rows.get(1), xls.get(1));
+      Assert.assertEquals(xlsx.Rows.get(3), xls.get(3));
+   }
+
+   @Test
+   public void testXLSXWithDoctypeIsRejected() throws Exception {
+      byte[] xlsx = createWorkbook(new XSSFWorkbook());
+      ByteArrayOutputStream tampered = new ByteArrayOutputStream();
+      try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(xlsx)); ZipOutputStream out = new ZipOutputStream(tampered)) {
+         ZipEntry entry;
+         while ((entry = in.getNextEntry()) != null) {
+            byte[] content = readAll(in);
+            if (entry.getName().equals("xl/worksheets/sheet1.xml")) {
+               String xml = new String(content, StandardCharsets.UTF_8);
+               int start = xml.indexOf("<worksheet");
+               xml = xml.substring(0, start) + "<!DOCTYPE worksheet [<!ENTITY x SYSTEM \"file:///etc/passwd\">]>" + xml.substring(start);
+               content = xml.getBytes(StandardCharsets.UTF_8);
+            }
+            out.putNextEntry(new ZipEntry(entry.getName()));
+            out.write(content);
+            out.closeEntry();
+         }
+      }
+
+      try {
+         ExcelProcessor.parseExcelDocument(new ByteArrayInputStream(tampered.toByteArray()));
+         Assert.fail("Expected a sheet with a DOCTYPE to be rejected.");
+      }
+      catch (org.xml.sax.SAXException ex) {
+         // expected...
+      }
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static InputStream toStream(String text) {
+      return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static byte[] createWorkbook(Workbook workbook) throws Exception {
+      Sheet sheet = workbook.createSheet("data");
+      Row row = sheet.createRow(0);
+      row.createCell(0).setCellValue("name");
+      row.createCell(1).setCellValue("amount");
+      row.createCell(2).setCellValue("active");
+      row = sheet.createRow(1);
+      row.createCell(0).setCellValue(" first ");
+      row.createCell(1).setCellValue(1.5d);
+      row.createCell(2).setCellValue(true);
+      row = sheet.createRow(2);
+      row.createCell(1).setCellValue(2d);
+      row.createCell(2).setCellValue(false);
+      sheet.createRow(3); // no values, skipped...
+      row = sheet.createRow(4);
+      row.createCell(0).setCellValue("last");
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      workbook.write(out);
+      return out.toByteArray();
+   }
+
+   private static byte[] readAll(InputStream in) throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int numRead;
+      while ((numRead = in.read(buffer)) != -1) {
+         out.write(buffer, 0, numRead);
+      }
+      return out.toByteArray();
+   }
+
+   private static final class BatchCollector implements ExcelProcessor.RowHandler {
+
+      private final List<Integer> BatchSizes = new ArrayList<>();
+      private final List<ArrayList<String>> Rows = new ArrayList<>();
+
+      @Override
+      public void handleRows(List<ArrayList<String>> rows) {
+         BatchSizes.add(rows.size());
+         Rows.addAll(rows);
+      }
+   }
+}
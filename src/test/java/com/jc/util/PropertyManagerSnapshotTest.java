@@ -0,0 +1,172 @@
+package com.jc.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * Runs PropertyManager in snapshot mode against property files in a temporary directory, to
+ * check lookups follow changes made through the manager and, with AutoRefresh on, changes
+ * made to the files, even while another file in the directory is written all the time.
+ */
+
+public class PropertyManagerSnapshotTest {
+
+   private File propertyDir;
+   private File propertyFile;
+
+   @Before
+   public void setUp() throws Exception {
+      propertyDir = File.createTempFile("PropertyManagerSnapshotTest", "");
+      propertyDir.delete();
+      propertyDir.mkdirs();
+      propertyFile = new File(propertyDir, "test.properties");
+      write(propertyFile, "app.name=first\napp.size=10\n");
+   }
+
+   @After
+   public void tearDown() {
+      for (File file : propertyDir.listFiles()) {
+         file.delete();
+      }
+      propertyDir.delete();
+   }
+
+   @Test
+   public void testSnapshotFollowsChangesMadeThroughManager() throws Exception {
+      PropertyManager manager = new PropertyManager();
+      manager.addPropertiesFromFile(propertyFile.getPath());
+      manager.setSnapshotMode(true);
+      Assert.assertTrue(manager.isSnapshotMode());
+
+      Assert.assertEquals("first", manager.getProperty("app.name"));
+      Assert.assertEquals(10, manager.getPropertyAsInteger("app.size"));
+
+      manager.addProperty("app.extra", "added");
+      Assert.assertEquals("added", manager.getProperty("app.extra"));
+      manager.removeProperty("app.name");
+      Assert.assertFalse(manager.hasProperty("app.name"));
+      Assert.assertEquals("added", manager.getProperties("app").getProperty("extra"));
+
+      manager.removeAllProperties();
+      Assert.assertFalse(manager.hasProperties());
+   }
+
+   @Test
+   public void testChangedFileIsReloaded() throws Exception {
+      PropertyManager manager = new PropertyManager();
+      manager.setAutoRefresh(true);
+      manager.addPropertiesFromFile(propertyFile.getPath());
+      manager.setSnapshotMode(true);
+
+      write(propertyFile, "app.name=second\napp.size=20\n");
+      Assert.assertTrue("Changed file wasn't reloaded.", awaitProperty(manager, "app.name", "second", 10000));
+      Assert.assertEquals(20, manager.getPropertyAsInteger("app.size"));
+   }
+
+   @Test
+   public void testChangedFileIsReloadedBesideBusyFile() throws Exception {
+      final File busyFile = new File(propertyDir, "busy.log");
+      final AtomicBoolean writing = new AtomicBoolean(true);
+      Thread writer = new Thread(new Runnable() {
+
+         @Override
+         public void run() {
+            try (OutputStream out = new FileOutputStream(busyFile, true)) {
+               while (writing.get()) {
+                  out.write("a log line\n".getBytes(StandardCharsets.UTF_8));
+                  out.flush();
+                  Thread.sleep(20);
+               }
+            }
+            catch (IOException | InterruptedException ex) {
+               // stop writing...
+            }
+         }
+      });
+
+      PropertyManager manager = new PropertyManager();
+      manager.setAutoRefresh(true);
+      manager.addPropertiesFromFile(propertyFile.getPath());
+      manager.setSnapshotMode(true);
+      writer.start();
+      try {
+         Thread.sleep(200);
+         write(propertyFile, "app.name=second\napp.size=20\n");
+         Assert.assertTrue("Changed file wasn't reloaded.", awaitProperty(manager, "app.name", "second", 5000));
+      }
+      finally {
+         writing.set(false);
+         writer.join();
+      }
+   }
+
+   @Test
+   public void testFileIsNotReloadedWithoutAutoRefresh() throws Exception {
+      PropertyManager manager = new PropertyManager();
+      manager.addPropertiesFromFile(propertyFile.getPath());
+      manager.setSnapshotMode(true);
+
+      write(propertyFile, "app.name=second\n");
+      Assert.assertFalse(awaitProperty(manager, "app.name", "second", 1000));
+      Assert.assertEquals("first", manager.getProperty("app.name"));
+   }
+
+   @Test
+   public void testChildManagerIsNotReloaded() throws Exception {
+      PropertyManager manager = new PropertyManager();
+      manager.setAutoRefresh(true);
+      manager.addPropertiesFromFile(propertyFile.getPath());
+      manager.setSnapshotMode(true);
+
+      PropertyManager child = manager.getManagerFor("app");
+      Assert.assertTrue(child.isSnapshotMode());
+      Assert.assertEquals("first", child.getProperty("name"));
+
+      write(propertyFile, "app.name=second\n");
+      Assert.assertTrue(awaitProperty(manager, "app.name", "second", 10000));
+      Assert.assertEquals("first", child.getProperty("name"));
+   }
+
+   @Test
+   public void testLeavingSnapshotModeChecksFilesOnLookup() throws Exception {
+      PropertyManager manager = new PropertyManager();
+      manager.setAutoRefresh(true);
+      manager.addPropertiesFromFile(propertyFile.getPath());
+      manager.setSnapshotMode(true);
+      manager.setSnapshotMode(false);
+      Assert.assertFalse(manager.isSnapshotMode());
+
+      write(propertyFile, "app.name=second\n");
+      propertyFile.setLastModified(propertyFile.lastModified() + 2000); // in case the write landed in the same second...
+      Assert.assertEquals("second", manager.getProperty("app.name"));
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static void write(File file, String content) throws IOException {
+      try (OutputStream out = new FileOutputStream(file)) {
+         out.write(content.getBytes(StandardCharsets.ISO_8859_1));
+      }
+   }
+
+   // Waits, at most timeout ms, for the property to have the value.
+   private static boolean awaitProperty(PropertyManager manager, String name, String value, long timeout) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + timeout;
+      while (!value.equals(manager.getProperty(name))) {
+         if (System.currentTimeMillis() > deadline) {
+            return false;
+         }
+         Thread.sleep(20);
+      }
+      return true;
+   }
+}
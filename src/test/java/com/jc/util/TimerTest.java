@@ -0,0 +1,184 @@
+package com.jc.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jc.util.Timer.TimerListener;
+
+public class TimerTest {
+
+   @Test
+   public void testTimerWakesUpOnce() throws Exception {
+      Timer timer = new Timer(100);
+      CountingListener listener = new CountingListener();
+      timer.addTimerListener(listener);
+
+      timer.start();
+      Assert.assertTrue(timer.isRunning());
+      Assert.assertTrue(listener.await(1, 5000));
+      Thread.sleep(300);
+
+      Assert.assertEquals(1, listener.count());
+      Assert.assertFalse(timer.isRunning());
+      Assert.assertTrue(timer.getTotalRunTime() >= 100);
+   }
+
+   @Test
+   public void testStoppedTimerDoesNotWakeUp() throws Exception {
+      Timer timer = new Timer(200);
+      CountingListener listener = new CountingListener();
+      timer.addTimerListener(listener);
+
+      timer.start();
+      timer.stop();
+      Thread.sleep(400);
+      Assert.assertEquals(0, listener.count());
+      Assert.assertFalse(timer.isRunning());
+   }
+
+   @Test
+   public void testRestartPostponesWakeUp() throws Exception {
+      Timer timer = new Timer(300);
+      CountingListener listener = new CountingListener();
+      timer.addTimerListener(listener);
+
+      long time = System.currentTimeMillis();
+      timer.start();
+      Thread.sleep(200);
+      timer.start(); // restarts the 300 ms...
+      Assert.assertTrue(listener.await(1, 5000));
+      time = System.currentTimeMillis() - time;
+
+      Assert.assertTrue("Woke up after " + time + " ms.", time >= 450);
+      Thread.sleep(400);
+      Assert.assertEquals("The first start wasn't cancelled.", 1, listener.count());
+   }
+
+   @Test
+   public void testRepeatingTimerStopsAtItsEndTime() throws Exception {
+      Timer timer = new Timer(50, System.currentTimeMillis() + 400);
+      CountingListener listener = new CountingListener();
+      timer.addTimerListener(listener);
+
+      timer.start();
+      Thread.sleep(800);
+      int count = listener.count();
+      Assert.assertTrue("Woke up " + count + " times.", count >= 3 && count <= 9);
+      Assert.assertFalse(timer.isRunning());
+
+      Thread.sleep(200);
+      Assert.assertEquals(count, listener.count());
+   }
+
+   @Test
+   public void testListenerCanRestartTimer() throws Exception {
+      final Timer timer = new Timer(50);
+      final AtomicInteger count = new AtomicInteger();
+      final CountDownLatch restarted = new CountDownLatch(3);
+      timer.addTimerListener(new TimerListener() {
+
+         @Override
+         public void timeExpired() {
+            if (count.incrementAndGet() < 3) {
+               timer.start();
+            }
+            restarted.countDown();
+         }
+      });
+
+      timer.start();
+      Assert.assertTrue(restarted.await(5, TimeUnit.SECONDS));
+      Thread.sleep(200);
+      Assert.assertEquals(3, count.get());
+      Assert.assertFalse(timer.isRunning());
+   }
+
+   @Test
+   public void testTimersShareSchedulerThreads() throws Exception {
+      List<Timer> timers = new ArrayList<>();
+      CountingListener listener = new CountingListener();
+      for (int i = 0; i < 200; i++) {
+         Timer timer = new Timer(100 + (i % 10));
+         timer.addTimerListener(listener);
+         timer.start();
+         timers.add(timer);
+      }
+
+      Assert.assertTrue(listener.await(200, 5000));
+      int schedulerThreads = 0;
+      for (Thread thread : Thread.getAllStackTraces().keySet()) {
+         if (thread.getName().startsWith("TimerScheduler")) {
+            Assert.assertTrue(thread.isDaemon());
+            schedulerThreads++;
+         }
+      }
+      Assert.assertTrue("Found " + schedulerThreads + " scheduler threads.", schedulerThreads >= 1 && schedulerThreads <= 2);
+   }
+
+   @Test
+   public void testScheduledTasks() throws Exception {
+      final CountDownLatch once = new CountDownLatch(1);
+      Timer.schedule(new Runnable() {
+
+         @Override
+         public void run() {
+            once.countDown();
+         }
+      }, 50);
+      Assert.assertTrue(once.await(5, TimeUnit.SECONDS));
+
+      final CountDownLatch repeated = new CountDownLatch(3);
+      ScheduledFuture<?> future = Timer.scheduleAtFixedRate(new Runnable() {
+
+         @Override
+         public void run() {
+            repeated.countDown();
+         }
+      }, 20);
+      try {
+         Assert.assertTrue(repeated.await(5, TimeUnit.SECONDS));
+      }
+      finally {
+         future.cancel(false);
+      }
+   }
+
+   // -------------------------------------------------------------------------------------
+
+   private static final class CountingListener implements TimerListener {
+
+      private final AtomicInteger Count = new AtomicInteger();
+
+      @Override
+      public void timeExpired() {
+         synchronized (this) {
+            Count.incrementAndGet();
+            notifyAll();
+         }
+      }
+
+      int count() {
+         return Count.get();
+      }
+
+      // Waits, at most timeout ms, for the listener to have been called count times.
+      synchronized boolean await(int count, long timeout) throws InterruptedException {
+         long deadline = System.currentTimeMillis() + timeout;
+         while (Count.get() < count) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+               return false;
+            }
+            wait(remaining);
+         }
+         return true;
+      }
+   }
+}